@@ -0,0 +1,114 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.benchmark;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.regex.Pattern;
+
+import games.stendhal.server.core.config.ZoneGroupsXMLLoader;
+import games.stendhal.server.core.engine.SingletonRepository;
+import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.maps.MockStendhalRPRuleProcessor;
+import games.stendhal.server.maps.MockStendlRPWorld;
+import marauroa.common.Log4J;
+import marauroa.common.game.IRPZone;
+import marauroa.server.game.db.DAORegister;
+import marauroa.server.game.db.RPZoneDAO;
+
+/**
+ * Sets up a game world for benchmarks, without network and database.
+ * <p>
+ * Zones and creatures are loaded from <code>data/conf</code> by the same
+ * loaders the server uses, so the benchmarks run against real maps and
+ * real creature definitions.
+ */
+public final class BenchmarkWorld {
+	private static final String ZONE_REGEX_PROPERTY = "stendhal.zone.regex";
+
+	private static boolean initialized;
+
+	private BenchmarkWorld() {
+		// static helpers only
+	}
+
+	/**
+	 * Creates the world and the rule processor, and loads the item and
+	 * creature definitions. Calling it again does nothing.
+	 */
+	public static synchronized void init() {
+		if (initialized) {
+			return;
+		}
+		Log4J.init();
+		MockStendlRPWorld.get();
+		MockStendhalRPRuleProcessor.get();
+		DAORegister.get().register(RPZoneDAO.class, new NoStoredObjectsZoneDAO());
+		// loads items.xml and creatures.xml
+		SingletonRepository.getEntityManager();
+		initialized = true;
+	}
+
+	/**
+	 * Gets a zone, loading it from <code>data/conf/zones.xml</code> if it
+	 * has not been loaded yet. The zone is set up like on the server,
+	 * including its configurators, portals and creature spawn points.
+	 *
+	 * @param name zone name, for example <code>0_semos_city</code>
+	 * @return the zone
+	 */
+	public static synchronized StendhalRPZone loadZone(final String name) {
+		init();
+		StendhalRPZone zone = SingletonRepository.getRPWorld().getZone(name);
+		if (zone != null) {
+			return zone;
+		}
+
+		// ZonesXMLLoader skips all zones not matching this expression
+		final String oldRegex = System.getProperty(ZONE_REGEX_PROPERTY);
+		System.setProperty(ZONE_REGEX_PROPERTY, Pattern.quote(name));
+		try {
+			new ZoneGroupsXMLLoader(new URI("/data/conf/zones.xml")).load();
+		} catch (final URISyntaxException e) {
+			throw new IllegalStateException(e);
+		} catch (final Exception e) {
+			throw new IllegalStateException("Failed to load zone " + name, e);
+		} finally {
+			if (oldRegex == null) {
+				System.clearProperty(ZONE_REGEX_PROPERTY);
+			} else {
+				System.setProperty(ZONE_REGEX_PROPERTY, oldRegex);
+			}
+		}
+
+		zone = SingletonRepository.getRPWorld().getZone(name);
+		if (zone == null) {
+			throw new IllegalArgumentException("Unknown zone " + name);
+		}
+		return zone;
+	}
+
+	/**
+	 * Zone DAO that does not restore stored zone objects, so that zones can
+	 * be initialized without a database.
+	 */
+	private static final class NoStoredObjectsZoneDAO extends RPZoneDAO {
+		private NoStoredObjectsZoneDAO() {
+			super(null);
+		}
+
+		@Override
+		public void loadRPZone(final IRPZone zone) {
+			// nothing stored
+		}
+	}
+}
@@ -0,0 +1,217 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import games.stendhal.server.core.engine.SingletonRepository;
+import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.entity.Entity;
+import games.stendhal.server.entity.creature.Creature;
+import games.stendhal.server.entity.player.Player;
+import utilities.PlayerTestHelper;
+
+/**
+ * Builds zones populated with a given number of players and creatures.
+ * <p>
+ * The entities are put on random free positions. The random generator is
+ * seeded, so that a fixture looks the same in every benchmark run.
+ */
+public final class PopulatedZoneBuilder {
+	/** Give up placing an entity after this many occupied positions. */
+	private static final int MAX_PLACEMENT_TRIES = 1000;
+
+	private final StendhalRPZone zone;
+	private int players;
+	private int creatures;
+	private List<String> creatureNames = Arrays.asList("rat", "wolf", "orc", "dwarf", "kobold");
+	private long seed = 1;
+
+	private PopulatedZoneBuilder(final StendhalRPZone zone) {
+		this.zone = zone;
+	}
+
+	/**
+	 * Starts populating a zone loaded from <code>data/conf/zones.xml</code>.
+	 *
+	 * @param zoneName name of the zone
+	 * @return builder
+	 */
+	public static PopulatedZoneBuilder realZone(final String zoneName) {
+		return new PopulatedZoneBuilder(BenchmarkWorld.loadZone(zoneName));
+	}
+
+	/**
+	 * Starts populating an empty zone without collisions.
+	 *
+	 * @param zoneName name of the zone
+	 * @param width width of the zone
+	 * @param height height of the zone
+	 * @return builder
+	 */
+	public static PopulatedZoneBuilder emptyZone(final String zoneName, final int width, final int height) {
+		BenchmarkWorld.init();
+		final StendhalRPZone zone = new StendhalRPZone(zoneName, width, height);
+		SingletonRepository.getRPWorld().addRPZone(zone);
+		return new PopulatedZoneBuilder(zone);
+	}
+
+	/**
+	 * Sets the number of players to add.
+	 *
+	 * @param count number of players
+	 * @return this builder
+	 */
+	public PopulatedZoneBuilder withPlayers(final int count) {
+		players = count;
+		return this;
+	}
+
+	/**
+	 * Sets the number of creatures to add.
+	 *
+	 * @param count number of creatures
+	 * @return this builder
+	 */
+	public PopulatedZoneBuilder withCreatures(final int count) {
+		creatures = count;
+		return this;
+	}
+
+	/**
+	 * Sets the kinds of creatures to add. They are used in turn.
+	 *
+	 * @param names creature names as in <code>data/conf/creatures</code>
+	 * @return this builder
+	 */
+	public PopulatedZoneBuilder withCreatureTypes(final String... names) {
+		creatureNames = Arrays.asList(names);
+		return this;
+	}
+
+	/**
+	 * Sets the seed for placing the entities.
+	 *
+	 * @param seed random seed
+	 * @return this builder
+	 */
+	public PopulatedZoneBuilder withSeed(final long seed) {
+		this.seed = seed;
+		return this;
+	}
+
+	/**
+	 * Adds the players and creatures to the zone.
+	 *
+	 * @return the populated zone
+	 */
+	public PopulatedZone build() {
+		final Random random = new Random(seed);
+		final List<Player> addedPlayers = new ArrayList<Player>(players);
+		for (int i = 0; i < players; i++) {
+			final Player player = PlayerTestHelper.createPlayer("bench" + i);
+			if (place(player, random)) {
+				PlayerTestHelper.registerPlayer(player, zone);
+				addedPlayers.add(player);
+			}
+		}
+
+		final List<Creature> addedCreatures = new ArrayList<Creature>(creatures);
+		for (int i = 0; i < creatures; i++) {
+			final String name = creatureNames.get(i % creatureNames.size());
+			final Creature creature = SingletonRepository.getEntityManager().getCreature(name);
+			if (creature == null) {
+				throw new IllegalArgumentException("Unknown creature " + name);
+			}
+			if (place(creature, random)) {
+				zone.add(creature);
+				addedCreatures.add(creature);
+			}
+		}
+
+		return new PopulatedZone(zone, addedPlayers, addedCreatures);
+	}
+
+	/**
+	 * Moves an entity to a random free position of the zone.
+	 *
+	 * @return <code>false</code> if no free position was found
+	 */
+	private boolean place(final Entity entity, final Random random) {
+		for (int i = 0; i < MAX_PLACEMENT_TRIES; i++) {
+			final int x = random.nextInt(zone.getWidth());
+			final int y = random.nextInt(zone.getHeight());
+			if (!zone.collides(entity, x, y)) {
+				entity.setPosition(x, y);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * A zone with the entities that were added to it.
+	 */
+	public static final class PopulatedZone {
+		private final StendhalRPZone zone;
+		private final List<Player> players;
+		private final List<Creature> creatures;
+
+		private PopulatedZone(final StendhalRPZone zone, final List<Player> players, final List<Creature> creatures) {
+			this.zone = zone;
+			this.players = players;
+			this.creatures = creatures;
+		}
+
+		/**
+		 * Gets the zone.
+		 *
+		 * @return zone
+		 */
+		public StendhalRPZone getZone() {
+			return zone;
+		}
+
+		/**
+		 * Gets the added players.
+		 *
+		 * @return players
+		 */
+		public List<Player> getPlayers() {
+			return players;
+		}
+
+		/**
+		 * Gets the added creatures.
+		 *
+		 * @return creatures
+		 */
+		public List<Creature> getCreatures() {
+			return creatures;
+		}
+
+		/**
+		 * Removes the added entities from the zone again.
+		 */
+		public void clear() {
+			for (final Player player : players) {
+				PlayerTestHelper.removePlayer(player);
+			}
+			for (final Creature creature : creatures) {
+				zone.remove(creature);
+			}
+		}
+	}
+}
@@ -0,0 +1,99 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.common;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import games.stendhal.benchmark.BenchmarkWorld;
+import games.stendhal.server.core.engine.StendhalRPZone;
+
+/**
+ * Rectangle collision checks of CollisionMap and CollisionDetection, filled
+ * with the collision layer of a real zone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CollisionMapBenchmark {
+	/** Number of precomputed probe positions. Must be a power of two. */
+	private static final int PROBES = 1024;
+
+	@Param({ "0_semos_city", "0_ados_city" })
+	public String zoneName;
+
+	/** Size of the checked area, as width x height. */
+	@Param({ "1x1", "1x2", "2x2", "6x6" })
+	public String area;
+
+	private CollisionMap collisionMap;
+	private CollisionDetection collisionDetection;
+	private int width;
+	private int height;
+	private final int[] xs = new int[PROBES];
+	private final int[] ys = new int[PROBES];
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		final StendhalRPZone zone = BenchmarkWorld.loadZone(zoneName);
+		collisionMap = new CollisionMap(zone.getWidth(), zone.getHeight());
+		collisionDetection = new CollisionDetection();
+		collisionDetection.init(zone.getWidth(), zone.getHeight());
+		for (int x = 0; x < zone.getWidth(); x++) {
+			for (int y = 0; y < zone.getHeight(); y++) {
+				if (zone.collides(x, y)) {
+					collisionMap.set(x, y);
+					collisionDetection.setCollide(x, y);
+				}
+			}
+		}
+
+		final String[] size = area.split("x");
+		width = Integer.parseInt(size[0]);
+		height = Integer.parseInt(size[1]);
+
+		final Random random = new Random(42);
+		for (int i = 0; i < PROBES; i++) {
+			xs[i] = random.nextInt(zone.getWidth() - width + 1);
+			ys[i] = random.nextInt(zone.getHeight() - height + 1);
+		}
+	}
+
+	@Benchmark
+	public boolean collisionMap() {
+		final int i = next++ & (PROBES - 1);
+		return collisionMap.collides(xs[i], ys[i], width, height);
+	}
+
+	@Benchmark
+	public boolean collisionDetection() {
+		final int i = next++ & (PROBES - 1);
+		return collisionDetection.collides(xs[i], ys[i], width, height);
+	}
+}
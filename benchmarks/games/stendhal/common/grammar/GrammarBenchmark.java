@@ -0,0 +1,94 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.common.grammar;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import games.stendhal.benchmark.BenchmarkWorld;
+import games.stendhal.server.core.engine.SingletonRepository;
+import games.stendhal.server.core.rule.EntityManager;
+import games.stendhal.server.core.rule.defaultruleset.DefaultCreature;
+import games.stendhal.server.core.rule.defaultruleset.DefaultItem;
+
+/**
+ * Plural and singular forms of all item and creature names.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class GrammarBenchmark {
+	private String[] itemNames;
+	private String[] creatureNames;
+	private String[] pluralNames;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		BenchmarkWorld.init();
+		final EntityManager manager = SingletonRepository.getEntityManager();
+
+		final List<String> items = new ArrayList<String>();
+		for (final DefaultItem item : manager.getDefaultItems()) {
+			items.add(item.getItemName());
+		}
+		itemNames = items.toArray(new String[items.size()]);
+
+		final List<String> creatures = new ArrayList<String>();
+		for (final DefaultCreature creature : manager.getDefaultCreatures()) {
+			creatures.add(creature.getCreatureName());
+		}
+		creatureNames = creatures.toArray(new String[creatures.size()]);
+
+		pluralNames = new String[itemNames.length];
+		for (int i = 0; i < itemNames.length; i++) {
+			pluralNames[i] = Grammar.plural(itemNames[i]);
+		}
+	}
+
+	@Benchmark
+	public String plural() {
+		return Grammar.plural(itemNames[(next++ & Integer.MAX_VALUE) % itemNames.length]);
+	}
+
+	@Benchmark
+	public String pluralCreature() {
+		return Grammar.pluralCreature(creatureNames[(next++ & Integer.MAX_VALUE) % creatureNames.length]);
+	}
+
+	@Benchmark
+	public String singular() {
+		return Grammar.singular(pluralNames[(next++ & Integer.MAX_VALUE) % pluralNames.length]);
+	}
+
+	@Benchmark
+	public String quantityplnoun() {
+		final int i = next++ & Integer.MAX_VALUE;
+		return Grammar.quantityplnoun(i & 7, itemNames[i % itemNames.length]);
+	}
+}
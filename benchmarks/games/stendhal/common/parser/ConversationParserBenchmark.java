@@ -0,0 +1,76 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.common.parser;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing of typical player chat.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ConversationParserBenchmark {
+	private static final String[] INPUTS = {
+		"hi",
+		"bye",
+		"job",
+		"help",
+		"offer",
+		"quest",
+		"yes",
+		"no thanks",
+		"buy 5 bottles of potion",
+		"sell 3 big cheese",
+		"I would like to buy a long sword, please",
+		"Can you tell me where the semos bank is?",
+		"lol, what's up with you guys today",
+		"buy 1000 arrows",
+		"done",
+		"meet Hayunn Naratha in the town hall",
+	};
+
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		// load the word list before measuring
+		ConversationParser.parse("hi");
+	}
+
+	@Benchmark
+	public Sentence parse() {
+		final String text = INPUTS[(next++ & Integer.MAX_VALUE) % INPUTS.length];
+		return ConversationParser.parse(text);
+	}
+
+	@Benchmark
+	public Sentence parseWithContext() {
+		final String text = INPUTS[(next++ & Integer.MAX_VALUE) % INPUTS.length];
+		return ConversationParser.parse(text, new ConversationContext());
+	}
+}
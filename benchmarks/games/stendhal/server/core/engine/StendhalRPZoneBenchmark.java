@@ -0,0 +1,101 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import games.stendhal.benchmark.PopulatedZoneBuilder;
+import games.stendhal.benchmark.PopulatedZoneBuilder.PopulatedZone;
+import games.stendhal.server.entity.creature.Creature;
+
+/**
+ * Collision checks of a zone, against the collision map only and against
+ * the collision map and the entities in the zone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class StendhalRPZoneBenchmark {
+	/** Number of precomputed probe positions. Must be a power of two. */
+	private static final int PROBES = 1024;
+
+	@Param({ "0_semos_city", "0_ados_city" })
+	public String zoneName;
+
+	@Param({ "0", "50" })
+	public int players;
+
+	@Param({ "0", "200" })
+	public int creatures;
+
+	private PopulatedZone populated;
+	private StendhalRPZone zone;
+	private Creature probe;
+	private final int[] xs = new int[PROBES];
+	private final int[] ys = new int[PROBES];
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		populated = PopulatedZoneBuilder.realZone(zoneName).withPlayers(players).withCreatures(creatures).build();
+		zone = populated.getZone();
+		// not added to the zone, so it never collides with itself
+		probe = SingletonRepository.getEntityManager().getCreature("rat");
+
+		final Random random = new Random(42);
+		for (int i = 0; i < PROBES; i++) {
+			xs[i] = random.nextInt(zone.getWidth());
+			ys[i] = random.nextInt(zone.getHeight());
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		populated.clear();
+	}
+
+	@Benchmark
+	public boolean collidesTile() {
+		final int i = next++ & (PROBES - 1);
+		return zone.collides(xs[i], ys[i]);
+	}
+
+	@Benchmark
+	public boolean collidesEntity() {
+		final int i = next++ & (PROBES - 1);
+		return zone.collides(probe, xs[i], ys[i]);
+	}
+
+	@Benchmark
+	public boolean collidesMapOnly() {
+		final int i = next++ & (PROBES - 1);
+		return zone.collides(probe, xs[i], ys[i], false);
+	}
+}
@@ -0,0 +1,178 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.pathfinder;
+
+import java.awt.Rectangle;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import games.stendhal.benchmark.PopulatedZoneBuilder;
+import games.stendhal.benchmark.PopulatedZoneBuilder.PopulatedZone;
+import games.stendhal.server.core.engine.SingletonRepository;
+import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.entity.creature.Creature;
+
+/**
+ * Path searches between random free positions of a populated zone. The
+ * legacy benchmarks run the same searches with the node object based path
+ * finder that was used before, for comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PathBenchmark {
+	/** Number of precomputed searches. Must be a power of two. */
+	private static final int SEARCHES = 256;
+	private static final int MAX_DISTANCE = 60;
+
+	@Param({ "0_semos_city", "0_ados_city" })
+	public String zoneName;
+
+	@Param({ "0", "20" })
+	public int players;
+
+	@Param({ "0", "100" })
+	public int creatures;
+
+	/** Smallest distance between start and goal, as the crow flies. */
+	@Param({ "5", "30" })
+	public int distance;
+
+	private PopulatedZone populated;
+	private StendhalRPZone zone;
+	private Creature walker;
+	private final int[] startX = new int[SEARCHES];
+	private final int[] startY = new int[SEARCHES];
+	private final Rectangle[] goals = new Rectangle[SEARCHES];
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		populated = PopulatedZoneBuilder.realZone(zoneName).withPlayers(players).withCreatures(creatures).build();
+		zone = populated.getZone();
+		walker = SingletonRepository.getEntityManager().getCreature("rat");
+
+		final Random random = new Random(42);
+		int i = 0;
+		while (i < SEARCHES) {
+			final int sx = random.nextInt(zone.getWidth());
+			final int sy = random.nextInt(zone.getHeight());
+			final int gx = random.nextInt(zone.getWidth());
+			final int gy = random.nextInt(zone.getHeight());
+			final double d = Math.hypot(gx - sx, gy - sy);
+			if ((d < distance) || (d > MAX_DISTANCE)) {
+				continue;
+			}
+			if (zone.collides(walker, sx, sy) || zone.collides(walker, gx, gy)) {
+				continue;
+			}
+			startX[i] = sx;
+			startY[i] = sy;
+			goals[i] = new Rectangle(gx, gy, 1, 1);
+			i++;
+		}
+
+		// the path finder expects the searching entity to be in the zone
+		walker.setPosition(startX[0], startY[0]);
+		zone.add(walker);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		zone.remove(walker);
+		populated.clear();
+	}
+
+	/**
+	 * Search avoiding the other entities, as creatures and NPCs do.
+	 *
+	 * @return path
+	 */
+	@Benchmark
+	public List<Node> searchPathWithEntities() {
+		final int i = next++ & (SEARCHES - 1);
+		return Path.searchPath(walker, zone, startX[i], startY[i], goals[i], MAX_DISTANCE, true);
+	}
+
+	/**
+	 * Search on the collision map only.
+	 *
+	 * @return path
+	 */
+	@Benchmark
+	public List<Node> searchPathMapOnly() {
+		final int i = next++ & (SEARCHES - 1);
+		return Path.searchPath(walker, zone, startX[i], startY[i], goals[i], MAX_DISTANCE, false);
+	}
+
+	/**
+	 * One tile wide search that ignores entities.
+	 *
+	 * @return path
+	 */
+	@Benchmark
+	public List<Node> searchPathSimple() {
+		final int i = next++ & (SEARCHES - 1);
+		return Path.searchPath(zone, startX[i], startY[i], goals[i].x, goals[i].y, MAX_DISTANCE);
+	}
+
+	/**
+	 * Search avoiding the other entities with the old path finder.
+	 *
+	 * @return path
+	 */
+	@Benchmark
+	public List<Node> legacySearchPathWithEntities() {
+		final int i = next++ & (SEARCHES - 1);
+		return new LegacyEntityPathfinder(walker, zone, startX[i], startY[i], goals[i], MAX_DISTANCE, true).getPath();
+	}
+
+	/**
+	 * Search on the collision map only with the old path finder.
+	 *
+	 * @return path
+	 */
+	@Benchmark
+	public List<Node> legacySearchPathMapOnly() {
+		final int i = next++ & (SEARCHES - 1);
+		return new LegacyEntityPathfinder(walker, zone, startX[i], startY[i], goals[i], MAX_DISTANCE, false).getPath();
+	}
+
+	/**
+	 * One tile wide search with the old path finder.
+	 *
+	 * @return path
+	 */
+	@Benchmark
+	public List<Node> legacySearchPathSimple() {
+		final int i = next++ & (SEARCHES - 1);
+		return new LegacySimplePathfinder(zone, startX[i], startY[i], new Rectangle(goals[i].x, goals[i].y, 1, 1), MAX_DISTANCE).getPath();
+	}
+}
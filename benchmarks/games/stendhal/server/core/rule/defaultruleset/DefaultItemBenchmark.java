@@ -0,0 +1,84 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.rule.defaultruleset;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import games.stendhal.benchmark.BenchmarkWorld;
+import games.stendhal.server.core.engine.SingletonRepository;
+import games.stendhal.server.core.rule.EntityManager;
+import games.stendhal.server.entity.item.Item;
+
+/**
+ * Item creation as done for loot, shops and growing items.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DefaultItemBenchmark {
+	@Param({ "money", "ice sword", "leather armor", "ham" })
+	public String itemName;
+
+	private EntityManager manager;
+	private DefaultItem defaultItem;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		BenchmarkWorld.init();
+		manager = SingletonRepository.getEntityManager();
+		for (final DefaultItem item : manager.getDefaultItems()) {
+			if (item.getItemName().equals(itemName)) {
+				defaultItem = item;
+			}
+		}
+		if (defaultItem == null) {
+			throw new IllegalArgumentException("Unknown item " + itemName);
+		}
+	}
+
+	/**
+	 * Item creation through the entity manager, including the setup done by
+	 * DefaultItem.
+	 *
+	 * @return item
+	 */
+	@Benchmark
+	public Item getItem() {
+		return manager.getItem(itemName);
+	}
+
+	/**
+	 * Calling the constructor through the item creator.
+	 *
+	 * @return item
+	 */
+	@Benchmark
+	public Item creator() {
+		return defaultItem.getCreator().create();
+	}
+}
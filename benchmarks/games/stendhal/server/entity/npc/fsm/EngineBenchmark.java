@@ -0,0 +1,100 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.entity.npc.fsm;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import games.stendhal.benchmark.PopulatedZoneBuilder;
+import games.stendhal.benchmark.PopulatedZoneBuilder.PopulatedZone;
+import games.stendhal.server.core.engine.SingletonRepository;
+import games.stendhal.server.entity.npc.SpeakerNPC;
+import games.stendhal.server.entity.player.Player;
+
+/**
+ * Conversation steps of a real NPC, as set up by its zone configurator.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class EngineBenchmark {
+	private static final String[] CONVERSATION = { "hi", "job", "help", "bye" };
+
+	@Param({ "0_semos_city" })
+	public String zoneName;
+
+	@Param({ "Nomyr Ahba" })
+	public String npcName;
+
+	private PopulatedZone populated;
+	private SpeakerNPC npc;
+	private Engine engine;
+	private Player player;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		populated = PopulatedZoneBuilder.realZone(zoneName).withPlayers(1).build();
+		player = populated.getPlayers().get(0);
+		npc = SingletonRepository.getNPCList().get(npcName);
+		if (npc == null) {
+			throw new IllegalArgumentException("NPC " + npcName + " is not in " + zoneName);
+		}
+		engine = npc.getEngine();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		populated.clear();
+	}
+
+	/**
+	 * A short conversation from greeting to goodbye.
+	 *
+	 * @return <code>true</code> if the last step was understood
+	 */
+	@Benchmark
+	public boolean conversation() {
+		boolean result = false;
+		for (final String text : CONVERSATION) {
+			result = engine.step(player, text);
+		}
+		// the replies would pile up until the next turn otherwise
+		npc.clearEvents();
+		return result;
+	}
+
+	/**
+	 * Chat that no transition matches, as for NPCs overhearing players.
+	 *
+	 * @return <code>true</code> if the text was understood
+	 */
+	@Benchmark
+	public boolean unknownWhileIdle() {
+		return engine.step(player, "lol, what's up with you guys today");
+	}
+}
@@ -0,0 +1,106 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.entity.player;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import games.stendhal.benchmark.BenchmarkWorld;
+import games.stendhal.server.core.engine.SingletonRepository;
+import games.stendhal.server.core.rule.defaultruleset.DefaultCreature;
+import utilities.PlayerTestHelper;
+
+/**
+ * Quest and kill lookups on a player with a filled quest and kill slot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PlayerKeyedSlotBenchmark {
+	/** Number of quest slots set on the player. */
+	@Param({ "20", "200", "600" })
+	public int quests;
+
+	private Player player;
+	private String[] questNames;
+	private String[] creatureNames;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		BenchmarkWorld.init();
+		player = PlayerTestHelper.createPlayer("bench");
+
+		questNames = new String[quests];
+		for (int i = 0; i < quests; i++) {
+			questNames[i] = "quest_" + i;
+			player.setQuest(questNames[i], "done;" + i + ";" + System.currentTimeMillis());
+		}
+
+		// kill counts of every creature, like on an old character
+		final List<String> names = new ArrayList<String>();
+		for (final DefaultCreature creature : SingletonRepository.getEntityManager().getDefaultCreatures()) {
+			names.add(creature.getCreatureName());
+			player.setSoloKillCount(creature.getCreatureName(), 10);
+			player.setSharedKillCount(creature.getCreatureName(), 5);
+		}
+		creatureNames = names.toArray(new String[names.size()]);
+	}
+
+	@Benchmark
+	public String getQuest() {
+		return player.getQuest(questNames[(next++ & Integer.MAX_VALUE) % quests]);
+	}
+
+	@Benchmark
+	public String getQuestMissing() {
+		return player.getQuest("no_such_quest");
+	}
+
+	@Benchmark
+	public String getQuestIndex() {
+		return player.getQuest(questNames[(next++ & Integer.MAX_VALUE) % quests], 1);
+	}
+
+	@Benchmark
+	public void setQuest() {
+		final int i = (next++ & Integer.MAX_VALUE) % quests;
+		player.setQuest(questNames[i], (i & 1) == 0 ? "start" : "done");
+	}
+
+	@Benchmark
+	public int getSoloKill() {
+		return player.getSoloKill(creatureNames[(next++ & Integer.MAX_VALUE) % creatureNames.length]);
+	}
+
+	@Benchmark
+	public boolean hasKilled() {
+		return player.hasKilled(creatureNames[(next++ & Integer.MAX_VALUE) % creatureNames.length]);
+	}
+}
@@ -1,5 +1,5 @@
 /***************************************************************************
- *                   (C) Copyright 2003-2010 - Stendhal                    *
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -12,26 +12,43 @@
 package games.stendhal.client;
 
 import java.awt.Composite;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.image.BufferedImage;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import games.stendhal.client.gui.TransparencyMode;
 import games.stendhal.client.sprite.CompositeSprite;
+import games.stendhal.client.sprite.EmptySprite;
 import games.stendhal.client.sprite.Sprite;
 import games.stendhal.client.sprite.SpriteCache;
 
 /**
  * A LayerRenderer that merges several tile layers in to one using
- * CompositeSprites.
+ * CompositeSprites. The constant tiles are drawn using pre-rendered chunks
+ * from {@link TileChunkCache}, when the cache is enabled.
  */
 class CompositeLayerRenderer extends TileRenderer {
+	/** Size of a chunk in pixels. */
+	private static final int CHUNK_PIXELS = TileChunkCache.CHUNK_SIZE * IGameScreen.SIZE_UNIT_PIXELS;
+
+	/** Identifier of the layer group for the chunk cache. */
+	private final TileChunkCache.LayerKey chunkKey;
+
 	/**
 	 * Create a CompositeLayerRenderer from a set of {@link TileRenderer}s
 	 *
+	 * @param zone name of the zone
+	 * @param group name of the layer group
 	 * @param layerRenderers TileRenderers used for compositing
 	 * @param blend composite mode for drawing the adjustment layer
 	 * @param adjustLayer adjustment layer
 	 */
-	CompositeLayerRenderer(List<TileRenderer> layerRenderers,
+	CompositeLayerRenderer(String zone, String group, List<TileRenderer> layerRenderers,
 			Composite blend, TileRenderer adjustLayer) {
 		LayerRenderer lr = layerRenderers.get(0);
 		width = lr.getWidth();
@@ -43,6 +60,17 @@ class CompositeLayerRenderer extends TileRenderer {
 			maps[i] = ((TileRenderer) layer).spriteMap;
 			i++;
 		}
+		// Must be done before createComposites() drops the map data
+		int contentHash = 0;
+		for (TileRenderer layer : layerRenderers) {
+			contentHash = 31 * contentHash + Arrays.hashCode(layer.map);
+		}
+		if (adjustLayer != null) {
+			contentHash = 31 * contentHash + Arrays.hashCode(adjustLayer.map);
+		}
+		ZoneInfo info = ZoneInfo.get();
+		chunkKey = new TileChunkCache.LayerKey(zone, group, contentHash,
+				info.getZoneColor(), info.getColorMethod(), blend);
 		createComposites(layerRenderers, blend, adjustLayer);
 	}
 
@@ -85,4 +113,102 @@ class CompositeLayerRenderer extends TileRenderer {
 			r.tileset = null;
 		}
 	}
+
+	@Override
+	public void draw(Graphics g, int x, int y, int w, int h) {
+		TileChunkCache cache = TileChunkCache.get();
+		if (!cache.isEnabled()) {
+			super.draw(g, x, y, w, h);
+			return;
+		}
+
+		final int endX = Math.min(x + w, getWidth());
+		final int endY = Math.min(y + h, getHeight());
+		if ((x >= endX) || (y >= endY)) {
+			return;
+		}
+
+		final int size = TileChunkCache.CHUNK_SIZE;
+		for (int cy = y / size; cy <= (endY - 1) / size; cy++) {
+			// Tile area of the chunk that needs to be drawn
+			int chunkY = cy * size;
+			int startY = Math.max(y, chunkY);
+			int stopY = Math.min(endY, chunkY + size);
+			for (int cx = x / size; cx <= (endX - 1) / size; cx++) {
+				TileChunkCache.Chunk chunk = cache.getChunk(chunkKey, cx, cy);
+				if (chunk == null) {
+					chunk = renderChunk(cx, cy);
+					cache.putChunk(chunkKey, cx, cy, chunk);
+				}
+				int chunkX = cx * size;
+				int startX = Math.max(x, chunkX);
+				int stopX = Math.min(endX, chunkX + size);
+				if (chunk.image != null) {
+					int sx = (startX - chunkX) * IGameScreen.SIZE_UNIT_PIXELS;
+					int sy = (startY - chunkY) * IGameScreen.SIZE_UNIT_PIXELS;
+					int dw = (stopX - startX) * IGameScreen.SIZE_UNIT_PIXELS;
+					int dh = (stopY - startY) * IGameScreen.SIZE_UNIT_PIXELS;
+					int dx = startX * IGameScreen.SIZE_UNIT_PIXELS;
+					int dy = startY * IGameScreen.SIZE_UNIT_PIXELS;
+					g.drawImage(chunk.image, dx, dy, dx + dw, dy + dh, sx, sy,
+							sx + dw, sy + dh, null);
+				}
+				// Animated tiles on top of the static image
+				for (int mapidx : chunk.dynamicTiles) {
+					int tx = mapidx % width;
+					int ty = mapidx / width;
+					if ((tx >= startX) && (tx < stopX) && (ty >= startY) && (ty < stopY)) {
+						spriteMap[mapidx].draw(g, tx * IGameScreen.SIZE_UNIT_PIXELS,
+								ty * IGameScreen.SIZE_UNIT_PIXELS);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Draw the constant tiles of a chunk to an image, and collect the tiles
+	 * that need to be drawn each time.
+	 *
+	 * @param cx x coordinate of the chunk, in chunks
+	 * @param cy y coordinate of the chunk, in chunks
+	 * @return rendered chunk
+	 */
+	private TileChunkCache.Chunk renderChunk(int cx, int cy) {
+		final int size = TileChunkCache.CHUNK_SIZE;
+		int startX = cx * size;
+		int startY = cy * size;
+		int endX = Math.min(startX + size, getWidth());
+		int endY = Math.min(startY + size, getHeight());
+
+		BufferedImage image = null;
+		Graphics2D g = null;
+		int[] dynamicTiles = new int[(endX - startX) * (endY - startY)];
+		int numDynamic = 0;
+		for (int j = startY; j < endY; j++) {
+			int mapidx = (j * width) + startX;
+			for (int i = startX; i < endX; i++) {
+				Sprite sprite = spriteMap[mapidx];
+				if (!sprite.isConstant()) {
+					dynamicTiles[numDynamic] = mapidx;
+					numDynamic++;
+				} else if (!(sprite instanceof EmptySprite)) {
+					if (image == null) {
+						GraphicsConfiguration gc = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+						image = gc.createCompatibleImage(CHUNK_PIXELS, CHUNK_PIXELS,
+								TransparencyMode.TRANSPARENCY);
+						g = image.createGraphics();
+					}
+					sprite.draw(g, (i - startX) * IGameScreen.SIZE_UNIT_PIXELS,
+							(j - startY) * IGameScreen.SIZE_UNIT_PIXELS);
+				}
+				mapidx++;
+			}
+		}
+		if (g != null) {
+			g.dispose();
+		}
+
+		return new TileChunkCache.Chunk(image, Arrays.copyOf(dynamicTiles, numDynamic));
+	}
 }
@@ -0,0 +1,102 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.client;
+
+import java.util.Locale;
+
+/**
+ * Collects the frame rate and the time spent drawing the frames. The values
+ * are updated once a second, so that they are readable in the frame time
+ * overlay.
+ */
+final class FrameStatistics {
+	/** Length of the measuring period in nanoseconds. */
+	private static final long PERIOD = 1000000000L;
+	/** Nanoseconds per millisecond. */
+	private static final double NANOS_PER_MS = 1000000.0;
+
+	/** Start of the current period, or 0 if no frames have been drawn. */
+	private long periodStart;
+	/** Frames drawn during the current period. */
+	private int frames;
+	/** Total drawing time during the current period. */
+	private long totalTime;
+	/** Longest drawing time during the current period. */
+	private long maxTime;
+
+	/** Frames drawn during the previous period. */
+	private int framesPerSecond;
+	/** Average drawing time during the previous period. */
+	private double averageFrameTime;
+	/** Longest drawing time during the previous period. */
+	private double maxFrameTime;
+
+	/**
+	 * Record a drawn frame.
+	 *
+	 * @param start start time of drawing in nanoseconds
+	 * @param end end time of drawing in nanoseconds
+	 */
+	void frameDrawn(long start, long end) {
+		if (periodStart == 0) {
+			periodStart = start;
+		}
+		long time = end - start;
+		frames++;
+		totalTime += time;
+		maxTime = Math.max(maxTime, time);
+
+		long elapsed = end - periodStart;
+		if (elapsed >= PERIOD) {
+			framesPerSecond = (int) Math.round(frames * (double) PERIOD / elapsed);
+			averageFrameTime = totalTime / NANOS_PER_MS / frames;
+			maxFrameTime = maxTime / NANOS_PER_MS;
+			periodStart = end;
+			frames = 0;
+			totalTime = 0;
+			maxTime = 0;
+		}
+	}
+
+	/**
+	 * Get the frame rate of the previous measuring period.
+	 *
+	 * @return frames per second
+	 */
+	int getFramesPerSecond() {
+		return framesPerSecond;
+	}
+
+	/**
+	 * Get the average drawing time of the previous measuring period.
+	 *
+	 * @return frame time in milliseconds
+	 */
+	double getAverageFrameTime() {
+		return averageFrameTime;
+	}
+
+	/**
+	 * Get the longest drawing time of the previous measuring period.
+	 *
+	 * @return frame time in milliseconds
+	 */
+	double getMaxFrameTime() {
+		return maxFrameTime;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.US, "%d fps, frame %.1f ms (max %.1f ms)",
+				framesPerSecond, averageFrameTime, maxFrameTime);
+	}
+}
@@ -14,6 +14,7 @@ package games.stendhal.client;
 
 import java.awt.Color;
 import java.awt.Dimension;
+import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.GraphicsConfiguration;
@@ -51,6 +52,8 @@ import games.stendhal.client.gui.j2d.RemovableSprite;
 import games.stendhal.client.gui.j2d.entity.Entity2DView;
 import games.stendhal.client.gui.j2d.entity.EntityView;
 import games.stendhal.client.gui.spellcasting.SpellCastingGroundContainerMouseState;
+import games.stendhal.client.gui.wt.core.SettingChangeAdapter;
+import games.stendhal.client.gui.wt.core.WtWindowManager;
 import games.stendhal.client.sprite.Sprite;
 import games.stendhal.client.sprite.SpriteStore;
 import games.stendhal.common.MathHelper;
@@ -98,6 +101,10 @@ public final class GameScreen extends JComponent implements IGameScreen, DropTar
 	 * indicator icon.
 	 */
 	private static final int OFFLINE_MARGIN = 10;
+	/** Setting for showing the frame rate and frame time overlay. */
+	private static final String FRAME_TIME_PROPERTY = "gamescreen.frametime";
+	/** Space around the frame time overlay text. */
+	private static final int FRAME_TIME_MARGIN = 4;
 
 	private static final Sprite offlineIcon;
 
@@ -170,6 +177,10 @@ public final class GameScreen extends JComponent implements IGameScreen, DropTar
 	 * Buffer for drawing the ground layers when the screen is scaled.
 	 */
 	private VolatileImage buffer;
+	/** Flag for drawing the frame time overlay. */
+	private boolean showFrameTime;
+	/** Frame rate and drawing time counters for the overlay. */
+	private final FrameStatistics frameStatistics = new FrameStatistics();
 
 	static {
 		offlineIcon = SpriteStore.get().getSprite("data/gui/offline.png");
@@ -255,6 +266,14 @@ public final class GameScreen extends JComponent implements IGameScreen, DropTar
 		 */
 		setIgnoreRepaint(true);
 		client.getGameObjects().addGameObjectListener(this);
+
+		WtWindowManager.getInstance().registerSettingChangeListener(FRAME_TIME_PROPERTY,
+				new SettingChangeAdapter(FRAME_TIME_PROPERTY, "false") {
+			@Override
+			public void changed(String newValue) {
+				showFrameTime = Boolean.parseBoolean(newValue);
+			}
+		});
 	}
 
 	/**
@@ -547,6 +566,7 @@ public final class GameScreen extends JComponent implements IGameScreen, DropTar
 			return;
 		}
 
+		long frameStart = System.nanoTime();
 		Graphics2D g2d = (Graphics2D) g;
 
 		Graphics2D graphics = (Graphics2D) g2d.create();
@@ -592,6 +612,27 @@ public final class GameScreen extends JComponent implements IGameScreen, DropTar
 
 		paintOffLineIfNeeded(g2d);
 		graphics.dispose();
+
+		frameStatistics.frameDrawn(frameStart, System.nanoTime());
+		if (showFrameTime) {
+			drawFrameTime(g2d);
+		}
+	}
+
+	/**
+	 * Draw the frame rate, frame time and tile chunk cache overlay.
+	 *
+	 * @param g graphics
+	 */
+	private void drawFrameTime(Graphics2D g) {
+		String text = frameStatistics + ", " + TileChunkCache.get().getSummary();
+		FontMetrics metrics = g.getFontMetrics();
+		int width = metrics.stringWidth(text) + 2 * FRAME_TIME_MARGIN;
+		int height = metrics.getHeight() + 2 * FRAME_TIME_MARGIN;
+		g.setColor(Color.BLACK);
+		g.fillRect(0, 0, width, height);
+		g.setColor(Color.WHITE);
+		g.drawString(text, FRAME_TIME_MARGIN, FRAME_TIME_MARGIN + metrics.getAscent());
 	}
 
 	/**
@@ -0,0 +1,141 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.client;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A Map like cache holding at most a fixed number of entries. When the cache
+ * is full, the least recently used entry is discarded. Unlike
+ * {@link MemoryCache}, the size of the cache does not depend on the memory
+ * pressure, so it suits for values that are expensive to create.
+ * <p>
+ * The cache counts hits and misses of {@link #get(Object)}. The methods are
+ * synchronized, so the cache can be used from several threads.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public final class LRUCache<K, V> {
+	/** Maximum number of entries. */
+	private final int capacity;
+	/** The entries in access order. */
+	private final Map<K, V> map;
+
+	/** Number of successful lookups. */
+	private long hits;
+	/** Number of failed lookups. */
+	private long misses;
+
+	/**
+	 * Create a new LRUCache.
+	 *
+	 * @param capacity maximum number of entries
+	 */
+	public LRUCache(final int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Invalid cache capacity: " + capacity);
+		}
+		this.capacity = capacity;
+		map = new LinkedHashMap<K, V>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<K, V> eldest) {
+				return size() > LRUCache.this.capacity;
+			}
+		};
+	}
+
+	/**
+	 * Get an object from the cache.
+	 *
+	 * @param key the key corresponding to the object
+	 * @return cached object, or <code>null</code> if there's no object
+	 * 	for the key in the cache
+	 */
+	public synchronized V get(final K key) {
+		V value = null;
+		if (key != null) {
+			value = map.get(key);
+		}
+		if (value == null) {
+			misses++;
+		} else {
+			hits++;
+		}
+		return value;
+	}
+
+	/**
+	 * Store an object to the cache. If the cache is full, the least recently
+	 * used object is discarded.
+	 *
+	 * @param key key for accessing the object
+	 * @param value the object to be stored
+	 */
+	public synchronized void put(final K key, final V value) {
+		// Disallow storing null keys and values
+		if ((key == null) || (value == null)) {
+			return;
+		}
+		map.put(key, value);
+	}
+
+	/**
+	 * Discard all cached objects. The hit and miss counters are not reset.
+	 */
+	public synchronized void clear() {
+		map.clear();
+	}
+
+	/**
+	 * Get the number of cached objects.
+	 *
+	 * @return number of objects
+	 */
+	public synchronized int size() {
+		return map.size();
+	}
+
+	/**
+	 * Get the maximum number of cached objects.
+	 *
+	 * @return capacity
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Get the number of lookups that found an object.
+	 *
+	 * @return hit count
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Get the number of lookups that did not find an object.
+	 *
+	 * @return miss count
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "LRUCache[size=" + map.size() + ", capacity=" + capacity
+				+ ", hits=" + hits + ", misses=" + misses + "]";
+	}
+}
@@ -27,6 +27,9 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import org.apache.log4j.Logger;
 import org.json.simple.JSONArray;
@@ -37,7 +40,6 @@ import games.stendhal.client.gui.wt.core.WtWindowManager;
 import games.stendhal.client.sprite.DataLoader;
 import games.stendhal.client.sprite.ImageSprite;
 import games.stendhal.client.sprite.Sprite;
-import games.stendhal.client.sprite.SpriteCache;
 import games.stendhal.client.sprite.SpriteStore;
 import games.stendhal.client.util.JSONLoader;
 
@@ -49,6 +51,8 @@ public class OutfitStore {
 
 	/** outfit directory */
 	private static final String OUTFITS = "data/sprites/outfit";
+	/** Maximum number of composited outfits kept in the cache. */
+	private static final int CACHE_SIZE = 128;
 
 	// these layers should return an empty sprite for index "0"
 	final List<String> emptyForZeroIndex = Arrays.asList("dress", "mouth", "mask", "hair", "hat", "detail");
@@ -69,6 +73,77 @@ public class OutfitStore {
 	 */
 	private SpriteStore store;
 
+	/** Composited outfits, plain and adjusted, by outfit reference. */
+	private final LRUCache<String, Sprite> cache = new LRUCache<String, Sprite>(CACHE_SIZE);
+	/**
+	 * Callbacks of outfits that are being composited in the background, by
+	 * outfit reference.
+	 */
+	private final Map<String, List<Runnable>> pending = new HashMap<>();
+	/** Executor for compositing outfits in the background. */
+	private final ExecutorService composer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(final Runnable r) {
+			final Thread thread = new Thread(r, "Outfit composer");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	/**
+	 * A parsed outfit code, with everything that affects the look of the
+	 * composited outfit.
+	 */
+	private static final class Outfit {
+		/** Layer names in drawing order. */
+		private final List<String> layers;
+		/** Layer indices by layer name. */
+		private final Map<String, Integer> indices;
+		/** Layer coloring, or <code>null</code>. */
+		private final OutfitColor color;
+		/** <code>true</code> if busty dress variants should be used. */
+		private final boolean busty;
+		/** <code>true</code> if the non nude body variants should be used. */
+		private final boolean nonude;
+		/** Unique reference of the outfit. */
+		private final String reference;
+
+		/**
+		 * Create a new Outfit.
+		 *
+		 * @param layers layer names in drawing order
+		 * @param indices layer indices
+		 * @param color layer coloring, or <code>null</code>
+		 * @param nonude <code>true</code> if the non nude body variants should
+		 * 	be used
+		 */
+		Outfit(final List<String> layers, final Map<String, Integer> indices,
+				final OutfitColor color, final boolean nonude) {
+			this.layers = layers;
+			this.indices = indices;
+			this.color = color;
+			this.nonude = nonude;
+			busty = indices.get("body") == 1;
+
+			final StringBuilder sb = new StringBuilder("OUTFIT:");
+			for (final String layer : layers) {
+				sb.append(layer);
+				sb.append('=');
+				sb.append(indices.get(layer));
+				sb.append(',');
+			}
+			sb.append('@');
+			sb.append(color);
+			if (busty) {
+				sb.append(":busty");
+			}
+			if (nonude) {
+				sb.append(":nonude");
+			}
+			reference = sb.toString();
+		}
+	}
+
 	/**
 	 * Create an outfit store.
 	 *
@@ -122,14 +197,13 @@ public class OutfitStore {
 	}
 
 	/**
-	 * Build an outfit sprite.
+	 * Parse an outfit code.
 	 *
-	 * @param strcode
-	 * @param color
-	 * 		coloring data
-	 * @return A walking state tileset.
+	 * @param strcode outfit code
+	 * @param color coloring data
+	 * @return parsed outfit
 	 */
-	private Sprite buildOutfit(final String strcode, final OutfitColor color) {
+	private Outfit parse(final String strcode, final OutfitColor color) {
 		final Map<String, Integer> layer_map = new HashMap<>();
 
 		// make a copy of layer names so it can be amended in cases of special layers
@@ -148,10 +222,6 @@ public class OutfitStore {
 			}
 		}
 
-		ImageSprite sprite;
-
-		Sprite layer;
-
 		// detail rear layer
 		final int detailIndex = layer_map.get("detail");
 		if (detailHasRearLayer(detailIndex)) {
@@ -159,16 +229,30 @@ public class OutfitStore {
 			layer_map.put("detail-rear", detailIndex);
 		}
 
+		final boolean nonude = WtWindowManager.getInstance().getPropertyBoolean("gamescreen.nonude", true);
+		return new Outfit(lnames, layer_map, color, nonude);
+	}
+
+	/**
+	 * Build an outfit sprite.
+	 *
+	 * @param outfit
+	 * 		parsed outfit
+	 * @return A walking state tileset.
+	 */
+	private Sprite buildOutfit(final Outfit outfit) {
+		final Map<String, Integer> layer_map = outfit.indices;
+
+		ImageSprite sprite;
+
+		Sprite layer;
+
 		// Body layer
 		final int bodyIndex = layer_map.get("body");
-		boolean busty = false;
 		if (bodyIndex < 0) {
 			layer = store.getEmptySprite(48 * 3, 64 * 4);
 		} else {
-			layer = getLayerSprite("body", layer_map.get("body"), color);
-			if (bodyIndex == 1) {
-				busty = true;
-			}
+			layer = getLayerSprite("body", bodyIndex, outfit.color, false, outfit.nonude);
 		}
 
 		if (layer == null) {
@@ -179,17 +263,17 @@ public class OutfitStore {
 		sprite = new ImageSprite(layer);
 		final Graphics g = sprite.getGraphics();
 
-		for (String lname: lnames) {
+		for (String lname: outfit.layers) {
 			// hair is not drawn under certain hats/helmets
 			if (lname.equals("hair") && HATS_NO_HAIR.contains(layer_map.get("hat"))) {
 				continue;
 			}
 
+			OutfitColor color = null;
 			if (RECOLORABLE_OUTFIT_PARTS.contains(lname)) {
-				layer = getLayerSprite(lname, layer_map.get(lname), color, busty);
-			} else {
-				layer = getLayerSprite(lname, layer_map.get(lname), busty);
+				color = outfit.color;
 			}
+			layer = getLayerSprite(lname, layer_map.get(lname), color, outfit.busty, outfit.nonude);
 			layer.draw(g, 0, 0);
 		}
 
@@ -254,8 +338,30 @@ public class OutfitStore {
 	 * @return
 	 *     The Sprite or <code>null</code>.
 	 */
-	public Sprite getLayerSprite(String layer, final int index, final OutfitColor color,
+	public Sprite getLayerSprite(final String layer, final int index, final OutfitColor color,
 				final boolean busty) {
+		final boolean nonude = WtWindowManager.getInstance().getPropertyBoolean("gamescreen.nonude", true);
+		return getLayerSprite(layer, index, color, busty, nonude);
+	}
+
+	/**
+	 * Get the layer sprite tileset.
+	 *
+	 * @param layer
+	 *     Name of the layer.
+	 * @param index
+	 *     The resource index.
+	 * @param color
+	 *     Layer coloring.
+	 * @param busty
+	 *     Body type is "busty".
+	 * @param nonude
+	 *     Use the non nude body variants, if available.
+	 * @return
+	 *     The Sprite or <code>null</code>.
+	 */
+	private Sprite getLayerSprite(String layer, final int index, final OutfitColor color,
+				final boolean busty, final boolean nonude) {
 		if (emptyForZeroIndex.contains(layer)) {
 			if (index <= 0) {
 				return getEmptySprite();
@@ -273,7 +379,7 @@ public class OutfitStore {
 		}
 
 		ref = OUTFITS + "/" + layer + "/" + ref;
-		if (layer.equals("body") && WtWindowManager.getInstance().getPropertyBoolean("gamescreen.nonude", true)) {
+		if (layer.equals("body") && nonude) {
 			final URL nonudeURL = DataLoader.getResource(ref + "-nonude.png");
 			if (nonudeURL != null) {
 				ref = ref + "-nonude";
@@ -373,37 +479,23 @@ public class OutfitStore {
 	 * @return outfit
 	 */
 	private Sprite getOutfit(final String strcode, final OutfitColor color) {
-		// Use the normalized string for the reference
-		String colorString = "null";
-		if (color != null) {
-			colorString = color.toString();
-		}
-
-		final String reference = buildReference(strcode, colorString);
-		return getOutfit(strcode, color, reference);
+		return getOutfit(parse(strcode, color));
 	}
 
 	/**
-	 * Get outfit for a known outfit reference.
+	 * Get a parsed outfit from the cache, or build it if it has not been
+	 * cached.
 	 *
-	 * @param strcode
-	 * @param color
-	 * 		Colors for coloring some outfit parts.
-	 * @param reference
-	 * 		Outfit reference.
+	 * @param outfit
+	 * 		parsed outfit
 	 * @return outfit
 	 */
-	@SuppressWarnings("null")
-	private Sprite getOutfit(final String strcode, final OutfitColor color, final String reference) {
-		final SpriteCache cache = SpriteCache.get();
-
-		// FIXME: set sprite to null until reference for extended outfit is fixed
-		//Sprite sprite = cache.get(reference);
-		Sprite sprite = null;
+	private Sprite getOutfit(final Outfit outfit) {
+		Sprite sprite = cache.get(outfit.reference);
 
 		if (sprite == null) {
-			sprite = buildOutfit(strcode, color);
-			cache.add(reference, sprite);
+			sprite = buildOutfit(outfit);
+			cache.put(outfit.reference, sprite);
 		}
 
 		return sprite;
@@ -411,44 +503,130 @@ public class OutfitStore {
 
 	/**
 	 * Get an outfit with color adjustment, such as a player in colored light.
+	 *
+	 * @param strcode outfit code
+	 * @param color colors for coloring some outfit parts
+	 * @param adjColor adjustment color, or <code>null</code>
+	 * @param blend adjustment blend mode, or <code>null</code>
+	 * @return outfit
 	 */
-	@SuppressWarnings("null")
 	public Sprite getAdjustedOutfit(final String strcode, final OutfitColor color, final Color adjColor, final Composite blend) {
-		if (adjColor == null || blend == null) {
-			return getOutfit(strcode, color);
-		} else {
-			final String reference = buildReference(strcode, color.toString());
-			String fullRef = reference + ":" + adjColor.getRGB() + blend.toString();
+		return getAdjustedOutfit(parse(strcode, color), adjColor, blend);
+	}
 
-			// FIXME: set sprite to null until reference for extended outfit is fixed
-			//Sprite sprite = cache.get(fullRef);
-			Sprite sprite = null;
+	/**
+	 * Get an outfit with color adjustment without waiting for the outfit to be
+	 * composited. If the outfit is not in the cache, it is composited in the
+	 * background, and the failsafe outfit is returned in the meantime.
+	 *
+	 * @param strcode outfit code
+	 * @param color colors for coloring some outfit parts
+	 * @param adjColor adjustment color, or <code>null</code>
+	 * @param blend adjustment blend mode, or <code>null</code>
+	 * @param onReady called when the outfit has been composited, if it was
+	 * 	not available immediately. The callback is run in the compositing
+	 * 	thread
+	 * @return outfit, or the failsafe outfit if the outfit is not ready yet
+	 */
+	public Sprite getAdjustedOutfit(final String strcode, final OutfitColor color,
+			final Color adjColor, final Composite blend, final Runnable onReady) {
+		final Outfit outfit = parse(strcode, color);
+		final String reference = buildReference(outfit, adjColor, blend);
+		final Sprite sprite = cache.get(reference);
+		if (sprite != null) {
+			return sprite;
+		}
 
-			if (sprite == null) {
-				Sprite plain = getOutfit(strcode, color);
-				sprite = store.modifySprite(plain, adjColor, blend, fullRef);
+		synchronized (pending) {
+			List<Runnable> callbacks = pending.get(reference);
+			if (callbacks == null) {
+				callbacks = new ArrayList<>();
+				pending.put(reference, callbacks);
+				composer.execute(new Runnable() {
+					@Override
+					public void run() {
+						compose(outfit, adjColor, blend, reference);
+					}
+				});
 			}
+			if (onReady != null) {
+				callbacks.add(onReady);
+			}
+		}
 
-			return sprite;
+		return getFailsafeOutfit();
+	}
+
+	/**
+	 * Composite an outfit in the background thread, and notify the waiting
+	 * callbacks.
+	 *
+	 * @param outfit parsed outfit
+	 * @param adjColor adjustment color, or <code>null</code>
+	 * @param blend adjustment blend mode, or <code>null</code>
+	 * @param reference reference of the adjusted outfit
+	 */
+	private void compose(final Outfit outfit, final Color adjColor, final Composite blend,
+			final String reference) {
+		try {
+			getAdjustedOutfit(outfit, adjColor, blend);
+		} catch (RuntimeException e) {
+			logger.warn("Cannot build outfit " + reference + ". Using failsafe outfit.", e);
+			// Cache the failsafe outfit so that the outfit is not retried
+			// every time it's drawn
+			cache.put(reference, getFailsafeOutfit());
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Composited outfit " + reference + ", " + cache);
+		}
+
+		final List<Runnable> callbacks;
+		synchronized (pending) {
+			callbacks = pending.remove(reference);
+		}
+		for (final Runnable callback : callbacks) {
+			callback.run();
 		}
 	}
 
 	/**
-	 * Create an unique reference for an outfit.
+	 * Get a parsed outfit with color adjustment from the cache, or build it if
+	 * it has not been cached.
 	 *
-	 * @param code outfit code
-	 * @param colorCode color information for outfit parts
-	 * @return outfit reference
+	 * @param outfit parsed outfit
+	 * @param adjColor adjustment color, or <code>null</code>
+	 * @param blend adjustment blend mode, or <code>null</code>
+	 * @return outfit
 	 */
-	private String buildReference(final String strcode, final String colorCode) {
-		return "OUTFIT:" + strcode + "@" + colorCode;
+	private Sprite getAdjustedOutfit(final Outfit outfit, final Color adjColor, final Composite blend) {
+		if (adjColor == null || blend == null) {
+			return getOutfit(outfit);
+		}
+
+		final String fullRef = buildReference(outfit, adjColor, blend);
+		Sprite sprite = cache.get(fullRef);
+
+		if (sprite == null) {
+			Sprite plain = getOutfit(outfit);
+			sprite = store.modifySprite(plain, adjColor, blend, fullRef);
+			cache.put(fullRef, sprite);
+		}
+
+		return sprite;
 	}
 
-	/*
-	@Deprecated
-	private String buildReference(final int code, final int mouth, final int eyes, final int mask, final int hat,
-			final String colorCode) {
-		return "OUTFIT:" + code + "@" + colorCode;
+	/**
+	 * Create an unique reference for an outfit with color adjustment.
+	 *
+	 * @param outfit parsed outfit
+	 * @param adjColor adjustment color, or <code>null</code>
+	 * @param blend adjustment blend mode, or <code>null</code>
+	 * @return outfit reference
+	 */
+	private String buildReference(final Outfit outfit, final Color adjColor, final Composite blend) {
+		if (adjColor == null || blend == null) {
+			return outfit.reference;
+		}
+		return outfit.reference + ":" + adjColor.getRGB() + ":" + blend;
 	}
-	*/
 }
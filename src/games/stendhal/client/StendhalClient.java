@@ -106,6 +106,11 @@ public class StendhalClient extends ClientFramework {
 
 	/** The zone currently under loading. */
 	private Zone currentZone;
+	/**
+	 * Layers offered for the current zone. Used for rebuilding the zone from
+	 * the cache when the server sends only changed zone attributes.
+	 */
+	private List<TransferContent> zoneLayers = Collections.emptyList();
 
 	private JFrame splashScreen;
 
@@ -242,14 +247,21 @@ public class StendhalClient extends ClientFramework {
 		String oldZone = (currentZone != null) ? currentZone.getName() : null;
 
 		// Set the new area name
+		boolean hasLayers = false;
 		for (TransferContent item : items) {
 			final String name = item.name;
 			final int i = name.indexOf(".0_floor");
 			if (i > -1) {
 				currentZone = new Zone(name.substring(0, i));
+				hasLayers = true;
 				break;
 			}
 		}
+		if (hasLayers) {
+			rememberZoneLayers(items);
+		} else if (isAttributeUpdate(items)) {
+			rebuildZone();
+		}
 
 		// Is it just a reload for new coloring?
 		if (currentZone != null) {
@@ -301,6 +313,70 @@ public class StendhalClient extends ClientFramework {
 		return items;
 	}
 
+	/**
+	 * Remember the layers of a newly offered zone.
+	 *
+	 * @param items offered content
+	 */
+	private void rememberZoneLayers(final List<TransferContent> items) {
+		final String prefix = currentZone.getName() + ".";
+		zoneLayers = new ArrayList<TransferContent>();
+		for (TransferContent item : items) {
+			if (item.name.startsWith(prefix) && !item.name.endsWith(".data_map")) {
+				zoneLayers.add(item);
+			}
+		}
+	}
+
+	/**
+	 * Check if offered content is just the changed attributes of the current
+	 * zone, such as coloring or weather.
+	 *
+	 * @param items offered content
+	 * @return <code>true</code> if the content contains the data layer of the
+	 * 	current zone, but no other layers of it
+	 */
+	private boolean isAttributeUpdate(final List<TransferContent> items) {
+		if (currentZone == null) {
+			return false;
+		}
+		final String prefix = currentZone.getName() + ".";
+		boolean hasData = false;
+		for (TransferContent item : items) {
+			if (item.name.equals(prefix + "data_map")) {
+				hasData = true;
+			} else if (item.name.startsWith(prefix)) {
+				return false;
+			}
+		}
+		return hasData;
+	}
+
+	/**
+	 * Create a copy of the current zone from the cached layers, so that a new
+	 * data layer can be applied to it the same way as for a full update. If
+	 * some layer is missing from the cache, the data layer is applied to the
+	 * current zone as is, which updates everything except the tile coloring.
+	 */
+	private void rebuildZone() {
+		final Zone zone = new Zone(currentZone.getName());
+		for (TransferContent layer : zoneLayers) {
+			final InputStream is = cache.getItem(layer);
+			if (is == null) {
+				logger.debug("Content " + layer.name + " is NOT on cache. Updating the zone in place");
+				return;
+			}
+			try {
+				zone.addLayer(layer.name.substring(layer.name.indexOf('.') + 1), is);
+				is.close();
+			} catch (final Exception e) {
+				logger.error(e, e);
+				return;
+			}
+		}
+		currentZone = zone;
+	}
+
 	/**
 	 * Add a listener to be called when the player changes zone.
 	 *
@@ -0,0 +1,237 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.client;
+
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Image;
+import java.util.Objects;
+
+import games.stendhal.client.gui.wt.core.SettingChangeAdapter;
+import games.stendhal.client.gui.wt.core.WtWindowManager;
+
+/**
+ * Cache for pre-rendered chunks of merged tile layers. A chunk holds the
+ * constant tiles of a square area of a layer group drawn to a single image,
+ * so that drawing the ground takes a few image draws instead of one draw per
+ * tile and layer. Tiles that are not constant, such as animated water, are
+ * left out of the image and drawn separately on top of it.
+ * <p>
+ * The chunks are identified by the zone, the layer group, the chunk position
+ * and the zone coloring, so they remain valid when the player returns to a
+ * zone, and do not need to be created again on each visit.
+ */
+final class TileChunkCache {
+	/** Width and height of the chunks in tiles. */
+	static final int CHUNK_SIZE = 16;
+	/** Setting for enabling the cache. */
+	static final String CHUNK_PROPERTY = "gamescreen.tilechunks";
+	/**
+	 * Maximum number of cached chunks. The visible area needs 4 to 6 chunks
+	 * per layer group, so this is enough for the current zone and the
+	 * neighbouring areas.
+	 */
+	private static final int CAPACITY = 32;
+
+	/** The singleton instance. */
+	private static TileChunkCache instance;
+
+	/** Cached chunks. */
+	private final LRUCache<ChunkKey, Chunk> chunks = new LRUCache<ChunkKey, Chunk>(CAPACITY);
+	/** Flag for using the chunks for drawing. */
+	private volatile boolean enabled;
+
+	/**
+	 * Get the cache instance.
+	 *
+	 * @return chunk cache
+	 */
+	static synchronized TileChunkCache get() {
+		if (instance == null) {
+			instance = new TileChunkCache();
+		}
+		return instance;
+	}
+
+	/**
+	 * Create a new TileChunkCache.
+	 */
+	private TileChunkCache() {
+		WtWindowManager.getInstance().registerSettingChangeListener(CHUNK_PROPERTY,
+				new SettingChangeAdapter(CHUNK_PROPERTY, "true") {
+			@Override
+			public void changed(String newValue) {
+				enabled = Boolean.parseBoolean(newValue);
+				if (!enabled) {
+					chunks.clear();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Check if layers should be drawn using the cached chunks.
+	 *
+	 * @return <code>true</code> if the chunks should be used
+	 */
+	boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Get a cached chunk.
+	 *
+	 * @param layer key of the layer group
+	 * @param x x coordinate of the chunk, in chunks
+	 * @param y y coordinate of the chunk, in chunks
+	 * @return chunk, or <code>null</code> if it is not in the cache
+	 */
+	Chunk getChunk(LayerKey layer, int x, int y) {
+		return chunks.get(new ChunkKey(layer, x, y));
+	}
+
+	/**
+	 * Store a chunk in the cache.
+	 *
+	 * @param layer key of the layer group
+	 * @param x x coordinate of the chunk, in chunks
+	 * @param y y coordinate of the chunk, in chunks
+	 * @param chunk rendered chunk
+	 */
+	void putChunk(LayerKey layer, int x, int y, Chunk chunk) {
+		chunks.put(new ChunkKey(layer, x, y), chunk);
+	}
+
+	/**
+	 * Get a summary of the cache state.
+	 *
+	 * @return description of the cache usage
+	 */
+	String getSummary() {
+		long hits = chunks.getHits();
+		long total = hits + chunks.getMisses();
+		long ratio = (total > 0) ? (100 * hits / total) : 0;
+		return "chunks " + chunks.size() + "/" + chunks.getCapacity() + ", hits " + ratio + "%";
+	}
+
+	/**
+	 * A pre-rendered area of a layer group.
+	 */
+	static final class Chunk {
+		/**
+		 * The constant tiles of the area, or <code>null</code> if the area has
+		 * no visible constant tiles.
+		 */
+		final Image image;
+		/** Map indices of the tiles that need to be drawn separately. */
+		final int[] dynamicTiles;
+
+		/**
+		 * Create a new Chunk.
+		 *
+		 * @param image image of the constant tiles, or <code>null</code>
+		 * @param dynamicTiles map indices of the tiles that need to be drawn
+		 * 	on each draw
+		 */
+		Chunk(Image image, int[] dynamicTiles) {
+			this.image = image;
+			this.dynamicTiles = dynamicTiles;
+		}
+	}
+
+	/**
+	 * Identifier of a layer group of a zone, and the coloring it has been
+	 * drawn with.
+	 */
+	static final class LayerKey {
+		private final String zone;
+		private final String group;
+		/** Hash of the map data, to notice changed maps. */
+		private final int contentHash;
+		private final Color color;
+		private final Composite colorMethod;
+		private final Composite blend;
+
+		/**
+		 * Create a new LayerKey.
+		 *
+		 * @param zone zone name
+		 * @param group name of the layer group
+		 * @param contentHash hash of the map data of the layers
+		 * @param color zone color, or <code>null</code>
+		 * @param colorMethod blend mode of the zone color, or <code>null</code>
+		 * @param blend blend mode of the adjustment layer, or <code>null</code>
+		 */
+		LayerKey(String zone, String group, int contentHash, Color color,
+				Composite colorMethod, Composite blend) {
+			this.zone = zone;
+			this.group = group;
+			this.contentHash = contentHash;
+			this.color = color;
+			this.colorMethod = colorMethod;
+			this.blend = blend;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof LayerKey)) {
+				return false;
+			}
+			LayerKey other = (LayerKey) obj;
+			return (contentHash == other.contentHash) && zone.equals(other.zone)
+					&& group.equals(other.group) && Objects.equals(color, other.color)
+					&& Objects.equals(colorMethod, other.colorMethod)
+					&& Objects.equals(blend, other.blend);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(zone, group, contentHash, color);
+		}
+	}
+
+	/**
+	 * Identifier of a chunk.
+	 */
+	private static final class ChunkKey {
+		private final LayerKey layer;
+		private final int x;
+		private final int y;
+
+		/**
+		 * Create a new ChunkKey.
+		 *
+		 * @param layer key of the layer group
+		 * @param x x coordinate of the chunk
+		 * @param y y coordinate of the chunk
+		 */
+		ChunkKey(LayerKey layer, int x, int y) {
+			this.layer = layer;
+			this.x = x;
+			this.y = y;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof ChunkKey)) {
+				return false;
+			}
+			ChunkKey other = (ChunkKey) obj;
+			return (x == other.x) && (y == other.y) && layer.equals(other.layer);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (31 * layer.hashCode() + x) + y;
+		}
+	}
+}
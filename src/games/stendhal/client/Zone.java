@@ -1,5 +1,5 @@
 /***************************************************************************
- *                   (C) Copyright 2003-2011 - Stendhal                    *
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -441,7 +441,7 @@ public class Zone {
 				adjLayer = null;
 			}
 
-			r = new CompositeLayerRenderer(subLayers, adjustment, adjLayer);
+			r = new CompositeLayerRenderer(name, compositeName, subLayers, adjustment, adjLayer);
 			layers.put(compositeName, r);
 		}
 		return r;
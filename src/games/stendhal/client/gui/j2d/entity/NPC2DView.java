@@ -1,6 +1,6 @@
 /* $Id$ */
 /***************************************************************************
- *                   (C) Copyright 2003-2010 - Stendhal                    *
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -90,7 +90,7 @@ class NPC2DView<T extends NPC> extends RPEntity2DView<T> {
 			final OutfitColor color = OutfitColor.get(npc.getRPObject());
 
 			if (strcode != null) {
-				sprite = OutfitStore.get().getAdjustedOutfit(strcode, color, info.getZoneColor(), info.getColorMethod());
+				sprite = OutfitStore.get().getAdjustedOutfit(strcode, color, info.getZoneColor(), info.getColorMethod(), outfitReadyCallback);
 			} else if (code != RPEntity.OUTFIT_UNSET) {
 				final int body = code % 100;
 				final int dress = code / 100 % 100;
@@ -106,7 +106,7 @@ class NPC2DView<T extends NPC> extends RPEntity2DView<T> {
 				sb.append(",detail=" + detail);
 
 				sprite = OutfitStore.get().getAdjustedOutfit(sb.toString(), color, info.getZoneColor(),
-						info.getColorMethod());
+						info.getColorMethod(), outfitReadyCallback);
 			} else {
 				// This NPC's outfit is read from a single file.
 				sprite = store.getModifiedSprite(translate("npc/"
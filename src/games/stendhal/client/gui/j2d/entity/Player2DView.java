@@ -1,6 +1,6 @@
 /* $Id$ */
 /***************************************************************************
- *                   (C) Copyright 2003-2010 - Stendhal                    *
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -164,9 +164,9 @@ class Player2DView<T extends Player> extends RPEntity2DView<T> {
 				sb.append(",hair=" + hair);
 				sb.append(",detail=" + detail);
 
-				outfit = store.getAdjustedOutfit(sb.toString(), color, info.getZoneColor(), info.getColorMethod());
+				outfit = store.getAdjustedOutfit(sb.toString(), color, info.getZoneColor(), info.getColorMethod(), outfitReadyCallback);
 			} else {
-				outfit = store.getAdjustedOutfit(strcode, color, info.getZoneColor(), info.getColorMethod());
+				outfit = store.getAdjustedOutfit(strcode, color, info.getZoneColor(), info.getColorMethod(), outfitReadyCallback);
 			}
 
 			if (entity.hasStatus(StatusID.ZOMBIE)) {
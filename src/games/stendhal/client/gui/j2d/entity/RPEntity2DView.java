@@ -128,6 +128,17 @@ abstract class RPEntity2DView<T extends RPEntity> extends ActiveEntity2DView<T>
 
 	/** Object for drawing the attack. */
 	private AttackPainter attackPainter;
+	/**
+	 * Callback for outfits that are composed in the background. Rebuilds the
+	 * representation when the outfit is ready. Can be called from any thread.
+	 */
+	final Runnable outfitReadyCallback = new Runnable() {
+		@Override
+		public void run() {
+			representationChanged = true;
+			markChanged();
+		}
+	};
 
 	static {
 		final SpriteStore st = SpriteStore.get();
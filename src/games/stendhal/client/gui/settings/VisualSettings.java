@@ -1,5 +1,5 @@
 /***************************************************************************
- *                   (C) Copyright 2003-2013 - Stendhal                    *
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -172,6 +172,16 @@ class VisualSettings {
 				true, "Scale view to fit window", "<html>If selected, the game view will scale to fit the available space,<br>otherwise the default sized graphics are used.</html>");
 		page.add(scaleScreenToggle);
 
+		// cached map chunks
+		JCheckBox tileChunks = SettingsComponentFactory.createSettingsToggle("gamescreen.tilechunks", true,
+				"Cache map chunks", "Draw the map from pre-rendered chunks. Faster, but uses more memory.");
+		page.add(tileChunks);
+
+		// frame rate overlay
+		JCheckBox frameTime = SettingsComponentFactory.createSettingsToggle("gamescreen.frametime", false,
+				"Show frame rate", "Show the frame rate and the time used for drawing the game screen.");
+		page.add(frameTime);
+
 		// controller for setting visibility of HP br
 		final JCheckBox showHPBarToggle = SettingsComponentFactory.createSettingsToggle(HP_BAR_PROPERTY, true, "Show HP bar", "Show bar representation of HP.");
 		showHPBarToggle.addItemListener(new ItemListener() {
@@ -1,5 +1,5 @@
 /***************************************************************************
- *                   (C) Copyright 2003-2010 - Stendhal                    *
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -175,6 +175,19 @@ public class CompositeSprite implements Sprite {
 		return slaves.get(0).getWidth();
 	}
 
+	@Override
+	public boolean isConstant() {
+		if (!composited) {
+			composite();
+		}
+		for (int i = 0; i < slaves.size(); i++) {
+			if (!slaves.get(i).isConstant()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	/**
 	 * Merge all ImageSprite layers.
 	 */
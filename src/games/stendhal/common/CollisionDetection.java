@@ -28,6 +28,9 @@ public class CollisionDetection {
 
 	private int height;
 
+	/** Incremented on every change of the collision data */
+	private int version;
+
 	/**
 	 * Clear the collision map.
 	 */
@@ -35,6 +38,7 @@ public class CollisionDetection {
 		if (map == null) {
 			map = new CollisionMap(width, height);
 		}
+		version++;
 	}
 
 	/**
@@ -67,6 +71,7 @@ public class CollisionDetection {
 			return;
 		}
 		map.set(x, y);
+		version++;
 	}
 
 	/**
@@ -92,6 +97,28 @@ public class CollisionDetection {
 		}
 	}
 
+	/**
+	 * Use a prepared collision map. The map is used directly, not copied.
+	 *
+	 * @param map static collision information
+	 */
+	public void setCollisionMap(final CollisionMap map) {
+		this.map = map;
+		width = map.getWidth();
+		height = map.getHeight();
+		version++;
+	}
+
+	/**
+	 * Get the version of the collision data. The version changes whenever
+	 * the data changes.
+	 *
+	 * @return version
+	 */
+	public int getVersion() {
+		return version;
+	}
+
 	/**
 	 * Print the area around the (x,y) useful for debugging.
 	 *
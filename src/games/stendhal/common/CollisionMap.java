@@ -1,6 +1,6 @@
 /* $Id$ */
 /***************************************************************************
- *                   (C) Copyright 2003-2010 - Stendhal                    *
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -15,35 +15,66 @@ package games.stendhal.common;
 
 
 import java.awt.geom.Rectangle2D;
-import java.util.BitSet;
+import java.io.IOException;
+import java.util.Arrays;
 
 import games.stendhal.common.tiled.LayerDefinition;
+import marauroa.common.net.InputSerializer;
+import marauroa.common.net.OutputSerializer;
 
+/**
+ * Map of blocked tiles.
+ * <p>
+ * The tiles are kept in a flat bitmap, row by row, with 64 tiles per word.
+ * Rectangle checks are answered from a summed-area table of the bitmap in
+ * constant time, independent of the size of the rectangle. The table is
+ * built lazily once the map has been queried a few times after a change;
+ * until then the rows of the bitmap are checked directly. Queries do not
+ * allocate memory, except for building the table.
+ * <p>
+ * The map may be queried from several threads, as long as it is not changed
+ * at the same time. Every rebuilt table is a new array, so that a thread
+ * never sees a table that another thread is still filling.
+ */
 public class CollisionMap {
+	/** log2 of the number of bits in a word. */
+	private static final int ADDRESS_BITS_PER_WORD = 6;
+	/**
+	 * Number of queries after a change that scan the bitmap, before the
+	 * summed-area table is rebuilt.
+	 */
+	private static final int QUERIES_BEFORE_REBUILD = 8;
 
 	private final int width;
 	private final int height;
-	private final BitSet[] colls;
+	private final int wordsPerRow;
+	/** The bitmap. Tile (x, y) is bit x % 64 of word y * wordsPerRow + x / 64. */
+	private final long[] bits;
+
+	/**
+	 * Summed-area table, or <code>null</code> if the map has changed since
+	 * it was built. Entry y * (width + 1) + x is the number of blocked tiles
+	 * in the rectangle (0, 0) - (x - 1, y - 1).
+	 */
+	private volatile int[] sums;
+	private int queriesSinceChange;
 
 	public CollisionMap(final int width, final int height) {
 		this.width = width;
 		this.height = height;
-		colls = new BitSet[width];
-		for (int i = 0; i < width; i++) {
-			colls[i] = new BitSet();
-		}
-
+		wordsPerRow = (Math.max(0, width) + 63) >>> ADDRESS_BITS_PER_WORD;
+		bits = new long[wordsPerRow * Math.max(0, height)];
 	}
 
 	public CollisionMap(final LayerDefinition layer) {
 		this(layer.getWidth(), layer.getHeight());
-		 for (int x = 0; x < width; x++) {
-			 for (int y = 0; y < height; y++) {
-				 if (layer.getTileAt(x, y) != 0) {
-					 set(x, y);
-				 }
-			 }
-			 }
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				if (layer.getTileAt(x, y) != 0) {
+					set(x, y);
+				}
+			}
+		}
 	}
 
 	public int getWidth() {
@@ -54,15 +85,44 @@ public class CollisionMap {
 		return height;
 	}
 
+	/**
+	 * Check if a tile is blocked.
+	 *
+	 * @param i x coordinate
+	 * @param j y coordinate
+	 * @return <code>true</code> if the tile is blocked, <code>false</code>
+	 * 	if it is free or outside the map
+	 */
 	public boolean get(final int i, final int j) {
-		return colls[i].get(j);
+		if (!isInside(i, j)) {
+			return false;
+		}
+		return (bits[j * wordsPerRow + (i >>> ADDRESS_BITS_PER_WORD)] & (1L << i)) != 0;
 	}
 
+	/**
+	 * Mark a tile blocked. Tiles outside the map are ignored.
+	 *
+	 * @param i x coordinate
+	 * @param j y coordinate
+	 */
 	public void set(final int i, final int j) {
-
-		colls[i].set(j);
+		if (isInside(i, j)) {
+			bits[j * wordsPerRow + (i >>> ADDRESS_BITS_PER_WORD)] |= 1L << i;
+			changed();
+		}
 	}
 
+	/**
+	 * Check if a rectangle is at least partially outside the map, or
+	 * contains blocked tiles.
+	 *
+	 * @param x left edge
+	 * @param y top edge
+	 * @param width width of the rectangle
+	 * @param height height of the rectangle
+	 * @return <code>true</code> if the rectangle collides
+	 */
 	public boolean collides(final int x, final int y, final int width, final int height) {
 		if (x < 0 || x - 1 + width >= this.width) {
 			return true;
@@ -72,46 +132,157 @@ public class CollisionMap {
 			return true;
 		}
 
-		final BitSet result = new BitSet();
-		for (int i = x; i < x + width; i++) {
-			result.or(colls[i]);
+		if ((width <= 0) || (height <= 0)) {
+			return false;
 		}
 
-		return !result.get(y, y + height).isEmpty();
+		int[] table = sums;
+		if (table == null) {
+			if (++queriesSinceChange < QUERIES_BEFORE_REBUILD) {
+				return scan(x, y, width, height);
+			}
+			table = rebuildSums();
+		}
+
+		final int stride = this.width + 1;
+		final int top = y * stride;
+		final int bottom = (y + height) * stride;
+		final int right = x + width;
+		return table[bottom + right] - table[top + right] - table[bottom + x] + table[top + x] != 0;
 	}
 
 	public void clear() {
-		for (int i = 0; i < this.width; i++) {
-			colls[i].clear();
-		}
-
+		Arrays.fill(bits, 0);
+		changed();
 	}
+
 	public static CollisionMap create(final LayerDefinition layer) {
+		return new CollisionMap(layer);
+	}
 
-		CollisionMap collissionMap = new CollisionMap(layer.getWidth(), layer
-				.getHeight());
-		for (int x = 0; x < layer.getWidth(); x++) {
-			for (int y = 0; y < layer.getHeight(); y++) {
-				if (layer.getTileAt(x, y) != 0) {
-					collissionMap.set(x, y);
-				}
-			}
+	/**
+	 * Write the map to a stream.
+	 *
+	 * @param out serializer
+	 * @throws IOException on an I/O error
+	 */
+	public void writeObject(final OutputSerializer out) throws IOException {
+		out.write(width);
+		out.write(height);
+		for (final long word : bits) {
+			out.write((int) word);
+			out.write((int) (word >>> 32));
 		}
-		return collissionMap;
 	}
 
-	public void unset(final int i, final int k) {
-		colls[i].clear(k);
+	/**
+	 * Read a map that was written by {@link #writeObject(OutputSerializer)}.
+	 *
+	 * @param in serializer
+	 * @return map
+	 * @throws IOException on an I/O error
+	 */
+	public static CollisionMap readObject(final InputSerializer in) throws IOException {
+		final CollisionMap map = new CollisionMap(in.readInt(), in.readInt());
+		final long[] bits = map.bits;
+		for (int i = 0; i < bits.length; i++) {
+			final long low = in.readInt() & 0xFFFFFFFFL;
+			bits[i] = low | ((long) in.readInt() << 32);
+		}
+		return map;
+	}
 
+	/**
+	 * Mark a tile free. Tiles outside the map are ignored.
+	 *
+	 * @param i x coordinate
+	 * @param k y coordinate
+	 */
+	public void unset(final int i, final int k) {
+		if (isInside(i, k)) {
+			bits[k * wordsPerRow + (i >>> ADDRESS_BITS_PER_WORD)] &= ~(1L << i);
+			changed();
+		}
 	}
 
+	/**
+	 * Mark the tiles covered by a shape blocked.
+	 *
+	 * @param shape area to be blocked
+	 */
 	public void set(final Rectangle2D shape) {
-		int y = (int) shape.getY();
+		final int y = (int) shape.getY();
+		final int bottom = (int) (y + shape.getHeight());
 		for (int x = (int) shape.getX(); x < shape.getX() + shape.getWidth(); x++) {
-
-			colls[x].set(y, (int) (y + shape.getHeight()));
+			for (int j = y; j < bottom; j++) {
+				set(x, j);
+			}
 		}
+	}
+
+	private boolean isInside(final int x, final int y) {
+		return (x >= 0) && (x < width) && (y >= 0) && (y < height);
+	}
 
+	private void changed() {
+		sums = null;
+		queriesSinceChange = 0;
 	}
 
+	/**
+	 * Check the rows of a rectangle in the bitmap. The rectangle must be
+	 * inside the map.
+	 */
+	private boolean scan(final int x, final int y, final int width, final int height) {
+		final int end = x + width;
+		final int firstWord = x >>> ADDRESS_BITS_PER_WORD;
+		final int lastWord = (end - 1) >>> ADDRESS_BITS_PER_WORD;
+		// shifts use only the lowest 6 bits of the distance
+		final long firstMask = -1L << x;
+		final long lastMask = -1L >>> -end;
+
+		for (int row = y; row < y + height; row++) {
+			final int base = row * wordsPerRow;
+			if (firstWord == lastWord) {
+				if ((bits[base + firstWord] & firstMask & lastMask) != 0) {
+					return true;
+				}
+			} else {
+				if ((bits[base + firstWord] & firstMask) != 0) {
+					return true;
+				}
+				for (int word = firstWord + 1; word < lastWord; word++) {
+					if (bits[base + word] != 0) {
+						return true;
+					}
+				}
+				if ((bits[base + lastWord] & lastMask) != 0) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Build the summed-area table. Threads that query the map at the same
+	 * time may build their own tables; they are identical.
+	 */
+	private int[] rebuildSums() {
+		final int stride = width + 1;
+		final int[] table = new int[stride * (height + 1)];
+		// the first row and column stay 0
+		for (int y = 0; y < height; y++) {
+			final int base = y * wordsPerRow;
+			final int above = y * stride;
+			final int current = above + stride;
+			int rowCount = 0;
+			for (int x = 0; x < width; x++) {
+				rowCount += (int) (bits[base + (x >>> ADDRESS_BITS_PER_WORD)] >>> x) & 1;
+				table[current + x + 1] = table[above + x + 1] + rowCount;
+			}
+		}
+		sums = table;
+		return table;
+	}
 }
@@ -23,17 +23,52 @@ public class Rand {
 
 	private static Random rand;
 
+	/**
+	 * Random generators used by single threads instead of the shared
+	 * generator.
+	 */
+	private static final ThreadLocal<Random> threadRand = new ThreadLocal<Random>();
+
 	static {
 		rand = new Random();
 	}
 
+	/**
+	 * Make the current thread use its own random generator. This allows
+	 * reproducing results of code running in the thread, for example in
+	 * simulations.
+	 *
+	 * @param random random generator, or <code>null</code> to use the shared
+	 * 	generator again
+	 */
+	public static void setThreadRandom(final Random random) {
+		if (random == null) {
+			threadRand.remove();
+		} else {
+			threadRand.set(random);
+		}
+	}
+
+	/**
+	 * Get the random generator of the current thread.
+	 *
+	 * @return random generator
+	 */
+	private static Random get() {
+		final Random random = threadRand.get();
+		if (random != null) {
+			return random;
+		}
+		return rand;
+	}
+
 	/**
 	 * Simulates flipping a coin.
 	 *
 	 * @return Either 1 or 2, equally distributed.
 	 */
 	public static int throwCoin() {
-		return rand.nextInt(2) + 1;
+		return get().nextInt(2) + 1;
 	}
 
 	/**
@@ -42,7 +77,7 @@ public class Rand {
 	 * @return A random number between 1 and 6, equally distributed.
 	 */
 	public static int roll1D6() {
-		return rand.nextInt(6) + 1;
+		return get().nextInt(6) + 1;
 	}
 
 	/**
@@ -51,7 +86,7 @@ public class Rand {
 	 * @return A random number between 1 and 20, equally distributed.
 	 */
 	public static int roll1D20() {
-		return rand.nextInt(20) + 1;
+		return get().nextInt(20) + 1;
 	}
 
 	/**
@@ -60,7 +95,7 @@ public class Rand {
 	 * @return A random number between 1 and 100, equally distributed.
 	 */
 	public static int roll1D100() {
-		return rand.nextInt(100) + 1;
+		return get().nextInt(100) + 1;
 	}
 
 
@@ -79,7 +114,7 @@ public class Rand {
 		final int max = Math.max(a, b);
 		final int min = Math.min(a, b);
 
-		return rand.nextInt(max - min + 1) + min;
+		return get().nextInt(max - min + 1) + min;
 	}
 
 	/**
@@ -90,7 +125,7 @@ public class Rand {
 	 * @return A random number between 0 and <i>n</i> - 1, equally distributed.
 	 */
 	public static int rand(final int n) {
-		return rand.nextInt(n);
+		return get().nextInt(n);
 	}
 
 	/**
@@ -99,7 +134,7 @@ public class Rand {
 	 * @return A random number between 0 and 1, equally distributed.
 	 */
 	public static double rand() {
-		return rand.nextDouble();
+		return get().nextDouble();
 	}
 
 	/**
@@ -170,7 +205,7 @@ public class Rand {
 	 * @return An integer near <i>mean</i>
 	 */
 	public static int randGaussian(final int mean, final int sd) {
-		return (int) (rand.nextGaussian() * sd + mean);
+		return (int) (get().nextGaussian() * sd + mean);
 	}
 
 	/**
@@ -181,7 +216,7 @@ public class Rand {
 	 * @return An integer exponential variate <i>mean</i>
 	 */
 	public static int randExponential(final int mean) {
-		return (int) (-mean * Math.log(rand.nextDouble()));
+		return (int) (-mean * Math.log(get().nextDouble()));
 	}
 
 	/**
@@ -204,6 +239,6 @@ public class Rand {
 	 * @return true or false randomly
 	 */
 	public static boolean flipCoin(final double propability) {
-		return rand.nextDouble() <= propability;
+		return get().nextDouble() <= propability;
 	}
 }
@@ -52,6 +52,7 @@ public abstract class AdministrationAction implements ActionListener {
 		InvisibleAction.register();
 		JailAction.register();
 		JailReportAction.register();
+		ProfileAction.register();
 		RemoteViewAction.register();
 		SummonAction.register();
 		SummonAtAction.register();
@@ -0,0 +1,67 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.actions.admin;
+
+import static games.stendhal.common.constants.Actions.TARGET;
+
+import java.io.IOException;
+
+import org.apache.log4j.Logger;
+
+import games.stendhal.server.actions.CommandCenter;
+import games.stendhal.server.core.engine.profiler.TurnProfiler;
+import games.stendhal.server.entity.player.Player;
+import marauroa.common.game.RPAction;
+
+/**
+ * Shows the data collected by the turn profiler.
+ */
+public class ProfileAction extends AdministrationAction {
+	private static final Logger logger = Logger.getLogger(ProfileAction.class);
+	private static final String PROFILE = "profile";
+
+	public static void register() {
+		CommandCenter.register(PROFILE, new ProfileAction(), 500);
+	}
+
+	@Override
+	protected void perform(final Player player, final RPAction action) {
+		final TurnProfiler profiler = TurnProfiler.get();
+		final String command = action.get(TARGET);
+
+		if (command == null) {
+			player.sendPrivateText(profiler.describePhases());
+		} else if (command.equals("slow")) {
+			player.sendPrivateText(profiler.describeSlowestTurns());
+		} else if (command.equals("zones")) {
+			player.sendPrivateText(profiler.describeZones(10));
+		} else if (command.equals("listeners")) {
+			player.sendPrivateText(profiler.describeListeners(10));
+		} else if (command.equals("reset")) {
+			profiler.reset();
+			player.sendPrivateText("Turn profile has been reset.");
+		} else if (command.equals("dump")) {
+			try {
+				profiler.writeReport(profiler.getReportFile());
+				player.sendPrivateText("Turn profile written to " + profiler.getReportFile());
+			} catch (final IOException e) {
+				logger.error(e, e);
+				player.sendPrivateText("Cannot write turn profile: " + e.getMessage());
+			}
+		} else if (command.equals("on") || command.equals("off")) {
+			profiler.setEnabled(command.equals("on"));
+			player.sendPrivateText("Turn profiler is " + command + ".");
+		} else {
+			player.sendPrivateText("Usage: /profile [slow|zones|listeners|reset|dump|on|off]");
+		}
+	}
+}
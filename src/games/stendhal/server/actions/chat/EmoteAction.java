@@ -1,5 +1,5 @@
 /***************************************************************************
- *                   (C) Copyright 2003-2016 - Stendhal                    *
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -17,6 +17,7 @@ import games.stendhal.server.actions.ActionListener;
 import games.stendhal.server.actions.validator.StandardActionValidations;
 import games.stendhal.server.core.engine.GameEvent;
 import games.stendhal.server.core.engine.SingletonRepository;
+import games.stendhal.server.core.engine.StendhalRPZone;
 import games.stendhal.server.entity.player.Player;
 import marauroa.common.game.RPAction;
 
@@ -43,6 +44,10 @@ public class EmoteAction implements ActionListener {
 
 		player.notifyWorldAboutChanges();
 		SingletonRepository.getRuleProcessor().removePlayerText(player);
+		final StendhalRPZone zone = player.getZone();
+		if (zone != null) {
+			zone.notifyChat(player);
+		}
 	}
 
 }
@@ -1,5 +1,5 @@
 /***************************************************************************
- *                   (C) Copyright 2003-2016 - Stendhal                    *
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -18,6 +18,7 @@ import games.stendhal.server.actions.ActionListener;
 import games.stendhal.server.actions.validator.StandardActionValidations;
 import games.stendhal.server.core.engine.GameEvent;
 import games.stendhal.server.core.engine.SingletonRepository;
+import games.stendhal.server.core.engine.StendhalRPZone;
 import games.stendhal.server.entity.player.Player;
 import games.stendhal.server.entity.status.StatusType;
 import marauroa.common.game.RPAction;
@@ -43,6 +44,10 @@ public class PublicChatAction implements ActionListener {
 
 		player.notifyWorldAboutChanges();
 		SingletonRepository.getRuleProcessor().removePlayerText(player);
+		final StendhalRPZone zone = player.getZone();
+		if (zone != null) {
+			zone.notifyChat(player);
+		}
 	}
 
 	/**
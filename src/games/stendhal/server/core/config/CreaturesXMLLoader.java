@@ -1,6 +1,6 @@
 /* $Id$ */
 /***************************************************************************
- *                   (C) Copyright 2003-2010 - Stendhal                    *
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -142,7 +142,13 @@ public final class CreaturesXMLLoader extends DefaultHandler {
 			// Parse the input
 			final SAXParser saxParser = factory.newSAXParser();
 
-			InputStream is = CreaturesXMLLoader.class.getResourceAsStream(ref.getPath());
+			InputStream is;
+			if ("file".equals(ref.getScheme())) {
+				// files outside the class path, such as other revisions
+				is = ref.toURL().openStream();
+			} else {
+				is = CreaturesXMLLoader.class.getResourceAsStream(ref.getPath());
+			}
 
 			if (is == null) {
 				throw new FileNotFoundException("cannot find resource '" + ref
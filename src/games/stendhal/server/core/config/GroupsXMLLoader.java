@@ -1,6 +1,6 @@
 /* $Id$ */
 /***************************************************************************
- *                   (C) Copyright 2003-2010 - Stendhal                    *
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -66,7 +66,13 @@ class GroupsXMLLoader extends DefaultHandler {
 	 *             If the resource was not found.
 	 */
 	public List<URI> load() throws SAXException, IOException {
-		final InputStream in = getClass().getResourceAsStream(uri.getPath());
+		final InputStream in;
+		if ("file".equals(uri.getScheme())) {
+			// files outside the class path, such as other revisions
+			in = uri.toURL().openStream();
+		} else {
+			in = getClass().getResourceAsStream(uri.getPath());
+		}
 
 		if (in == null) {
 			throw new FileNotFoundException("Cannot find resource: "
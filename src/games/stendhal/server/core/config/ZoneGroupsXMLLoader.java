@@ -18,6 +18,7 @@ package games.stendhal.server.core.config;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.log4j.Logger;
@@ -57,19 +58,24 @@ public class ZoneGroupsXMLLoader extends DefaultHandler {
 		final GroupsXMLLoader groupsLoader = new GroupsXMLLoader(uri);
 		final List<URI> zoneGroups = groupsLoader.load();
 
-		// Load each group
+		// Read each group
+		final List<ZonesXMLLoader.ZoneDesc> zones = new ArrayList<ZonesXMLLoader.ZoneDesc>();
 		for (final URI tempUri : zoneGroups) {
 			LOGGER.debug("Loading zone group [" + tempUri + "]");
 
 			final ZonesXMLLoader loader = new ZonesXMLLoader(tempUri);
 
 			try {
-				loader.load();
+				zones.addAll(loader.readZones());
 			} catch (final SAXException ex) {
 				LOGGER.error("Error loading zone group: " + tempUri, ex);
 			} catch (final IOException ex) {
 				LOGGER.error("Error loading zone group: " + tempUri, ex);
 			}
 		}
+
+		// Load the zones of all groups together, so that the maps can be
+		// prepared in parallel across group boundaries
+		ZonesXMLLoader.loadZones(zones);
 	}
 }
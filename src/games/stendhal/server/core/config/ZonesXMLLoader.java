@@ -25,6 +25,11 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.apache.log4j.Logger;
 import org.w3c.dom.Document;
@@ -34,8 +39,6 @@ import org.xml.sax.SAXException;
 //
 //
 
-import games.stendhal.common.tiled.LayerDefinition;
-import games.stendhal.common.tiled.StendhalMapStructure;
 import games.stendhal.server.core.config.zone.AttributesXMLReader;
 import games.stendhal.server.core.config.zone.ConfiguratorXMLReader;
 import games.stendhal.server.core.config.zone.EntitySetupXMLReader;
@@ -43,7 +46,8 @@ import games.stendhal.server.core.config.zone.PortalSetupXMLReader;
 import games.stendhal.server.core.config.zone.RegionNameSubstitutionHelper;
 import games.stendhal.server.core.config.zone.SetupDescriptor;
 import games.stendhal.server.core.config.zone.SetupXMLReader;
-import games.stendhal.server.core.config.zone.TMXLoader;
+import games.stendhal.server.core.config.zone.ZoneMapCache;
+import games.stendhal.server.core.config.zone.ZoneMapData;
 import games.stendhal.server.core.engine.SingletonRepository;
 import games.stendhal.server.core.engine.StendhalRPWorld;
 import games.stendhal.server.core.engine.StendhalRPZone;
@@ -103,6 +107,21 @@ public final class ZonesXMLLoader {
 	 *             If the resource was not found.
 	 */
 	public void load() throws SAXException, IOException {
+		loadZones(readZones());
+	}
+
+	/**
+	 * Read the descriptions of the zones in the group that should be loaded.
+	 *
+	 * @return zone descriptions
+	 * @throws SAXException
+	 *             If a SAX error occurred.
+	 * @throws IOException
+	 *             If an I/O error occurred.
+	 * @throws FileNotFoundException
+	 *             If the resource was not found.
+	 */
+	List<ZoneDesc> readZones() throws SAXException, IOException {
 		final InputStream in = ZonesXMLLoader.class.getResourceAsStream(uri.getPath());
 
 		if (in == null) {
@@ -110,7 +129,7 @@ public final class ZonesXMLLoader {
 		}
 
 		try {
-			load(in);
+			return readZones(in);
 		} finally {
 			in.close();
 		}
@@ -128,6 +147,23 @@ public final class ZonesXMLLoader {
 	 *             If an I/O error occurred.
 	 */
 	protected void load(final InputStream in) throws SAXException, IOException {
+		loadZones(readZones(in));
+	}
+
+	/**
+	 * Read the descriptions of the zones that should be loaded from a config
+	 * file.
+	 *
+	 * @param in
+	 *            The config file stream.
+	 * @return zone descriptions
+	 *
+	 * @throws SAXException
+	 *             If a SAX error occurred.
+	 * @throws IOException
+	 *             If an I/O error occurred.
+	 */
+	private List<ZoneDesc> readZones(final InputStream in) throws SAXException, IOException {
 		final Document doc = XMLUtil.parse(in);
 
 		// just to speed up starting of the server in while developing
@@ -137,9 +173,7 @@ public final class ZonesXMLLoader {
 		// if there is a problem with the zone
 		final String regex = System.getProperty("stendhal.zone.regex", ".*");
 
-		/*
-		 * Load each zone
-		 */
+		final List<ZoneDesc> zones = new ArrayList<ZoneDesc>();
 		for (final Element element : XMLUtil.getElements(doc.getDocumentElement(), "zone")) {
 			final ZoneDesc zdesc = readZone(element);
 
@@ -151,61 +185,109 @@ public final class ZonesXMLLoader {
 			if (!name.matches(regex) && !name.equals("int_semos_townhall") && !name.equals("int_semos_guard_house")) {
 				continue;
 			}
+			if (SingletonRepository.getRPWorld().getZone(name) != null) {
+				// loaded by an earlier call with a different zone filter
+				logger.debug("Zone already loaded: " + name);
+				continue;
+			}
 
-			logger.info("Loading zone: " + name);
+			zones.add(zdesc);
+		}
 
-			try {
-				final StendhalMapStructure zonedata = TMXLoader.load(StendhalRPWorld.MAPS_FOLDER
-						+ zdesc.getFile());
-
-				if (verifyMap(zdesc, zonedata)) {
-					final StendhalRPZone zone = load(zdesc, zonedata);
-
-					/*
-					 * Setup Descriptors
-					 */
-					final Iterator<SetupDescriptor> diter = zdesc.getDescriptors();
-
-					while (diter.hasNext()) {
-						diter.next().setup(zone);
-					}
-					// Zone configurators can add creatures, so this should be
-					// done after them
-					zone.calculateDangerLevel();
+		return zones;
+	}
+
+	/**
+	 * Load zones into the world. The map files are parsed and encoded in
+	 * parallel, but the zones are created, added to the world and set up one
+	 * after another in the order of the list.
+	 *
+	 * @param zones descriptions of the zones
+	 */
+	static void loadZones(final List<ZoneDesc> zones) {
+		if (zones.isEmpty()) {
+			return;
+		}
+
+		final ZoneMapCache cache = ZoneMapCache.fromSystemProperties();
+		final int threads = Math.min(Runtime.getRuntime().availableProcessors(), zones.size());
+		final ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread thread = new Thread(r, "zone loader");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		try {
+			/*
+			 * Limit the number of maps that are prepared ahead of the zone
+			 * that is currently set up, so that they do not pile up in memory.
+			 */
+			final int ahead = 4 * threads;
+			final List<Future<ZoneMapData>> maps = new ArrayList<Future<ZoneMapData>>(zones.size());
+			for (int i = 0; i < zones.size(); i++) {
+				while ((maps.size() < zones.size()) && (maps.size() <= i + ahead)) {
+					final String file = StendhalRPWorld.MAPS_FOLDER + zones.get(maps.size()).getFile();
+					maps.add(executor.submit(() -> cache.load(file)));
 				}
-			} catch (final Exception ex) {
-				logger.error("Error loading zone: " + name, ex);
+
+				final Future<ZoneMapData> map = maps.get(i);
+				maps.set(i, null);
+				loadZone(zones.get(i), map);
 			}
+		} finally {
+			executor.shutdownNow();
 		}
 	}
 
-	private static final String[] REQUIRED_LAYERS = { "0_floor", "1_terrain",
-			"2_object", "objects", "collision", "protection" };
+	/**
+	 * Create a zone from its prepared map data, add it to the world and set
+	 * it up.
+	 *
+	 * @param zdesc zone description
+	 * @param map map data that is being prepared
+	 */
+	private static void loadZone(final ZoneDesc zdesc, final Future<ZoneMapData> map) {
+		final String name = zdesc.getName();
+		if (SingletonRepository.getRPWorld().getZone(name) != null) {
+			// listed in more than one group
+			logger.debug("Zone already loaded: " + name);
+			return;
+		}
+
+		logger.info("Loading zone: " + name);
 
-	private boolean verifyMap(final ZoneDesc zdesc, final StendhalMapStructure zonedata) {
-		for (final String layer : REQUIRED_LAYERS) {
-			if (!zonedata.hasLayer(layer)) {
-				logger.error("Required layer " + layer + " missing in zone "
-						+ zdesc.getFile());
-				return false;
+		try {
+			final StendhalRPZone zone = load(zdesc, map.get());
+
+			/*
+			 * Setup Descriptors
+			 */
+			final Iterator<SetupDescriptor> diter = zdesc.getDescriptors();
+
+			while (diter.hasNext()) {
+				diter.next().setup(zone);
 			}
+			// Zone configurators can add creatures, so this should be
+			// done after them
+			zone.calculateDangerLevel();
+		} catch (final ExecutionException ex) {
+			logger.error("Error loading zone: " + name, ex.getCause());
+		} catch (final Exception ex) {
+			logger.error("Error loading zone: " + name, ex);
 		}
-		return true;
 	}
 
 	/**
 	 * Load zone data and create a new zone from it. Most of this should be moved
 	 * directly into ZoneXMLLoader.
 	 * @param desc the zone's descriptor
-	 * @param zonedata to be loaded
+	 * @param zonedata prepared map data of the zone
 	 * @return the created zone
-	 * @throws SAXException if any xml parsing error happened
-	 * @throws IOException if any IO error happened
-	 *
-	 *
 	 */
-	protected StendhalRPZone load(final ZoneDesc desc, final StendhalMapStructure zonedata)
-			throws SAXException, IOException {
+	private static StendhalRPZone load(final ZoneDesc desc, final ZoneMapData zonedata) {
 		final String name = desc.getName();
 
 		final StendhalRPZone zone;
@@ -215,22 +297,7 @@ public final class ZonesXMLLoader {
 			zone = createZone(desc, name);
 		}
 
-		zone.addTilesets(name + ".tilesets", zonedata.getTilesets());
-		zone.addLayer(name + ".0_floor", zonedata.getLayer("0_floor"));
-		zone.addLayer(name + ".1_terrain", zonedata.getLayer("1_terrain"));
-		zone.addLayer(name + ".2_object", zonedata.getLayer("2_object"));
-
-		// Roof layers are optional
-		loadOptionalLayer(zone, zonedata, "3_roof");
-		loadOptionalLayer(zone, zonedata, "4_roof_add");
-		// Effect layers are optional too
-		loadOptionalLayer(zone, zonedata, "blend_ground");
-		loadOptionalLayer(zone, zonedata, "blend_roof");
-
-		zone.addCollisionLayer(name + ".collision",
-				zonedata.getLayer("collision"));
-		zone.addProtectionLayer(name + ".protection",
-				zonedata.getLayer("protection"));
+		zonedata.applyTo(zone);
 
 		if (desc.isInterior()) {
 			zone.setPosition();
@@ -253,29 +320,13 @@ public final class ZonesXMLLoader {
 			logger.error(e, e);
 		}
 
-		zone.populate(zonedata.getLayer("objects"));
+		zone.populate(zonedata.getObjectsLayer());
 
 		return zone;
 	}
 
-	/**
-	 * Load an optional layer, if present, to a zone.
-	 *
-	 * @param zone
-	 * @param zonedata
-	 * @param layerName
-	 * @throws IOException
-	 */
-	private void loadOptionalLayer(StendhalRPZone zone,
-			StendhalMapStructure zonedata, String layerName) throws IOException {
-		LayerDefinition layer = zonedata.getLayer(layerName);
-		if (layer != null) {
-			zone.addLayer(zone.getName() + "." + layerName, layer);
-		}
-	}
-
 	@SuppressWarnings("unchecked")
-	private StendhalRPZone createZone(final ZoneDesc desc, final String name)  {
+	private static StendhalRPZone createZone(final ZoneDesc desc, final String name)  {
 		try {
 			Class<StendhalRPZone> zoneclass = (Class<StendhalRPZone>) Class.forName(desc.getImplementation());
 			Constructor<StendhalRPZone> constr = zoneclass.getConstructor(String.class);
@@ -1,6 +1,6 @@
 /* $Id$ */
 /***************************************************************************
- *                   (C) Copyright 2003-2010 - Stendhal                    *
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -14,6 +14,7 @@ package games.stendhal.server.core.config.zone;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -32,6 +33,8 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
+import com.google.common.io.ByteStreams;
+
 import games.stendhal.common.Base64;
 import games.stendhal.common.tiled.LayerDefinition;
 import games.stendhal.common.tiled.StendhalMapStructure;
@@ -250,26 +253,66 @@ public class TMXLoader {
 	}
 
 	public StendhalMapStructure readMap(final String filename) throws Exception {
+		return readMap(filename, open(filename));
+	}
+
+	/**
+	 * Reads a map from a stream.
+	 *
+	 * @param filename name of the map file
+	 * @param in content of the map file
+	 * @return map
+	 * @throws Exception if the map could not be read
+	 */
+	private StendhalMapStructure readMap(final String filename, final InputStream in) throws Exception {
 		xmlPath = filename.substring(0,
 				filename.lastIndexOf(File.separatorChar) + 1);
 
-		InputStream is = getClass().getClassLoader().getResourceAsStream(
+		InputStream is = in;
+
+		// Wrap with GZIP decoder for .tmx.gz files
+		if (filename.endsWith(".gz")) {
+			is = new GZIPInputStream(is);
+		}
+
+		try {
+			return unmarshal(is);
+		} finally {
+			is.close();
+		}
+	}
+
+	/**
+	 * Opens a map file from the class path, or from the file system.
+	 *
+	 * @param filename name of the map file
+	 * @return stream
+	 * @throws IOException if the file could not be opened
+	 */
+	private static InputStream open(final String filename) throws IOException {
+		final InputStream is = TMXLoader.class.getClassLoader().getResourceAsStream(
 				filename);
 
 		if (is == null) {
 			final String xmlFile = makeUrl(filename);
-			// xmlPath = makeUrl(xmlPath);
-
 			final URL url = new URL(xmlFile);
-			is = url.openStream();
+			return url.openStream();
 		}
 
-		// Wrap with GZIP decoder for .tmx.gz files
-		if (filename.endsWith(".gz")) {
-			is = new GZIPInputStream(is);
-		}
+		return is;
+	}
 
-		return unmarshal(is);
+	/**
+	 * Reads the unparsed content of a map file.
+	 *
+	 * @param filename name of the map file
+	 * @return file content
+	 * @throws IOException if the file could not be read
+	 */
+	public static byte[] readFile(final String filename) throws IOException {
+		try (InputStream is = open(filename)) {
+			return ByteStreams.toByteArray(is);
+		}
 	}
 
 	public static void main(final String[] args) throws Exception {
@@ -321,4 +364,17 @@ public class TMXLoader {
 	public static StendhalMapStructure load(final String filename) throws Exception {
 		return new TMXLoader().readMap(filename);
 	}
+
+	/**
+	 * Parses a map file that has already been read.
+	 *
+	 * @param filename name of the map file
+	 * @param content content of the map file as returned by
+	 * 	{@link #readFile(String)}
+	 * @return map
+	 * @throws Exception if the map could not be parsed
+	 */
+	public static StendhalMapStructure load(final String filename, final byte[] content) throws Exception {
+		return new TMXLoader().readMap(filename, new ByteArrayInputStream(content));
+	}
 }
@@ -0,0 +1,169 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.config.zone;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+
+import marauroa.common.net.InputSerializer;
+import marauroa.common.net.OutputSerializer;
+
+/**
+ * Loads prepared zone map data. Parsing the TMX files and encoding the layers
+ * takes most of the time of loading the zones, so the prepared data is kept in
+ * a cache directory, if one is configured. Cache entries are keyed by the
+ * checksum of the TMX file, so changed maps are parsed again.
+ * <p>
+ * Instances can be used from several threads at the same time.
+ */
+public final class ZoneMapCache {
+	private static final Logger logger = Logger.getLogger(ZoneMapCache.class);
+
+	/** Format version of the cache files. Change it when the format changes. */
+	private static final int VERSION = 1;
+	/** File name extension of the cache files. */
+	private static final String SUFFIX = ".zonecache";
+
+	/** Cache directory, or <code>null</code> if caching is disabled. */
+	private final File directory;
+
+	/**
+	 * Create a new ZoneMapCache.
+	 *
+	 * @param directory cache directory, or <code>null</code> to disable
+	 * 	caching
+	 */
+	public ZoneMapCache(final File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Create a cache using the directory configured with the system property
+	 * <code>stendhal.zone.cache</code>. Caching is disabled if the property
+	 * is not set.
+	 *
+	 * @return cache
+	 */
+	public static ZoneMapCache fromSystemProperties() {
+		final String dir = System.getProperty("stendhal.zone.cache");
+		if (dir == null) {
+			return new ZoneMapCache(null);
+		}
+		return new ZoneMapCache(new File(dir));
+	}
+
+	/**
+	 * Load the prepared data of a map file. The data is read from the cache
+	 * if the file has not changed since it was cached. Otherwise the file is
+	 * parsed, and the cache is updated.
+	 *
+	 * @param filename name of the TMX file
+	 * @return prepared map data
+	 * @throws Exception if the map could not be loaded
+	 */
+	public ZoneMapData load(final String filename) throws Exception {
+		final byte[] content = TMXLoader.readFile(filename);
+		if (directory == null) {
+			return ZoneMapData.create(filename, TMXLoader.load(filename, content));
+		}
+
+		final CRC32 crc = new CRC32();
+		crc.update(content);
+		final int checksum = (int) crc.getValue();
+		final File file = getCacheFile(filename);
+
+		final ZoneMapData cached = read(file, checksum);
+		if (cached != null) {
+			return cached;
+		}
+
+		final ZoneMapData data = ZoneMapData.create(filename, TMXLoader.load(filename, content));
+		write(file, checksum, data);
+		return data;
+	}
+
+	/**
+	 * Get the cache file of a map file.
+	 *
+	 * @param filename name of the TMX file
+	 * @return cache file
+	 */
+	private File getCacheFile(final String filename) {
+		return new File(directory, filename.replaceAll("[^A-Za-z0-9_.-]", "_") + SUFFIX);
+	}
+
+	/**
+	 * Read a cache file.
+	 *
+	 * @param file cache file
+	 * @param checksum checksum of the current TMX file
+	 * @return cached data, or <code>null</code> if there is no valid cache
+	 * 	entry for the checksum
+	 */
+	private ZoneMapData read(final File file, final int checksum) {
+		if (!file.isFile()) {
+			return null;
+		}
+		try (InputStream stream = new BufferedInputStream(new FileInputStream(file))) {
+			final InputSerializer in = new InputSerializer(stream);
+			if ((in.readInt() != VERSION) || (in.readInt() != checksum)) {
+				return null;
+			}
+			return ZoneMapData.readObject(in);
+		} catch (final IOException e) {
+			logger.warn("Ignoring broken zone cache file " + file, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Write a cache file. Errors are logged, as the cache is not essential.
+	 *
+	 * @param file cache file
+	 * @param checksum checksum of the TMX file
+	 * @param data prepared data
+	 */
+	private void write(final File file, final int checksum, final ZoneMapData data) {
+		// write to a temporary file first, so that other servers sharing the
+		// cache never see incomplete files
+		final File tmp = new File(file.getPath() + "." + Thread.currentThread().getId() + ".tmp");
+		try {
+			if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+				throw new IOException("Cannot create directory " + directory);
+			}
+			try (OutputStream stream = new BufferedOutputStream(new FileOutputStream(tmp))) {
+				final OutputSerializer out = new OutputSerializer(stream);
+				out.write(VERSION);
+				out.write(checksum);
+				data.writeObject(out);
+			}
+			if (!tmp.renameTo(file)) {
+				// renameTo does not replace existing files on all platforms
+				if (!file.delete() || !tmp.renameTo(file)) {
+					throw new IOException("Cannot rename " + tmp + " to " + file);
+				}
+			}
+		} catch (final IOException e) {
+			logger.warn("Could not write zone cache file " + file, e);
+			tmp.delete();
+		}
+	}
+}
@@ -0,0 +1,273 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.config.zone;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import games.stendhal.common.CRC;
+import games.stendhal.common.CollisionMap;
+import games.stendhal.common.tiled.LayerDefinition;
+import games.stendhal.common.tiled.StendhalMapStructure;
+import games.stendhal.common.tiled.TileSetDefinition;
+import games.stendhal.server.core.engine.StendhalRPZone;
+import marauroa.common.net.InputSerializer;
+import marauroa.common.net.OutputSerializer;
+import marauroa.common.net.message.TransferContent;
+
+/**
+ * The content of a map file, prepared for creating a zone from it. The layers
+ * sent to the client are already encoded, and the collision and protection
+ * layers are converted to collision maps. Preparing the data does not touch
+ * the world, so it can be done in parallel for several maps.
+ */
+public final class ZoneMapData {
+	/** Layers that every zone map must have. */
+	private static final String[] REQUIRED_LAYERS = { "0_floor", "1_terrain",
+			"2_object", "objects", "collision", "protection" };
+	/** Layers sent to the client, in the order they are added to the zone. */
+	private static final String[] CLIENT_LAYERS = { "0_floor", "1_terrain",
+			"2_object", "3_roof", "4_roof_add", "blend_ground", "blend_roof" };
+
+	private final List<Content> contents;
+	private final Content collisionContent;
+	private final CollisionMap collision;
+	private final Content protectionContent;
+	private final CollisionMap protection;
+	private final StendhalMapStructure objects;
+
+	/**
+	 * A content blob of a zone.
+	 */
+	private static final class Content {
+		/** Name of the content without the zone name prefix. */
+		private final String name;
+		private final byte[] data;
+		private final int crc;
+
+		/**
+		 * Create a new Content.
+		 *
+		 * @param name name of the content without the zone name prefix
+		 * @param data encoded data
+		 */
+		Content(final String name, final byte[] data) {
+			this(name, data, CRC.cmpCRC(data));
+		}
+
+		/**
+		 * Create a new Content.
+		 *
+		 * @param name name of the content without the zone name prefix
+		 * @param data encoded data
+		 * @param crc checksum of the data
+		 */
+		Content(final String name, final byte[] data, final int crc) {
+			this.name = name;
+			this.data = data;
+			this.crc = crc;
+		}
+
+		/**
+		 * Create the content that is transfered to the client.
+		 *
+		 * @param zone zone
+		 * @return transfer content
+		 */
+		TransferContent toTransferContent(final StendhalRPZone zone) {
+			final TransferContent content = new TransferContent();
+			content.name = zone.getName() + "." + name;
+			content.cacheable = true;
+			content.data = data;
+			content.timestamp = crc;
+			return content;
+		}
+
+		void writeObject(final OutputSerializer out) throws IOException {
+			out.write(name);
+			out.write(data);
+			out.write(crc);
+		}
+
+		static Content readObject(final InputSerializer in) throws IOException {
+			return new Content(in.readString(), in.readByteArray(), in.readInt());
+		}
+	}
+
+	private ZoneMapData(final List<Content> contents, final Content collisionContent,
+			final CollisionMap collision, final Content protectionContent,
+			final CollisionMap protection, final StendhalMapStructure objects) {
+		this.contents = contents;
+		this.collisionContent = collisionContent;
+		this.collision = collision;
+		this.protectionContent = protectionContent;
+		this.protection = protection;
+		this.objects = objects;
+	}
+
+	/**
+	 * Prepare a parsed map.
+	 *
+	 * @param file name of the map file, used in error messages
+	 * @param map parsed map
+	 * @return prepared data
+	 * @throws IOException if the map is missing required layers, or the
+	 * 	layers could not be encoded
+	 */
+	public static ZoneMapData create(final String file, final StendhalMapStructure map) throws IOException {
+		for (final String layer : REQUIRED_LAYERS) {
+			if (!map.hasLayer(layer)) {
+				throw new IOException("Required layer " + layer + " missing in zone " + file);
+			}
+		}
+
+		final List<Content> contents = new ArrayList<Content>();
+		contents.add(new Content("tilesets", encodeTilesets(map.getTilesets())));
+		for (final String name : CLIENT_LAYERS) {
+			final LayerDefinition layer = map.getLayer(name);
+			if (layer != null) {
+				contents.add(new Content(name, layer.encode()));
+			}
+		}
+
+		final LayerDefinition collisionLayer = map.getLayer("collision");
+		final Content collisionContent = new Content("collision", collisionLayer.encode());
+		collisionLayer.build();
+		final LayerDefinition protectionLayer = map.getLayer("protection");
+		final Content protectionContent = new Content("protection", protectionLayer.encode());
+		protectionLayer.build();
+
+		final StendhalMapStructure objects = new StendhalMapStructure(map.getWidth(), map.getHeight());
+		for (final TileSetDefinition set : map.getTilesets()) {
+			objects.addTileset(set);
+		}
+		objects.addLayer(map.getLayer("objects"));
+
+		return new ZoneMapData(contents, collisionContent, CollisionMap.create(collisionLayer),
+				protectionContent, CollisionMap.create(protectionLayer), objects);
+	}
+
+	/**
+	 * Serialize the tilesets to send them to the client. Logic tilesets are
+	 * used only by the server, and are left out.
+	 *
+	 * @param tilesets tilesets of the map
+	 * @return encoded tilesets
+	 * @throws IOException on an I/O error
+	 */
+	static byte[] encodeTilesets(final List<TileSetDefinition> tilesets) throws IOException {
+		final ByteArrayOutputStream array = new ByteArrayOutputStream();
+		final OutputSerializer out = new OutputSerializer(array);
+
+		int amount = 0;
+
+		for (final TileSetDefinition set : tilesets) {
+			if (!set.getSource().contains("logic/")) {
+				amount++;
+			}
+		}
+
+		out.write(amount);
+		for (final TileSetDefinition set : tilesets) {
+			if (!set.getSource().contains("logic/")) {
+				set.writeObject(out);
+			}
+		}
+
+		return array.toByteArray();
+	}
+
+	/**
+	 * Add the layers and collision maps to a zone.
+	 *
+	 * @param zone zone
+	 */
+	public void applyTo(final StendhalRPZone zone) {
+		for (final Content content : contents) {
+			zone.addContent(content.toTransferContent(zone));
+		}
+		zone.addCollisionLayer(collisionContent.toTransferContent(zone), collision);
+		zone.addProtectionLayer(protectionContent.toTransferContent(zone), protection);
+	}
+
+	/**
+	 * Get the layer with the entities that are created from the map.
+	 *
+	 * @return objects layer
+	 */
+	public LayerDefinition getObjectsLayer() {
+		return objects.getLayer("objects");
+	}
+
+	/**
+	 * Write the data to a stream.
+	 *
+	 * @param out serializer
+	 * @throws IOException on an I/O error
+	 */
+	void writeObject(final OutputSerializer out) throws IOException {
+		out.write(contents.size());
+		for (final Content content : contents) {
+			content.writeObject(out);
+		}
+		collisionContent.writeObject(out);
+		collision.writeObject(out);
+		protectionContent.writeObject(out);
+		protection.writeObject(out);
+
+		out.write(objects.getWidth());
+		out.write(objects.getHeight());
+		out.write(objects.getTilesets().size());
+		for (final TileSetDefinition set : objects.getTilesets()) {
+			set.writeObject(out);
+		}
+		out.write(getObjectsLayer().encode());
+	}
+
+	/**
+	 * Read data that was written by {@link #writeObject(OutputSerializer)}.
+	 *
+	 * @param in serializer
+	 * @return prepared data
+	 * @throws IOException on an I/O error
+	 */
+	static ZoneMapData readObject(final InputSerializer in) throws IOException {
+		final int size = in.readInt();
+		final List<Content> contents = new ArrayList<Content>(size);
+		for (int i = 0; i < size; i++) {
+			contents.add(Content.readObject(in));
+		}
+		final Content collisionContent = Content.readObject(in);
+		final CollisionMap collision = CollisionMap.readObject(in);
+		final Content protectionContent = Content.readObject(in);
+		final CollisionMap protection = CollisionMap.readObject(in);
+
+		final StendhalMapStructure objects = new StendhalMapStructure(in.readInt(), in.readInt());
+		final int tilesets = in.readInt();
+		for (int i = 0; i < tilesets; i++) {
+			final TileSetDefinition set = new TileSetDefinition(null, null, 0);
+			set.readObject(in);
+			objects.addTileset(set);
+		}
+		try {
+			objects.addLayer(LayerDefinition.decode(new ByteArrayInputStream(in.readByteArray())));
+		} catch (final ClassNotFoundException e) {
+			throw new IOException(e);
+		}
+
+		return new ZoneMapData(contents, collisionContent, collision, protectionContent,
+				protection, objects);
+	}
+}
@@ -0,0 +1,376 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A uniform grid of tile buckets that indexes objects of a zone, such as
+ * entities or movement listeners, by the area they occupy.
+ *
+ * Every object is registered in each bucket its area overlaps. Objects that
+ * would span a lot of buckets, like listeners watching a whole zone, are kept
+ * in a separate list that is part of every query. Coordinates outside the
+ * zone are clamped to the border buckets, so the index stays correct for
+ * objects placed outside of the map.
+ *
+ * The buckets of an object are computed when it is added. If its area
+ * changes later, it must be updated with <code>update()</code>.
+ *
+ * Query results are in the order the objects were added to the grid, so
+ * they do not depend on the hash order of the zone's object map.
+ *
+ * The grid is not thread safe. It is guarded by the zone that owns it.
+ *
+ * @param <T> type of the indexed objects
+ */
+public class EntityGrid<T> {
+	/** Width and height of a bucket in tiles. */
+	static final int CELL_SIZE = 4;
+
+	/** Objects overlapping more buckets than this are not bucketed. */
+	private static final int MAX_CELLS = 64;
+
+	private static final Comparator<Entry<?>> INSERTION_ORDER = new Comparator<Entry<?>>() {
+		@Override
+		public int compare(final Entry<?> e1, final Entry<?> e2) {
+			return Long.compare(e1.sequence, e2.sequence);
+		}
+	};
+
+	/**
+	 * Accessor for the area of an indexed object.
+	 *
+	 * @param <T> type of the indexed objects
+	 */
+	public interface AreaAccessor<T> {
+		/**
+		 * Gets the area an object currently occupies.
+		 *
+		 * @param object indexed object
+		 * @return area in tiles
+		 */
+		Rectangle2D getArea(T object);
+	}
+
+	private final AreaAccessor<? super T> accessor;
+	private final Map<T, Entry<T>> entries = new IdentityHashMap<T, Entry<T>>();
+	private final List<Entry<T>> oversized = new ArrayList<Entry<T>>();
+	/** Scratch list for collecting the entries of a query. */
+	private final List<Entry<T>> matches = new ArrayList<Entry<T>>();
+	/** Released result lists available for reuse. */
+	private final List<List<T>> freeResults = new ArrayList<List<T>>();
+
+	private List<Entry<T>>[] cells;
+	private int columns;
+	private int rows;
+
+	private long nextSequence;
+	private long queryStamp;
+
+	/**
+	 * Creates a new grid for a zone of unknown size.
+	 *
+	 * @param accessor accessor for the areas of the indexed objects
+	 */
+	public EntityGrid(final AreaAccessor<? super T> accessor) {
+		this.accessor = accessor;
+		resize(0, 0);
+	}
+
+	/**
+	 * Changes the dimensions covered by the grid and re-registers all
+	 * objects.
+	 *
+	 * @param width zone width in tiles
+	 * @param height zone height in tiles
+	 */
+	@SuppressWarnings("unchecked")
+	public void resize(final int width, final int height) {
+		final int newColumns = Math.max(1, (width + CELL_SIZE - 1) / CELL_SIZE);
+		final int newRows = Math.max(1, (height + CELL_SIZE - 1) / CELL_SIZE);
+		if ((cells != null) && (newColumns == columns) && (newRows == rows)) {
+			return;
+		}
+
+		columns = newColumns;
+		rows = newRows;
+		cells = new List[columns * rows];
+		oversized.clear();
+		for (final Entry<T> entry : entries.values()) {
+			entry.bucketed = false;
+			register(entry);
+		}
+	}
+
+	/**
+	 * Adds an object to the grid. Adding an object that is already in the
+	 * grid only updates its buckets.
+	 *
+	 * @param object object
+	 */
+	public void add(final T object) {
+		if (entries.containsKey(object)) {
+			update(object);
+			return;
+		}
+		final Entry<T> entry = new Entry<T>(object, nextSequence++);
+		entries.put(object, entry);
+		register(entry);
+	}
+
+	/**
+	 * Removes an object from the grid.
+	 *
+	 * @param object object
+	 */
+	public void remove(final T object) {
+		final Entry<T> entry = entries.remove(object);
+		if (entry != null) {
+			unregister(entry);
+		}
+	}
+
+	/**
+	 * Updates the buckets of an object after its position or size changed.
+	 * Objects that are not in the grid are ignored.
+	 *
+	 * @param object object
+	 */
+	public void update(final T object) {
+		final Entry<T> entry = entries.get(object);
+		if (entry == null) {
+			return;
+		}
+
+		final Rectangle2D area = accessor.getArea(object);
+		if (entry.bucketed
+				&& (entry.minX == cellX(area.getMinX())) && (entry.maxX == cellX(area.getMaxX()))
+				&& (entry.minY == cellY(area.getMinY())) && (entry.maxY == cellY(area.getMaxY()))) {
+			return;
+		}
+		unregister(entry);
+		register(entry);
+	}
+
+	/**
+	 * Checks if an object is registered.
+	 *
+	 * @param object object
+	 * @return <code>true</code> if the object is in the grid
+	 */
+	public boolean contains(final T object) {
+		return entries.containsKey(object);
+	}
+
+	/**
+	 * Gets the number of registered objects.
+	 *
+	 * @return number of objects
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Gets the objects whose buckets overlap an area. The caller must check
+	 * the actual areas of the objects.
+	 * <p>
+	 * The returned list is reused by later queries, and must be handed back
+	 * with {@link #release(List)} when the caller is done with it. Queries
+	 * can be nested, so callers may notify the found objects while iterating
+	 * over the list.
+	 *
+	 * @param area area
+	 * @return candidates in the order they were added
+	 */
+	public List<T> getCandidates(final Rectangle2D area) {
+		return getCandidates(area, null);
+	}
+
+	/**
+	 * Gets the objects whose buckets overlap any of two areas. The returned
+	 * list must be handed back with {@link #release(List)}.
+	 *
+	 * @param area1 area
+	 * @param area2 another area, or <code>null</code>
+	 * @return candidates in the order they were added
+	 */
+	public List<T> getCandidates(final Rectangle2D area1, final Rectangle2D area2) {
+		queryStamp++;
+		collect(area1.getMinX(), area1.getMinY(), area1.getMaxX(), area1.getMaxY());
+		if (area2 != null) {
+			collect(area2.getMinX(), area2.getMinY(), area2.getMaxX(), area2.getMaxY());
+		}
+		return toResult();
+	}
+
+	/**
+	 * Gets the objects whose buckets contain a point. The returned list must
+	 * be handed back with {@link #release(List)}.
+	 *
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @return candidates in the order they were added
+	 */
+	public List<T> getCandidates(final double x, final double y) {
+		queryStamp++;
+		collect(x, y, x, y);
+		return toResult();
+	}
+
+	/**
+	 * Hands back a list returned by a query, so that it can be reused.
+	 *
+	 * @param result list returned by <code>getCandidates()</code>
+	 */
+	public void release(final List<T> result) {
+		result.clear();
+		freeResults.add(result);
+	}
+
+	/**
+	 * Collects the distinct entries in the buckets of an area into the match
+	 * list.
+	 */
+	private void collect(final double x1, final double y1, final double x2, final double y2) {
+		final int minX = cellX(x1);
+		final int maxX = cellX(x2);
+		final int minY = cellY(y1);
+		final int maxY = cellY(y2);
+		for (int cy = minY; cy <= maxY; cy++) {
+			for (int cx = minX; cx <= maxX; cx++) {
+				final List<Entry<T>> bucket = cells[cy * columns + cx];
+				if (bucket != null) {
+					for (final Entry<T> entry : bucket) {
+						if (entry.stamp != queryStamp) {
+							entry.stamp = queryStamp;
+							matches.add(entry);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sorts the collected entries and moves their objects to a result list.
+	 */
+	private List<T> toResult() {
+		matches.addAll(oversized);
+		final List<T> result;
+		if (freeResults.isEmpty()) {
+			result = new ArrayList<T>();
+		} else {
+			result = freeResults.remove(freeResults.size() - 1);
+		}
+		if (matches.size() > 1) {
+			Collections.sort(matches, INSERTION_ORDER);
+		}
+		for (int i = 0; i < matches.size(); i++) {
+			result.add(matches.get(i).object);
+		}
+		matches.clear();
+		return result;
+	}
+
+	private void register(final Entry<T> entry) {
+		final Rectangle2D area = accessor.getArea(entry.object);
+		entry.minX = cellX(area.getMinX());
+		entry.maxX = cellX(area.getMaxX());
+		entry.minY = cellY(area.getMinY());
+		entry.maxY = cellY(area.getMaxY());
+
+		if ((entry.maxX - entry.minX + 1) * (entry.maxY - entry.minY + 1) > MAX_CELLS) {
+			entry.bucketed = false;
+			oversized.add(entry);
+			return;
+		}
+
+		entry.bucketed = true;
+		for (int cy = entry.minY; cy <= entry.maxY; cy++) {
+			for (int cx = entry.minX; cx <= entry.maxX; cx++) {
+				final int index = cy * columns + cx;
+				List<Entry<T>> bucket = cells[index];
+				if (bucket == null) {
+					bucket = new ArrayList<Entry<T>>(4);
+					cells[index] = bucket;
+				}
+				bucket.add(entry);
+			}
+		}
+	}
+
+	private void unregister(final Entry<T> entry) {
+		if (!entry.bucketed) {
+			oversized.remove(entry);
+			return;
+		}
+
+		for (int cy = entry.minY; cy <= entry.maxY; cy++) {
+			for (int cx = entry.minX; cx <= entry.maxX; cx++) {
+				final List<Entry<T>> bucket = cells[cy * columns + cx];
+				if (bucket != null) {
+					bucket.remove(entry);
+				}
+			}
+		}
+		entry.bucketed = false;
+	}
+
+	private int cellX(final double x) {
+		return clamp(x, columns);
+	}
+
+	private int cellY(final double y) {
+		return clamp(y, rows);
+	}
+
+	private static int clamp(final double coordinate, final int limit) {
+		final double cell = Math.floor(coordinate / CELL_SIZE);
+		if (cell < 0) {
+			return 0;
+		}
+		if (cell >= limit) {
+			return limit - 1;
+		}
+		return (int) cell;
+	}
+
+	/**
+	 * Bookkeeping data of a registered object.
+	 *
+	 * @param <T> type of the indexed objects
+	 */
+	private static final class Entry<T> {
+		private final T object;
+		/** Insertion order. */
+		private final long sequence;
+		/** Bucket range the object is currently registered in. */
+		private int minX, maxX, minY, maxY;
+		/** <code>true</code> if registered in buckets, <code>false</code> if oversized. */
+		private boolean bucketed;
+		/** Last query that reported this entry. */
+		private long stamp;
+
+		private Entry(final T object, final long sequence) {
+			this.object = object;
+			this.sequence = sequence;
+		}
+	}
+}
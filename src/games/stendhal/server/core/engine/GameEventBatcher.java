@@ -0,0 +1,249 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import games.stendhal.server.core.engine.dbcommand.LogGameEventBatchCommand;
+import games.stendhal.server.core.events.TurnListener;
+import games.stendhal.server.core.events.TurnNotifier;
+import marauroa.common.Configuration;
+import marauroa.server.db.command.DBCommandPriority;
+import marauroa.server.db.command.DBCommandQueue;
+import marauroa.server.game.Statistics;
+import marauroa.server.game.rp.GameEvent;
+
+/**
+ * Collects game events and hands them to the database in batches.
+ * <p>
+ * Game events can be raised from any thread. Adding an event does not lock;
+ * the events are taken from the queue by the game loop, which checks every
+ * turn if a batch is due. A batch is written when
+ * <code>game_event_batch_size</code> events are pending, or when the oldest
+ * pending event is older than <code>game_event_max_latency</code>
+ * milliseconds. Batches are never larger than the batch size.
+ * <p>
+ * If the database falls behind so that <code>game_event_queue_capacity</code>
+ * events are waiting, further events are dropped and counted until the
+ * database catches up.
+ */
+public final class GameEventBatcher {
+	private static final Logger logger = Logger.getLogger(GameEventBatcher.class);
+
+	private static final int DEFAULT_BATCH_SIZE = 500;
+	private static final int DEFAULT_MAX_LATENCY = 1000;
+	private static final int DEFAULT_CAPACITY = 20000;
+
+	/** The singleton instance. */
+	private static GameEventBatcher instance;
+
+	private final int batchSize;
+	private final long maxLatency;
+	private final int capacity;
+
+	/** Events that have not been handed to the database queue yet. */
+	private final Queue<GameEvent> pending = new ConcurrentLinkedQueue<GameEvent>();
+	/** Number of events in <code>pending</code>. */
+	private final AtomicInteger pendingCount = new AtomicInteger();
+	/** Events in the database queue that have not been written yet. */
+	private final AtomicInteger backlog = new AtomicInteger();
+	/** Number of dropped events since the statistics were last updated. */
+	private final AtomicLong dropped = new AtomicLong();
+	/** Number of written events since the statistics were last updated. */
+	private final AtomicLong written = new AtomicLong();
+
+	/**
+	 * Gets the batcher instance.
+	 *
+	 * @return GameEventBatcher
+	 */
+	public static synchronized GameEventBatcher get() {
+		if (instance == null) {
+			int batchSize = DEFAULT_BATCH_SIZE;
+			int maxLatency = DEFAULT_MAX_LATENCY;
+			int capacity = DEFAULT_CAPACITY;
+			try {
+				final Configuration config = Configuration.getConfiguration();
+				batchSize = config.getInt("game_event_batch_size", DEFAULT_BATCH_SIZE);
+				maxLatency = config.getInt("game_event_max_latency", DEFAULT_MAX_LATENCY);
+				capacity = config.getInt("game_event_queue_capacity", DEFAULT_CAPACITY);
+			} catch (final IOException e) {
+				logger.error(e, e);
+			}
+			instance = new GameEventBatcher(batchSize, maxLatency, capacity);
+		}
+		return instance;
+	}
+
+	/**
+	 * Creates a new GameEventBatcher.
+	 *
+	 * @param batchSize maximum number of events in a batch
+	 * @param maxLatency time in milliseconds after which pending events are
+	 * 	written even if the batch is not full
+	 * @param capacity maximum number of events waiting to be written
+	 */
+	GameEventBatcher(final int batchSize, final long maxLatency, final int capacity) {
+		this.batchSize = Math.max(1, batchSize);
+		this.maxLatency = maxLatency;
+		this.capacity = Math.max(this.batchSize, capacity);
+	}
+
+	/**
+	 * Starts checking every turn if pending events are due to be written.
+	 */
+	public void startFlushing() {
+		TurnNotifier.get().notifyInTurns(0, new Flusher());
+	}
+
+	/**
+	 * Adds an event. This can be called from any thread.
+	 *
+	 * @param event event to log
+	 * @return <code>true</code> if the event was accepted, <code>false</code>
+	 * 	if it was dropped because too many events are waiting to be written
+	 */
+	public boolean add(final GameEvent event) {
+		// The check is not atomic with the increment, so the capacity can be
+		// exceeded by the number of concurrently logging threads. That's fine
+		// for protecting the memory.
+		if (pendingCount.get() + backlog.get() >= capacity) {
+			if (dropped.getAndIncrement() == 0) {
+				logger.warn("Game event queue is full. Dropping events.");
+			}
+			return false;
+		}
+		pendingCount.incrementAndGet();
+		pending.add(event);
+		return true;
+	}
+
+	/**
+	 * Hands the pending events to the database queue if a batch is full, or
+	 * the oldest event has waited long enough.
+	 */
+	public void flushIfDue() {
+		final GameEvent oldest = pending.peek();
+		if ((oldest != null) && ((pendingCount.get() >= batchSize)
+				|| (System.currentTimeMillis() - oldest.getTimestamp().getTime() >= maxLatency))) {
+			flush();
+		}
+		updateStatistics();
+	}
+
+	/**
+	 * Hands all pending events to the database queue.
+	 */
+	public void flush() {
+		for (final List<GameEvent> batch : takeBatches()) {
+			DBCommandQueue.get().enqueue(new LogGameEventBatchCommand(batch), DBCommandPriority.LOW);
+		}
+	}
+
+	/**
+	 * Takes all pending events from the queue, split in batches. The events
+	 * are counted in the backlog until they have been written.
+	 *
+	 * @return batches no larger than the batch size
+	 */
+	synchronized List<List<GameEvent>> takeBatches() {
+		final List<List<GameEvent>> batches = new ArrayList<List<GameEvent>>();
+		List<GameEvent> batch = new ArrayList<GameEvent>();
+		GameEvent event = pending.poll();
+		while (event != null) {
+			// count the event in the backlog before it leaves the pending
+			// count, so that add() never sees too few waiting events
+			backlog.incrementAndGet();
+			pendingCount.decrementAndGet();
+			batch.add(event);
+			if (batch.size() >= batchSize) {
+				batches.add(batch);
+				batch = new ArrayList<GameEvent>();
+			}
+			event = pending.poll();
+		}
+		if (!batch.isEmpty()) {
+			batches.add(batch);
+		}
+		return batches;
+	}
+
+	/**
+	 * Called by the database thread after a batch has been processed.
+	 *
+	 * @param count number of events in the batch
+	 * @param success <code>true</code> if the events were written,
+	 * 	<code>false</code> if writing them failed
+	 */
+	public void onBatchDone(final int count, final boolean success) {
+		backlog.addAndGet(-count);
+		if (success) {
+			written.addAndGet(count);
+		}
+	}
+
+	/**
+	 * Publishes the counters to the server statistics. Called from the game
+	 * loop, so that the loggers do not need to touch the statistics.
+	 */
+	private void updateStatistics() {
+		final Statistics stats = Statistics.getStatistics();
+		stats.set("Game event backlog", getPendingCount() + getBacklog());
+		final long newlyWritten = written.getAndSet(0);
+		if (newlyWritten > 0) {
+			stats.add("Game events written", (int) newlyWritten);
+		}
+		final long newlyDropped = dropped.getAndSet(0);
+		if (newlyDropped > 0) {
+			logger.warn("Dropped " + newlyDropped + " game events");
+			stats.add("Game events dropped", (int) newlyDropped);
+		}
+	}
+
+	/**
+	 * Gets the number of events that have not been handed to the database
+	 * queue yet.
+	 *
+	 * @return number of events
+	 */
+	public int getPendingCount() {
+		return pendingCount.get();
+	}
+
+	/**
+	 * Gets the number of events that are waiting in the database queue.
+	 *
+	 * @return number of events
+	 */
+	public int getBacklog() {
+		return backlog.get();
+	}
+
+	/**
+	 * Checks for due events every turn.
+	 */
+	private class Flusher implements TurnListener {
+		@Override
+		public void onTurnReached(final int currentTurn) {
+			flushIfDue();
+			TurnNotifier.get().notifyInTurns(0, this);
+		}
+	}
+}
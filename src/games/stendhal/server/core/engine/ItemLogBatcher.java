@@ -0,0 +1,207 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import games.stendhal.server.core.engine.dbcommand.AbstractLogItemEventCommand;
+import games.stendhal.server.core.engine.dbcommand.LogItemEventBatchCommand;
+import games.stendhal.server.core.engine.profiler.LatencyHistogram;
+import games.stendhal.server.core.events.TurnListener;
+import games.stendhal.server.core.events.TurnNotifier;
+import marauroa.common.Configuration;
+import marauroa.server.db.command.DBCommandPriority;
+import marauroa.server.db.command.DBCommandQueue;
+import marauroa.server.game.Statistics;
+
+/**
+ * Collects item log events and hands them to the database in batches.
+ * <p>
+ * A batch is written when <code>item_log_batch_size</code> events are
+ * pending, or when the oldest pending event is older than
+ * <code>item_log_max_latency</code> milliseconds.
+ */
+public final class ItemLogBatcher {
+	private static final Logger logger = Logger.getLogger(ItemLogBatcher.class);
+
+	private static final int DEFAULT_BATCH_SIZE = 500;
+	private static final int DEFAULT_MAX_LATENCY = 2000;
+
+	/** The singleton instance. */
+	private static ItemLogBatcher instance;
+
+	private int batchSize = DEFAULT_BATCH_SIZE;
+	private long maxLatency = DEFAULT_MAX_LATENCY;
+
+	/** Events that have not been handed to the database queue yet. */
+	private List<AbstractLogItemEventCommand> pending = new ArrayList<AbstractLogItemEventCommand>();
+	/** Time when the oldest pending event was logged. */
+	private long oldestPending;
+
+	/** Events in the database queue that have not been written yet. */
+	private int backlog;
+	/** Time from logging an event until its batch was written, in ms. */
+	private final LatencyHistogram flushLatency = new LatencyHistogram();
+
+	/**
+	 * Gets the batcher instance.
+	 *
+	 * @return ItemLogBatcher
+	 */
+	public static synchronized ItemLogBatcher get() {
+		if (instance == null) {
+			instance = new ItemLogBatcher();
+		}
+		return instance;
+	}
+
+	private ItemLogBatcher() {
+		try {
+			final Configuration config = Configuration.getConfiguration();
+			batchSize = Math.max(1, config.getInt("item_log_batch_size", DEFAULT_BATCH_SIZE));
+			maxLatency = config.getInt("item_log_max_latency", DEFAULT_MAX_LATENCY);
+		} catch (final IOException e) {
+			logger.error(e, e);
+		}
+	}
+
+	/**
+	 * Starts checking every turn if pending events are due to be written.
+	 */
+	public void startFlushing() {
+		TurnNotifier.get().notifyInTurns(0, new Flusher());
+	}
+
+	/**
+	 * Adds an event.
+	 *
+	 * @param command event to log
+	 */
+	public synchronized void add(final AbstractLogItemEventCommand command) {
+		final long now = System.currentTimeMillis();
+		command.setEnqueueTime(new Timestamp(now));
+		if (pending.isEmpty()) {
+			oldestPending = now;
+		}
+		pending.add(command);
+		if ((pending.size() >= batchSize) || (now - oldestPending >= maxLatency)) {
+			flush();
+		}
+	}
+
+	/**
+	 * Hands the pending events to the database queue if the oldest of them
+	 * has waited long enough.
+	 */
+	public synchronized void flushIfDue() {
+		if (!pending.isEmpty() && (System.currentTimeMillis() - oldestPending >= maxLatency)) {
+			flush();
+		}
+	}
+
+	/**
+	 * Hands all pending events to the database queue.
+	 */
+	public synchronized void flush() {
+		if (pending.isEmpty()) {
+			return;
+		}
+		final LogItemEventBatchCommand command = new LogItemEventBatchCommand(pending, oldestPending);
+		backlog += pending.size();
+		pending = new ArrayList<AbstractLogItemEventCommand>();
+		DBCommandQueue.get().enqueue(command, DBCommandPriority.LOW);
+		Statistics.getStatistics().set("Item log backlog", backlog);
+	}
+
+	/**
+	 * Called by the database thread after a batch has been processed. The
+	 * events of a batch that could not be written are queued again one at a
+	 * time, so that a single bad row does not lose the others.
+	 *
+	 * @param commands events of the batch
+	 * @param dropped number of events that were skipped because they failed
+	 * @param oldest time when the oldest event of the batch was logged
+	 * @param success <code>true</code> if the events were written,
+	 * 	<code>false</code> if the batch was rolled back
+	 */
+	public synchronized void onBatchDone(final List<AbstractLogItemEventCommand> commands, final int dropped,
+			final long oldest, final boolean success) {
+		final int count = commands.size();
+		backlog -= count;
+		final Statistics stats = Statistics.getStatistics();
+		if (success) {
+			final long latency = System.currentTimeMillis() - oldest;
+			flushLatency.record(latency * 1000);
+			stats.add("Item log written", count - dropped);
+			stats.set("Item log flush latency", (int) latency);
+			if (dropped > 0) {
+				stats.add("Item log dropped", dropped);
+			}
+		} else if (count > 1) {
+			logger.warn("Writing " + count + " item log events failed, retrying them one at a time");
+			for (final AbstractLogItemEventCommand command : commands) {
+				backlog++;
+				DBCommandQueue.get().enqueue(new LogItemEventBatchCommand(Collections.singletonList(command), oldest),
+						DBCommandPriority.LOW);
+			}
+		} else {
+			logger.error("Dropped item log event " + commands.get(0));
+			stats.add("Item log dropped", count);
+		}
+		stats.set("Item log backlog", backlog);
+	}
+
+	/**
+	 * Gets the number of events that have not been handed to the database
+	 * queue yet.
+	 *
+	 * @return number of events
+	 */
+	public synchronized int getPendingCount() {
+		return pending.size();
+	}
+
+	/**
+	 * Gets the number of events that are waiting in the database queue.
+	 *
+	 * @return number of events
+	 */
+	public synchronized int getBacklog() {
+		return backlog;
+	}
+
+	/**
+	 * Describes the time from logging an event until it was written.
+	 *
+	 * @return latency distribution
+	 */
+	public synchronized String describeFlushLatency() {
+		return flushLatency.describe();
+	}
+
+	/**
+	 * Checks for due events every turn.
+	 */
+	private class Flusher implements TurnListener {
+		@Override
+		public void onTurnReached(final int currentTurn) {
+			flushIfDue();
+			TurnNotifier.get().notifyInTurns(0, this);
+		}
+	}
+}
@@ -0,0 +1,192 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import java.awt.geom.Rectangle2D;
+
+import games.stendhal.common.CollisionDetection;
+
+/**
+ * The connected areas of a zone. Tiles that are not blocked by the static
+ * collision or by fixed blockers of the resistance layer are labeled with the
+ * number of the area they belong to, so that it can be checked without a path
+ * search whether a destination can be reached at all.
+ * <p>
+ * The labels are calculated again when the collision data or the fixed
+ * blockers have changed since the last calculation. Moving entities are not
+ * considered, so reaching a destination can still fail even if it is in the
+ * same area.
+ */
+public final class ReachabilityMap {
+	/** Label of the tiles that do not belong to any area */
+	private static final int BLOCKED = 0;
+
+	private int width;
+	private int height;
+	/** Area labels, indexed by x + y * width */
+	private int[] labels = new int[0];
+	/** The collision data the labels were calculated for */
+	private CollisionDetection collision;
+	private int collisionVersion;
+	private int fixedVersion;
+	/** Number of calculations of the labels */
+	private int updates;
+
+	/**
+	 * Calculate the labels again, if the collision data or the fixed blockers
+	 * have changed.
+	 *
+	 * @param collision static collision of the zone
+	 * @param layer resistance layer of the zone
+	 */
+	public void update(final CollisionDetection collision, final ResistanceLayer layer) {
+		if ((collision == this.collision) && (collision.getVersion() == collisionVersion)
+				&& (layer.getFixedVersion() == fixedVersion)
+				&& (collision.getWidth() == width) && (collision.getHeight() == height)) {
+			return;
+		}
+		this.collision = collision;
+		collisionVersion = collision.getVersion();
+		fixedVersion = layer.getFixedVersion();
+		width = collision.getWidth();
+		height = collision.getHeight();
+		label(collision, layer);
+		updates++;
+	}
+
+	/**
+	 * Get the number of times the labels have been calculated.
+	 *
+	 * @return number of calculations
+	 */
+	int getUpdates() {
+		return updates;
+	}
+
+	/**
+	 * Get the area label of a tile.
+	 *
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @return area label, or 0 if the tile is blocked or outside the zone
+	 */
+	public int getArea(final int x, final int y) {
+		if ((x < 0) || (x >= width) || (y < 0) || (y >= height)) {
+			return BLOCKED;
+		}
+		return labels[x + y * width];
+	}
+
+	/**
+	 * Check if a destination area can be reachable from a start position.
+	 * The check is conservative: <code>false</code> is returned only when no
+	 * free tile of the destination is in the same area as the start position.
+	 *
+	 * @param x start x
+	 * @param y start y
+	 * @param destination destination area
+	 * @return <code>false</code> if the destination is certainly unreachable,
+	 * 	otherwise <code>true</code>
+	 */
+	public boolean mayReach(final int x, final int y, final Rectangle2D destination) {
+		final int start = getArea(x, y);
+		if ((start == BLOCKED) || destination.contains(x, y)) {
+			// Nothing is known about blocked start positions
+			return true;
+		}
+
+		final int minX = Math.max(0, (int) Math.floor(destination.getMinX()));
+		final int minY = Math.max(0, (int) Math.floor(destination.getMinY()));
+		final int maxX = Math.min(width - 1, (int) Math.ceil(destination.getMaxX()));
+		final int maxY = Math.min(height - 1, (int) Math.ceil(destination.getMaxY()));
+		for (int j = minY; j <= maxY; j++) {
+			for (int i = minX; i <= maxX; i++) {
+				if ((labels[i + j * width] == start) && destination.contains(i, j)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Label the connected areas.
+	 *
+	 * @param collision static collision of the zone
+	 * @param layer resistance layer of the zone
+	 */
+	private void label(final CollisionDetection collision, final ResistanceLayer layer) {
+		final int size = width * height;
+		labels = new int[size];
+		// Marks the tiles that are blocked
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				if (collision.collides(x, y) || layer.isFixedBlocker(x, y)) {
+					labels[x + y * width] = -1;
+				}
+			}
+		}
+
+		final int[] queue = new int[size];
+		int label = BLOCKED;
+		for (int i = 0; i < size; i++) {
+			if (labels[i] != 0) {
+				continue;
+			}
+			label++;
+			labels[i] = label;
+			int head = 0;
+			int tail = 0;
+			queue[tail++] = i;
+			while (head < tail) {
+				final int node = queue[head++];
+				final int x = node % width;
+				if (x > 0) {
+					tail = visit(queue, tail, node - 1, label);
+				}
+				if (x < width - 1) {
+					tail = visit(queue, tail, node + 1, label);
+				}
+				if (node >= width) {
+					tail = visit(queue, tail, node - width, label);
+				}
+				if (node < size - width) {
+					tail = visit(queue, tail, node + width, label);
+				}
+			}
+		}
+
+		for (int i = 0; i < size; i++) {
+			if (labels[i] < 0) {
+				labels[i] = BLOCKED;
+			}
+		}
+	}
+
+	/**
+	 * Add a neighbor tile to an area, if it is free and not labeled yet.
+	 *
+	 * @param queue tiles to be expanded
+	 * @param tail end of the queue
+	 * @param node index of the neighbor
+	 * @param label area label
+	 * @return new end of the queue
+	 */
+	private int visit(final int[] queue, final int tail, final int node, final int label) {
+		if (labels[node] != 0) {
+			return tail;
+		}
+		labels[node] = label;
+		queue[tail] = node;
+		return tail + 1;
+	}
+}
@@ -0,0 +1,488 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import java.awt.geom.Rectangle2D;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import games.stendhal.server.entity.ActiveEntity;
+import games.stendhal.server.entity.Entity;
+import games.stendhal.server.entity.mapstuff.portal.Portal;
+
+/**
+ * The resistance that the stopped entities of a zone have on entities
+ * searching a path. The layer is updated when entities are added, removed,
+ * move, stop, start moving or change their resistance, so path searches can
+ * read it directly instead of painting the entities for every search.
+ * <p>
+ * The layer stores the resistance of the entities themselves. The resistance
+ * for a searching entity is scaled by its own resistance, as in
+ * {@link Entity#getResistance(Entity)}, when the layer is read. Resistances of
+ * entities covering the same tile are combined like probabilities, so that
+ * several slightly resistant entities can add up to an impassable barrier.
+ * <p>
+ * Searches can exclude entities, such as the searching entity itself, and
+ * add entities that are not in the layer without modifying the layer.
+ * <p>
+ * Fully resistant entities that can not move by themselves, and that no
+ * search excludes, are also counted separately as fixed blockers. They change
+ * rarely, so structures derived from the static collision can use them, too.
+ * <p>
+ * The layer is not thread safe. It is guarded by the zone that owns it.
+ */
+public final class ResistanceLayer {
+	/** Resistance that corresponds to collision */
+	public static final int COLLISION = 100;
+	/** Minimum resistance that is considered a collision */
+	public static final int COLLIDE_THRESHOLD = 95;
+
+	private static final Footprint[] NONE = new Footprint[0];
+
+	private int width;
+	private int height;
+	/** Number of fully resistant entities on each tile, indexed by x + y * width */
+	private int[] blockers = new int[0];
+	/**
+	 * Resistances of the partially resistant entities on each tile, or
+	 * <code>null</code> for tiles without such entities.
+	 */
+	private int[][] partial = new int[0][];
+	/** Number of fixed blockers on each tile, indexed by x + y * width */
+	private int[] fixed = new int[0];
+	/** Footprints of the registered entities */
+	private final Map<Entity, Footprint> footprints = new IdentityHashMap<Entity, Footprint>();
+	/** Incremented on every change of the layer */
+	private int version;
+	/** Incremented on every change of the fixed blockers */
+	private int fixedVersion;
+
+	/**
+	 * The tiles covered by an entity, and its resistance.
+	 */
+	public static final class Footprint {
+		private final int minX;
+		private final int minY;
+		private final int maxX;
+		private final int maxY;
+		private final int resistance;
+		private final boolean fixedBlocker;
+
+		/**
+		 * Create a new Footprint.
+		 *
+		 * @param area area of the entity
+		 * @param resistance resistance of the entity
+		 */
+		public Footprint(final Rectangle2D area, final int resistance) {
+			this(area, resistance, false);
+		}
+
+		/**
+		 * Create a new Footprint.
+		 *
+		 * @param area area of the entity
+		 * @param resistance resistance of the entity
+		 * @param fixed <code>true</code> if the entity can not move by
+		 * 	itself
+		 */
+		Footprint(final Rectangle2D area, final int resistance, final boolean fixed) {
+			// Same rounding as used for painting resistance before the layer
+			minX = (int) Math.max(0, area.getX());
+			minY = (int) Math.max(0, area.getY());
+			maxX = (int) (area.getX() + area.getWidth());
+			maxY = (int) (area.getY() + area.getHeight());
+			this.resistance = resistance;
+			fixedBlocker = fixed && (resistance >= COLLISION);
+		}
+
+		/**
+		 * Check if the footprint covers a tile.
+		 *
+		 * @param x x coordinate
+		 * @param y y coordinate
+		 * @return <code>true</code> if the tile is covered
+		 */
+		boolean covers(final int x, final int y) {
+			return (x >= minX) && (x < maxX) && (y >= minY) && (y < maxY);
+		}
+
+		/**
+		 * Get the resistance of the entity.
+		 *
+		 * @return resistance
+		 */
+		public int getResistance() {
+			return resistance;
+		}
+
+		/**
+		 * Check if the footprint is counted as a fixed blocker.
+		 *
+		 * @return <code>true</code> if the footprint is a fixed blocker
+		 */
+		public boolean isFixedBlocker() {
+			return fixedBlocker;
+		}
+
+		private boolean sameAs(final Footprint other) {
+			return (minX == other.minX) && (minY == other.minY) && (maxX == other.maxX)
+					&& (maxY == other.maxY) && (resistance == other.resistance)
+					&& (fixedBlocker == other.fixedBlocker);
+		}
+	}
+
+	/**
+	 * Change the dimensions of the layer and paint the registered entities
+	 * again.
+	 *
+	 * @param width zone width
+	 * @param height zone height
+	 */
+	public void resize(final int width, final int height) {
+		if ((width == this.width) && (height == this.height)) {
+			return;
+		}
+		this.width = width;
+		this.height = height;
+		blockers = new int[width * height];
+		partial = new int[width * height][];
+		fixed = new int[width * height];
+		for (final Footprint footprint : footprints.values()) {
+			paint(footprint, true);
+		}
+		version++;
+		fixedVersion++;
+	}
+
+	/**
+	 * Update the state of an entity. Stopped entities with non zero
+	 * resistance are included in the layer, others are removed from it.
+	 *
+	 * @param entity entity
+	 */
+	public void update(final Entity entity) {
+		final int resistance = entity.getResistance();
+		Footprint footprint = null;
+		if (entity.stopped() && (resistance > 0)) {
+			footprint = new Footprint(entity.getArea(), resistance, isFixed(entity));
+		}
+
+		final Footprint old = footprints.get(entity);
+		if (old == null) {
+			if (footprint == null) {
+				return;
+			}
+		} else if ((footprint != null) && old.sameAs(footprint)) {
+			return;
+		}
+
+		if (old != null) {
+			paint(old, false);
+		}
+		if (footprint == null) {
+			footprints.remove(entity);
+		} else {
+			footprints.put(entity, footprint);
+			paint(footprint, true);
+		}
+		version++;
+	}
+
+	/**
+	 * Remove an entity from the layer.
+	 *
+	 * @param entity entity
+	 */
+	public void remove(final Entity entity) {
+		final Footprint old = footprints.remove(entity);
+		if (old != null) {
+			paint(old, false);
+			version++;
+		}
+	}
+
+	/**
+	 * Get the footprint an entity has in the layer.
+	 *
+	 * @param entity entity
+	 * @return footprint, or <code>null</code> if the entity is not included
+	 */
+	public Footprint getFootprint(final Entity entity) {
+		return footprints.get(entity);
+	}
+
+	/**
+	 * Get the version of the layer. The version changes whenever the layer
+	 * changes.
+	 *
+	 * @return version
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Get the version of the fixed blockers. The version changes whenever a
+	 * fixed blocker is added, removed or moved.
+	 *
+	 * @return version
+	 */
+	public int getFixedVersion() {
+		return fixedVersion;
+	}
+
+	/**
+	 * Check if a tile is covered by a fixed blocker.
+	 *
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @return <code>true</code> if the tile is blocked by a fixed blocker
+	 */
+	public boolean isFixedBlocker(final int x, final int y) {
+		return fixed[x + y * width] > 0;
+	}
+
+	/**
+	 * Check if an entity is a fixed blocker candidate. Moving entities change
+	 * their position all the time, and portals are excluded by the searches
+	 * of players targeting them.
+	 *
+	 * @param entity entity
+	 * @return <code>true</code> if the entity can not move by itself
+	 */
+	private static boolean isFixed(final Entity entity) {
+		return !(entity instanceof ActiveEntity) && !(entity instanceof Portal);
+	}
+
+	/**
+	 * Check if an area is impassable for an entity.
+	 *
+	 * @param x the x coordinate of the upper left corner of the rectangle to be checked
+	 * @param y the y coordinate of the upper left corner of the rectangle to be checked
+	 * @param w the width of the rectangle to be checked
+	 * @param h the height of the rectangle to be checked
+	 * @param scale resistance of the checked entity
+	 * @param excluded footprints in the layer that should be ignored
+	 * @param extra footprints not in the layer that should be included
+	 * @return <code>true</code> if area can not be occupied,
+	 * 	<code>false</code> otherwise
+	 */
+	public boolean collides(final double x, final double y, final double w, final double h,
+			final int scale, final Footprint[] excluded, final Footprint[] extra) {
+		return getResistance(x, y, w, h, scale, excluded, extra) > COLLIDE_THRESHOLD;
+	}
+
+	/**
+	 * Get resistance for placing an entity to an area.
+	 *
+	 * @param x the x coordinate of the upper left corner of the rectangle to be checked
+	 * @param y the y coordinate of the upper left corner of the rectangle to be checked
+	 * @param w the width of the rectangle to be checked
+	 * @param h the height of the rectangle to be checked
+	 * @param scale resistance of the checked entity
+	 * @param excluded footprints in the layer that should be ignored, or
+	 * 	<code>null</code>
+	 * @param extra footprints not in the layer that should be included, or
+	 * 	<code>null</code>
+	 * @return resistance
+	 */
+	public int getResistance(final double x, final double y, final double w, final double h,
+			final int scale, Footprint[] excluded, Footprint[] extra) {
+		if ((x < 0) || (x >= width)) {
+			return COLLISION;
+		}
+
+		if ((y < 0) || (y >= height)) {
+			return COLLISION;
+		}
+
+		if (excluded == null) {
+			excluded = NONE;
+		}
+		if (extra == null) {
+			extra = NONE;
+		}
+
+		final int startx = (int) Math.max(0, x);
+		final int endx = (int) Math.min(width, x + w);
+		final int starty = (int) Math.max(0, y);
+		final int endy = (int) Math.min(height, y + h);
+
+		final int entitySize = (int) (w * h);
+		int resistance = 0;
+		for (int k = startx; k < endx; k++) {
+			for (int i = starty; i < endy; i++) {
+				int r = getTileResistance(k, i, scale, excluded, extra);
+				if (r > COLLIDE_THRESHOLD) {
+					/*
+					 * A full collision is always collision, regardless of
+					 * the other tiles.
+					 */
+					return COLLISION;
+				} else {
+					/*
+					 * A large creature will find walking over partial
+					 * collision easier than small one. It can step over it
+					 * or just push through using force. On the other hand
+					 * a smaller entity can possibly run between the
+					 * resistant areas.
+					 */
+					resistance += r / entitySize;
+				}
+			}
+		}
+
+		return resistance;
+	}
+
+	/**
+	 * Get the combined resistance of a tile.
+	 *
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @param scale resistance of the checked entity
+	 * @param excluded footprints in the layer that should be ignored
+	 * @param extra footprints not in the layer that should be included
+	 * @return resistance
+	 */
+	private int getTileResistance(final int x, final int y, final int scale,
+			final Footprint[] excluded, final Footprint[] extra) {
+		final int index = x + y * width;
+		int full = blockers[index];
+		final int[] values = partial[index];
+
+		// Excluded partial footprints that have not been skipped yet
+		int skip = 0;
+		for (int i = 0; i < excluded.length; i++) {
+			final Footprint footprint = excluded[i];
+			if (footprint.covers(x, y)) {
+				if (footprint.resistance >= COLLISION) {
+					full--;
+				} else {
+					skip |= 1 << i;
+				}
+			}
+		}
+
+		int resistance = 0;
+		for (int i = 0; i < full; i++) {
+			resistance = combine(resistance, scale);
+		}
+		if (values != null) {
+			for (final int value : values) {
+				if (skip != 0) {
+					final int skipped = findSkipped(excluded, skip, value);
+					if (skipped != 0) {
+						skip &= ~skipped;
+						continue;
+					}
+				}
+				resistance = combine(resistance, value * scale / 100);
+			}
+		}
+		for (final Footprint footprint : extra) {
+			if (footprint.covers(x, y)) {
+				resistance = combine(resistance, footprint.resistance * scale / 100);
+			}
+		}
+
+		return resistance;
+	}
+
+	/**
+	 * Find an excluded footprint with a specific resistance.
+	 *
+	 * @param excluded excluded footprints
+	 * @param skip bit mask of the excluded footprints that can be skipped
+	 * @param value resistance
+	 * @return bit of the found footprint, or 0 if none was found
+	 */
+	private static int findSkipped(final Footprint[] excluded, final int skip, final int value) {
+		for (int i = 0; i < excluded.length; i++) {
+			final int bit = 1 << i;
+			if (((skip & bit) != 0) && (excluded[i].resistance == value)) {
+				return bit;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Add up resistances like probabilities.
+	 *
+	 * @param old resistance so far
+	 * @param resistance added resistance
+	 * @return combined resistance
+	 */
+	private static int combine(final int old, final int resistance) {
+		return 100 - ((100 - old) * (100 - resistance)) / 100;
+	}
+
+	/**
+	 * Add or remove a footprint.
+	 *
+	 * @param footprint footprint
+	 * @param add <code>true</code> to add the footprint, <code>false</code>
+	 * 	to remove it
+	 */
+	private void paint(final Footprint footprint, final boolean add) {
+		if (footprint.fixedBlocker) {
+			fixedVersion++;
+		}
+		final int endx = Math.min(width, footprint.maxX);
+		final int endy = Math.min(height, footprint.maxY);
+		for (int i = footprint.minY; i < endy; i++) {
+			for (int k = footprint.minX; k < endx; k++) {
+				final int index = k + i * width;
+				if (footprint.resistance >= COLLISION) {
+					blockers[index] += add ? 1 : -1;
+					if (footprint.fixedBlocker) {
+						fixed[index] += add ? 1 : -1;
+					}
+				} else if (add) {
+					partial[index] = append(partial[index], footprint.resistance);
+				} else {
+					partial[index] = removeValue(partial[index], footprint.resistance);
+				}
+			}
+		}
+	}
+
+	private static int[] append(final int[] values, final int value) {
+		if (values == null) {
+			return new int[] { value };
+		}
+		final int[] result = new int[values.length + 1];
+		System.arraycopy(values, 0, result, 0, values.length);
+		result[values.length] = value;
+		return result;
+	}
+
+	private static int[] removeValue(final int[] values, final int value) {
+		if (values == null) {
+			return null;
+		}
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] == value) {
+				if (values.length == 1) {
+					return null;
+				}
+				final int[] result = new int[values.length - 1];
+				System.arraycopy(values, 0, result, 0, i);
+				System.arraycopy(values, i + 1, result, i, values.length - i - 1);
+				return result;
+			}
+		}
+		return values;
+	}
+}
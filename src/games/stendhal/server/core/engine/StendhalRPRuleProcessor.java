@@ -1,5 +1,5 @@
 /***************************************************************************
- *                    (C) Copyright 2003-2020 - Marauroa                   *
+ *                    (C) Copyright 2003-2023 - Marauroa                   *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -36,9 +36,9 @@ import games.stendhal.server.core.account.AccountCreator;
 import games.stendhal.server.core.account.CharacterCreator;
 import games.stendhal.server.core.engine.db.StendhalWebsiteDAO;
 import games.stendhal.server.core.engine.dbcommand.SetOnlineStatusCommand;
+import games.stendhal.server.core.engine.profiler.TurnProfiler;
+import games.stendhal.server.core.engine.profiler.TurnProfiler.Phase;
 import games.stendhal.server.core.engine.transformer.PlayerTransformer;
-import games.stendhal.server.core.events.TurnListener;
-import games.stendhal.server.core.events.TurnNotifier;
 import games.stendhal.server.core.events.TutorialNotifier;
 import games.stendhal.server.core.rp.StendhalQuestSystem;
 import games.stendhal.server.core.rp.StendhalRPAction;
@@ -61,11 +61,9 @@ import marauroa.common.game.RPAction;
 import marauroa.common.game.RPObject;
 import marauroa.common.io.UnicodeSupportingInputStreamReader;
 import marauroa.server.db.command.DBCommand;
-import marauroa.server.db.command.DBCommandPriority;
 import marauroa.server.db.command.DBCommandQueue;
 import marauroa.server.game.Statistics;
 import marauroa.server.game.db.DAORegister;
-import marauroa.server.game.dbcommand.LogGameEventCommand;
 import marauroa.server.game.rp.IRPRuleProcessor;
 import marauroa.server.game.rp.RPServerManager;
 
@@ -79,6 +77,9 @@ public class StendhalRPRuleProcessor implements IRPRuleProcessor {
 	/** The logger instance. */
 	private static final Logger logger = Logger.getLogger(StendhalRPRuleProcessor.class);
 
+	/** Default number of turns zones stay warm, about one and a half minutes. */
+	private static final int DEFAULT_ZONE_WARM_TURNS = 300;
+
 	/** The Singleton instance. */
 	protected static StendhalRPRuleProcessor instance;
 
@@ -104,7 +105,12 @@ public class StendhalRPRuleProcessor implements IRPRuleProcessor {
 	/** a list of zone that should be removed (like vaults) */
 	private final List<StendhalRPZone> zonesToRemove = new LinkedList<StendhalRPZone>();
 
-	private LinkedList<marauroa.server.game.rp.GameEvent> gameEvents = new LinkedList<>();
+	/**
+	 * Number of turns zones keep running their logic after the last player
+	 * left, before they become dormant. Negative if zones never become
+	 * dormant.
+	 */
+	private int zoneWarmTurns = -1;
 
 
 	/**
@@ -171,7 +177,13 @@ public class StendhalRPRuleProcessor implements IRPRuleProcessor {
 			/* actions registered to be executed at end of server startup */
 			CachedActionManager.get().run();
 
+			TurnProfiler.get().startPeriodicDump();
+			ItemLogBatcher.get().startFlushing();
+			GameEventBatcher.get().startFlushing();
+			ZonePersistence.get().startFlushing();
+
 			final Configuration config = Configuration.getConfiguration();
+			zoneWarmTurns = config.getInt("zone_warm_turns", DEFAULT_ZONE_WARM_TURNS);
 			try {
 				final String[] extensionsToLoad = config.get("server_extension").split(",");
 				for (final String element : extensionsToLoad) {
@@ -282,42 +294,56 @@ public class StendhalRPRuleProcessor implements IRPRuleProcessor {
 	@Override
 	public synchronized void beginTurn() {
 		final long start = System.nanoTime();
+		final TurnProfiler profiler = TurnProfiler.get();
+		profiler.beginTurn(getTurn());
 
+		long phaseStart = profiler.start();
 		try {
 			destroyObsoleteZones();
 		} catch (final Exception e) {
 			logger.error("error in beginTurn", e);
 		}
+		profiler.endPhase(Phase.DESTROY_ZONES, phaseStart);
 
+		phaseStart = profiler.start();
 		try {
 			logNumberOfPlayersOnline();
 		} catch (final Exception e) {
 			logger.error("error in beginTurn", e);
 		}
+		profiler.endPhase(Phase.LOG_PLAYERS, phaseStart);
 
+		phaseStart = profiler.start();
 		try {
 			handleKilledEntities();
 		} catch (final Exception e) {
 			logger.error("error in beginTurn", e);
 		}
+		profiler.endPhase(Phase.KILLED_ENTITIES, phaseStart);
 
+		phaseStart = profiler.start();
 		try {
 			executePlayerLogic();
 		} catch (final Exception e) {
 			logger.error("error in beginTurn", e);
 		}
+		profiler.endPhase(Phase.PLAYER_LOGIC, phaseStart);
 
+		phaseStart = profiler.start();
 		try {
 			executeNPCsPreLogic();
 		} catch (final Exception e) {
 			logger.error("error in beginTurn", e);
 		}
+		profiler.endPhase(Phase.NPC_PRE_LOGIC, phaseStart);
 
+		phaseStart = profiler.start();
 		try {
 			handlePlayersRmTexts();
 		} catch (final Exception e) {
 			logger.error("error in beginTurn", e);
 		}
+		profiler.endPhase(Phase.REMOVE_TEXTS, phaseStart);
 		logger.debug("Begin turn: " + (System.nanoTime() - start) / 1000000.0);
 	}
 
@@ -389,20 +415,29 @@ public class StendhalRPRuleProcessor implements IRPRuleProcessor {
 	@Override
 	public synchronized void endTurn() {
 		final int currentTurn = getTurn();
+		final TurnProfiler profiler = TurnProfiler.get();
 		try {
 
+			long phaseStart = profiler.start();
 			SingletonRepository.getTurnNotifier().logic(currentTurn);
+			profiler.endPhase(Phase.TURN_NOTIFIER, phaseStart);
 
+			phaseStart = profiler.start();
 			for (final IRPZone zoneI : SingletonRepository.getRPWorld()) {
 				final StendhalRPZone zone = (StendhalRPZone) zoneI;
+				final long zoneStart = profiler.start();
+				zone.updateActivity(currentTurn, zoneWarmTurns);
 				zone.logic();
+				profiler.endZone(zone.getName(), zoneStart);
 			}
+			profiler.endPhase(Phase.ZONE_LOGIC, phaseStart);
 
 			// run registered object's logic method for this turn
 
 		} catch (final Exception e) {
 			logger.error("error in endTurn", e);
 		}
+		profiler.endTurn();
 	}
 
 	/**
@@ -794,20 +829,7 @@ public class StendhalRPRuleProcessor implements IRPRuleProcessor {
 	 * @param params parameters
 	 */
 	public void logGameEvent(String source, String event, String... params) {
-		this.gameEvents.add(new marauroa.server.game.rp.GameEvent(source, event, params));
-
-		// we collect one second of game events and write them as batch to the database
-		if (this.gameEvents.size() == 1) {
-			TurnNotifier.get().notifyInSeconds(1, new TurnListener() {
-				@Override
-				public void onTurnReached(int currentTurn) {
-					DBCommand command = new LogGameEventCommand(gameEvents);
-					gameEvents.clear();
-					DBCommandQueue.get().enqueue(command, DBCommandPriority.LOW);
-
-				}
-			});
-		}
+		GameEventBatcher.get().add(new marauroa.server.game.rp.GameEvent(source, event, params));
 	}
 
 	/**
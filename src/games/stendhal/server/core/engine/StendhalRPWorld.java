@@ -179,8 +179,12 @@ public class StendhalRPWorld extends RPWorld {
 
 	@Override
 	public void onFinish() {
+		// write pending zone changes before the zones queue their final store
+		ZonePersistence.get().flush();
 		super.onFinish();
+		ItemLogBatcher.get().flush();
 		new GameEvent("server system", "shutdown").raise();
+		GameEventBatcher.get().flush();
 		try {
 			//TODO: find a more appropriate way to do this
 			// give gameevents a chance to be processed;
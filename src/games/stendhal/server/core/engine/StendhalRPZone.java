@@ -21,6 +21,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -35,6 +36,7 @@ import org.apache.log4j.Logger;
 
 import games.stendhal.common.CRC;
 import games.stendhal.common.CollisionDetection;
+import games.stendhal.common.CollisionMap;
 import games.stendhal.common.Debug;
 import games.stendhal.common.Direction;
 import games.stendhal.common.Line;
@@ -44,8 +46,10 @@ import games.stendhal.common.grammar.Grammar;
 import games.stendhal.common.tiled.LayerDefinition;
 import games.stendhal.common.tiled.TileSetDefinition;
 import games.stendhal.server.core.config.zone.TeleportationRules;
+import games.stendhal.server.core.events.ChatListener;
 import games.stendhal.server.core.events.MovementListener;
 import games.stendhal.server.core.events.ZoneEnterExitListener;
+import games.stendhal.server.core.pathfinder.PathCache;
 import games.stendhal.server.core.rp.StendhalRPAction;
 import games.stendhal.server.core.rule.EntityManager;
 import games.stendhal.server.entity.ActiveEntity;
@@ -77,6 +81,7 @@ import marauroa.common.game.RPObject;
 import marauroa.common.game.RPSlot;
 import marauroa.common.net.OutputSerializer;
 import marauroa.common.net.message.TransferContent;
+import marauroa.server.game.Statistics;
 import marauroa.server.game.rp.MarauroaRPZone;
 
 public class StendhalRPZone extends MarauroaRPZone {
@@ -96,6 +101,18 @@ public class StendhalRPZone extends MarauroaRPZone {
 	/** the logger instance. */
 	private static final Logger logger = Logger.getLogger(StendhalRPZone.class);
 
+	/**
+	 * If enabled, all entity queries answered by the spatial index are
+	 * verified against a full scan of the zone objects.
+	 */
+	static boolean checkEntityGrid = Boolean.getBoolean("stendhal.debug.entitygrid");
+
+	/**
+	 * Clients newer than this apply a transfer of only the zone attributes to
+	 * the current zone. Older clients get the full zone data instead.
+	 */
+	private static final String ATTRIBUTE_UPDATE_CLIENT_VERSION = "1.43.5";
+
 	private final List<TransferContent> contents;
 
 	/** Data layer for zone attributes. */
@@ -130,9 +147,9 @@ public class StendhalRPZone extends MarauroaRPZone {
 	private boolean moveToAllowed = true;
 
 	/**
-	 * Objects that implement MovementListener.
+	 * Objects that implement MovementListener, indexed by their areas.
 	 */
-	private final List<MovementListener> movementListeners;
+	private final EntityGrid<MovementListener> movementListeners;
 
 
 	private final List<ZoneEnterExitListener> zoneListeners;
@@ -144,6 +161,24 @@ public class StendhalRPZone extends MarauroaRPZone {
 	 */
 	private final Set<Item> itemsOnGround;
 
+	/** Spatial index of the entities in the zone. */
+	private final EntityGrid<Entity> entityGrid;
+	/** Resistance of the stopped entities, for path searches. */
+	private final ResistanceLayer resistanceLayer;
+	/** Connected areas of the zone. */
+	private final ReachabilityMap reachabilityMap;
+	/** Recent path search results. */
+	private final PathCache pathCache;
+
+	/** Activity state, depending on players nearby. */
+	private ZoneActivity activity = ZoneActivity.ACTIVE;
+
+	/** The last turn there were players nearby. */
+	private int lastActiveTurn;
+
+	/** The first turn the logic was skipped, if the zone is dormant. */
+	private int dormantSince;
+
 	/** contains data to if a certain area is walkable. */
 	public CollisionDetection collisionMap;
 
@@ -220,9 +255,13 @@ public class StendhalRPZone extends MarauroaRPZone {
 		players = new LinkedList<Player>();
 		playersAndFriends = new LinkedList<RPEntity>();
 
-		movementListeners = new LinkedList<MovementListener>();
+		movementListeners = new EntityGrid<MovementListener>(MovementListener::getArea);
 		zoneListeners = new LinkedList<ZoneEnterExitListener>();
 
+		entityGrid = new EntityGrid<Entity>(Entity::getArea);
+		resistanceLayer = new ResistanceLayer();
+		reachabilityMap = new ReachabilityMap();
+		pathCache = new PathCache();
 		collisionMap = new CollisionDetection();
 		protectionMap = new CollisionDetection();
 		String readable = createReadableName(name);
@@ -240,6 +279,9 @@ public class StendhalRPZone extends MarauroaRPZone {
 	public StendhalRPZone(final String name, final int width, final int height) {
 		this(name);
 		collisionMap.init(width, height);
+		entityGrid.resize(width, height);
+		resistanceLayer.resize(width, height);
+		movementListeners.resize(width, height);
 	}
 
 	public StendhalRPZone(final String name, final StendhalRPZone zone) {
@@ -251,6 +293,9 @@ public class StendhalRPZone extends MarauroaRPZone {
 		contents.addAll(zone.contents);
 		collisionMap = zone.collisionMap;
 		protectionMap  = zone.protectionMap;
+		entityGrid.resize(getWidth(), getHeight());
+		resistanceLayer.resize(getWidth(), getHeight());
+		movementListeners.resize(getWidth(), getHeight());
 
 		this.zoneid = new ID(name);
 	}
@@ -437,22 +482,32 @@ public class StendhalRPZone extends MarauroaRPZone {
 	 * @param byteContents
 	 */
 	private void addToContent(final String name, final byte[] byteContents) {
+		final TransferContent content = new TransferContent();
+		content.name = name;
+		content.cacheable = true;
+		content.data = byteContents;
+		content.timestamp = CRC.cmpCRC(content.data);
+		logger.debug("Layer timestamp: " + Integer.toString(content.timestamp));
+
+		addContent(content);
+	}
+
+	/**
+	 * Adds already encoded content to the contents list. Content by the same
+	 * name is replaced.
+	 *
+	 * @param content content to be sent to the client
+	 */
+	public void addContent(final TransferContent content) {
 		// Remove old data by the same name if it exists
 		Iterator<TransferContent> it = contents.iterator();
 		while (it.hasNext()) {
-			if (name.equals(it.next().name)) {
-				logger.info("Replacing old '" + name + "' layer.");
+			if (content.name.equals(it.next().name)) {
+				logger.info("Replacing old '" + content.name + "' layer.");
 				it.remove();
 			}
 		}
 
-		final TransferContent content = new TransferContent();
-		content.name = name;
-		content.cacheable = true;
-		logger.debug("Layer timestamp: " + Integer.toString(content.timestamp));
-		content.data = byteContents;
-		content.timestamp = CRC.cmpCRC(content.data);
-
 		contents.add(content);
 	}
 
@@ -474,6 +529,44 @@ public class StendhalRPZone extends MarauroaRPZone {
 		}
 	}
 
+	/**
+	 * Send changed zone attributes to players on the zone. This is meant for
+	 * changes that do not touch the map layers, such as weather and lighting
+	 * changes. Clients that can apply the attributes to the current zone get
+	 * only the data layer, others get the full zone data.
+	 */
+	public void notifyAttributesChanged() {
+		if (attributes == null) {
+			notifyOnlinePlayers();
+			return;
+		}
+		if (!getPlayers().isEmpty()) {
+			List<TransferContent> newContents = getContents();
+			List<TransferContent> attributeContents = Collections.singletonList(newContents.get(0));
+			int layerSize = 0;
+			for (TransferContent content : newContents.subList(1, newContents.size())) {
+				layerSize += content.data.length;
+			}
+			// Clients that have the layers cached decline them anyway, so
+			// this is an upper bound of the bytes actually saved
+			int notOffered = 0;
+			for (Player player : getPlayers()) {
+				if (player.isDisconnected() || !player.isClientNewerThan("0.97")) {
+					continue;
+				}
+				if (player.isClientNewerThan(ATTRIBUTE_UPDATE_CLIENT_VERSION)) {
+					StendhalRPAction.transferContent(player, attributeContents);
+					notOffered += layerSize;
+				} else {
+					StendhalRPAction.transferContent(player, newContents);
+				}
+			}
+			if (notOffered > 0) {
+				Statistics.getStatistics().add("Zone data bytes not offered", notOffered);
+			}
+		}
+	}
+
 	/**
 	 * Set zone attributes that should be passed to the client.
 	 *
@@ -490,6 +583,29 @@ public class StendhalRPZone extends MarauroaRPZone {
 			throws IOException {
 		addToContent(name, collisionLayer.encode());
 		collisionMap.setCollisionData(collisionLayer);
+		onSizeChanged();
+	}
+
+	/**
+	 * Adds an already encoded collision layer.
+	 *
+	 * @param content encoded collision layer
+	 * @param map collision map built from the layer. It is used by the zone
+	 * 	directly, not copied
+	 */
+	public void addCollisionLayer(final TransferContent content, final CollisionMap map) {
+		addContent(content);
+		collisionMap.setCollisionMap(map);
+		onSizeChanged();
+	}
+
+	/**
+	 * Resizes the structures indexed by position to the size of the zone.
+	 */
+	private void onSizeChanged() {
+		entityGrid.resize(getWidth(), getHeight());
+		resistanceLayer.resize(getWidth(), getHeight());
+		movementListeners.resize(getWidth(), getHeight());
 	}
 
 	public void addProtectionLayer(final String name, final LayerDefinition protectionLayer)
@@ -498,6 +614,18 @@ public class StendhalRPZone extends MarauroaRPZone {
 		protectionMap.setCollisionData(protectionLayer);
 	}
 
+	/**
+	 * Adds an already encoded protection layer.
+	 *
+	 * @param content encoded protection layer
+	 * @param map collision map built from the layer. It is used by the zone
+	 * 	directly, not copied
+	 */
+	public void addProtectionLayer(final TransferContent content, final CollisionMap map) {
+		addContent(content);
+		protectionMap.setCollisionMap(map);
+	}
+
 	public void setPosition(final int level, final int x, final int y) {
 		this.interior = false;
 		this.level = level;
@@ -925,6 +1053,9 @@ public class StendhalRPZone extends MarauroaRPZone {
 		 */
 		assignRPObjectID(object);
 		super.add(object);
+		if (object instanceof Entity) {
+			entityGrid.add((Entity) object);
+		}
 
 		notifyAdded(object);
 
@@ -932,6 +1063,9 @@ public class StendhalRPZone extends MarauroaRPZone {
 		// needs proper zone information
 		if (object instanceof Entity) {
 			((Entity) object).onAdded(this);
+			// Listeners may have moved the entity before it knew its zone
+			entityGrid.update((Entity) object);
+			resistanceLayer.update((Entity) object);
 		}
 
 		if (object instanceof Item) {
@@ -959,6 +1093,7 @@ public class StendhalRPZone extends MarauroaRPZone {
 			 * achievement appear when the player enters the last missing zone.
 			 */
 			SingletonRepository.getAchievementNotifier().onZoneEnter(playerObject);
+			wakeUpNearbyZones();
 		} else if (object instanceof AttackableCreature) {
 			playersAndFriends.add((AttackableCreature) object);
 		} else if (object instanceof Sheep) {
@@ -991,6 +1126,7 @@ public class StendhalRPZone extends MarauroaRPZone {
 	public void addToPlayersAndFriends(RPEntity object) {
 		if (!playersAndFriends.contains(object)) {
 			playersAndFriends.add(object);
+			wakeUp();
 		}
 	}
 
@@ -1046,6 +1182,10 @@ public class StendhalRPZone extends MarauroaRPZone {
 		}
 
 		super.remove(id);
+		if (object instanceof Entity) {
+			entityGrid.remove((Entity) object);
+			resistanceLayer.remove((Entity) object);
+		}
 
 		if (object instanceof Item) {
 			final Item item = (Item) object;
@@ -1200,6 +1340,42 @@ public class StendhalRPZone extends MarauroaRPZone {
 	}
 
 	private Entity getCollidingObject(final Entity entity, final Rectangle2D area) {
+		final Entity colliding = findCollidingObject(entity, area);
+		if (checkEntityGrid) {
+			final Entity expected = scanCollidingObject(entity, area);
+			if ((colliding == null) != (expected == null)) {
+				logger.error("Entity grid of " + getName() + " reported collision with " + colliding
+						+ " for " + entity + " at " + area + ", but the full scan found " + expected);
+			}
+		}
+		return colliding;
+	}
+
+	/**
+	 * Finds the first added entity that intersects an area and is an obstacle
+	 * for another entity, using the spatial index.
+	 */
+	private Entity findCollidingObject(final Entity entity, final Rectangle2D area) {
+		final List<Entity> candidates = entityGrid.getCandidates(area);
+		try {
+			for (final Entity other : candidates) {
+				if ((other != entity)
+						&& area.intersects(other.getX(), other.getY(), other.getWidth(), other.getHeight())
+						&& other.isObstacle(entity)) {
+					return other;
+				}
+			}
+			return null;
+		} finally {
+			entityGrid.release(candidates);
+		}
+	}
+
+	/**
+	 * Finds a blocking entity by checking all objects of the zone. Used for
+	 * verifying the spatial index.
+	 */
+	private Entity scanCollidingObject(final Entity entity, final Rectangle2D area) {
 		for (final RPObject other : objects.values()) {
 			// Ignore same object
 			if (entity != other) {
@@ -1218,6 +1394,63 @@ public class StendhalRPZone extends MarauroaRPZone {
 		return null;
 	}
 
+	/**
+	 * Notification that the position or size of an entity changed. Keeps the
+	 * spatial indexes up to date.
+	 *
+	 * @param entity the changed entity
+	 */
+	public void onEntityMoved(final Entity entity) {
+		entityGrid.update(entity);
+		resistanceLayer.update(entity);
+		if (entity instanceof MovementListener) {
+			movementListeners.update((MovementListener) entity);
+		}
+	}
+
+	/**
+	 * Notification that an entity stopped, started moving or changed its
+	 * resistance. Keeps the resistance layer up to date.
+	 *
+	 * @param entity the changed entity
+	 */
+	public void onEntityResistanceChanged(final Entity entity) {
+		resistanceLayer.update(entity);
+	}
+
+	/**
+	 * Get the resistance of the stopped entities in the zone. Path searches
+	 * use it instead of checking all entities of the zone.
+	 *
+	 * @return resistance layer
+	 */
+	public ResistanceLayer getResistanceLayer() {
+		// The collision map can be initialized directly, without the zone
+		// knowing. Resizing is a no-op if the size has not changed.
+		resistanceLayer.resize(getWidth(), getHeight());
+		return resistanceLayer;
+	}
+
+	/**
+	 * Get the connected areas of the zone. The areas are calculated again if
+	 * the collision or the fixed blockers have changed.
+	 *
+	 * @return reachability map
+	 */
+	public ReachabilityMap getReachabilityMap() {
+		reachabilityMap.update(collisionMap, getResistanceLayer());
+		return reachabilityMap;
+	}
+
+	/**
+	 * Get the cache for path searches in the zone.
+	 *
+	 * @return path cache
+	 */
+	public PathCache getPathCache() {
+		return pathCache;
+	}
+
 	/**
 	 * Finds an Entity at the given coordinates.
 	 *
@@ -1226,15 +1459,11 @@ public class StendhalRPZone extends MarauroaRPZone {
 	 * @return the first entity found if there are more than one or null if there are none
 	 */
 	public synchronized Entity getEntityAt(final double x, final double y) {
-		for (final RPObject other : objects.values()) {
-			final Entity otherEntity = (Entity) other;
-
-			final Rectangle2D rect = otherEntity.getArea();
-			if (rect.contains(x, y)) {
-				return otherEntity;
-			}
+		final List<Entity> entities = getEntitiesAt(x, y);
+		if (entities.isEmpty()) {
+			return null;
 		}
-		return null;
+		return entities.get(0);
 	}
 
 	/**
@@ -1244,28 +1473,72 @@ public class StendhalRPZone extends MarauroaRPZone {
 	 * @return list of entities at (x, y)
 	 */
 	public synchronized List<Entity> getEntitiesAt(final double x, final double y) {
-		List<Entity> entities = new LinkedList<Entity>();
+		return getEntitiesAt(x, y, Entity.class);
+	}
 
-		for (final RPObject other : objects.values()) {
-			final Entity entity = (Entity) other;
 
-			final Rectangle2D rect = entity.getArea();
-			if (rect.contains(x, y)) {
-				entities.add(entity);
+	/**
+	 * Finds all entities at the given coordinates.
+	 * @param x coordinate
+	 * @param y coordinate
+	 * @return list of entities at (x, y)
+	 */
+	public synchronized <T extends Entity> List<T> getEntitiesAt(final double x, final double y, Class<T> clazz) {
+		List<T> entities = new LinkedList<T>();
+		final List<Entity> candidates = entityGrid.getCandidates(x, y);
+		for (final Entity entity : candidates) {
+			if (clazz.isInstance(entity) && entity.getArea().contains(x, y)) {
+				entities.add(clazz.cast(entity));
+			}
+		}
+		entityGrid.release(candidates);
+
+		if (checkEntityGrid) {
+			final List<T> expected = scanEntitiesAt(x, y, clazz);
+			if ((expected.size() != entities.size()) || !entities.containsAll(expected)) {
+				logger.error("Entity grid of " + getName() + " found " + entities + " at (" + x + ","
+						+ y + "), but the full scan found " + expected);
 			}
 		}
 
 		return entities;
 	}
 
+	/**
+	 * Finds all entities whose area intersects an area.
+	 *
+	 * @param area checked area
+	 * @return list of entities intersecting the area
+	 */
+	public synchronized List<Entity> getEntitiesIntersecting(final Rectangle2D area) {
+		return getEntitiesIntersecting(area, Entity.class);
+	}
 
 	/**
-	 * Finds all entities at the given coordinates.
-	 * @param x coordinate
-	 * @param y coordinate
-	 * @return list of entities at (x, y)
+	 * Finds all entities of a type whose area intersects an area.
+	 *
+	 * @param area checked area
+	 * @param clazz type of the entities
+	 * @return list of entities intersecting the area
+	 */
+	public synchronized <T extends Entity> List<T> getEntitiesIntersecting(final Rectangle2D area, final Class<T> clazz) {
+		final List<T> entities = new ArrayList<T>();
+		final List<Entity> candidates = entityGrid.getCandidates(area);
+		for (final Entity entity : candidates) {
+			if (clazz.isInstance(entity)
+					&& area.intersects(entity.getX(), entity.getY(), entity.getWidth(), entity.getHeight())) {
+				entities.add(clazz.cast(entity));
+			}
+		}
+		entityGrid.release(candidates);
+		return entities;
+	}
+
+	/**
+	 * Finds all entities at the given coordinates by checking all objects
+	 * of the zone. Used for verifying the spatial index.
 	 */
-	public synchronized <T extends Entity> List<T> getEntitiesAt(final double x, final double y, Class<T> clazz) {
+	private <T extends Entity> List<T> scanEntitiesAt(final double x, final double y, Class<T> clazz) {
 		List<T> entities = new LinkedList<T>();
 
 		for (final RPObject other : objects.values()) {
@@ -1350,11 +1623,20 @@ public class StendhalRPZone extends MarauroaRPZone {
 
 		eArea = entity.getArea(newX, newY);
 
-		for (final MovementListener l : movementListeners) {
-			Rectangle2D area = l.getArea();
-			if (area.intersects(eArea)) {
-				l.onEntered(entity, this, newX, newY);
+		final List<MovementListener> candidates = movementListeners.getCandidates(eArea);
+		try {
+			for (final MovementListener l : candidates) {
+				if (!movementListeners.contains(l)) {
+					// removed by an earlier listener
+					continue;
+				}
+				Rectangle2D area = l.getArea();
+				if (area.intersects(eArea)) {
+					l.onEntered(entity, this, newX, newY);
+				}
 			}
+		} finally {
+			movementListeners.release(candidates);
 		}
 	}
 
@@ -1373,11 +1655,19 @@ public class StendhalRPZone extends MarauroaRPZone {
 
 		eArea = entity.getArea(oldX, oldY);
 
-		for (final MovementListener l : movementListeners) {
-			Rectangle2D area = l.getArea();
-			if (area.intersects(eArea)) {
-				l.onExited(entity, this, oldX, oldY);
+		final List<MovementListener> candidates = movementListeners.getCandidates(eArea);
+		try {
+			for (final MovementListener l : candidates) {
+				if (!movementListeners.contains(l)) {
+					continue;
+				}
+				Rectangle2D area = l.getArea();
+				if (area.intersects(eArea)) {
+					l.onExited(entity, this, oldX, oldY);
+				}
 			}
+		} finally {
+			movementListeners.release(candidates);
 		}
 	}
 
@@ -1405,23 +1695,31 @@ public class StendhalRPZone extends MarauroaRPZone {
 		oeArea = entity.getArea(oldX, oldY);
 		neArea = entity.getArea(newX, newY);
 
-		for (final MovementListener l : movementListeners) {
-			Rectangle2D area = l.getArea();
+		final List<MovementListener> candidates = movementListeners.getCandidates(oeArea, neArea);
+		try {
+			for (final MovementListener l : candidates) {
+				if (!movementListeners.contains(l)) {
+					continue;
+				}
+				Rectangle2D area = l.getArea();
 
-			oldIn = area.intersects(oeArea);
-			newIn = area.intersects(neArea);
+				oldIn = area.intersects(oeArea);
+				newIn = area.intersects(neArea);
 
-			if (!oldIn && newIn) {
-				l.onEntered(entity, this, newX, newY);
-			}
+				if (!oldIn && newIn) {
+					l.onEntered(entity, this, newX, newY);
+				}
 
-			if (oldIn && newIn) {
-				l.onMoved(entity, this, oldX, oldY, newX, newY);
-			}
+				if (oldIn && newIn) {
+					l.onMoved(entity, this, oldX, oldY, newX, newY);
+				}
 
-			if (oldIn && !newIn) {
-				l.onExited(entity, this, oldX, oldY);
+				if (oldIn && !newIn) {
+					l.onExited(entity, this, oldX, oldY);
+				}
 			}
+		} finally {
+			movementListeners.release(candidates);
 		}
 	}
 
@@ -1432,15 +1730,47 @@ public class StendhalRPZone extends MarauroaRPZone {
 
 		neArea = entity.getArea(newX, newY);
 
-		for (final MovementListener l : movementListeners) {
-			Rectangle2D area = l.getArea();
+		final List<MovementListener> candidates = movementListeners.getCandidates(neArea);
+		try {
+			for (final MovementListener l : candidates) {
+				if (!movementListeners.contains(l)) {
+					continue;
+				}
+				Rectangle2D area = l.getArea();
+
+				newIn = area.intersects(neArea);
 
-			newIn = area.intersects(neArea);
+				if (newIn) {
+					l.beforeMove(entity, this, oldX, oldY, newX, newY);
+				}
 
-			if (newIn) {
-				l.beforeMove(entity, this, oldX, oldY, newX, newY);
 			}
+		} finally {
+			movementListeners.release(candidates);
+		}
+	}
+
+	/**
+	 * Notify chat listeners near a player that the player said something.
+	 *
+	 * @param player
+	 *            The player who spoke.
+	 */
+	public void notifyChat(final Player player) {
+		final Rectangle2D pArea = player.getArea();
 
+		final List<MovementListener> candidates = movementListeners.getCandidates(pArea);
+		try {
+			for (final MovementListener l : candidates) {
+				if (!(l instanceof ChatListener) || !movementListeners.contains(l)) {
+					continue;
+				}
+				if (l.getArea().intersects(pArea)) {
+					((ChatListener) l).onChat(player, this);
+				}
+			}
+		} finally {
+			movementListeners.release(candidates);
 		}
 	}
 
@@ -1455,8 +1785,11 @@ public class StendhalRPZone extends MarauroaRPZone {
 
 
 	/**
-	 * Register a movement listener for notification. Eventually create a
-	 * macro-block hash to cut down on listeners to check.
+	 * Register a movement listener for notification. The listener is only
+	 * consulted for movement near its current area. Listeners that are
+	 * entities are kept up to date automatically when they move or change
+	 * size; other listeners must call {@link #updateMovementListener} if
+	 * their area changes.
 	 *
 	 * @param listener
 	 *            A movement listener to register.
@@ -1465,6 +1798,17 @@ public class StendhalRPZone extends MarauroaRPZone {
 		movementListeners.add(listener);
 	}
 
+	/**
+	 * Notify the zone that the area of a registered movement listener has
+	 * changed. Listeners that are not registered are ignored.
+	 *
+	 * @param listener
+	 *            A registered movement listener.
+	 */
+	public void updateMovementListener(final MovementListener listener) {
+		movementListeners.update(listener);
+	}
+
 	/**
 	 * Unregister a movement listener from notification.
 	 *
@@ -1560,13 +1904,21 @@ public class StendhalRPZone extends MarauroaRPZone {
 	}
 
 	public void logic() {
+		final boolean dormant = activity == ZoneActivity.DORMANT;
 		for (final NPC npc : npcs) {
+			if (dormant && npc.isIdleWithoutPlayers()) {
+				continue;
+			}
 			try {
 				npc.logic();
 			} catch (final Exception e) {
 				logger.error("Error in npc logic for zone " + getID().getID(), e);
 			}
 		}
+		if (dormant) {
+			// portals only react to players
+			return;
+		}
 		for (final Portal portal : portals) {
 			try {
 				portal.logic();
@@ -1576,6 +1928,112 @@ public class StendhalRPZone extends MarauroaRPZone {
 		}
 	}
 
+	/**
+	 * Gets the activity state of the zone.
+	 *
+	 * @return activity state
+	 */
+	public ZoneActivity getActivity() {
+		return activity;
+	}
+
+	/**
+	 * Updates the activity state of the zone. Called once per turn before
+	 * <code>logic()</code>.
+	 * <p>
+	 * A zone is active while there are players or their friends in it or in
+	 * one of its associated zones. After the last one left it stays warm for
+	 * <code>warmTurns</code> turns, and then becomes dormant.
+	 *
+	 * @param turn current turn
+	 * @param warmTurns number of turns the zone stays warm, or a negative
+	 * 	number if zones should never become dormant
+	 */
+	public void updateActivity(final int turn, final int warmTurns) {
+		if (hasPlayersNearby()) {
+			lastActiveTurn = turn;
+			wakeUp(turn);
+		} else if (activity == ZoneActivity.ACTIVE) {
+			activity = ZoneActivity.WARM;
+		} else if ((activity == ZoneActivity.WARM) && (warmTurns >= 0)
+				&& (turn - lastActiveTurn > warmTurns)) {
+			activity = ZoneActivity.DORMANT;
+			dormantSince = turn;
+		}
+	}
+
+	/**
+	 * Checks if there are players or their friends in the zone or in one of
+	 * its associated zones.
+	 *
+	 * @return <code>true</code> if there are players nearby
+	 */
+	private boolean hasPlayersNearby() {
+		if (!playersAndFriends.isEmpty()) {
+			return true;
+		}
+		if (associatedZones != null) {
+			final StendhalRPWorld world = SingletonRepository.getRPWorld();
+			for (final String name : getAssociatedZonesList()) {
+				final StendhalRPZone zone = world.getZone(name.trim());
+				if ((zone != null) && !zone.playersAndFriends.isEmpty()) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Makes this zone and its associated zones active.
+	 */
+	private void wakeUpNearbyZones() {
+		wakeUp();
+		if (associatedZones != null) {
+			final StendhalRPWorld world = SingletonRepository.getRPWorld();
+			for (final String name : getAssociatedZonesList()) {
+				final StendhalRPZone zone = world.getZone(name.trim());
+				if (zone != null) {
+					zone.wakeUp();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Makes the zone active, catching up with the skipped logic if it was
+	 * dormant.
+	 */
+	private void wakeUp() {
+		if (activity == ZoneActivity.DORMANT) {
+			wakeUp(SingletonRepository.getRuleProcessor().getTurn());
+		} else {
+			activity = ZoneActivity.ACTIVE;
+		}
+	}
+
+	/**
+	 * Makes the zone active, catching up with the skipped logic if it was
+	 * dormant.
+	 *
+	 * @param turn current turn. The logic of this turn has not run yet.
+	 */
+	private void wakeUp(final int turn) {
+		if (activity == ZoneActivity.DORMANT) {
+			// Copy the list, in case an NPC leaves the zone while catching up
+			for (final NPC npc : new ArrayList<NPC>(npcs)) {
+				if (npc.isIdleWithoutPlayers()) {
+					try {
+						npc.onSkippedTurns(dormantSince, turn - 1);
+					} catch (final Exception e) {
+						logger.error("Error catching up npc logic for zone " + getID().getID(), e);
+					}
+				}
+			}
+		}
+		activity = ZoneActivity.ACTIVE;
+	}
+
 	/**
 	 * Return whether the zone is completely empty.
 	 * @return true if there are no objects in zone
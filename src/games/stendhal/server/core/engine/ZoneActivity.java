@@ -0,0 +1,31 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+/**
+ * Activity state of a zone, depending on players nearby.
+ */
+public enum ZoneActivity {
+	/** There are players in the zone or in one of its associated zones. */
+	ACTIVE,
+	/**
+	 * The players left recently. The zone logic still runs, so that
+	 * creatures stop attacking and NPCs finish what they were doing.
+	 */
+	WARM,
+	/**
+	 * The players left a while ago. The logic of NPCs that are idle without
+	 * players is skipped, and caught up with when the zone becomes active
+	 * again.
+	 */
+	DORMANT
+}
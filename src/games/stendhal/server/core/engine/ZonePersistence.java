@@ -0,0 +1,286 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+import games.stendhal.server.core.engine.dbcommand.StoreZonesCommand;
+import games.stendhal.server.core.events.TurnListener;
+import games.stendhal.server.core.events.TurnNotifier;
+import marauroa.common.Configuration;
+import marauroa.common.game.IRPZone;
+import marauroa.common.game.RPObject;
+import marauroa.server.db.DBTransaction;
+import marauroa.server.db.TransactionPool;
+import marauroa.server.db.command.DBCommandPriority;
+import marauroa.server.db.command.DBCommandQueue;
+import marauroa.server.game.Statistics;
+
+/**
+ * Coalesces the database writes of zones with changed storable objects.
+ * <p>
+ * Entities that change persistent state mark themselves dirty instead of
+ * storing their zone right away. A zone is written when its oldest change is
+ * <code>zone_store_delay</code> milliseconds old, so that a busy chest or a
+ * row of rented signs causes one write per window instead of one per change.
+ * All zones due at the same time are written in one transaction.
+ * <p>
+ * The zone table keeps all storable objects of a zone in one record, so a
+ * write contains every storable object of the zone. Only those are copied
+ * for the write, though, not the players and creatures of the zone. The
+ * ratio of written objects to changed objects is reported as the write
+ * amplification.
+ */
+public final class ZonePersistence {
+	private static final Logger logger = Logger.getLogger(ZonePersistence.class);
+
+	private static final int DEFAULT_DELAY = 2000;
+
+	/** The singleton instance. */
+	private static ZonePersistence instance;
+
+	private final long delay;
+
+	/** Zones with unsaved changes, in the order they were changed. */
+	private final Map<IRPZone, DirtyZone> dirtyZones = new LinkedHashMap<IRPZone, DirtyZone>();
+
+	/** Number of changes reported since the statistics were last updated. */
+	private long storeRequests;
+	/** Number of distinct changed objects in the written zones. */
+	private long changedObjects;
+	/** Number of written zones. */
+	private long zoneWrites;
+	/** Number of objects serialized for the written zones. */
+	private long writtenObjects;
+	/** Totals for the log. */
+	private long totalChangedObjects;
+	private long totalWrittenObjects;
+
+	/**
+	 * Gets the persistence coordinator instance.
+	 *
+	 * @return ZonePersistence
+	 */
+	public static synchronized ZonePersistence get() {
+		if (instance == null) {
+			int delay = DEFAULT_DELAY;
+			try {
+				delay = Configuration.getConfiguration().getInt("zone_store_delay", DEFAULT_DELAY);
+			} catch (final IOException e) {
+				logger.error(e, e);
+			}
+			instance = new ZonePersistence(delay);
+		}
+		return instance;
+	}
+
+	/**
+	 * Creates a new ZonePersistence.
+	 *
+	 * @param delay time in milliseconds that changes are collected before
+	 * 	the zone is written
+	 */
+	ZonePersistence(final long delay) {
+		this.delay = Math.max(0, delay);
+	}
+
+	/**
+	 * Starts checking every turn if changed zones are due to be written.
+	 */
+	public void startFlushing() {
+		TurnNotifier.get().notifyInTurns(0, new Flusher());
+	}
+
+	/**
+	 * Marks a storable object as changed, so that its zone gets written.
+	 * Objects that have been removed from the zone can be marked too, to get
+	 * the removal written.
+	 *
+	 * @param zone zone containing the object
+	 * @param object changed object
+	 */
+	public void markDirty(final IRPZone zone, final RPObject object) {
+		markDirty(zone, object, System.currentTimeMillis());
+	}
+
+	/**
+	 * Marks a storable object as changed at a given time.
+	 *
+	 * @param zone zone containing the object
+	 * @param object changed object
+	 * @param now current time in milliseconds
+	 */
+	synchronized void markDirty(final IRPZone zone, final RPObject object, final long now) {
+		if (zone == null) {
+			return;
+		}
+		DirtyZone dirty = dirtyZones.get(zone);
+		if (dirty == null) {
+			dirty = new DirtyZone(now);
+			dirtyZones.put(zone, dirty);
+		}
+		dirty.objects.add(object);
+		storeRequests++;
+	}
+
+	/**
+	 * Checks if a zone has unsaved changes.
+	 *
+	 * @param zone zone
+	 * @return <code>true</code> if the zone is waiting to be written
+	 */
+	public synchronized boolean isDirty(final IRPZone zone) {
+		return dirtyZones.containsKey(zone);
+	}
+
+	/**
+	 * Hands the zones whose changes have waited long enough to the database
+	 * queue.
+	 */
+	public void flushIfDue() {
+		final Map<IRPZone, List<RPObject>> zones = takeZones(System.currentTimeMillis(), false);
+		if (!zones.isEmpty()) {
+			DBCommandQueue.get().enqueue(new StoreZonesCommand(zones), DBCommandPriority.CRITICAL);
+		}
+		updateStatistics();
+	}
+
+	/**
+	 * Writes all changed zones right away, without going through the
+	 * database queue. Used on server shutdown.
+	 */
+	public void flush() {
+		final Map<IRPZone, List<RPObject>> zones = takeZones(System.currentTimeMillis(), true);
+		if (!zones.isEmpty()) {
+			final DBTransaction transaction = TransactionPool.get().beginWork();
+			try {
+				new StoreZonesCommand(zones).execute(transaction);
+				TransactionPool.get().commit(transaction);
+			} catch (final SQLException | IOException e) {
+				logger.error("Failed to store " + zones.size() + " zones", e);
+				TransactionPool.get().rollback(transaction);
+			}
+		}
+		updateStatistics();
+		logger.info("Wrote " + totalWrittenObjects + " objects for " + totalChangedObjects
+				+ " changed objects, write amplification " + getWriteAmplification());
+	}
+
+	/**
+	 * Takes the changed zones that are due, and copies their storable
+	 * objects.
+	 *
+	 * @param now current time in milliseconds
+	 * @param all <code>true</code> if all changed zones should be taken
+	 * 	regardless of the time of their changes
+	 * @return zones with copies of their storable objects
+	 */
+	synchronized Map<IRPZone, List<RPObject>> takeZones(final long now, final boolean all) {
+		final Map<IRPZone, List<RPObject>> zones = new LinkedHashMap<IRPZone, List<RPObject>>();
+		final Iterator<Map.Entry<IRPZone, DirtyZone>> it = dirtyZones.entrySet().iterator();
+		while (it.hasNext()) {
+			final Map.Entry<IRPZone, DirtyZone> entry = it.next();
+			final DirtyZone dirty = entry.getValue();
+			if (!all && (now - dirty.since < delay)) {
+				// zones are in the order of their first change
+				break;
+			}
+			it.remove();
+
+			final List<RPObject> objects = new ArrayList<RPObject>();
+			for (final RPObject object : entry.getKey()) {
+				if (object.isStorable()) {
+					objects.add((RPObject) object.clone());
+				}
+			}
+			zones.put(entry.getKey(), objects);
+			changedObjects += dirty.objects.size();
+			totalChangedObjects += dirty.objects.size();
+			writtenObjects += objects.size();
+			totalWrittenObjects += objects.size();
+			zoneWrites++;
+		}
+		return zones;
+	}
+
+	/**
+	 * Gets the number of written objects per changed object since the
+	 * server start.
+	 *
+	 * @return write amplification, or 0 if nothing has been written
+	 */
+	public synchronized double getWriteAmplification() {
+		if (totalChangedObjects == 0) {
+			return 0;
+		}
+		return (double) totalWrittenObjects / totalChangedObjects;
+	}
+
+	/**
+	 * Publishes the counters to the server statistics.
+	 */
+	private synchronized void updateStatistics() {
+		if (storeRequests == 0 && zoneWrites == 0) {
+			return;
+		}
+		final Statistics stats = Statistics.getStatistics();
+		stats.add("Zone store requests", (int) storeRequests);
+		stats.add("Zone stores", (int) zoneWrites);
+		stats.add("Zone store changed objects", (int) changedObjects);
+		stats.add("Zone store written objects", (int) writtenObjects);
+		storeRequests = 0;
+		zoneWrites = 0;
+		changedObjects = 0;
+		writtenObjects = 0;
+	}
+
+	/**
+	 * Changes of a zone waiting to be written.
+	 */
+	private static class DirtyZone {
+		/** Time of the first change. */
+		final long since;
+		/** Changed objects. */
+		final Set<RPObject> objects = Collections.newSetFromMap(new IdentityHashMap<RPObject, Boolean>());
+
+		/**
+		 * Create a new DirtyZone.
+		 *
+		 * @param since time of the first change
+		 */
+		DirtyZone(final long since) {
+			this.since = since;
+		}
+	}
+
+	/**
+	 * Checks for due zones every turn.
+	 */
+	private class Flusher implements TurnListener {
+		@Override
+		public void onTurnReached(final int currentTurn) {
+			flushIfDue();
+			TurnNotifier.get().notifyInTurns(0, this);
+		}
+	}
+}
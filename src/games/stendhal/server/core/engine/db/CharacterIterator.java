@@ -1,5 +1,5 @@
 /***************************************************************************
- *                    (C) Copyright 2003-2013 - Stendhal                   *
+ *                    (C) Copyright 2003-2023 - Stendhal                   *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -63,7 +63,19 @@ public class CharacterIterator implements Iterator<RPObject>, Iterable<RPObject>
 	public RPObject next() {
 		try {
 			final int objectid = result.getInt("object_id");
-			return DAORegister.get().get(RPObjectDAO.class).loadRPObject(transaction, objectid, transform);
+			RPObject object = DAORegister.get().get(RPObjectDAO.class).loadRPObject(transaction, objectid, false);
+			if (object == null) {
+				return null;
+			}
+
+			// the keyed slots are not part of the serialized object
+			if (object.has("name")) {
+				DAORegister.get().get(StendhalCharacterStateDAO.class).restoreState(transaction, object.get("name"), object);
+			}
+			if (transform) {
+				object = DAORegister.get().getRPObjectFactory().transform(object);
+			}
+			return object;
 		} catch (final Exception e) {
 			logger.warn(e, e);
 			return null;
@@ -1,5 +1,5 @@
 /***************************************************************************
- *                    (C) Copyright 2003-2020 - Stendhal                   *
+ *                    (C) Copyright 2003-2023 - Stendhal                   *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -14,6 +14,7 @@ package games.stendhal.server.core.engine.db;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.Map;
 
 import org.apache.log4j.Logger;
 
@@ -25,7 +26,8 @@ import marauroa.server.game.db.DAORegister;
 
 /**
  * Stendhal specific extensions to the normal CharacterDAO which will update
- * the redundant tables for the web application.
+ * the redundant tables for the web application and keep the keyed slots
+ * of characters in their own table.
  */
 public class StendhalCharacterDAO extends CharacterDAO {
 	private static Logger logger = Logger.getLogger(StendhalCharacterDAO.class);
@@ -34,7 +36,14 @@ public class StendhalCharacterDAO extends CharacterDAO {
 	public void addCharacter(final DBTransaction transaction, final String username,
 			final String character, final RPObject player, Timestamp timestamp) throws SQLException, IOException {
 
-		super.addCharacter(transaction, username, character, player, timestamp);
+		final StendhalCharacterStateDAO stateDAO = DAORegister.get().get(StendhalCharacterStateDAO.class);
+		final Map<String, Map<String, String>> state = stateDAO.removeEntries(player);
+		try {
+			super.addCharacter(transaction, username, character, player, timestamp);
+		} finally {
+			stateDAO.putEntries(player, state);
+		}
+		stateDAO.storeState(transaction, character, player);
 
 		// Here goes the Stendhal specific code.
 		try {
@@ -48,6 +57,8 @@ public class StendhalCharacterDAO extends CharacterDAO {
 			}
 		} catch (final SQLException sqle) {
 			logger.warn("error storing character", sqle);
+			// the state rows are rolled back too
+			stateDAO.forgetState(character);
 			throw sqle;
 		}
 	}
@@ -56,7 +67,14 @@ public class StendhalCharacterDAO extends CharacterDAO {
 	public void storeCharacter(final DBTransaction transaction, final String username,
 			final String character, final RPObject player, Timestamp timestamp) throws SQLException, IOException {
 
-		super.storeCharacter(transaction, username, character, player, timestamp);
+		final StendhalCharacterStateDAO stateDAO = DAORegister.get().get(StendhalCharacterStateDAO.class);
+		final Map<String, Map<String, String>> state = stateDAO.removeEntries(player);
+		try {
+			super.storeCharacter(transaction, username, character, player, timestamp);
+		} finally {
+			stateDAO.putEntries(player, state);
+		}
+		stateDAO.storeState(transaction, character, player);
 
 		// Here goes the Stendhal specific code.
 		if (player instanceof Player) {
@@ -69,6 +87,8 @@ public class StendhalCharacterDAO extends CharacterDAO {
 				DAORegister.get().get(StendhalBuddyDAO.class).saveRelations(transaction, character, instance);
 			} catch (final SQLException sqle) {
 				logger.warn("error storing character", sqle);
+				// the state rows are rolled back too
+				stateDAO.forgetState(character);
 				throw sqle;
 			}
 		} else {
@@ -76,4 +96,55 @@ public class StendhalCharacterDAO extends CharacterDAO {
 		}
 	}
 
+	@Override
+	public boolean removeCharacter(final DBTransaction transaction, final String username,
+			final String character) throws SQLException {
+		final boolean removed = super.removeCharacter(transaction, username, character);
+		if (removed) {
+			DAORegister.get().get(StendhalCharacterStateDAO.class).deleteState(transaction, character);
+		}
+		return removed;
+	}
+
+	@Override
+	public RPObject loadCharacter(final DBTransaction transaction, final String username,
+			final String character) throws SQLException, IOException {
+		final RPObject player = super.loadCharacter(transaction, username, character);
+		if (player != null) {
+			DAORegister.get().get(StendhalCharacterStateDAO.class).restoreState(transaction, character, player);
+		}
+		return player;
+	}
+
+	@Override
+	public Map<String, RPObject> loadAllCharacters(final DBTransaction transaction,
+			final String username) throws SQLException, IOException {
+		final Map<String, RPObject> characters = super.loadAllCharacters(transaction, username);
+		restoreState(transaction, characters);
+		return characters;
+	}
+
+	@Override
+	public Map<String, RPObject> loadAllActiveCharacters(final DBTransaction transaction,
+			final String username) throws SQLException, IOException {
+		final Map<String, RPObject> characters = super.loadAllActiveCharacters(transaction, username);
+		restoreState(transaction, characters);
+		return characters;
+	}
+
+	/**
+	 * puts the stored keyed slot entries into loaded characters
+	 *
+	 * @param transaction DBTransaction
+	 * @param characters characters by name
+	 * @throws SQLException in case of an database error
+	 */
+	private void restoreState(final DBTransaction transaction, final Map<String, RPObject> characters) throws SQLException {
+		final StendhalCharacterStateDAO stateDAO = DAORegister.get().get(StendhalCharacterStateDAO.class);
+		for (final Map.Entry<String, RPObject> entry : characters.entrySet()) {
+			if (entry.getValue() != null) {
+				stateDAO.restoreState(transaction, entry.getKey(), entry.getValue());
+			}
+		}
+	}
 }
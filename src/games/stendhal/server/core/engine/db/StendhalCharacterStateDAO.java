@@ -0,0 +1,445 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.db;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import games.stendhal.common.MathHelper;
+import games.stendhal.server.entity.slot.KeyedSlot;
+import marauroa.common.game.RPObject;
+import marauroa.common.game.RPSlot;
+import marauroa.server.db.DBTransaction;
+
+/**
+ * database access for the keyed slots of characters. Quest states, kills,
+ * visited zones and skills are kept in the table character_state, one row
+ * per entry, instead of the serialized character object. Only changed
+ * entries are written when a character is stored.
+ * <p>
+ * The entries last loaded or stored are remembered for recently used
+ * characters, so that storing a character does not have to read its rows
+ * first. Every store also increments a version row of the character in the
+ * same transaction. The remembered entries are only trusted while their
+ * version matches the one in the database, so entries of a store that has
+ * been rolled back are read again instead of being taken as written.
+ */
+public class StendhalCharacterStateDAO {
+
+	/** keyed slots kept in the character_state table */
+	static final String[] STATE_SLOTS = { "!quests", "!kills", "!visited", "skills" };
+
+	/** pseudo slot of the row holding the version of the stored entries */
+	static final String VERSION_SLOT = "#state";
+
+	/** key of the version row */
+	private static final String VERSION_KEY = "version";
+
+	/** maximum number of characters whose stored entries are remembered */
+	private static final int MAX_STORED_STATES = 1000;
+
+	/** entries in the database by character name */
+	private final Map<String, StoredState> storedStates = new LinkedHashMap<String, StoredState>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, StoredState> eldest) {
+			return size() > MAX_STORED_STATES;
+		}
+	};
+
+	/**
+	 * loads the state entries of a character
+	 *
+	 * @param transaction DBTransaction
+	 * @param charname name of character
+	 * @return entries by slot name and key
+	 * @throws SQLException in case of an database error
+	 */
+	public Map<String, Map<String, String>> loadState(DBTransaction transaction, String charname) throws SQLException {
+		Map<String, Map<String, String>> state = new HashMap<String, Map<String, String>>();
+		String query = "SELECT slotname, keyname, val FROM character_state WHERE charname='[charname]'";
+		Map<String, Object> params = new HashMap<String, Object>();
+		params.put("charname", charname);
+		ResultSet resultSet = transaction.query(query, params);
+		try {
+			while (resultSet.next()) {
+				Map<String, String> entries = state.get(resultSet.getString(1));
+				if (entries == null) {
+					entries = new HashMap<String, String>();
+					state.put(resultSet.getString(1), entries);
+				}
+				entries.put(resultSet.getString(2), resultSet.getString(3));
+			}
+		} finally {
+			resultSet.close();
+		}
+		return state;
+	}
+
+
+	/**
+	 * puts the stored state entries of a character into its keyed slots.
+	 * Characters that have never been stored with state entries are left
+	 * alone, so that their keyed slots are taken from the serialized object.
+	 *
+	 * @param transaction DBTransaction
+	 * @param charname name of character
+	 * @param object character object
+	 * @throws SQLException in case of an database error
+	 */
+	public void restoreState(DBTransaction transaction, String charname, RPObject object) throws SQLException {
+		Map<String, Map<String, String>> state = loadState(transaction, charname);
+		Map<String, String> version = state.remove(VERSION_SLOT);
+		setStoredState(charname, new StoredState(parseVersion(version), state));
+		for (Map.Entry<String, Map<String, String>> entry : state.entrySet()) {
+			RPObject keyed = getOrCreateKeyedObject(object, entry.getKey());
+			for (Map.Entry<String, String> value : entry.getValue().entrySet()) {
+				keyed.put(value.getKey(), value.getValue());
+			}
+		}
+	}
+
+
+	/**
+	 * writes the state entries of a character to the database, minimizing the
+	 * write operations by comparing them to the entries last loaded or stored.
+	 * The stored rows are read only if those are not known or their version
+	 * does not match the database. The entries are remembered as written only
+	 * if every statement affected the expected rows.
+	 *
+	 * @param transaction DBTransaction
+	 * @param charname name of character
+	 * @param object character object
+	 * @throws SQLException in case of an database error
+	 */
+	public void storeState(DBTransaction transaction, String charname, RPObject object) throws SQLException {
+		// taken out while writing, so that a failed write is not trusted later
+		StoredState stored = removeStoredState(charname);
+		int version = queryVersion(transaction, charname);
+		Map<String, Map<String, String>> oldState;
+		if ((stored != null) && (stored.version == version)) {
+			oldState = stored.entries;
+		} else {
+			oldState = loadState(transaction, charname);
+			oldState.remove(VERSION_SLOT);
+		}
+		Map<String, Map<String, String>> newState = new HashMap<String, Map<String, String>>();
+
+		PreparedStatement insert = null;
+		PreparedStatement update = null;
+		PreparedStatement delete = null;
+		List<String[]> updated = new ArrayList<String[]>();
+		boolean consistent = true;
+		try {
+			for (String slotName : STATE_SLOTS) {
+				Map<String, String> oldEntries = oldState.get(slotName);
+				if (oldEntries == null) {
+					oldEntries = new HashMap<String, String>();
+				}
+				Map<String, String> newEntries = getEntries(object, slotName);
+				if (!newEntries.isEmpty()) {
+					newState.put(slotName, newEntries);
+				}
+
+				for (Map.Entry<String, String> entry : newEntries.entrySet()) {
+					String oldValue = oldEntries.get(entry.getKey());
+					if (oldValue == null) {
+						if (insert == null) {
+							insert = transaction.prepareStatement("INSERT INTO character_state (charname, slotname, keyname, val) VALUES (?, ?, ?, ?)", null);
+						}
+						insert.setString(1, charname);
+						insert.setString(2, slotName);
+						insert.setString(3, entry.getKey());
+						insert.setString(4, entry.getValue());
+						insert.addBatch();
+					} else if (!oldValue.equals(entry.getValue())) {
+						if (update == null) {
+							update = transaction.prepareStatement("UPDATE character_state SET val=? WHERE charname=? AND slotname=? AND keyname=?", null);
+						}
+						update.setString(1, entry.getValue());
+						update.setString(2, charname);
+						update.setString(3, slotName);
+						update.setString(4, entry.getKey());
+						update.addBatch();
+						updated.add(new String[] { slotName, entry.getKey(), entry.getValue() });
+					}
+				}
+
+				// entries that have been removed from the slot
+				for (String key : oldEntries.keySet()) {
+					if (newEntries.containsKey(key)) {
+						continue;
+					}
+					if (delete == null) {
+						delete = transaction.prepareStatement("DELETE FROM character_state WHERE charname=? AND slotname=? AND keyname=?", null);
+					}
+					delete.setString(1, charname);
+					delete.setString(2, slotName);
+					delete.setString(3, key);
+					delete.addBatch();
+				}
+			}
+
+			if (insert != null) {
+				insert.executeBatch();
+			}
+			if (update != null) {
+				int[] counts = update.executeBatch();
+				for (int i = 0; i < counts.length; i++) {
+					if (counts[i] != 0) {
+						continue;
+					}
+					// the row is missing although it was expected to be stored
+					consistent = false;
+					if (insert == null) {
+						insert = transaction.prepareStatement("INSERT INTO character_state (charname, slotname, keyname, val) VALUES (?, ?, ?, ?)", null);
+					}
+					String[] row = updated.get(i);
+					insert.setString(1, charname);
+					insert.setString(2, row[0]);
+					insert.setString(3, row[1]);
+					insert.setString(4, row[2]);
+					insert.executeUpdate();
+				}
+			}
+			if (delete != null) {
+				for (int count : delete.executeBatch()) {
+					if (count == 0) {
+						consistent = false;
+					}
+				}
+			}
+			version = writeVersion(transaction, charname, version);
+		} finally {
+			close(insert);
+			close(update);
+			close(delete);
+		}
+		if (consistent) {
+			setStoredState(charname, new StoredState(version, newState));
+		}
+	}
+
+
+	/**
+	 * reads the version of the stored entries of a character
+	 *
+	 * @param transaction DBTransaction
+	 * @param charname name of character
+	 * @return version, or -1 if the character has no version row
+	 * @throws SQLException in case of an database error
+	 */
+	private int queryVersion(DBTransaction transaction, String charname) throws SQLException {
+		String query = "SELECT val FROM character_state WHERE charname='[charname]' AND slotname='[slotname]' AND keyname='[keyname]'";
+		Map<String, Object> params = new HashMap<String, Object>();
+		params.put("charname", charname);
+		params.put("slotname", VERSION_SLOT);
+		params.put("keyname", VERSION_KEY);
+		ResultSet resultSet = transaction.query(query, params);
+		try {
+			if (resultSet.next()) {
+				return MathHelper.parseIntDefault(resultSet.getString(1), 0);
+			}
+			return -1;
+		} finally {
+			resultSet.close();
+		}
+	}
+
+
+	/**
+	 * increments the version of the stored entries of a character
+	 *
+	 * @param transaction DBTransaction
+	 * @param charname name of character
+	 * @param version current version, or -1 if there is no version row
+	 * @return new version
+	 * @throws SQLException in case of an database error
+	 */
+	private int writeVersion(DBTransaction transaction, String charname, int version) throws SQLException {
+		int newVersion = Math.max(version, 0) + 1;
+		String query;
+		if (version < 0) {
+			query = "INSERT INTO character_state (charname, slotname, keyname, val) VALUES ('[charname]', '[slotname]', '[keyname]', '[val]')";
+		} else {
+			query = "UPDATE character_state SET val='[val]' WHERE charname='[charname]' AND slotname='[slotname]' AND keyname='[keyname]'";
+		}
+		Map<String, Object> params = new HashMap<String, Object>();
+		params.put("charname", charname);
+		params.put("slotname", VERSION_SLOT);
+		params.put("keyname", VERSION_KEY);
+		params.put("val", Integer.toString(newVersion));
+		transaction.execute(query, params);
+		return newVersion;
+	}
+
+
+	private static int parseVersion(Map<String, String> versionEntries) {
+		if (versionEntries == null) {
+			return -1;
+		}
+		return MathHelper.parseIntDefault(versionEntries.get(VERSION_KEY), 0);
+	}
+
+
+	/**
+	 * drops the remembered state entries of a character, so that they are
+	 * read from the database when the character is stored the next time.
+	 * To be called if storing the character failed. Rolled back stores are
+	 * noticed by their version anyway, this just saves the version check.
+	 *
+	 * @param charname name of character
+	 */
+	public void forgetState(String charname) {
+		removeStoredState(charname);
+	}
+
+
+	/**
+	 * deletes the state entries of a character
+	 *
+	 * @param transaction DBTransaction
+	 * @param charname name of character
+	 * @throws SQLException in case of an database error
+	 */
+	public void deleteState(DBTransaction transaction, String charname) throws SQLException {
+		removeStoredState(charname);
+		Map<String, Object> params = new HashMap<String, Object>();
+		params.put("charname", charname);
+		transaction.execute("DELETE FROM character_state WHERE charname='[charname]'", params);
+	}
+
+
+	/**
+	 * removes the state entries from the keyed slots of a character object,
+	 * so that they are not serialized together with the object.
+	 *
+	 * @param object character object
+	 * @return removed entries by slot name, to be put back with putEntries()
+	 */
+	public Map<String, Map<String, String>> removeEntries(RPObject object) {
+		Map<String, Map<String, String>> removed = new HashMap<String, Map<String, String>>();
+		for (String slotName : STATE_SLOTS) {
+			Map<String, String> entries = getEntries(object, slotName);
+			if (!entries.isEmpty()) {
+				RPObject keyed = object.getSlot(slotName).getFirst();
+				for (String key : entries.keySet()) {
+					keyed.remove(key);
+				}
+				removed.put(slotName, entries);
+			}
+		}
+		return removed;
+	}
+
+
+	/**
+	 * puts entries back into the keyed slots of a character object
+	 *
+	 * @param object character object
+	 * @param entries entries by slot name
+	 */
+	public void putEntries(RPObject object, Map<String, Map<String, String>> entries) {
+		for (Map.Entry<String, Map<String, String>> entry : entries.entrySet()) {
+			RPObject keyed = object.getSlot(entry.getKey()).getFirst();
+			for (Map.Entry<String, String> value : entry.getValue().entrySet()) {
+				keyed.put(value.getKey(), value.getValue());
+			}
+		}
+	}
+
+
+	/**
+	 * gets the state entries of a keyed slot
+	 *
+	 * @param object character object
+	 * @param slotName name of keyed slot
+	 * @return entries, without the object attributes "id" and "zoneid"
+	 */
+	private Map<String, String> getEntries(RPObject object, String slotName) {
+		Map<String, String> entries = new HashMap<String, String>();
+		if (!object.hasSlot(slotName)) {
+			return entries;
+		}
+		RPSlot slot = object.getSlot(slotName);
+		if (slot.size() == 0) {
+			return entries;
+		}
+		RPObject keyed = slot.getFirst();
+		List<String> keys = new ArrayList<String>();
+		for (String key : keyed) {
+			if (!key.equals("id") && !key.equals("zoneid")) {
+				keys.add(key);
+			}
+		}
+		for (String key : keys) {
+			entries.put(key, keyed.get(key));
+		}
+		return entries;
+	}
+
+
+	/**
+	 * gets the object of a keyed slot, creating the slot and the object if
+	 * the character does not have them yet
+	 *
+	 * @param object character object
+	 * @param slotName name of keyed slot
+	 * @return object of keyed slot
+	 */
+	private RPObject getOrCreateKeyedObject(RPObject object, String slotName) {
+		if (!object.hasSlot(slotName)) {
+			object.addSlot(new KeyedSlot(slotName));
+		}
+		RPSlot slot = object.getSlot(slotName);
+		if (slot.size() == 0) {
+			slot.add(new RPObject());
+		}
+		return slot.getFirst();
+	}
+
+
+	private synchronized void setStoredState(String charname, StoredState state) {
+		storedStates.put(charname, state);
+	}
+
+
+	private synchronized StoredState removeStoredState(String charname) {
+		return storedStates.remove(charname);
+	}
+
+
+	private void close(PreparedStatement statement) throws SQLException {
+		if (statement != null) {
+			statement.close();
+		}
+	}
+
+
+	/**
+	 * entries of a character as last loaded or stored, with their version
+	 */
+	private static final class StoredState {
+		private final int version;
+		private final Map<String, Map<String, String>> entries;
+
+		private StoredState(int version, Map<String, Map<String, String>> entries) {
+			this.version = version;
+			this.entries = entries;
+		}
+	}
+}
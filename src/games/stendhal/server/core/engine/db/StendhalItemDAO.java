@@ -15,8 +15,10 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.log4j.Logger;
@@ -40,6 +42,17 @@ public class StendhalItemDAO {
 	public static final String ATTR_ITEM_LOGID = "logid";
 	private static final Logger logger = Logger.getLogger(StendhalItemDAO.class);
 
+	/** number of item ids that are handed out before the table is checked again */
+	private static final int ITEM_ID_BLOCK_SIZE = 100;
+
+	/** next item id to hand out */
+	private int nextItemId;
+	/** last item id of the current block */
+	private int lastItemIdOfBlock = -1;
+
+	/** rows collected by the current thread in batch mode, null if not batching */
+	private final ThreadLocal<ItemLogBatch> batch = new ThreadLocal<ItemLogBatch>();
+
 	/**
 	 * Assigns the next logid to the specified item in case it does not already have one.
 	 *
@@ -53,18 +66,82 @@ public class StendhalItemDAO {
 			return;
 		}
 
-		// insert row into
-		String sql = "INSERT INTO item (name, timedate) VALUES ('[name]', '[timedate]')";
-		Map<String, Object> params = new HashMap<String, Object>();
-		params.put("name", item.get("name"));
-		params.put("timedate", timestamp);
-		transaction.execute(sql, params);
+		final int itemid = allocateItemId(transaction);
+		final ItemLogBatch currentBatch = batch.get();
+		if (currentBatch != null) {
+			currentBatch.addItem(item, itemid, item.get("name"), timestamp);
+		} else {
+			// insert row into
+			String sql = "INSERT INTO item (id, name, timedate) VALUES ([id], '[name]', '[timedate]')";
+			Map<String, Object> params = new HashMap<String, Object>();
+			params.put("id", itemid);
+			params.put("name", item.get("name"));
+			params.put("timedate", timestamp);
+			transaction.execute(sql, params);
+		}
 
-		// get the insert id and store it into the item
-		item.put(ATTR_ITEM_LOGID, transaction.getLastInsertId("item", "id"));
+		// store the id into the item
+		item.put(ATTR_ITEM_LOGID, itemid);
 		itemLogInsertName(transaction, item, timestamp);
 	}
 
+	/**
+	 * Hands out the next item id. Ids are taken from blocks. The item table is
+	 * only checked for the highest used id when a new block is started. This
+	 * requires that the server is the only one inserting into the item table.
+	 *
+	 * @param transaction database transaction
+	 * @return item id
+	 * @throws SQLException in case of a database error
+	 */
+	private synchronized int allocateItemId(final DBTransaction transaction) throws SQLException {
+		if (nextItemId > lastItemIdOfBlock) {
+			final int maxId = transaction.querySingleCellInt("SELECT MAX(id) FROM item", null);
+			nextItemId = Math.max(nextItemId, maxId + 1);
+			lastItemIdOfBlock = nextItemId + ITEM_ID_BLOCK_SIZE - 1;
+		}
+		return nextItemId++;
+	}
+
+	/**
+	 * Starts collecting item log rows of the current thread, instead of
+	 * writing them one by one.
+	 */
+	public void beginItemLogBatch() {
+		batch.set(new ItemLogBatch());
+	}
+
+	/**
+	 * Writes the rows collected since <code>beginItemLogBatch()</code>.
+	 *
+	 * @param transaction database transaction
+	 * @throws SQLException in case of a database error
+	 */
+	public void writeItemLogBatch(final DBTransaction transaction) throws SQLException {
+		final ItemLogBatch currentBatch = batch.get();
+		if (currentBatch != null) {
+			currentBatch.write(transaction);
+		}
+	}
+
+	/**
+	 * Stops collecting item log rows. Rows that have not been written are
+	 * discarded.
+	 *
+	 * @param written <code>false</code> if the batch is rolled back. The log
+	 * 	ids assigned in the batch are then removed from the items, so that
+	 * 	the items are registered again when their events are logged later.
+	 */
+	public void endItemLogBatch(final boolean written) {
+		final ItemLogBatch currentBatch = batch.get();
+		batch.remove();
+		if ((currentBatch != null) && !written) {
+			for (final RPObject item : currentBatch.registered) {
+				item.remove(ATTR_ITEM_LOGID);
+			}
+		}
+	}
+
 
 	/**
 	 * Logs the name of the item on first.
@@ -115,6 +192,13 @@ public class StendhalItemDAO {
 		if (player != null) {
 			playerName = player.getName();
 		}
+		final ItemLogBatch currentBatch = batch.get();
+		if (currentBatch != null) {
+			currentBatch.addEntry(itemid, StringUtils.trimTo(playerName, 64), StringUtils.trimTo(event, 64),
+					StringUtils.trimTo(param1, 64), StringUtils.trimTo(param2, 64),
+					StringUtils.trimTo(param3, 64), StringUtils.trimTo(param4, 64), timestamp);
+			return;
+		}
 		final String query = "INSERT INTO itemlog (itemid, source, event, "
 			+ "param1, param2, param3, param4, timedate) VALUES ("
 			+ "[itemid], '[source]', '[event]', '[param1]', '[param2]', '[param3]', '[param4]', '[timedate]');";
@@ -277,5 +361,65 @@ public class StendhalItemDAO {
 	public Map<String, Integer> getItemInfoIdMap(DBTransaction transaction) throws SQLException {
 		return transaction.queryAsMap("SELECT name, id FROM iteminfo", null);
 	}
-}
 
+	/**
+	 * Item and item log rows that are written together.
+	 */
+	private static final class ItemLogBatch {
+		private final List<Object[]> items = new ArrayList<Object[]>();
+		private final List<Object[]> entries = new ArrayList<Object[]>();
+		/** Items that got their log id in this batch. */
+		private final List<RPObject> registered = new ArrayList<RPObject>();
+
+		private void addItem(final RPObject item, final int itemid, final String name, final Timestamp timestamp) {
+			registered.add(item);
+			items.add(new Object[] { Integer.valueOf(itemid), name, timestamp });
+		}
+
+		private void addEntry(final int itemid, final String source, final String event, final String param1,
+				final String param2, final String param3, final String param4, final Timestamp timestamp) {
+			entries.add(new Object[] { Integer.valueOf(itemid), source, event, param1, param2, param3, param4, timestamp });
+		}
+
+		private void write(final DBTransaction transaction) throws SQLException {
+			if (!items.isEmpty()) {
+				final PreparedStatement stmt = transaction.prepareStatement(
+						"INSERT INTO item (id, name, timedate) VALUES (?, ?, ?)", null);
+				for (final Object[] row : items) {
+					stmt.setInt(1, ((Integer) row[0]).intValue());
+					stmt.setString(2, emptyIfNull(row[1]));
+					stmt.setTimestamp(3, (Timestamp) row[2]);
+					stmt.addBatch();
+				}
+				stmt.executeBatch();
+				items.clear();
+			}
+
+			if (!entries.isEmpty()) {
+				final PreparedStatement stmt = transaction.prepareStatement("INSERT INTO itemlog (itemid, source, event, "
+						+ "param1, param2, param3, param4, timedate) VALUES (?, ?, ?, ?, ?, ?, ?, ?)", null);
+				for (final Object[] row : entries) {
+					stmt.setInt(1, ((Integer) row[0]).intValue());
+					for (int i = 1; i < 7; i++) {
+						stmt.setString(i + 1, emptyIfNull(row[i]));
+					}
+					stmt.setTimestamp(8, (Timestamp) row[7]);
+					stmt.addBatch();
+				}
+				stmt.executeBatch();
+				entries.clear();
+			}
+		}
+
+		/**
+		 * Null values are written as empty strings, like the templated
+		 * statements do.
+		 */
+		private static String emptyIfNull(final Object value) {
+			if (value == null) {
+				return "";
+			}
+			return (String) value;
+		}
+	}
+}
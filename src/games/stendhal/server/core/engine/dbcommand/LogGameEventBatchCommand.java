@@ -0,0 +1,61 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.dbcommand;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import com.google.common.base.MoreObjects;
+
+import games.stendhal.server.core.engine.GameEventBatcher;
+import marauroa.server.db.DBTransaction;
+import marauroa.server.db.command.AbstractDBCommand;
+import marauroa.server.game.db.DAORegister;
+import marauroa.server.game.db.GameEventDAO;
+import marauroa.server.game.rp.GameEvent;
+
+/**
+ * logs a batch of game events using a single batched insert
+ */
+public class LogGameEventBatchCommand extends AbstractDBCommand {
+	private final List<GameEvent> events;
+
+	/**
+	 * creates a batch of game events
+	 *
+	 * @param events game events. The list is owned by the command afterwards
+	 */
+	public LogGameEventBatchCommand(final List<GameEvent> events) {
+		this.events = events;
+	}
+
+	@Override
+	public void execute(final DBTransaction transaction) throws SQLException {
+		boolean written = false;
+		try {
+			DAORegister.get().get(GameEventDAO.class).addGameEvents(transaction, events);
+			written = true;
+		} finally {
+			GameEventBatcher.get().onBatchDone(events.size(), written);
+		}
+	}
+
+	/**
+	 * returns a string suitable for debug output of this DBCommand.
+	 *
+	 * @return debug string
+	 */
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("size", events.size()).toString();
+	}
+}
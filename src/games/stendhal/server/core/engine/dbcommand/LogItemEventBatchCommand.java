@@ -0,0 +1,87 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.dbcommand;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import com.google.common.base.MoreObjects;
+
+import games.stendhal.server.core.engine.ItemLogBatcher;
+import games.stendhal.server.core.engine.db.StendhalItemDAO;
+import marauroa.server.db.DBTransaction;
+import marauroa.server.db.command.AbstractDBCommand;
+import marauroa.server.game.db.DAORegister;
+
+/**
+ * logs a batch of item events in one transaction. Events that fail on their
+ * own are skipped. If writing the batch fails, it is rolled back as a whole,
+ * and its events are logged again one at a time.
+ */
+public class LogItemEventBatchCommand extends AbstractDBCommand {
+	private static final Logger logger = Logger.getLogger(LogItemEventBatchCommand.class);
+
+	private final List<AbstractLogItemEventCommand> commands;
+	private final long oldest;
+
+	/**
+	 * creates a batch of item log commands
+	 *
+	 * @param commands item log commands, with their enqueue time set
+	 * @param oldest time when the oldest event was logged
+	 */
+	public LogItemEventBatchCommand(final List<AbstractLogItemEventCommand> commands, final long oldest) {
+		this.commands = commands;
+		this.oldest = oldest;
+	}
+
+	@Override
+	public void execute(final DBTransaction transaction) throws SQLException {
+		final StendhalItemDAO stendhalItemDAO = DAORegister.get().get(StendhalItemDAO.class);
+		boolean written = false;
+		int dropped = 0;
+		stendhalItemDAO.beginItemLogBatch();
+		try {
+			for (final AbstractLogItemEventCommand command : commands) {
+				try {
+					command.log(transaction);
+				} catch (final SQLException e) {
+					if (transaction.isConnectionError(e)) {
+						throw e;
+					}
+					logger.error("Skipping item log event " + command, e);
+					dropped++;
+				} catch (final RuntimeException e) {
+					logger.error("Skipping item log event " + command, e);
+					dropped++;
+				}
+			}
+			stendhalItemDAO.writeItemLogBatch(transaction);
+			written = true;
+		} finally {
+			stendhalItemDAO.endItemLogBatch(written);
+			ItemLogBatcher.get().onBatchDone(commands, dropped, oldest, written);
+		}
+	}
+
+	/**
+	 * returns a string suitable for debug output of this DBCommand.
+	 *
+	 * @return debug string
+	 */
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("size", commands.size()).toString();
+	}
+}
@@ -0,0 +1,61 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.dbcommand;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.MoreObjects;
+
+import marauroa.common.game.IRPZone;
+import marauroa.common.game.RPObject;
+import marauroa.server.db.DBTransaction;
+import marauroa.server.db.command.AbstractDBCommand;
+import marauroa.server.game.db.DAORegister;
+import marauroa.server.game.db.RPZoneDAO;
+
+/**
+ * stores the storable objects of several zones in one transaction
+ */
+public class StoreZonesCommand extends AbstractDBCommand {
+	private final Map<IRPZone, List<RPObject>> zones;
+
+	/**
+	 * creates a new StoreZonesCommand
+	 *
+	 * @param zones zones with frozen copies of their storable objects. The map
+	 * 	is owned by the command afterwards
+	 */
+	public StoreZonesCommand(final Map<IRPZone, List<RPObject>> zones) {
+		this.zones = zones;
+	}
+
+	@Override
+	public void execute(final DBTransaction transaction) throws SQLException, IOException {
+		final RPZoneDAO dao = DAORegister.get().get(RPZoneDAO.class);
+		for (final Map.Entry<IRPZone, List<RPObject>> entry : zones.entrySet()) {
+			dao.storeRPZone(transaction, entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * returns a string suitable for debug output of this DBCommand.
+	 *
+	 * @return debug string
+	 */
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("zones", zones.size()).toString();
+	}
+}
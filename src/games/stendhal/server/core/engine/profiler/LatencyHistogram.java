@@ -0,0 +1,168 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.profiler;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * A histogram of durations with logarithmic buckets.
+ *
+ * Like HdrHistogram, the value range is split into powers of two, and each of
+ * them into a fixed number of linear sub buckets. Recorded values therefore
+ * keep a relative precision of about 6 %, independent of their magnitude, at
+ * a fixed memory cost. Values are stored in microseconds.
+ */
+public class LatencyHistogram {
+	/** Number of bits used for the sub buckets. */
+	private static final int SUB_BUCKET_BITS = 4;
+
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/** Largest power of two that is tracked. Larger values are clamped. */
+	private static final int MAX_EXPONENT = 32;
+
+	private final long[] counts = new long[bucketIndex(Long.MAX_VALUE) + 1];
+	private long count;
+	private long total;
+	private long max;
+
+	/**
+	 * Records a duration.
+	 *
+	 * @param nanos duration in nanoseconds
+	 */
+	public void recordNanos(final long nanos) {
+		record(nanos / 1000);
+	}
+
+	/**
+	 * Records a value.
+	 *
+	 * @param micros duration in microseconds
+	 */
+	public void record(final long micros) {
+		final long value = Math.max(0, micros);
+		counts[bucketIndex(value)]++;
+		count++;
+		total += value;
+		if (value > max) {
+			max = value;
+		}
+	}
+
+	/**
+	 * Gets the number of recorded values.
+	 *
+	 * @return number of values
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Gets the sum of all recorded values.
+	 *
+	 * @return sum in microseconds
+	 */
+	public long getTotal() {
+		return total;
+	}
+
+	/**
+	 * Gets the largest recorded value.
+	 *
+	 * @return maximum in microseconds
+	 */
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * Gets the mean of the recorded values.
+	 *
+	 * @return mean in microseconds
+	 */
+	public double getMean() {
+		if (count == 0) {
+			return 0;
+		}
+		return (double) total / count;
+	}
+
+	/**
+	 * Gets the value below which a percentage of the recorded values lie.
+	 * The result is the upper bound of the matching bucket.
+	 *
+	 * @param percentile percentile between 0 and 100
+	 * @return value in microseconds
+	 */
+	public long getValueAtPercentile(final double percentile) {
+		if (count == 0) {
+			return 0;
+		}
+		final long wanted = Math.max(1, (long) Math.ceil(count * Math.min(100.0, percentile) / 100.0));
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= wanted) {
+				return Math.min(max, highestValueInBucket(i));
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Forgets all recorded values.
+	 */
+	public void reset() {
+		Arrays.fill(counts, 0);
+		count = 0;
+		total = 0;
+		max = 0;
+	}
+
+	/**
+	 * Describes the distribution in milliseconds.
+	 *
+	 * @return count, mean, median, 90th, 99th percentile and maximum
+	 */
+	public String describe() {
+		return String.format(Locale.ENGLISH, "count=%d mean=%.2f p50=%.2f p90=%.2f p99=%.2f max=%.2f total=%.1f",
+				count, getMean() / 1000, getValueAtPercentile(50) / 1000.0, getValueAtPercentile(90) / 1000.0,
+				getValueAtPercentile(99) / 1000.0, max / 1000.0, total / 1000.0);
+	}
+
+	static int bucketIndex(final long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		final int exponent = Math.min(MAX_EXPONENT, 63 - Long.numberOfLeadingZeros(value));
+		final int shift = exponent - SUB_BUCKET_BITS;
+		final int subBucket;
+		if (exponent == MAX_EXPONENT && (value >>> exponent) > 1) {
+			subBucket = SUB_BUCKETS - 1;
+		} else {
+			subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+		}
+		return (shift + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	static long highestValueInBucket(final int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		final int shift = index / SUB_BUCKETS - 1;
+		final long subBucket = index % SUB_BUCKETS;
+		return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+	}
+}
@@ -0,0 +1,533 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.profiler;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import games.stendhal.server.core.events.TurnListener;
+import games.stendhal.server.core.events.TurnNotifier;
+import marauroa.common.Configuration;
+
+/**
+ * Measures how the time of each turn is spent.
+ *
+ * The rule processor reports the duration of each phase of a turn, the logic
+ * of every zone and every notified TurnListener. The durations are collected
+ * in histograms, and the slowest turns are kept with a breakdown of their
+ * phases and biggest contributors. The data can be inspected with the
+ * <code>/profile</code> admin command, and is written to a file periodically.
+ * Every dump starts a new measuring window.
+ *
+ * The profiler must only be used from the turn thread.
+ */
+public final class TurnProfiler {
+	private static final Logger logger = Logger.getLogger(TurnProfiler.class);
+
+	/** Number of slow turns that are kept. */
+	private static final int SLOWEST_TURNS = 10;
+
+	/** Number of zones and listeners listed for a slow turn. */
+	private static final int TOP_SECTIONS = 5;
+
+	/** Phases of a turn. */
+	public enum Phase {
+		DESTROY_ZONES("destroy obsolete zones"),
+		LOG_PLAYERS("log online players"),
+		KILLED_ENTITIES("handle killed entities"),
+		PLAYER_LOGIC("player logic"),
+		NPC_PRE_LOGIC("NPC pre logic"),
+		REMOVE_TEXTS("remove player texts"),
+		TURN_NOTIFIER("turn listeners"),
+		ZONE_LOGIC("zone logic");
+
+		private final String label;
+
+		Phase(final String label) {
+			this.label = label;
+		}
+
+		/**
+		 * Gets the human readable name of the phase.
+		 *
+		 * @return name
+		 */
+		public String getLabel() {
+			return label;
+		}
+	}
+
+	/** The singleton instance. */
+	private static TurnProfiler instance;
+
+	private boolean enabled = true;
+	private File reportFile = new File("log/turnprofile.txt");
+
+	private final LatencyHistogram turns = new LatencyHistogram();
+	private final LatencyHistogram[] phases = new LatencyHistogram[Phase.values().length];
+	private final Map<String, Section> zones = new HashMap<String, Section>();
+	private final Map<Class<?>, Section> listeners = new HashMap<Class<?>, Section>();
+
+	/** Sections that got time in the current turn. */
+	private final List<Section> touchedZones = new ArrayList<Section>();
+	private final List<Section> touchedListeners = new ArrayList<Section>();
+	private final long[] phaseNanos = new long[Phase.values().length];
+	private boolean inTurn;
+	private int turn;
+	private long turnStart;
+
+	/** The slowest turns of the window, slowest first. */
+	private final List<TurnProfile> slowest = new ArrayList<TurnProfile>();
+	private long windowStart = System.currentTimeMillis();
+
+	/**
+	 * Gets the profiler instance.
+	 *
+	 * @return TurnProfiler
+	 */
+	public static TurnProfiler get() {
+		if (instance == null) {
+			instance = new TurnProfiler();
+		}
+		return instance;
+	}
+
+	private TurnProfiler() {
+		for (int i = 0; i < phases.length; i++) {
+			phases[i] = new LatencyHistogram();
+		}
+	}
+
+	/**
+	 * Starts writing the collected data to a file periodically, as configured
+	 * by <code>turn_profile_interval</code> (in seconds, 0 to disable) and
+	 * <code>turn_profile_file</code>.
+	 */
+	public void startPeriodicDump() {
+		try {
+			final Configuration config = Configuration.getConfiguration();
+			final int interval = config.getInt("turn_profile_interval", 600);
+			reportFile = new File(config.get("turn_profile_file", reportFile.getPath()));
+			if (interval > 0) {
+				TurnNotifier.get().notifyInSeconds(interval, new Dumper(interval));
+			}
+		} catch (final IOException e) {
+			logger.error(e, e);
+		}
+	}
+
+	/**
+	 * Gets the file the report is written to.
+	 *
+	 * @return report file
+	 */
+	public File getReportFile() {
+		return reportFile;
+	}
+
+	/**
+	 * Checks if profiling is enabled.
+	 *
+	 * @return <code>true</code> if turns are measured
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Enables or disables profiling. Takes effect at the next turn.
+	 *
+	 * @param enabled <code>true</code> to measure turns
+	 */
+	public void setEnabled(final boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Marks the beginning of a turn.
+	 *
+	 * @param turn turn number
+	 */
+	public void beginTurn(final int turn) {
+		inTurn = enabled;
+		if (!inTurn) {
+			return;
+		}
+		this.turn = turn;
+		for (int i = 0; i < phaseNanos.length; i++) {
+			phaseNanos[i] = 0;
+		}
+		clearTouched();
+		turnStart = System.nanoTime();
+	}
+
+	/**
+	 * Gets the start time of a span.
+	 *
+	 * @return time stamp to be passed to one of the <code>end</code> methods
+	 */
+	public long start() {
+		if (!inTurn) {
+			return 0;
+		}
+		return System.nanoTime();
+	}
+
+	/**
+	 * Ends the span of a turn phase.
+	 *
+	 * @param phase phase
+	 * @param start value returned by {@link #start()}
+	 */
+	public void endPhase(final Phase phase, final long start) {
+		if (!inTurn) {
+			return;
+		}
+		final long nanos = System.nanoTime() - start;
+		phaseNanos[phase.ordinal()] += nanos;
+		phases[phase.ordinal()].recordNanos(nanos);
+	}
+
+	/**
+	 * Ends the span of the logic of a zone.
+	 *
+	 * @param zoneName name of the zone
+	 * @param start value returned by {@link #start()}
+	 */
+	public void endZone(final String zoneName, final long start) {
+		if (!inTurn) {
+			return;
+		}
+		final long nanos = System.nanoTime() - start;
+		Section section = zones.get(zoneName);
+		if (section == null) {
+			section = new Section(zoneName);
+			zones.put(zoneName, section);
+		}
+		add(section, nanos, touchedZones);
+	}
+
+	/**
+	 * Ends the span of a notified TurnListener.
+	 *
+	 * @param listenerClass class of the listener
+	 * @param start value returned by {@link #start()}
+	 */
+	public void endListener(final Class<?> listenerClass, final long start) {
+		if (!inTurn) {
+			return;
+		}
+		final long nanos = System.nanoTime() - start;
+		Section section = listeners.get(listenerClass);
+		if (section == null) {
+			section = new Section(listenerClass.getName());
+			listeners.put(listenerClass, section);
+		}
+		add(section, nanos, touchedListeners);
+	}
+
+	private void add(final Section section, final long nanos, final List<Section> touched) {
+		section.histogram.recordNanos(nanos);
+		if (!section.touched) {
+			section.touched = true;
+			section.turnNanos = 0;
+			touched.add(section);
+		}
+		section.turnNanos += nanos;
+	}
+
+	/**
+	 * Marks the end of a turn.
+	 */
+	public void endTurn() {
+		if (!inTurn) {
+			return;
+		}
+		inTurn = false;
+		final long nanos = System.nanoTime() - turnStart;
+		turns.recordNanos(nanos);
+
+		if ((slowest.size() < SLOWEST_TURNS) || (nanos > slowest.get(slowest.size() - 1).nanos)) {
+			final TurnProfile profile = new TurnProfile(turn, nanos, phaseNanos.clone(),
+					topSections(touchedZones), topSections(touchedListeners));
+			int index = 0;
+			while ((index < slowest.size()) && (slowest.get(index).nanos >= nanos)) {
+				index++;
+			}
+			slowest.add(index, profile);
+			if (slowest.size() > SLOWEST_TURNS) {
+				slowest.remove(slowest.size() - 1);
+			}
+		}
+		clearTouched();
+	}
+
+	private void clearTouched() {
+		for (final Section section : touchedZones) {
+			section.touched = false;
+		}
+		touchedZones.clear();
+		for (final Section section : touchedListeners) {
+			section.touched = false;
+		}
+		touchedListeners.clear();
+	}
+
+	/**
+	 * Finds the sections of the current turn that took most time.
+	 */
+	private List<String> topSections(final List<Section> touched) {
+		final List<Section> candidates = new ArrayList<Section>(touched);
+		Collections.sort(candidates, new Comparator<Section>() {
+			@Override
+			public int compare(final Section s1, final Section s2) {
+				return Long.compare(s2.turnNanos, s1.turnNanos);
+			}
+		});
+
+		final List<String> result = new ArrayList<String>();
+		for (int i = 0; (i < TOP_SECTIONS) && (i < candidates.size()); i++) {
+			final Section section = candidates.get(i);
+			result.add(section.name + " " + formatMillis(section.turnNanos));
+		}
+		return result;
+	}
+
+	/**
+	 * Forgets all collected data and starts a new window. A turn in progress
+	 * is kept, and counted in the new window when it ends.
+	 */
+	public void reset() {
+		turns.reset();
+		for (final LatencyHistogram histogram : phases) {
+			histogram.reset();
+		}
+		resetSections(zones.values());
+		resetSections(listeners.values());
+		slowest.clear();
+		windowStart = System.currentTimeMillis();
+	}
+
+	/**
+	 * Removes the sections that have not been used in the current turn, and
+	 * clears the histograms of the others.
+	 */
+	private void resetSections(final Collection<Section> sections) {
+		final Iterator<Section> it = sections.iterator();
+		while (it.hasNext()) {
+			final Section section = it.next();
+			if (section.touched) {
+				section.histogram.reset();
+			} else {
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Describes the duration of turns and their phases.
+	 *
+	 * @return summary
+	 */
+	public String describePhases() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("Turn profile since ").append(new Date(windowStart)).append(" (times in ms)\n");
+		sb.append("turn: ").append(turns.describe()).append('\n');
+		for (final Phase phase : Phase.values()) {
+			sb.append(phase.getLabel()).append(": ").append(phases[phase.ordinal()].describe()).append('\n');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Describes the zones with the highest total logic time.
+	 *
+	 * @param limit maximum number of zones
+	 * @return description
+	 */
+	public String describeZones(final int limit) {
+		return describeSections("Zones", zones.values(), limit);
+	}
+
+	/**
+	 * Describes the TurnListener classes with the highest total time.
+	 *
+	 * @param limit maximum number of listener classes
+	 * @return description
+	 */
+	public String describeListeners(final int limit) {
+		return describeSections("Turn listeners", listeners.values(), limit);
+	}
+
+	private String describeSections(final String title, final Iterable<Section> sections, final int limit) {
+		final List<Section> sorted = new ArrayList<Section>();
+		for (final Section section : sections) {
+			sorted.add(section);
+		}
+		Collections.sort(sorted, new Comparator<Section>() {
+			@Override
+			public int compare(final Section s1, final Section s2) {
+				return Long.compare(s2.histogram.getTotal(), s1.histogram.getTotal());
+			}
+		});
+
+		final StringBuilder sb = new StringBuilder();
+		sb.append(title).append(" by total time (ms):\n");
+		for (int i = 0; (i < limit) && (i < sorted.size()); i++) {
+			final Section section = sorted.get(i);
+			sb.append(section.name).append(": ").append(section.histogram.describe()).append('\n');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Describes the slowest turns of the window.
+	 *
+	 * @return description
+	 */
+	public String describeSlowestTurns() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("Slowest turns:\n");
+		for (final TurnProfile profile : slowest) {
+			sb.append(profile).append('\n');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Creates a full report of the collected data.
+	 *
+	 * @return report
+	 */
+	public String describe() {
+		return describePhases() + "\n" + describeSlowestTurns() + "\n"
+				+ describeZones(20) + "\n" + describeListeners(20);
+	}
+
+	/**
+	 * Writes the full report to a file.
+	 *
+	 * @param file target file
+	 * @throws IOException in case of an input/output error
+	 */
+	public void writeReport(final File file) throws IOException {
+		final File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null) {
+			parent.mkdirs();
+		}
+		final PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+		try {
+			out.print(describe());
+		} finally {
+			out.close();
+		}
+	}
+
+	static String formatMillis(final long nanos) {
+		return String.format(Locale.ENGLISH, "%.2f", nanos / 1000000.0);
+	}
+
+	/**
+	 * Time spent in a zone or listener class.
+	 */
+	private static final class Section {
+		private final String name;
+		private final LatencyHistogram histogram = new LatencyHistogram();
+		/** <code>true</code> if time was recorded in the current turn. */
+		private boolean touched;
+		/** Time spent in the current turn. */
+		private long turnNanos;
+
+		private Section(final String name) {
+			this.name = name;
+		}
+	}
+
+	/**
+	 * Breakdown of a slow turn.
+	 */
+	private static final class TurnProfile {
+		private final int turn;
+		private final long nanos;
+		private final long[] phaseNanos;
+		private final List<String> topZones;
+		private final List<String> topListeners;
+
+		private TurnProfile(final int turn, final long nanos, final long[] phaseNanos,
+				final List<String> topZones, final List<String> topListeners) {
+			this.turn = turn;
+			this.nanos = nanos;
+			this.phaseNanos = phaseNanos;
+			this.topZones = topZones;
+			this.topListeners = topListeners;
+		}
+
+		@Override
+		public String toString() {
+			final StringBuilder sb = new StringBuilder();
+			sb.append("turn ").append(turn).append(": ").append(formatMillis(nanos)).append(" ms (");
+			boolean first = true;
+			for (final Phase phase : Phase.values()) {
+				if (!first) {
+					sb.append(", ");
+				}
+				first = false;
+				sb.append(phase.getLabel()).append(' ').append(formatMillis(phaseNanos[phase.ordinal()]));
+			}
+			sb.append(")");
+			if (!topZones.isEmpty()) {
+				sb.append("\n    zones: ").append(topZones);
+			}
+			if (!topListeners.isEmpty()) {
+				sb.append("\n    listeners: ").append(topListeners);
+			}
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * Writes the report periodically.
+	 */
+	private final class Dumper implements TurnListener {
+		private final int interval;
+
+		private Dumper(final int interval) {
+			this.interval = interval;
+		}
+
+		@Override
+		public void onTurnReached(final int currentTurn) {
+			try {
+				writeReport(reportFile);
+			} catch (final IOException e) {
+				logger.error("Cannot write turn profile to " + reportFile, e);
+			}
+			reset();
+			TurnNotifier.get().notifyInSeconds(interval, this);
+		}
+	}
+}
@@ -0,0 +1,34 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.events;
+
+import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.entity.player.Player;
+
+/**
+ * Movement listener that also monitors public chat in its area. Chat
+ * listeners are registered like other movement listeners with
+ * {@link StendhalRPZone#addMovementListener(MovementListener)}.
+ */
+public interface ChatListener extends MovementListener {
+	/**
+	 * Invoked when a player in the area said something. The text is in the
+	 * <code>text</code> attribute of the player until the beginning of the
+	 * next turn is processed.
+	 *
+	 * @param player
+	 *            The player who spoke.
+	 * @param zone
+	 *            The zone.
+	 */
+	void onChat(Player player, StendhalRPZone zone);
+}
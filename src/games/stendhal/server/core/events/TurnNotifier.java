@@ -1,6 +1,6 @@
 /* $Id$ */
 /***************************************************************************
- *                   (C) Copyright 2003-2010 - Stendhal                    *
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -13,7 +13,6 @@
 package games.stendhal.server.core.events;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -24,27 +23,62 @@ import org.apache.log4j.Logger;
 
 import games.stendhal.server.core.engine.SingletonRepository;
 import games.stendhal.server.core.engine.StendhalRPWorld;
+import games.stendhal.server.core.engine.profiler.TurnProfiler;
+import marauroa.server.game.Statistics;
 
 /**
  * Other classes can register here to be notified at some time in the future.
  *
+ * <p>
+ * Registrations are kept in a hashed timing wheel: each turn maps to the slot
+ * <code>turn % WHEEL_SIZE</code>, and every slot is a linked list of the
+ * registrations for the turns sharing it. Reaching a turn only visits its own
+ * slot. Every registration is also reachable from its listener, so that
+ * cancelling it does not need to search the wheel.
+ *
  * @author hendrik, daniel
  */
 public final class TurnNotifier {
 
 	private static Logger logger = Logger.getLogger(TurnNotifier.class);
 
+	/** Number of slots in the wheel. About 20 minutes of turns. */
+	private static final int WHEEL_SIZE = 4096;
+
+	private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+	/** Maximum number of unused nodes kept for reuse. */
+	private static final int MAX_POOLED_NODES = 1024;
+
 	/** The singleton instance. */
 	private static TurnNotifier instance;
 
 	private int currentTurn = -1;
 
+	/** First registration of every slot. */
+	private final Node[] wheel = new Node[WHEEL_SIZE];
+
 	/**
-	 * This Map maps each turn to the set of all events that will take place at
-	 * this turn. Turns at which no event should take place needn't be
-	 * registered here.
+	 * Maps each listener to the chain of its registrations. Listeners that
+	 * are equal share a chain.
 	 */
-	private final Map<Integer, Set<TurnListener>> register = new HashMap<Integer, Set<TurnListener>>();
+	private final Map<TurnListener, Node> registrations = new HashMap<TurnListener, Node>();
+
+	/** Listeners that are notified in the current turn. */
+	private final List<TurnListener> due = new ArrayList<TurnListener>();
+
+	/** Unused nodes. */
+	private Node pool;
+	private int poolSize;
+
+	/** Number of pending registrations. */
+	private int queueDepth;
+
+	/** Number of listeners notified in the last turn. */
+	private int lastFireCount;
+
+	/** Highest number of listeners notified in a single turn. */
+	private int maxFireCount;
 
 	/** Used for multi-threading synchronization. * */
 	private final Object sync = new Object();
@@ -85,34 +119,49 @@ public final class TurnNotifier {
 
 		this.currentTurn = currentTurn;
 
-		// get and remove the set for this turn
-		Set<TurnListener> set = null;
+		// get and remove the registrations for this turn
 		synchronized (sync) {
-			set = register.remove(Integer.valueOf(currentTurn));
+			Node node = wheel[currentTurn & WHEEL_MASK];
+			while (node != null) {
+				final Node next = node.next;
+				if (node.turn == currentTurn) {
+					due.add(node.listener);
+					unlink(node);
+				}
+				node = next;
+			}
 		}
 
+		final int fired = due.size();
+		lastFireCount = fired;
+		if (fired > maxFireCount) {
+			maxFireCount = fired;
+		}
+		final Statistics stats = Statistics.getStatistics();
+		stats.set("Turn listeners queued", queueDepth);
+		stats.add("Turn listeners fired", fired);
+
 		if (logger.isDebugEnabled()) {
 			final StringBuilder os = new StringBuilder();
-			os.append("register: " + register.size() + "\n");
-			int setSize;
-			if (set != null) {
-				setSize = set.size();
-			} else {
-				setSize = 0;
-			}
-			os.append("set: " + setSize + "\n");
+			os.append("register: " + queueDepth + "\n");
+			os.append("set: " + fired + "\n");
 			logger.info(os);
 		}
 
-		if (set != null) {
-			for (final TurnListener turnListener : set) {
-
+		final TurnProfiler profiler = TurnProfiler.get();
+		try {
+			for (int i = 0; i < fired; i++) {
+				final TurnListener turnListener = due.get(i);
+				final long start = profiler.start();
 				try {
 					turnListener.onTurnReached(currentTurn);
 				} catch (final RuntimeException e) {
 					logger.error("Exception in " + turnListener, e);
 				}
+				profiler.endListener(turnListener.getClass(), start);
 			}
+		} finally {
+			due.clear();
 		}
 	}
 
@@ -177,15 +226,29 @@ public final class TurnNotifier {
 		}
 
 		synchronized (sync) {
-			// do we have other events for this turn?
-			final Integer turnInt = Integer.valueOf(turn);
-			Set<TurnListener> set = register.get(turnInt);
-			if (set == null) {
-				set = new HashSet<TurnListener>();
-				register.put(turnInt, set);
+			// an equal listener is notified only once per turn
+			final Node first = registrations.get(turnListener);
+			for (Node node = first; node != null; node = node.nextOfListener) {
+				if (node.turn == turn) {
+					return;
+				}
+			}
+
+			final Node node = obtainNode();
+			node.listener = turnListener;
+			node.turn = turn;
+
+			node.nextOfListener = first;
+			registrations.put(turnListener, node);
+
+			final int slot = turn & WHEEL_MASK;
+			node.next = wheel[slot];
+			if (node.next != null) {
+				node.next.prev = node;
 			}
-			// add it to the list
-			set.add(turnListener);
+			wheel[slot] = node;
+
+			queueDepth++;
 		}
 	}
 
@@ -198,17 +261,13 @@ public final class TurnNotifier {
 
 	public void dontNotify(final TurnListener turnListener) {
 		// all events that are equal to this one should be forgotten.
-		// TurnEvent turnEvent = new TurnEvent(turnListener);
-		for (final Map.Entry<Integer, Set<TurnListener>> mapEntry : register.entrySet()) {
-			final Set<TurnListener> set = mapEntry.getValue();
-			// We don't remove directly, but first store in this
-			// set. This is to avoid ConcurrentModificationExceptions.
-			final Set<TurnListener> toBeRemoved = new HashSet<TurnListener>();
-			if (set.contains(turnListener)) {
-					toBeRemoved.add(turnListener);
-			}
-			for (final TurnListener event : toBeRemoved) {
-				set.remove(event);
+		synchronized (sync) {
+			Node node = registrations.remove(turnListener);
+			while (node != null) {
+				final Node next = node.nextOfListener;
+				unlinkFromSlot(node);
+				recycle(node);
+				node = next;
 			}
 		}
 	}
@@ -224,23 +283,16 @@ public final class TurnNotifier {
 
 	public int getRemainingTurns(final TurnListener turnListener) {
 		// all events match that are equal to this.
-		// TurnEvent turnEvent = new TurnEvent(turnListener);
-		// the HashMap is unsorted, so we need to run through
-		// all of it.
-		final List<Integer> matchingTurns = new ArrayList<Integer>();
-		for (final Map.Entry<Integer, Set<TurnListener>> mapEntry : register.entrySet()) {
-			final Set<TurnListener> set = mapEntry.getValue();
-			for (final TurnListener currentEvent : set) {
-				if (currentEvent.equals(turnListener)) {
-					matchingTurns.add(mapEntry.getKey());
-				}
+		synchronized (sync) {
+			Node node = registrations.get(turnListener);
+			if (node == null) {
+				return -1;
 			}
-		}
-		if (matchingTurns.size() > 0) {
-			Collections.sort(matchingTurns);
-			return matchingTurns.get(0).intValue() - currentTurn;
-		} else {
-			return -1;
+			int turn = node.turn;
+			for (node = node.nextOfListener; node != null; node = node.nextOfListener) {
+				turn = Math.min(turn, node.turn);
+			}
+			return turn - currentTurn;
 		}
 	}
 
@@ -259,13 +311,69 @@ public final class TurnNotifier {
 	}
 
 	/**
-	 * Returns the list of events. Note this is only for debugging the
+	 * Forgets all registered notifications. Note this is only meant for
+	 * testing.
+	 */
+	public void clear() {
+		synchronized (sync) {
+			for (int i = 0; i < WHEEL_SIZE; i++) {
+				wheel[i] = null;
+			}
+			registrations.clear();
+			queueDepth = 0;
+		}
+	}
+
+	/**
+	 * Gets the number of pending notifications.
+	 *
+	 * @return number of registered notifications
+	 */
+	public int getQueueDepth() {
+		return queueDepth;
+	}
+
+	/**
+	 * Gets the number of listeners that were notified in the last turn.
+	 *
+	 * @return number of notified listeners
+	 */
+	public int getLastFireCount() {
+		return lastFireCount;
+	}
+
+	/**
+	 * Gets the highest number of listeners that were notified in a single
+	 * turn.
+	 *
+	 * @return highest number of notified listeners
+	 */
+	public int getMaxFireCount() {
+		return maxFireCount;
+	}
+
+	/**
+	 * Returns a snapshot of the events. Note this is only for debugging the
 	 * TurnNotifier
 	 *
 	 * @return eventList
 	 */
 	public Map<Integer, Set<TurnListener>> getEventListForDebugging() {
-		return register;
+		final Map<Integer, Set<TurnListener>> events = new HashMap<Integer, Set<TurnListener>>();
+		synchronized (sync) {
+			for (final Node first : wheel) {
+				for (Node node = first; node != null; node = node.next) {
+					final Integer turn = Integer.valueOf(node.turn);
+					Set<TurnListener> set = events.get(turn);
+					if (set == null) {
+						set = new HashSet<TurnListener>();
+						events.put(turn, set);
+					}
+					set.add(node.listener);
+				}
+			}
+		}
+		return events;
 	}
 
 	/**
@@ -276,4 +384,74 @@ public final class TurnNotifier {
 	public int getCurrentTurnForDebugging() {
 		return currentTurn;
 	}
+
+	/**
+	 * Removes a registration from both its slot and its listener chain.
+	 */
+	private void unlink(final Node node) {
+		final Node first = registrations.get(node.listener);
+		if (first == node) {
+			if (node.nextOfListener == null) {
+				registrations.remove(node.listener);
+			} else {
+				registrations.put(node.listener, node.nextOfListener);
+			}
+		} else if (first != null) {
+			Node previous = first;
+			while ((previous.nextOfListener != null) && (previous.nextOfListener != node)) {
+				previous = previous.nextOfListener;
+			}
+			previous.nextOfListener = node.nextOfListener;
+		}
+		unlinkFromSlot(node);
+		recycle(node);
+	}
+
+	private void unlinkFromSlot(final Node node) {
+		if (node.prev != null) {
+			node.prev.next = node.next;
+		} else {
+			wheel[node.turn & WHEEL_MASK] = node.next;
+		}
+		if (node.next != null) {
+			node.next.prev = node.prev;
+		}
+		queueDepth--;
+	}
+
+	private Node obtainNode() {
+		final Node node = pool;
+		if (node == null) {
+			return new Node();
+		}
+		pool = node.next;
+		poolSize--;
+		node.next = null;
+		return node;
+	}
+
+	private void recycle(final Node node) {
+		node.listener = null;
+		node.prev = null;
+		node.nextOfListener = null;
+		if (poolSize < MAX_POOLED_NODES) {
+			node.next = pool;
+			pool = node;
+			poolSize++;
+		} else {
+			node.next = null;
+		}
+	}
+
+	/**
+	 * A single registration.
+	 */
+	private static final class Node {
+		private TurnListener listener;
+		private int turn;
+		/** Neighbours within the wheel slot. */
+		private Node prev, next;
+		/** Next registration of an equal listener. */
+		private Node nextOfListener;
+	}
 }
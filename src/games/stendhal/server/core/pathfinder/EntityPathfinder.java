@@ -1,6 +1,6 @@
 /* $Id$ */
 /***************************************************************************
- *                   (C) Copyright 2003-2010 - Stendhal                    *
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -12,14 +12,16 @@
  ***************************************************************************/
 package games.stendhal.server.core.pathfinder;
 
-import java.awt.Point;
 import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
 
+import games.stendhal.server.core.engine.ResistanceLayer;
+import games.stendhal.server.core.engine.ResistanceLayer.Footprint;
 import games.stendhal.server.core.engine.StendhalRPZone;
 import games.stendhal.server.entity.Entity;
 import games.stendhal.server.entity.mapstuff.portal.Portal;
 import games.stendhal.server.entity.player.Player;
-import marauroa.common.game.RPObject;
 
 /**
  * Server side path finder.
@@ -43,9 +45,22 @@ class EntityPathfinder extends games.stendhal.server.core.pathfinder.Pathfinder
 	private final boolean checkEntities;
 
 	/**
-	 * Contains the resistance data for entities.
+	 * Resistance of the stopped entities in the zone.
 	 */
-	private ResistanceMap resistanceMap;
+	private ResistanceLayer resistanceLayer;
+	/**
+	 * Entities in the resistance layer that are ignored in this search.
+	 */
+	private Footprint[] excluded;
+	/**
+	 * Moving entities next to the start position. They are not in the
+	 * resistance layer, but block the search.
+	 */
+	private Footprint[] extra;
+	/**
+	 * Resistance of the searching entity.
+	 */
+	private int resistance;
 
 	EntityPathfinder(final Entity entity, final StendhalRPZone zone, final int startX, final int startY,
 			final Rectangle2D destination, final double maxDist, final boolean checkEntities) {
@@ -59,211 +74,81 @@ class EntityPathfinder extends games.stendhal.server.core.pathfinder.Pathfinder
 	protected void init() {
 		super.init();
 		if (checkEntities) {
-			createEntityCollisionMap();
+			prepareEntityCollision();
 		}
 	}
 
 	/**
-	 * Creates resistance data for entities.
-	 * <p>The positions with entities are only
-	 * considered as not valid if they:
-	 * <li> are next to the start position or
-	 * <li> have stopped
+	 * Prepares checking the resistance of entities. Stopped entities are
+	 * read from the resistance layer of the zone. In addition, moving
+	 * entities next to the start position are considered.
 	 */
-	private void createEntityCollisionMap() {
-		Point targetPoint = new Point(goalNode.getX(), goalNode.getY());
-		resistanceMap = new ResistanceMap(zone.getWidth(), zone.getHeight());
-		for (final RPObject obj : zone) {
-			final Entity otherEntity = (Entity) obj;
-			if (!entity.getID().equals(otherEntity.getID())
-					&& (otherEntity.stopped()|| (otherEntity.squaredDistance(startNode.getX(), startNode.getY()) < COLLISION_DISTANCE_SQUARED))) {
-				final Rectangle2D area = otherEntity.getArea();
-				// Hack: Allow players to move onto portals as destination
-				if ((entity instanceof Player) && (otherEntity instanceof Portal) && area.contains(targetPoint)) {
-					continue;
+	private void prepareEntityCollision() {
+		resistanceLayer = zone.getResistanceLayer();
+		resistance = entity.getResistance();
+
+		final List<Footprint> excludedList = new ArrayList<Footprint>(2);
+		final Footprint own = resistanceLayer.getFootprint(entity);
+		if (own != null) {
+			excludedList.add(own);
+		}
+		// Hack: Allow players to move onto portals as destination
+		if (entity instanceof Player) {
+			final int targetX = getGoalX();
+			final int targetY = getGoalY();
+			for (final Portal portal : zone.getPortals()) {
+				if (portal.getArea().contains(targetX, targetY)) {
+					final Footprint footprint = resistanceLayer.getFootprint(portal);
+					if (footprint != null) {
+						excludedList.add(footprint);
+					}
 				}
-				int resistance = otherEntity.getResistance(entity);
-				resistanceMap.addResistance(area, resistance);
 			}
 		}
+		excluded = excludedList.toArray(new Footprint[excludedList.size()]);
+
+		final List<Footprint> extraList = new ArrayList<Footprint>(2);
+		final Rectangle2D near = new Rectangle2D.Double(getStartX() - 1, getStartY() - 1, 3, 3);
+		for (final Entity otherEntity : zone.getEntitiesIntersecting(near)) {
+			if ((otherEntity != entity) && !otherEntity.stopped()
+					&& (otherEntity.squaredDistance(getStartX(), getStartY()) < COLLISION_DISTANCE_SQUARED)) {
+				extraList.add(new Footprint(otherEntity.getArea(), otherEntity.getResistance()));
+			}
+		}
+		extra = extraList.toArray(new Footprint[extraList.size()]);
 	}
 
 	@Override
-	public TreeNode createNode(int x, int y) {
-		return new PathTreeNode(x, y);
+	protected int getMapWidth() {
+		return zone.getWidth();
 	}
 
-	/**
-	 * Pathfinder node
-	 */
-	private class PathTreeNode extends TreeNode {
-		private final double cost;
-
-		protected PathTreeNode(int x, int y) {
-			super(x, y);
-
-			/*
-			 * Modify movement cost by resistance
-			 */
-			if (resistanceMap != null) {
-				int resistance = resistanceMap.getResistance(x, y , entity.getWidth(), entity.getHeight());
-				cost = 100.0 / (100 - resistance);
-			} else {
-				cost = 1.0;
-			}
-		}
-
-		@Override
-		protected double getCost() {
-			return cost;
-		}
-
-		@Override
-		public TreeNode createNode(int x, int y) {
-			return new PathTreeNode(x, y);
-		}
-
-		@Override
-		protected int createNodeID(int x, int y) {
-			return x + y * zone.getWidth();
-		}
-
-		@Override
-		public boolean isValid(int x, int y) {
-			boolean result = !zone.simpleCollides(entity, x, y, entity.getWidth(), entity.getHeight());
-			if (checkEntities && result) {
-				result = !resistanceMap.collides(x, y, entity.getWidth(), entity.getHeight());
-			}
-
-			return result;
-		}
+	@Override
+	protected int getMapHeight() {
+		return zone.getHeight();
 	}
 
-	/**
-	 * Resistance data for entities.
+	/*
+	 * Modify movement cost by resistance
 	 */
-	private static class ResistanceMap {
-		/** Resistance that corresponds to collision */
-		private static final int COLLISION = 100;
-		/** Minimum resistance that is considered a collision */
-		private static final int COLLIDE_THRESHOLD = 95;
-
-		private final int width, height;
-		private final int[][] map;
-
-		/**
-		 * Create a new ResistanceMap.
-		 *
-		 * @param width width of the area
-		 * @param height height of the area
-		 */
-		public ResistanceMap(int width, int height) {
-			this.width = width;
-			this.height = height;
-			map = new int[width][height];
-		}
-
-		/**
-		 * Check if an area is impassable for the entity.
-		 *
-		 * @param x the x coordinate of the upper left corner of the rectangle to be checked
-		 * @param y the y coordinate of the upper left corner of the rectangle to be checked
-		 * @param w the width of the rectangle to be checked
-		 * @param h the height of the rectangle to be checked
-		 * @return <code>true</code> if area can not be occupied,
-		 * 	<code>false</code> otherwise
-		 */
-		public boolean collides(final double x, final double y, double w, double h) {
-			return getResistance(x, y, w, h) > COLLIDE_THRESHOLD;
+	@Override
+	protected double getCost(int x, int y) {
+		if (resistanceLayer != null) {
+			int r = resistanceLayer.getResistance(x, y, entity.getWidth(), entity.getHeight(),
+					resistance, excluded, extra);
+			return 100.0 / (100 - r);
 		}
+		return 1.0;
+	}
 
-		/**
-		 * Add resistance of an area to the entity.
-		 *
-		 * @param area affected area
-		 * @param resistance value between 0 and 100
-		 */
-		public void addResistance(Rectangle2D area, int resistance) {
-			final double x = area.getX();
-			final double y = area.getY();
-			double w = area.getWidth();
-			double h = area.getHeight();
-
-			final int startx = (int) Math.max(0, x);
-			final int endx = (int) Math.min(width, x + w);
-			final int starty = (int) Math.max(0, y);
-			final int endy = (int) Math.min(height, y + h);
-
-			// Fill the area
-			for (int k = startx; k < endx; k++) {
-				for (int i = starty; i < endy; i++) {
-					/*
-					 * There can be multiple entities covering an area. (Such
-					 * as blood covering a grower). Can we have multiple
-					 * non-zero resistances? Cover the case anyway, in case we
-					 * want to give something like corpses some resistance to
-					 * make it harder to wade through a pile of bodies.
-					 */
-					int old = map[k][i];
-					/*
-					 * Add up like probabilities. Several slightly resistant
-					 * entities can still add up to a completely impassable
-					 * barrier, when the resistance grows over
-					 * COLLIDE_THRESHOLD.
-					 */
-					map[k][i] = 100 - ((100 - old) * (100 - resistance)) / 100;
-				}
-			}
+	@Override
+	protected boolean isValid(int x, int y) {
+		boolean result = !zone.simpleCollides(entity, x, y, entity.getWidth(), entity.getHeight());
+		if (checkEntities && result) {
+			result = !resistanceLayer.collides(x, y, entity.getWidth(), entity.getHeight(),
+					resistance, excluded, extra);
 		}
 
-		/**
-		 * Get resistance for placing the entity to an area.
-		 *
-		 * @param x the x coordinate of the upper left corner of the rectangle to be checked
-		 * @param y the y coordinate of the upper left corner of the rectangle to be checked
-		 * @param w the width of the rectangle to be checked
-		 * @param h the height of the rectangle to be checked
-		 * @return resistance
-		 */
-		public int getResistance(final double x, final double y, double w, double h) {
-			if ((x < 0) || (x >= width)) {
-				return COLLISION;
-			}
-
-			if ((y < 0) || (y >= height)) {
-				return COLLISION;
-			}
-
-			final int startx = (int) Math.max(0, x);
-			final int endx = (int) Math.min(width, x + w);
-			final int starty = (int) Math.max(0, y);
-			final int endy = (int) Math.min(height, y + h);
-
-			final int entitySize = (int) (w * h);
-			int resistance = 0;
-			for (int k = startx; k < endx; k++) {
-				for (int i = starty; i < endy; i++) {
-					int r = map[k][i];
-					if (r > COLLIDE_THRESHOLD) {
-						/*
-						 * A full collision is always collision, regardless of
-						 * the other tiles.
-						 */
-						return COLLISION;
-					} else {
-						/*
-						 * A large creature will find walking over partial
-						 * collision easier than small one. It can step over it
-						 * or just push through using force. On the other hand
-						 * a smaller entity can possibly run between the
-						 * resistant areas.
-						 */
-						resistance += r / entitySize;
-					}
-				}
-			}
-
-			return resistance;
-		}
+		return result;
 	}
 }
@@ -14,10 +14,13 @@ package games.stendhal.server.core.pathfinder;
 
 import java.awt.Rectangle;
 import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.log4j.Logger;
 
+import games.stendhal.server.core.engine.ResistanceLayer;
+import games.stendhal.server.core.engine.ResistanceLayer.Footprint;
 import games.stendhal.server.core.engine.StendhalRPZone;
 import games.stendhal.server.entity.Entity;
 import games.stendhal.server.entity.GuidedEntity;
@@ -166,16 +169,79 @@ public abstract class Path {
 	 */
 	public static List<Node> searchPath(final Entity entity, final Entity dest,
 			final double maxDistance) {
+		final Rectangle2D area = getAdjacentArea(entity, dest);
+		if (!mayReach(entity, area)) {
+			return new ArrayList<Node>(0);
+		}
+
+		return searchPath(entity, entity.getX(), entity.getY(), area, maxDistance);
+	}
+
+	/**
+	 * Finds a path for the Entity <code>entity</code> to the other Entity
+	 * <code>dest</code>. Recent results of the same search are reused, so
+	 * this is suitable for entities that search paths to their targets
+	 * repeatedly.
+	 *
+	 * @param entity
+	 *            the Entity (also start point)
+	 * @param dest
+	 *            the destination Entity
+	 * @param maxDistance
+	 *            the maximum distance (air line) a possible path may be
+	 * @return a list with the path nodes or an empty list if no path is found
+	 */
+	public static List<Node> searchCachedPath(final Entity entity, final Entity dest,
+			final double maxDistance) {
+		final Rectangle2D area = getAdjacentArea(entity, dest);
+		if (!mayReach(entity, area)) {
+			return new ArrayList<Node>(0);
+		}
+
+		final StendhalRPZone zone = entity.getZone();
+		return zone.getPathCache().searchPath(entity, zone, entity.getX(), entity.getY(),
+				area, maxDistance);
+	}
+
+	/**
+	 * Get the area where an entity is next to another entity.
+	 *
+	 * @param entity the moving entity
+	 * @param dest the destination entity
+	 * @return destination area
+	 */
+	private static Rectangle2D getAdjacentArea(final Entity entity, final Entity dest) {
 		/*
 		 * Choose destination area so that the result corresponds to
 		 * any part of the entities being next to each other
 		 */
-		final Rectangle2D area = new Rectangle((int) (dest.getX() - entity.getWidth()),
+		return new Rectangle((int) (dest.getX() - entity.getWidth()),
 				(int) (dest.getY() - entity.getHeight()),
 				(int) (dest.getWidth() + entity.getWidth() + 1),
 				(int) (dest.getHeight() + entity.getHeight() + 1));
+	}
 
-		return searchPath(entity, entity.getX(), entity.getY(), area, maxDistance);
+	/**
+	 * Check if the destination can be reachable for an entity, using the
+	 * connected areas of the zone. Only entities that can not pass the fixed
+	 * blockers are checked.
+	 *
+	 * @param entity the moving entity
+	 * @param destination destination area
+	 * @return <code>false</code> if the destination certainly can not be
+	 * 	reached, otherwise <code>true</code>
+	 */
+	private static boolean mayReach(final Entity entity, final Rectangle2D destination) {
+		final StendhalRPZone zone = entity.getZone();
+		if ((zone == null) || (entity.getResistance() <= ResistanceLayer.COLLIDE_THRESHOLD)) {
+			return true;
+		}
+		final Footprint own = zone.getResistanceLayer().getFootprint(entity);
+		if ((own != null) && own.isFixedBlocker()) {
+			// The entity would block its own way in the map
+			return true;
+		}
+		return zone.getReachabilityMap().mayReach(entity.getX(), entity.getY(), destination);
 	}
 
 	/**
@@ -0,0 +1,189 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.pathfinder;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.entity.Entity;
+import games.stendhal.server.entity.player.Player;
+
+/**
+ * Short lived cache for path search results of a zone. Creatures chasing the
+ * same target search for the same paths over and over again. The results are
+ * shared between entities of the same size and resistance, and are used only
+ * as long as the occupancy of the zone has not changed, and for at most a
+ * short time. Moving entities next to the start position are considered by
+ * the path search, but not by the cache, so the short life time keeps the
+ * effect of them on the cached results small.
+ */
+public final class PathCache {
+	/** Default maximum number of cached paths */
+	private static final int DEFAULT_CAPACITY = 64;
+	/** Default life time of cached paths in milliseconds */
+	private static final long DEFAULT_LIFETIME = 1000;
+
+	private final Map<Key, CachedPath> paths;
+	private final long lifetime;
+	private int hits;
+	private int misses;
+
+	/**
+	 * Create a new PathCache with the default capacity and life time.
+	 */
+	public PathCache() {
+		this(DEFAULT_CAPACITY, DEFAULT_LIFETIME);
+	}
+
+	/**
+	 * Create a new PathCache.
+	 *
+	 * @param capacity maximum number of cached paths
+	 * @param lifetime time in milliseconds a path is kept
+	 */
+	PathCache(final int capacity, final long lifetime) {
+		this.lifetime = lifetime;
+		paths = new LinkedHashMap<Key, CachedPath>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<Key, CachedPath> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Finds a path for an entity, using a cached result if one is available.
+	 *
+	 * @param entity the searching entity
+	 * @param zone the zone
+	 * @param x start x
+	 * @param y start y
+	 * @param destination the destination area
+	 * @param maxDistance the maximum distance (air line) a possible path may be
+	 * @return a list with the path nodes or an empty list if no path is found
+	 */
+	public List<Node> searchPath(final Entity entity, final StendhalRPZone zone, final int x,
+			final int y, final Rectangle2D destination, final double maxDistance) {
+		final Key key = new Key(entity, zone, x, y, destination, maxDistance);
+		final long now = System.currentTimeMillis();
+		synchronized (this) {
+			final CachedPath cached = paths.get(key);
+			if ((cached != null) && (now - cached.created < lifetime)) {
+				hits++;
+				return new ArrayList<Node>(cached.nodes);
+			}
+			misses++;
+		}
+
+		final List<Node> path = Path.searchPath(entity, zone, x, y, destination, maxDistance, true);
+		synchronized (this) {
+			paths.put(key, new CachedPath(new ArrayList<Node>(path), now));
+		}
+		return path;
+	}
+
+	/**
+	 * Get the number of searches answered from the cache.
+	 *
+	 * @return number of hits
+	 */
+	public synchronized int getHits() {
+		return hits;
+	}
+
+	/**
+	 * Get the number of searches that needed a path search.
+	 *
+	 * @return number of misses
+	 */
+	public synchronized int getMisses() {
+		return misses;
+	}
+
+	/**
+	 * A search result and its creation time.
+	 */
+	private static final class CachedPath {
+		private final List<Node> nodes;
+		private final long created;
+
+		CachedPath(final List<Node> nodes, final long created) {
+			this.nodes = nodes;
+			this.created = created;
+		}
+	}
+
+	/**
+	 * The parameters that affect the result of a search.
+	 */
+	private static final class Key {
+		private final double width;
+		private final double height;
+		private final int resistance;
+		/** Players may walk on portals they target */
+		private final boolean player;
+		/** Stopped entities ignore their own resistance */
+		private final boolean stopped;
+		private final int x;
+		private final int y;
+		private final Rectangle2D destination;
+		private final double maxDistance;
+		private final int collisionVersion;
+		private final int occupancyVersion;
+
+		Key(final Entity entity, final StendhalRPZone zone, final int x, final int y,
+				final Rectangle2D destination, final double maxDistance) {
+			width = entity.getWidth();
+			height = entity.getHeight();
+			resistance = entity.getResistance();
+			player = entity instanceof Player;
+			occupancyVersion = zone.getResistanceLayer().getVersion();
+			stopped = zone.getResistanceLayer().getFootprint(entity) != null;
+			collisionVersion = zone.collisionMap.getVersion();
+			this.x = x;
+			this.y = y;
+			this.destination = (Rectangle2D) destination.clone();
+			this.maxDistance = maxDistance;
+		}
+
+		@Override
+		public int hashCode() {
+			int result = x;
+			result = 31 * result + y;
+			result = 31 * result + destination.hashCode();
+			result = 31 * result + occupancyVersion;
+			return result;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			final Key other = (Key) obj;
+			return (x == other.x) && (y == other.y) && (width == other.width)
+					&& (height == other.height) && (resistance == other.resistance)
+					&& (player == other.player) && (stopped == other.stopped)
+					&& (maxDistance == other.maxDistance)
+					&& (collisionVersion == other.collisionVersion)
+					&& (occupancyVersion == other.occupancyVersion)
+					&& destination.equals(other.destination);
+		}
+	}
+}
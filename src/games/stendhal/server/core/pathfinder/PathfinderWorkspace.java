@@ -0,0 +1,232 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.pathfinder;
+
+import java.util.Arrays;
+
+/**
+ * Reusable working set of the A* search. Nodes are identified by their index
+ * <code>x + y * width</code> in the searched map, and all node data is kept in
+ * primitive arrays, so a search does not allocate objects per visited node.
+ * <p>
+ * The arrays are not cleared between searches. Instead every search gets a
+ * new generation number, and node data is only valid if the node was visited
+ * in the current generation.
+ * <p>
+ * Workspaces are kept per thread and grow to the largest map searched so
+ * far.
+ */
+final class PathfinderWorkspace {
+	private static final ThreadLocal<PathfinderWorkspace> POOL = new ThreadLocal<PathfinderWorkspace>() {
+		@Override
+		protected PathfinderWorkspace initialValue() {
+			return new PathfinderWorkspace();
+		}
+	};
+
+	/** Generation in which a node was last visited. */
+	private int[] visited = new int[0];
+	/** Position of a node in the open heap, or -1 if it is not open. */
+	private int[] heapIndex = new int[0];
+	/** Node that a node was reached from, or -1 for the start node. */
+	private int[] parent = new int[0];
+	/** Cost of entering a node. */
+	private double[] cost = new double[0];
+	/** Cost of the best known path to a node. */
+	private double[] g = new double[0];
+	/** Estimated total cost of a path through a node. */
+	private double[] weight = new double[0];
+
+	/** The open list, as a binary heap ordered by weight. */
+	private int[] heap = new int[0];
+	private int heapSize;
+
+	private int generation;
+	private boolean inUse;
+
+	private PathfinderWorkspace() {
+		// use acquire()
+	}
+
+	/**
+	 * Gets a workspace for a search. The workspace must be released with
+	 * <code>release()</code> when the search is done.
+	 *
+	 * @param size number of nodes in the searched map
+	 * @return an empty workspace
+	 */
+	static PathfinderWorkspace acquire(final int size) {
+		PathfinderWorkspace workspace = POOL.get();
+		if (workspace.inUse) {
+			// a search started from within another one. Should not happen,
+			// but do not break the outer search if it does
+			workspace = new PathfinderWorkspace();
+		}
+		workspace.inUse = true;
+		workspace.reset(size);
+		return workspace;
+	}
+
+	/**
+	 * Returns the workspace for reuse.
+	 */
+	void release() {
+		inUse = false;
+	}
+
+	private void reset(final int size) {
+		if (visited.length < size) {
+			visited = new int[size];
+			heapIndex = new int[size];
+			parent = new int[size];
+			cost = new double[size];
+			g = new double[size];
+			weight = new double[size];
+			heap = new int[size];
+			generation = 0;
+		}
+		heapSize = 0;
+		generation++;
+		if (generation == 0) {
+			// wrapped around. Old stamps could be mistaken for current ones
+			Arrays.fill(visited, 0);
+			generation = 1;
+		}
+	}
+
+	/**
+	 * Checks if a node has been visited in the current search.
+	 *
+	 * @param node node index
+	 * @return <code>true</code> if the node has been visited
+	 */
+	boolean isVisited(final int node) {
+		return visited[node] == generation;
+	}
+
+	/**
+	 * Marks a node as visited and adds it to the open list.
+	 *
+	 * @param node node index
+	 * @param nodeCost cost of entering the node
+	 * @param nodeG cost of the path to the node
+	 * @param nodeWeight estimated total cost
+	 * @param nodeParent the node it was reached from, or -1
+	 */
+	void visit(final int node, final double nodeCost, final double nodeG, final double nodeWeight, final int nodeParent) {
+		visited[node] = generation;
+		cost[node] = nodeCost;
+		g[node] = nodeG;
+		weight[node] = nodeWeight;
+		parent[node] = nodeParent;
+		heapIndex[node] = -1;
+		offer(node);
+	}
+
+	/**
+	 * Changes the path to an already visited node. The node is moved in the
+	 * open list, or reopened if it had been closed.
+	 *
+	 * @param node node index
+	 * @param nodeG cost of the new path to the node
+	 * @param nodeWeight new estimated total cost
+	 * @param nodeParent the node it is now reached from
+	 */
+	void update(final int node, final double nodeG, final double nodeWeight, final int nodeParent) {
+		g[node] = nodeG;
+		weight[node] = nodeWeight;
+		parent[node] = nodeParent;
+		final int index = heapIndex[node];
+		if (index < 0) {
+			offer(node);
+		} else {
+			siftUp(index, node);
+		}
+	}
+
+	/**
+	 * Removes the open node with the smallest weight.
+	 *
+	 * @return node index, or -1 if the open list is empty
+	 */
+	int poll() {
+		if (heapSize == 0) {
+			return -1;
+		}
+		final int result = heap[0];
+		final int last = heap[--heapSize];
+		if (heapSize > 0) {
+			siftDown(0, last);
+		}
+		heapIndex[result] = -1;
+		return result;
+	}
+
+	double getCost(final int node) {
+		return cost[node];
+	}
+
+	double getG(final int node) {
+		return g[node];
+	}
+
+	int getParent(final int node) {
+		return parent[node];
+	}
+
+	/*
+	 * The heap operations mirror those of java.util.PriorityQueue, so that
+	 * nodes of equal weight are expanded in the same order as before.
+	 */
+
+	private void offer(final int node) {
+		siftUp(heapSize++, node);
+	}
+
+	private void siftUp(int index, final int node) {
+		final double nodeWeight = weight[node];
+		while (index > 0) {
+			final int parentIndex = (index - 1) >>> 1;
+			final int other = heap[parentIndex];
+			if (nodeWeight >= weight[other]) {
+				break;
+			}
+			heap[index] = other;
+			heapIndex[other] = index;
+			index = parentIndex;
+		}
+		heap[index] = node;
+		heapIndex[node] = index;
+	}
+
+	private void siftDown(int index, final int node) {
+		final double nodeWeight = weight[node];
+		final int half = heapSize >>> 1;
+		while (index < half) {
+			int child = 2 * index + 1;
+			int smallest = heap[child];
+			final int right = child + 1;
+			if ((right < heapSize) && (weight[smallest] > weight[heap[right]])) {
+				child = right;
+				smallest = heap[child];
+			}
+			if (nodeWeight <= weight[smallest]) {
+				break;
+			}
+			heap[index] = smallest;
+			heapIndex[smallest] = index;
+			index = child;
+		}
+		heap[index] = node;
+		heapIndex[node] = index;
+	}
+}
@@ -40,28 +40,17 @@ public class SimplePathfinder extends Pathfinder {
 	}
 
 	@Override
-	public TreeNode createNode(int x, int y) {
-		return new SimpleTreeNode(x, y);
+	protected int getMapWidth() {
+		return collision.getWidth();
 	}
 
-	private class SimpleTreeNode extends TreeNode {
-		protected SimpleTreeNode(int x, int y) {
-			super(x, y);
-		}
-
-		@Override
-		public TreeNode createNode(int x, int y) {
-			return new SimpleTreeNode(x, y);
-		}
-
-		@Override
-		protected int createNodeID(int x, int y) {
-			return x + y * collision.getWidth();
-		}
+	@Override
+	protected int getMapHeight() {
+		return collision.getHeight();
+	}
 
-		@Override
-		public boolean isValid(int x, int y) {
-			return !collision.collides(x, y);
-		}
+	@Override
+	protected boolean isValid(int x, int y) {
+		return !collision.collides(x, y);
 	}
 }
@@ -35,6 +35,7 @@ import games.stendhal.server.core.events.ZoneNotifier;
 import games.stendhal.server.core.pathfinder.Node;
 import games.stendhal.server.core.pathfinder.Path;
 import games.stendhal.server.core.rp.group.Group;
+import games.stendhal.server.entity.CombatSnapshot;
 import games.stendhal.server.entity.Entity;
 import games.stendhal.server.entity.RPEntity;
 import games.stendhal.server.entity.creature.DomesticAnimal;
@@ -353,16 +354,17 @@ public class StendhalRPAction {
 
 		int damage = -1;
 		if (beaten) {
-			final List<Item> weapons = player.getWeapons();
+			final CombatSnapshot snapshot = player.getCombatSnapshot();
+			final List<Item> weapons = snapshot.getWeapons();
 			final float itemAtk;
 
 			if (Testing.COMBAT && isRanged) {
-				itemAtk = player.getItemRatk();
+				itemAtk = snapshot.getItemRatk();
 			} else {
-				itemAtk = player.getItemAtk();
+				itemAtk = snapshot.getItemAtk();
 			}
 
-			damage = player.damageDone(defender, itemAtk, player.getDamageType());
+			damage = player.damageDone(defender, itemAtk, snapshot.getDamageType());
 			final boolean didDamage = damage > 0;
 
 			// give xp even if attack was blocked
@@ -407,7 +409,7 @@ public class StendhalRPAction {
 			}
 
 			// randomly choose one defensive item to deteriorate
-			final List<Item> defenseItems = defender.getDefenseItems();
+			final List<Item> defenseItems = defender.getCombatSnapshot().getDefenseItems();
 			if(!defenseItems.isEmpty()) {
 				final Item equip = Rand.rand(defenseItems);
 				equip.deteriorate(defender);
@@ -420,7 +422,7 @@ public class StendhalRPAction {
 				}
 			}
 
-			player.addEvent(new AttackEvent(true, damage, player.getDamageType(), weaponClass, isRanged));
+			player.addEvent(new AttackEvent(true, damage, snapshot.getDamageType(), weaponClass, isRanged));
 			player.notifyWorldAboutChanges();
 		} else {
 			// Missed
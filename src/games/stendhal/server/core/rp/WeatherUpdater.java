@@ -1,5 +1,5 @@
 /***************************************************************************
- *                (C) Copyright 2003-2014 - Faiumoni E.V.                  *
+ *                (C) Copyright 2003-2023 - Faiumoni E.V.                  *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -244,7 +244,7 @@ public class WeatherUpdater implements TurnListener {
 				attr.remove(WEATHER);
 			}
 			// Notify resident players about the changed weather
-			attr.getZone().notifyOnlinePlayers();
+			attr.getZone().notifyAttributesChanged();
 		}
 	}
 
@@ -73,8 +73,9 @@ public class LuaActionHelper {
 		return new ChatAction() {
 			@Override
 			public void fire(final Player player, final Sentence sentence, final EventRaiser npc) {
-				lf.invoke(new LuaValue[] {CoerceJavaToLua.coerce(player),
-					CoerceJavaToLua.coerce(sentence), CoerceJavaToLua.coerce(npc)});
+				final LuaValue[] args = new LuaValue[] {CoerceJavaToLua.coerce(player),
+					CoerceJavaToLua.coerce(sentence), CoerceJavaToLua.coerce(npc)};
+				LuaProfiler.get().run(lf, () -> lf.invoke(args));
 			}
 		};
 	}
@@ -0,0 +1,190 @@
+/***************************************************************************
+ *                       Copyright © 2023 - Stendhal                       *
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.scripting.lua;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.log4j.Logger;
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.Lua;
+import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaFunction;
+import org.luaj.vm2.Prototype;
+import org.luaj.vm2.compiler.DumpState;
+
+
+/**
+ * Caches compiled Lua chunks on disk.
+ *
+ * Scripts are stored as LuaJ prototype dumps named by the hash of the chunk
+ * name & the script source, so a script is compiled again only if it has
+ * changed. Enabled by setting `lua_chunk_cache` in server.ini to the cache
+ * directory.
+ */
+class LuaChunkCache {
+
+	private static final Logger logger = Logger.getLogger(LuaChunkCache.class);
+
+	/** Directory where compiled chunks are stored. */
+	private final Path directory;
+	/** Number of chunks loaded from cache. */
+	private int hits;
+	/** Number of chunks that had to be compiled. */
+	private int misses;
+
+
+	/**
+	 * Creates a new cache.
+	 *
+	 * @param directory
+	 *   Directory where compiled chunks are stored.
+	 */
+	LuaChunkCache(final Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Loads a chunk from cache or compiles it.
+	 *
+	 * @param globals
+	 *   Lua environment.
+	 * @param source
+	 *   Lua source code. The stream is closed afterwards.
+	 * @param chunkname
+	 *   Identifier for the chunk.
+	 * @return
+	 *   Main function of the chunk.
+	 * @throws IOException
+	 *   If source cannot be read.
+	 */
+	synchronized LuaFunction load(final Globals globals, final InputStream source,
+			final String chunkname) throws IOException {
+		final byte[] data;
+		try {
+			data = readAll(source);
+		} finally {
+			source.close();
+		}
+
+		final Path file = directory.resolve(getKey(chunkname, data) + ".luac");
+		Prototype prototype = null;
+		if (Files.isRegularFile(file)) {
+			try (InputStream is = Files.newInputStream(file)) {
+				prototype = globals.loadPrototype(is, chunkname, "b");
+				hits++;
+			} catch (final IOException | LuaError e) {
+				logger.warn("Discarding unreadable compiled chunk " + file + " for " + chunkname, e);
+			}
+		}
+
+		if (prototype == null) {
+			prototype = globals.compilePrototype(new ByteArrayInputStream(data), chunkname);
+			misses++;
+			store(prototype, file);
+		}
+		return globals.loader.load(prototype, chunkname, globals);
+	}
+
+	/**
+	 * Writes a compiled chunk to cache.
+	 *
+	 * @param prototype
+	 *   Compiled chunk.
+	 * @param file
+	 *   Cache file.
+	 */
+	private void store(final Prototype prototype, final Path file) {
+		try {
+			Files.createDirectories(directory);
+			// write to temporary file first so that other servers sharing
+			// the cache never see partial files
+			final Path tmp = Files.createTempFile(directory, "chunk", ".tmp");
+			try (OutputStream os = Files.newOutputStream(tmp)) {
+				DumpState.dump(prototype, os, false);
+			}
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+		} catch (final IOException e) {
+			logger.warn("Could not store compiled chunk " + file, e);
+		}
+	}
+
+	/**
+	 * Retrieves number of chunks loaded from cache.
+	 */
+	synchronized int getHits() {
+		return hits;
+	}
+
+	/**
+	 * Retrieves number of chunks that were compiled.
+	 */
+	synchronized int getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Creates cache key for a script.
+	 *
+	 * @param chunkname
+	 *   Identifier for the chunk.
+	 * @param data
+	 *   Lua source code.
+	 * @return
+	 *   Hexadecimal hash.
+	 */
+	static String getKey(final String chunkname, final byte[] data) {
+		final MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (final NoSuchAlgorithmException e) {
+			// required to be supported by every JVM
+			throw new IllegalStateException(e);
+		}
+		digest.update(Lua._VERSION.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+		digest.update(chunkname.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+		digest.update(data);
+
+		final StringBuilder sb = new StringBuilder();
+		for (final byte b: digest.digest()) {
+			sb.append(String.format("%02x", b));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Reads all data from a stream.
+	 *
+	 * @param is
+	 *   Stream to read.
+	 * @return
+	 *   Read data.
+	 */
+	private static byte[] readAll(final InputStream is) throws IOException {
+		final ByteArrayOutputStream os = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[4096];
+		for (int len = is.read(buffer); len != -1; len = is.read(buffer)) {
+			os.write(buffer, 0, len);
+		}
+		return os.toByteArray();
+	}
+}
@@ -1060,7 +1060,7 @@ public class LuaEntityHelper {
 					SingletonRepository.getTurnNotifier().notifyInTurns(1, new TurnListener() {
 						@Override
 						public void onTurnReached(final int currentTurn) {
-							idleAction.call(CoerceJavaToLua.coerce(thisNPC));
+							LuaProfiler.get().run(idleAction, () -> idleAction.call(CoerceJavaToLua.coerce(thisNPC)));
 						}
 					});
 				}
@@ -1075,7 +1075,8 @@ public class LuaEntityHelper {
 		@Override
 		public void onRejectedAttackStart(final RPEntity attacker) {
 			if (attackRejectedAction != null) {
-				attackRejectedAction.call(CoerceJavaToLua.coerce(this), CoerceJavaToLua.coerce(attacker));
+				LuaProfiler.get().run(attackRejectedAction,
+						() -> attackRejectedAction.call(CoerceJavaToLua.coerce(this), CoerceJavaToLua.coerce(attacker)));
 			} else if (!ignorePlayers) {
 				super.onRejectedAttackStart(attacker);
 			}
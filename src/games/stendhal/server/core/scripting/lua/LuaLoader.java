@@ -39,6 +39,7 @@ import org.luaj.vm2.lib.jse.LuajavaLib;
 import games.stendhal.common.Rand;
 import games.stendhal.common.grammar.Grammar;
 import games.stendhal.server.core.engine.SingletonRepository;
+import marauroa.common.Configuration;
 
 
 /**
@@ -55,6 +56,8 @@ public class LuaLoader {
 	private static LuaFunction dofileOrig;
 	/** Script that is currently loaded. */
 	private LuaScript currentScript;
+	/** Cache for compiled scripts, or `null` if scripts are always compiled. */
+	private LuaChunkCache chunkCache;
 
 	/** Singleton instance. */
 	private static LuaLoader instance;
@@ -88,6 +91,7 @@ public class LuaLoader {
 		logger.info("Initializing Lua environment (" + Lua._VERSION + ")");
 
 		globals = JsePlatform.standardGlobals();
+		chunkCache = createChunkCache();
 
 		globals.load(new JseBaseLib());
 		globals.load(new PackageLib());
@@ -176,6 +180,26 @@ public class LuaLoader {
 		}
 	}
 
+	/**
+	 * Creates the compiled script cache if enabled in server configuration.
+	 *
+	 * @return
+	 *     Cache or `null` if not enabled.
+	 */
+	private LuaChunkCache createChunkCache() {
+		try {
+			final Configuration conf = Configuration.getConfiguration();
+			if (conf.has("lua_chunk_cache")) {
+				final Path directory = Paths.get(conf.get("lua_chunk_cache"));
+				logger.info("Caching compiled Lua scripts in " + directory);
+				return new LuaChunkCache(directory);
+			}
+		} catch (final IOException e) {
+			logger.error(e, e);
+		}
+		return null;
+	}
+
 	/**
 	 * Create new script instance.
 	 *
@@ -195,6 +219,16 @@ public class LuaLoader {
 		return globals;
 	}
 
+	/**
+	 * Retrieves cache for compiled scripts.
+	 *
+	 * @return
+	 *     Cache or `null` if scripts are compiled on each load.
+	 */
+	LuaChunkCache getChunkCache() {
+		return chunkCache;
+	}
+
 	/**
 	 * Action when a new script is being loaded.
 	 */
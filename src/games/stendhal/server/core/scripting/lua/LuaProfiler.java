@@ -0,0 +1,267 @@
+/***************************************************************************
+ *                       Copyright © 2023 - Stendhal                       *
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.scripting.lua;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.luaj.vm2.LuaClosure;
+import org.luaj.vm2.LuaValue;
+
+
+/**
+ * Counts calls and CPU time of Lua scripts.
+ *
+ * Time spent in a Lua function is attributed to the script that defines the
+ * function, so that time used by the callbacks of NPCs & quests is reported
+ * for the script that created them. Time spent in nested calls to other
+ * scripts is only counted for the nested script.
+ */
+public class LuaProfiler {
+
+	/** Name used for functions that are not defined in a script. */
+	static final String UNKNOWN = "[unknown]";
+
+	/** Singleton instance. */
+	private static LuaProfiler instance;
+
+	/** Statistics by script name. */
+	private final Map<String, ScriptStatistics> scripts = new HashMap<String, ScriptStatistics>();
+	/** Thread management for measuring CPU time. */
+	private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+	/** Set if CPU time is measured, otherwise elapsed time is used. */
+	private final boolean cpuTime;
+	/** Time spent in nested calls of the currently running call. */
+	private long nestedTime;
+
+
+	/**
+	 * Retrieves the singleton instance.
+	 */
+	public static synchronized LuaProfiler get() {
+		if (instance == null) {
+			instance = new LuaProfiler();
+		}
+		return instance;
+	}
+
+	/**
+	 * Hidden singleton constructor.
+	 */
+	private LuaProfiler() {
+		cpuTime = threads.isCurrentThreadCpuTimeSupported() && threads.isThreadCpuTimeEnabled();
+	}
+
+	/**
+	 * Retrieves name of script where a function is defined.
+	 *
+	 * @param function
+	 *   Lua function.
+	 * @return
+	 *   Script chunk name or filename.
+	 */
+	static String getScriptName(final LuaValue function) {
+		if (function instanceof LuaClosure) {
+			final String source = ((LuaClosure) function).p.source.tojstring();
+			// files are loaded with '@' prefixed to the filename
+			if (source.startsWith("@")) {
+				return source.substring(1);
+			}
+			return source;
+		}
+		return UNKNOWN;
+	}
+
+	/**
+	 * Runs Lua code & counts it for the script where a function is defined.
+	 *
+	 * @param function
+	 *   Function that is called.
+	 * @param body
+	 *   Code calling the function.
+	 * @return
+	 *   Result of body.
+	 */
+	public <T> T run(final LuaValue function, final Supplier<T> body) {
+		return run(getScriptName(function), body);
+	}
+
+	/**
+	 * Runs Lua code & counts it for a script.
+	 *
+	 * @param script
+	 *   Script chunk name or filename.
+	 * @param body
+	 *   Code to be executed.
+	 * @return
+	 *   Result of body.
+	 */
+	public <T> T run(final String script, final Supplier<T> body) {
+		final long outerNestedTime = nestedTime;
+		nestedTime = 0;
+		final long start = getTime();
+		boolean failed = true;
+		try {
+			final T result = body.get();
+			failed = false;
+			return result;
+		} finally {
+			final long elapsed = getTime() - start;
+			record(script, elapsed - nestedTime, failed);
+			nestedTime = outerNestedTime + elapsed;
+		}
+	}
+
+	/**
+	 * Retrieves current time of the executing thread.
+	 *
+	 * @return
+	 *   Time in nanoseconds.
+	 */
+	private long getTime() {
+		if (cpuTime) {
+			return threads.getCurrentThreadCpuTime();
+		}
+		return System.nanoTime();
+	}
+
+	/**
+	 * Adds a call to the statistics of a script.
+	 *
+	 * @param script
+	 *   Script chunk name or filename.
+	 * @param time
+	 *   Time spent in script in nanoseconds.
+	 * @param failed
+	 *   `true` if the call ended with an error.
+	 */
+	private synchronized void record(final String script, final long time, final boolean failed) {
+		ScriptStatistics stats = scripts.get(script);
+		if (stats == null) {
+			stats = new ScriptStatistics(script);
+			scripts.put(script, stats);
+		}
+		stats.calls++;
+		stats.time += time;
+		stats.maxTime = Math.max(stats.maxTime, time);
+		if (failed) {
+			stats.errors++;
+		}
+	}
+
+	/**
+	 * Checks if CPU time is measured.
+	 *
+	 * @return
+	 *   `true` for CPU time, `false` if elapsed time is measured instead.
+	 */
+	public boolean isCpuTime() {
+		return cpuTime;
+	}
+
+	/**
+	 * Retrieves a copy of the statistics of all scripts.
+	 *
+	 * @return
+	 *   Statistics sorted by total time, slowest first.
+	 */
+	public synchronized List<ScriptStatistics> getStatistics() {
+		final List<ScriptStatistics> list = new ArrayList<ScriptStatistics>(scripts.size());
+		for (final ScriptStatistics stats: scripts.values()) {
+			list.add(new ScriptStatistics(stats));
+		}
+		list.sort((a, b) -> Long.compare(b.time, a.time));
+		return list;
+	}
+
+	/**
+	 * Clears all statistics.
+	 */
+	public synchronized void reset() {
+		scripts.clear();
+	}
+
+
+	/**
+	 * Call counters of a script.
+	 */
+	public static class ScriptStatistics {
+		private final String script;
+		private long calls;
+		private long errors;
+		private long time;
+		private long maxTime;
+
+		/**
+		 * Creates empty statistics.
+		 *
+		 * @param script
+		 *   Script chunk name or filename.
+		 */
+		private ScriptStatistics(final String script) {
+			this.script = script;
+		}
+
+		/**
+		 * Creates a copy of statistics.
+		 *
+		 * @param other
+		 *   Statistics to copy.
+		 */
+		private ScriptStatistics(final ScriptStatistics other) {
+			script = other.script;
+			calls = other.calls;
+			errors = other.errors;
+			time = other.time;
+			maxTime = other.maxTime;
+		}
+
+		/**
+		 * Retrieves script chunk name or filename.
+		 */
+		public String getScript() {
+			return script;
+		}
+
+		/**
+		 * Retrieves number of calls.
+		 */
+		public long getCalls() {
+			return calls;
+		}
+
+		/**
+		 * Retrieves number of calls that ended with an error.
+		 */
+		public long getErrors() {
+			return errors;
+		}
+
+		/**
+		 * Retrieves total time in nanoseconds.
+		 */
+		public long getTime() {
+			return time;
+		}
+
+		/**
+		 * Retrieves time of the slowest call in nanoseconds.
+		 */
+		public long getMaxTime() {
+			return maxTime;
+		}
+	}
+}
@@ -474,7 +474,7 @@ public class LuaQuestHelper {
 		 *   Returned value of the called Lua function.
 		 */
 		private boolean checkBoolFunction(final LuaFunction lf) {
-			final LuaValue result = lf.call();
+			final LuaValue result = LuaProfiler.get().run(lf, () -> lf.call());
 			if (result.isboolean()) {
 				return result.toboolean();
 			}
@@ -525,7 +525,7 @@ public class LuaQuestHelper {
 				return ret;
 			}
 
-			final LuaValue result = history.call(CoerceJavaToLua.coerce(player));
+			final LuaValue result = LuaProfiler.get().run(history, () -> history.call(CoerceJavaToLua.coerce(player)));
 			if (result.istable()) {
 				for (final LuaValue key: result.checktable().keys()) {
 					if (key.isstring()) {
@@ -544,7 +544,7 @@ public class LuaQuestHelper {
 			}
 
 			final List<String> ret = new LinkedList<>();
-			final LuaValue result = history.call(CoerceJavaToLua.coerce(player));
+			final LuaValue result = LuaProfiler.get().run(history, () -> history.call(CoerceJavaToLua.coerce(player)));
 			if (result.istable()) {
 				for (final LuaValue key: result.checktable().keys()) {
 					if (key.isstring()) {
@@ -588,7 +588,7 @@ public class LuaQuestHelper {
 		@Override
 		public void addToWorld() {
 			if (init != null) {
-				init.invoke(); // or should this be init.call()?
+				LuaProfiler.get().run(init, () -> init.invoke()); // or should this be init.call()?
 			} else {
 				logger.warn("LuaQuest.init not set. Quest will not work.");
 			}
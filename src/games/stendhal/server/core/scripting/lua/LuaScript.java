@@ -19,6 +19,8 @@ import java.nio.file.Paths;
 import java.util.List;
 
 import org.apache.log4j.Logger;
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LuaFunction;
 import org.luaj.vm2.LuaValue;
 
 import games.stendhal.server.core.scripting.ScriptingSandbox;
@@ -163,12 +165,12 @@ public class LuaScript extends ScriptingSandbox {
 	public boolean load() {
 		onLoad();
 
-		LuaValue result = LuaValue.NIL;
-		if (istream != null) {
-			result = loadStream();
-		} else {
-			result = loadFile();
-		}
+		final LuaValue result = LuaProfiler.get().run(filename, () -> {
+			if (istream != null) {
+				return loadStream();
+			}
+			return loadFile();
+		});
 
 		boolean success = true;
 		if (result.isint() || result.isnil()) {
@@ -191,8 +193,25 @@ public class LuaScript extends ScriptingSandbox {
 	 *   LuaValue result returned by the executed script.
 	 */
 	LuaValue loadFile() {
+		final Globals globals = LuaLoader.get().getGlobals();
+		final LuaChunkCache cache = LuaLoader.get().getChunkCache();
+		if (cache != null) {
+			final InputStream is = globals.finder.findResource(filename);
+			if (is != null) {
+				LuaFunction chunk = null;
+				try {
+					// same chunk name as used by loadfile
+					chunk = cache.load(globals, is, "@" + filename);
+				} catch (final IOException e) {
+					Logger.getLogger(LuaScript.class).error(e, e);
+				}
+				if (chunk != null) {
+					return chunk.call();
+				}
+			}
+		}
 		// run script
-		return LuaLoader.get().getGlobals().loadfile(filename).call();
+		return globals.loadfile(filename).call();
 	}
 
 	/**
@@ -202,6 +221,16 @@ public class LuaScript extends ScriptingSandbox {
 	 *   LuaValue result returned by the executed script.
 	 */
 	LuaValue loadStream() {
+		final LuaChunkCache cache = LuaLoader.get().getChunkCache();
+		if (cache != null) {
+			try {
+				return cache.load(LuaLoader.get().getGlobals(), istream, filename).call();
+			} catch (final IOException e) {
+				Logger.getLogger(LuaScript.class).error(e, e);
+				return LuaValue.ONE;
+			}
+		}
+
 		LuaValue result = LuaValue.NIL;
 		try {
 			final BufferedReader reader = new BufferedReader(new InputStreamReader(istream));
@@ -118,7 +118,7 @@ public class LuaWorldHelper extends ScriptingSandbox {
 		SingletonRepository.getTurnNotifier().notifyInTurns(turns, new TurnListener() {
 			@Override
 			public void onTurnReached(final int currentTurn) {
-				func.call();
+				LuaProfiler.get().run(func, () -> func.call());
 			}
 		});
 	}
@@ -188,6 +188,8 @@ public abstract class ActiveEntity extends Entity {
 		if (has("speed")) {
 			speed = getDouble("speed");
 		}
+
+		onResistanceChanged();
 	}
 
 	/**
@@ -454,8 +456,12 @@ public abstract class ActiveEntity extends Entity {
 			return;
 		}
 
+		final boolean wasStopped = stopped();
 		this.speed = speed;
 		put("speed", speed);
+		if (wasStopped != stopped()) {
+			onResistanceChanged();
+		}
 		notifyWorldAboutChanges();
 	}
 
@@ -0,0 +1,249 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.entity;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableList;
+
+import games.stendhal.common.constants.Nature;
+import games.stendhal.server.entity.creature.Creature;
+import games.stendhal.server.entity.item.Item;
+import games.stendhal.server.entity.status.StatusAttacker;
+
+/**
+ * The combat values of an entity, derived from its equipment and level.
+ * Walking the equipment slots is relatively expensive, so the values are
+ * calculated once and kept until the entity is told that its equipment or
+ * level changed. See {@link RPEntity#getCombatSnapshot()}.
+ */
+public final class CombatSnapshot {
+	private final Item weapon;
+	private final List<Item> weapons;
+	private final List<Item> defenseItems;
+	private final float itemAtk;
+	private final float itemRatk;
+	private final float itemDef;
+	private final Nature damageType;
+	private final Nature rangedDamageType;
+	private final Map<Nature, Double> susceptibilities;
+	private final List<StatusAttacker> statusAttackers;
+	private final float lifesteal;
+	private final float lifestealWeight;
+
+	/**
+	 * Calculates the combat values of an entity.
+	 *
+	 * @param entity entity
+	 */
+	CombatSnapshot(final RPEntity entity) {
+		weapon = entity.getWeapon();
+		weapons = ImmutableList.copyOf(entity.getWeapons());
+		defenseItems = ImmutableList.copyOf(entity.getDefenseItems());
+		itemAtk = entity.getItemAtk();
+		itemRatk = entity.getItemRatk();
+		itemDef = entity.getItemDef();
+		damageType = entity.getDamageType();
+		rangedDamageType = entity.getRangedDamageType();
+		susceptibilities = new EnumMap<>(Nature.class);
+		for (final Nature nature : Nature.values()) {
+			susceptibilities.put(nature, entity.getSusceptibility(nature));
+		}
+		statusAttackers = Collections.unmodifiableList(entity.getAllStatusAttackers());
+		lifesteal = getLifesteal(entity, weapons);
+		lifestealWeight = getLifestealWeight(entity, weapons);
+	}
+
+	/**
+	 * Get the weapon the entity is holding in its hands.
+	 *
+	 * @return weapon, or <code>null</code>
+	 * @see RPEntity#getWeapon()
+	 */
+	public Item getWeapon() {
+		return weapon;
+	}
+
+	/**
+	 * Get the weapons the entity attacks with.
+	 *
+	 * @return unmodifiable list of weapons
+	 * @see RPEntity#getWeapons()
+	 */
+	public List<Item> getWeapons() {
+		return weapons;
+	}
+
+	/**
+	 * Get the equipped items that affect the defense, except the weapons.
+	 *
+	 * @return unmodifiable list of defensive items
+	 * @see RPEntity#getDefenseItems()
+	 */
+	public List<Item> getDefenseItems() {
+		return defenseItems;
+	}
+
+	/**
+	 * Get the attack value of the equipment.
+	 *
+	 * @return item atk
+	 */
+	public float getItemAtk() {
+		return itemAtk;
+	}
+
+	/**
+	 * Get the ranged attack value of the equipment.
+	 *
+	 * @return item ratk
+	 */
+	public float getItemRatk() {
+		return itemRatk;
+	}
+
+	/**
+	 * Get the defense value of the equipment.
+	 *
+	 * @return item def
+	 */
+	public float getItemDef() {
+		return itemDef;
+	}
+
+	/**
+	 * Get the nature of the damage the entity inflicts in melee.
+	 *
+	 * @return damage type
+	 */
+	public Nature getDamageType() {
+		return damageType;
+	}
+
+	/**
+	 * Get the nature of the damage the entity inflicts in ranged attacks.
+	 *
+	 * @return damage type
+	 */
+	public Nature getRangedDamageType() {
+		return rangedDamageType;
+	}
+
+	/**
+	 * Get the damage multiplier for a damage type when the entity is
+	 * damaged.
+	 *
+	 * @param type damage type
+	 * @return damage multiplier
+	 */
+	public double getSusceptibility(final Nature type) {
+		return susceptibilities.get(type);
+	}
+
+	/**
+	 * Get the statuses the entity can try to inflict, including the ones of
+	 * its weapons and ammunition.
+	 *
+	 * @return unmodifiable list of status attackers
+	 */
+	public List<StatusAttacker> getStatusAttackers() {
+		return statusAttackers;
+	}
+
+	/**
+	 * Get the hit points the entity gains when it inflicts damage.
+	 *
+	 * @param damage inflicted damage
+	 * @return gained hit points. Negative values mean that the entity hurts
+	 * 	itself
+	 */
+	public int getLifesteal(final int damage) {
+		if (lifesteal == 0) {
+			return 0;
+		}
+		return getLifesteal(lifesteal, lifestealWeight, damage);
+	}
+
+	/**
+	 * Check if the entity gains or loses hit points when it inflicts damage.
+	 *
+	 * @return <code>true</code> if the entity has lifesteal
+	 */
+	public boolean hasLifesteal() {
+		return lifesteal != 0;
+	}
+
+	/**
+	 * Calculate the lifesteal value of an attacker. In case of a lifesteal
+	 * weapon used together with a non-lifesteal weapon, it is weighted based
+	 * on the atk-values of the weapons.
+	 *
+	 * @param attacker attacking entity
+	 * @param weapons weapons of the attacker
+	 * @return sum of the weighted lifesteal values
+	 */
+	static float getLifesteal(final RPEntity attacker, final List<Item> weapons) {
+		// Creature with lifesteal profile?
+		if (attacker instanceof Creature) {
+			final String value = ((Creature) attacker).getAIProfile("lifesteal");
+			if (value == null) {
+				// The creature doesn't steal life.
+				return 0;
+			}
+			return Float.parseFloat(value);
+		}
+
+		// weapons with lifesteal attribute for players
+		float sumLifesteal = 0;
+		for (final Item weaponItem : weapons) {
+			if (weaponItem.has("lifesteal")) {
+				sumLifesteal += weaponItem.getAttack() * weaponItem.getDouble("lifesteal");
+			}
+		}
+		return sumLifesteal;
+	}
+
+	/**
+	 * Calculate the weight the lifesteal value of an attacker is divided by.
+	 *
+	 * @param attacker attacking entity
+	 * @param weapons weapons of the attacker
+	 * @return sum of the weights
+	 */
+	static float getLifestealWeight(final RPEntity attacker, final List<Item> weapons) {
+		if (attacker instanceof Creature) {
+			return 1;
+		}
+
+		float sumAll = 0;
+		for (final Item weaponItem : weapons) {
+			sumAll += weaponItem.getAttack();
+		}
+		return sumAll;
+	}
+
+	/**
+	 * Calculate the hit points gained by lifesteal.
+	 *
+	 * @param sumLifesteal lifesteal value
+	 * @param sumAll lifesteal weight
+	 * @param damage inflicted damage
+	 * @return gained hit points
+	 */
+	static int getLifesteal(final float sumLifesteal, final float sumAll, final int damage) {
+		// 0.5f is used for rounding
+		return (int) (damage * sumLifesteal / sumAll + 0.5f);
+	}
+}
@@ -1,5 +1,5 @@
 /***************************************************************************
- *                    (C) Copyright 2003-2018 - Marauroa                   *
+ *                    (C) Copyright 2003-2023 - Marauroa                   *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -200,6 +200,9 @@ public abstract class Entity extends RPObject implements Killer {
 			resistance = getInt("resistance");
 		}
 
+		if (zone != null) {
+			zone.onEntityMoved(this);
+		}
 	}
 
 	public boolean hasDescription() {
@@ -657,6 +660,7 @@ public abstract class Entity extends RPObject implements Killer {
 		}
 
 		if (moved && (zone != null)) {
+			zone.onEntityMoved(this);
 			onMoved(oldX, oldY, x, y);
 		}
 	}
@@ -678,6 +682,17 @@ public abstract class Entity extends RPObject implements Killer {
 	public final void setResistance(final int resistance) {
 		this.resistance = resistance;
 		put("resistance", resistance);
+		onResistanceChanged();
+	}
+
+	/**
+	 * Notify the zone that the resistance this has on other entities may
+	 * have changed, or that this stopped or started moving.
+	 */
+	protected void onResistanceChanged() {
+		if (zone != null) {
+			zone.onEntityResistanceChanged(this);
+		}
 	}
 
 	/**
@@ -694,6 +709,10 @@ public abstract class Entity extends RPObject implements Killer {
 
 		this.area.height = height;
 		put("height", height);
+
+		if (zone != null) {
+			zone.onEntityMoved(this);
+		}
 	}
 
 	/**
@@ -116,6 +116,8 @@ public abstract class RPEntity extends CombatEntity {
 	protected ImmutableList<StatusAttacker> statusAttackers = ImmutableList.of();
 	/** a list of current statuses */
 	protected StatusList statusList;
+	/** combat values derived from the equipment, or <code>null</code> if they need to be recalculated */
+	private CombatSnapshot combatSnapshot;
 
 	/** List of all enemies that are currently attacking this entity. */
 	private final List<Entity> attackSources;
@@ -489,6 +491,7 @@ public abstract class RPEntity extends CombatEntity {
 		}
 		if (has("level")) {
 			level = getInt("level");
+			combatSnapshot = null;
 		}
 		if (has("xp")) {
 			xp = getInt("xp");
@@ -545,7 +548,8 @@ public abstract class RPEntity extends CombatEntity {
 		final int effectiveDefenderLevel = defender.getLevel() + 5;
 
 		// Defending side
-		final double armor = defender.getItemDef();
+		final CombatSnapshot defenderSnapshot = defender.getCombatSnapshot();
+		final double armor = defenderSnapshot.getItemDef();
 		final int targetDef = defender.getCappedDef();
 		// Even strong players are vulnerable without any armor.
 		// Armor def gets much higher with high level players unlike
@@ -624,7 +628,7 @@ public abstract class RPEntity extends CombatEntity {
 		}
 
 		// Apply defense and damage type effect
-		int damage = (int) (defender.getSusceptibility(damageType)
+		int damage = (int) (defenderSnapshot.getSusceptibility(damageType)
 				* (WEIGHT_ATK * attack - defence) / maxDefence);
 
 		/* FIXME: Can argument be removed and just use
@@ -728,6 +732,8 @@ public abstract class RPEntity extends CombatEntity {
 
 	public void setLevel(final int level) {
 		this.level = level;
+		// items with a min_level may have become more or less effective
+		combatSnapshot = null;
 		put("level", level);
 		this.updateModifiedAttributes();
 	}
@@ -2865,14 +2871,42 @@ System.out.printf("  drop: %2d %2d\n", attackerRoll, defenderRoll);
 	 * Recalculates item based atk and def.
 	 */
 	public void updateItemAtkDef() {
-		put("atk_item", ((int) getItemAtk()));
+		invalidateCombatSnapshot();
+		final CombatSnapshot snapshot = getCombatSnapshot();
+		put("atk_item", ((int) snapshot.getItemAtk()));
 		if (Testing.COMBAT) {
-			put("ratk_item", ((int) getItemRatk()));
+			put("ratk_item", ((int) snapshot.getItemRatk()));
 		}
-		put("def_item", ((int) getItemDef()));
+		put("def_item", ((int) snapshot.getItemDef()));
 		notifyWorldAboutChanges();
 	}
 
+	/**
+	 * Get the combat values derived from the equipment and level of this
+	 * entity. The snapshot is calculated when it is needed the first time
+	 * after an invalidation, and kept until the next one.
+	 *
+	 * @return combat snapshot
+	 */
+	public CombatSnapshot getCombatSnapshot() {
+		CombatSnapshot snapshot = combatSnapshot;
+		if (snapshot == null) {
+			snapshot = new CombatSnapshot(this);
+			combatSnapshot = snapshot;
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Discards the combat snapshot. This needs to be called when anything
+	 * changes that the combat values depend on. Changes of the item slots and
+	 * the level are noticed automatically, changes of the attributes of
+	 * equipped items are picked up by {@link #updateItemAtkDef()}.
+	 */
+	public void invalidateCombatSnapshot() {
+		combatSnapshot = null;
+	}
+
 	/**
 	 * Get all statuses this entity can try to inflict including from
 	 * weapons.
@@ -3074,7 +3108,7 @@ System.out.printf("  drop: %2d %2d\n", attackerRoll, defenderRoll);
 
 		boolean meleeDistance = isAttacking() && nextTo(getAttackTarget());
 
-		final List<Item> weapons = getWeapons();
+		final List<Item> weapons = getCombatSnapshot().getWeapons();
 
 		if (weapons.isEmpty()) {
 			return Item.getDefaultAttackRate();
@@ -3130,6 +3164,7 @@ System.out.printf("  drop: %2d %2d\n", attackerRoll, defenderRoll);
 
 		defender.rememberAttacker(this);
 
+		final CombatSnapshot snapshot = getCombatSnapshot();
 		final int maxRange = getMaxRangeForArcher();
 		/*
 		 * The second part (damage type check) ensures that normal archers need
@@ -3138,26 +3173,26 @@ System.out.printf("  drop: %2d %2d\n", attackerRoll, defenderRoll);
 		 * powers (yes, it's a bit of a hack).
 		 */
 		boolean isRanged = ((maxRange > 0) && canDoRangeAttack(defender, maxRange))
-			&& (((getDamageType() == getRangedDamageType()) || squaredDistance(defender) > 0));
+			&& (((snapshot.getDamageType() == snapshot.getRangedDamageType()) || squaredDistance(defender) > 0));
 
 		Nature nature;
 		final float itemAtk;
 		if (isRanged) {
-			nature = getRangedDamageType();
-			itemAtk = getItemRatk();
+			nature = snapshot.getRangedDamageType();
+			itemAtk = snapshot.getItemRatk();
 		} else {
-			nature = getDamageType();
-			itemAtk = getItemAtk();
+			nature = snapshot.getDamageType();
+			itemAtk = snapshot.getItemAtk();
 		}
 
 		// Try to inflict a status effect
-		final List<StatusAttacker> allStatusAttackers = getAllStatusAttackers();
+		final List<StatusAttacker> allStatusAttackers = snapshot.getStatusAttackers();
 		for (StatusAttacker statusAttacker : allStatusAttackers) {
 			statusAttacker.onAttackAttempt(defender, this);
 		}
 
 		// Weapon for the use in the attack event
-		Item attackWeapon = getWeapon();
+		Item attackWeapon = snapshot.getWeapon();
 		String weaponName = null;
 		if (attackWeapon != null) {
 			weaponName = attackWeapon.getWeaponType();
@@ -3175,7 +3210,7 @@ System.out.printf("  drop: %2d %2d\n", attackerRoll, defenderRoll);
 
 				// limit damage to target HP
 				damage = Math.min(damage, defender.getHP());
-				this.handleLifesteal(this, this.getWeapons(), damage);
+				handleLifesteal(this, damage);
 
 				defender.onDamaged(this, damage);
 
@@ -3226,51 +3261,48 @@ System.out.printf("  drop: %2d %2d\n", attackerRoll, defenderRoll);
 	 */
 	public void handleLifesteal(final RPEntity attacker,
 			final List<Item> attackerWeapons, final int damage) {
-
-		// Calculate the lifesteal value based on the configured factor
-		// In case of a lifesteal weapon used together with a non-lifesteal
-		// weapon,
-		// weight it based on the atk-values of the weapons.
-		float sumAll = 0;
-		float sumLifesteal = 0;
-
-		// Creature with lifesteal profile?
-		if (attacker instanceof Creature) {
-			sumAll = 1;
-			final String value = ((Creature) attacker)
-					.getAIProfile("lifesteal");
-			if (value == null) {
-				// The creature doesn't steal life.
-				return;
-			}
-			sumLifesteal = Float.parseFloat(value);
-		} else {
-			// weapons with lifesteal attribute for players
-			for (final Item weaponItem : attackerWeapons) {
-				sumAll += weaponItem.getAttack();
-				if (weaponItem.has("lifesteal")) {
-					sumLifesteal += weaponItem.getAttack()
-							* weaponItem.getDouble("lifesteal");
-				}
-			}
-		}
-
-		// process the lifesteal
+		final float sumLifesteal = CombatSnapshot.getLifesteal(attacker, attackerWeapons);
 		if (sumLifesteal != 0) {
-			// 0.5f is used for rounding
-			final int lifesteal = (int) (damage * sumLifesteal / sumAll + 0.5f);
+			final float sumAll = CombatSnapshot.getLifestealWeight(attacker, attackerWeapons);
+			applyLifesteal(attacker, CombatSnapshot.getLifesteal(sumLifesteal, sumAll, damage));
+		}
+	}
 
-			if (lifesteal >= 0) {
-				attacker.heal(lifesteal, true);
-			} else {
-				/*
-				 * Negative lifesteal means that we hurt ourselves.
-				 */
-				attacker.damage(-lifesteal, attacker);
-			}
+	/**
+	 * Calculate lifesteal from the combat snapshot of the attacker and update
+	 * its hp.
+	 *
+	 * @param attacker
+	 *            the RPEntity doing the hit
+	 * @param damage
+	 *            the damage done by this hit.
+	 */
+	private static void handleLifesteal(final RPEntity attacker, final int damage) {
+		final CombatSnapshot snapshot = attacker.getCombatSnapshot();
+		if (snapshot.hasLifesteal()) {
+			applyLifesteal(attacker, snapshot.getLifesteal(damage));
+		}
+	}
 
-			attacker.notifyWorldAboutChanges();
+	/**
+	 * Update the hp of an attacker that stole life.
+	 *
+	 * @param attacker
+	 *            the RPEntity doing the hit
+	 * @param lifesteal
+	 *            gained hit points
+	 */
+	private static void applyLifesteal(final RPEntity attacker, final int lifesteal) {
+		if (lifesteal >= 0) {
+			attacker.heal(lifesteal, true);
+		} else {
+			/*
+			 * Negative lifesteal means that we hurt ourselves.
+			 */
+			attacker.damage(-lifesteal, attacker);
 		}
+
+		attacker.notifyWorldAboutChanges();
 	}
 
 	/**
@@ -3356,6 +3388,7 @@ System.out.printf("  drop: %2d %2d\n", attackerRoll, defenderRoll);
 		// the immutable statusAttackers list is shared between multiple instances of Creatures to reduce memory usage
 		Builder<StatusAttacker> builder = ImmutableList.builder();
 		statusAttackers = builder.addAll(statusAttackers).add(statusAttacker).build();
+		combatSnapshot = null;
 	}
 
 	/**
@@ -1,6 +1,6 @@
 /* $Id$ */
 /***************************************************************************
- *                   (C) Copyright 2003-2012 - Stendhal                    *
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -498,6 +498,8 @@ public class Creature extends NPC {
 
 	private void setAIProfiles(final Map<String, String> aiProfiles, boolean initStatusAttacker) {
 		this.aiProfiles = aiProfiles;
+		// the lifesteal value is stored in the profiles
+		invalidateCombatSnapshot();
 		setHealer(aiProfiles.get("heal"));
 		setAttackStrategy(aiProfiles);
 		if (initStatusAttacker) {
@@ -752,7 +754,7 @@ public class Creature extends NPC {
 			}
 
 			if (shortestDistance >= 1) {
-				final List<Node> path = Path.searchPath(this, chosen, getMovementRange());
+				final List<Node> path = Path.searchCachedPath(this, chosen, getMovementRange());
 				if ((path == null) || path.isEmpty() && !strategy.canAttackNow(this, chosen)) {
 					distances.remove(chosen);
 					chosen = null;
@@ -954,6 +956,16 @@ public class Creature extends NPC {
 		}
 	}
 
+	@Override
+	public boolean isIdleWithoutPlayers() {
+		return true;
+	}
+
+	@Override
+	public void onSkippedTurns(final int firstTurn, final int lastTurn) {
+		healer.heal(this, firstTurn, lastTurn);
+	}
+
 	/**
 	 * Random sound noises.
 	 * @param state - state for noises
@@ -1082,6 +1094,7 @@ public class Creature extends NPC {
 	 */
 	public void setSusceptibilities(Map<Nature, Double> susceptibilities) {
 		this.susceptibilities = susceptibilities;
+		invalidateCombatSnapshot();
 	}
 
 	@Override
@@ -1119,6 +1132,7 @@ public class Creature extends NPC {
 		} else {
 			rangedDamageType = type;
 		}
+		invalidateCombatSnapshot();
 	}
 
 	@Override
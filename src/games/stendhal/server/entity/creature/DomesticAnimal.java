@@ -72,6 +72,12 @@ public abstract class DomesticAnimal extends Creature {
 		setResistance(75);
 	}
 
+	@Override
+	public boolean isIdleWithoutPlayers() {
+		// follows its owner and gets hungry
+		return false;
+	}
+
 	/**
 	 * Creates a wild DomesticAnimal based on an existing RPObject, and assigns
 	 * it to a player.
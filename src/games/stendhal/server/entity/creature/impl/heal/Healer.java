@@ -1,6 +1,6 @@
 /* $Id$ */
 /***************************************************************************
- *                   (C) Copyright 2003-2010 - Stendhal                    *
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -40,4 +40,17 @@ class Healer implements HealerBehavior {
 
 	}
 
+	@Override
+	public void heal(final Creature creature, final int firstTurn, final int lastTurn) {
+		if (lastTurn < firstTurn) {
+			return;
+		}
+		// number of turns in the range that are multiples of frequency
+		final long times = Math.floorDiv(lastTurn, frequency) - Math.floorDiv(firstTurn - 1, frequency);
+		if ((times > 0) && (creature.getHP() > 0)) {
+			// healing is capped at base HP, so one step gives the same result
+			creature.heal((int) Math.min(Integer.MAX_VALUE, times * amount));
+		}
+	}
+
 }
@@ -1,6 +1,6 @@
 /* $Id$ */
 /***************************************************************************
- *                   (C) Copyright 2003-2010 - Stendhal                    *
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -18,4 +18,14 @@ public interface HealerBehavior {
 	void init(String healingProfile);
 	void heal(Creature creature);
 
+	/**
+	 * Heals a creature like <code>heal()</code> would have in a range of
+	 * turns.
+	 *
+	 * @param creature creature to heal
+	 * @param firstTurn first turn of the range
+	 * @param lastTurn last turn of the range
+	 */
+	void heal(Creature creature, int firstTurn, int lastTurn);
+
 }
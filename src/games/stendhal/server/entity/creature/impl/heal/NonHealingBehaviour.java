@@ -1,6 +1,6 @@
 /* $Id$ */
 /***************************************************************************
- *                   (C) Copyright 2003-2010 - Stendhal                    *
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -22,6 +22,11 @@ final class NonHealingBehaviour implements HealerBehavior {
 		// does not heal;
 	}
 
+	@Override
+	public void heal(final Creature creature, final int firstTurn, final int lastTurn) {
+		// does not heal;
+	}
+
 	@Override
 	public void init(final String healingProfile) {
 		// does not need init
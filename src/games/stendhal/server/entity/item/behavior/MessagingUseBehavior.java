@@ -1,5 +1,5 @@
 /***************************************************************************
- *                 (C) Copyright 2003-2013 - Stendhal team                 *
+ *                 (C) Copyright 2003-2023 - Stendhal team                 *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -17,6 +17,7 @@ import org.apache.log4j.Logger;
 
 import games.stendhal.common.grammar.Grammar;
 import games.stendhal.server.core.engine.SingletonRepository;
+import games.stendhal.server.core.engine.StendhalRPZone;
 import games.stendhal.server.entity.Entity;
 import games.stendhal.server.entity.RPEntity;
 import games.stendhal.server.entity.item.Item;
@@ -87,6 +88,10 @@ public class MessagingUseBehavior implements UseBehavior {
 				Player player = (Player) user;
 				player.put("text", publicMessage);
 				SingletonRepository.getRuleProcessor().removePlayerText(player);
+				final StendhalRPZone zone = player.getZone();
+				if (zone != null) {
+					zone.notifyChat(player);
+				}
 			} else if (user instanceof NPC) {
 				((NPC) user).say(publicMessage);
 			}
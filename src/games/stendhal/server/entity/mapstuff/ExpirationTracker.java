@@ -1,5 +1,5 @@
 /***************************************************************************
- *                   (C) Copyright 2003-2010 - Stendhal                    *
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -12,6 +12,7 @@
 package games.stendhal.server.entity.mapstuff;
 
 import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.core.engine.ZonePersistence;
 import games.stendhal.server.entity.Entity;
 import marauroa.common.game.Definition.Type;
 import marauroa.common.game.RPClass;
@@ -115,7 +116,7 @@ public class ExpirationTracker extends Entity {
 		StendhalRPZone zone = this.getZone();
 
 		if (zone != null) {
-			zone.storeToDatabase();
+			ZonePersistence.get().markDirty(zone, this);
 		}
 	}
 
@@ -1,6 +1,6 @@
 /* $Id$ */
 /***************************************************************************
- *                   (C) Copyright 2003-2010 - Stendhal                    *
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -20,6 +20,7 @@ import org.apache.log4j.Logger;
 import games.stendhal.common.grammar.Grammar;
 import games.stendhal.server.core.engine.SingletonRepository;
 import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.core.engine.ZonePersistence;
 import games.stendhal.server.core.engine.transformer.ItemTransformer;
 import games.stendhal.server.core.events.TurnListener;
 import games.stendhal.server.entity.item.Item;
@@ -77,7 +78,7 @@ public class StoredChest extends Chest {
 		StendhalRPZone zone = this.getZone();
 		if (zone != null) {
 			logger.debug("Storing chest in zone " + zone.getName() + " with " + getSlot("content").size() + " items.");
-			zone.storeToDatabase();
+			ZonePersistence.get().markDirty(zone, this);
 		} else {
 			logger.error("Closing StoredChest which is in no zone.");
 		}
@@ -162,7 +163,7 @@ public class StoredChest extends Chest {
 			StendhalRPZone zone = getZone();
 			if (zone != null) {
 				logger.info("Storing chest in zone " + zone.getName() + " with " + getSlot("content").size() + " items while it's open.");
-				zone.storeToDatabase();
+				ZonePersistence.get().markDirty(zone, StoredChest.this);
 			}
 			if (chestCloser()) {
 				SingletonRepository.getTurnNotifier().notifyInSeconds(60, this);
@@ -19,6 +19,7 @@ import java.util.List;
 
 import games.stendhal.server.core.engine.SingletonRepository;
 import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.core.engine.ZonePersistence;
 import games.stendhal.server.core.events.TurnListener;
 import games.stendhal.server.entity.Entity;
 import marauroa.common.game.RPObject;
@@ -65,7 +66,7 @@ public abstract class StorableEntityList<T extends Entity> implements TurnListen
 			return false;
 		}
 		zone.add(entity);
-		zone.storeToDatabase();
+		ZonePersistence.get().markDirty(zone, entity);
 		return true;
 	}
 
@@ -124,7 +125,7 @@ public abstract class StorableEntityList<T extends Entity> implements TurnListen
 		for (final T entity : entities) {
 			if (getName(entity).equals(identifier)) {
 				zone.remove(entity);
-				zone.storeToDatabase();
+				ZonePersistence.get().markDirty(zone, entity);
 				changed = true;
 			}
 		}
@@ -155,19 +156,14 @@ public abstract class StorableEntityList<T extends Entity> implements TurnListen
 
 	@Override
 	public void onTurnReached(final int currentTurn) {
-		boolean modified = false;
 		final List<T> entities = getList();
 		for (final T entity : entities) {
 			if (shouldExpire(entity)) {
 				zone.remove(entity);
-				modified = true;
+				ZonePersistence.get().markDirty(zone, entity);
 			}
 		}
 
-		if (modified) {
-			zone.storeToDatabase();
-		}
-
 		SingletonRepository.getTurnNotifier().notifyInSeconds(notifyDelta, this);
 	}
 
@@ -1,6 +1,6 @@
 /* $Id$ */
 /***************************************************************************
- *                   (C) Copyright 2003-2010 - Stendhal                    *
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -18,6 +18,7 @@ import java.util.List;
 import games.stendhal.common.MathHelper;
 import games.stendhal.server.core.engine.SingletonRepository;
 import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.core.engine.ZonePersistence;
 import games.stendhal.server.core.events.TurnListener;
 import games.stendhal.server.entity.RPEntity;
 import games.stendhal.server.entity.item.HouseKey;
@@ -307,7 +308,7 @@ public class HousePortal extends AccessCheckingPortal {
 	private void saveToDatabase() {
 		StendhalRPZone zone = this.getZone();
 		if (zone != null) {
-			zone.storeToDatabase();
+			ZonePersistence.get().markDirty(zone, this);
 		}
 	}
 
@@ -0,0 +1,86 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.entity.npc;
+
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+
+import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.core.events.ChatListener;
+import games.stendhal.server.entity.ActiveEntity;
+import games.stendhal.server.entity.player.Player;
+
+/**
+ * The area around a SpeakerNPC where it can hear and greet players. It is
+ * registered at the zone, so that the NPC is told about players moving or
+ * speaking nearby, instead of checking all players of the zone every turn.
+ */
+final class ChatPerception implements ChatListener {
+	private final SpeakerNPC npc;
+	private final Rectangle area = new Rectangle();
+
+	/**
+	 * Creates the perception area of an NPC.
+	 *
+	 * @param npc the NPC
+	 */
+	ChatPerception(final SpeakerNPC npc) {
+		this.npc = npc;
+	}
+
+	/**
+	 * Updates the area to the position and perception range of the NPC.
+	 * Players are in range if they stand less than the perception range
+	 * away horizontally and vertically.
+	 */
+	void update() {
+		final int range = npc.getPerceptionRange();
+		area.setBounds(npc.getX() - range + 1, npc.getY() - range + 1, 2 * range - 1, 2 * range - 1);
+	}
+
+	@Override
+	public Rectangle2D getArea() {
+		return area;
+	}
+
+	@Override
+	public void onEntered(final ActiveEntity entity, final StendhalRPZone zone, final int newX, final int newY) {
+		if (entity instanceof Player) {
+			npc.onPlayerNearby();
+		}
+	}
+
+	@Override
+	public void onExited(final ActiveEntity entity, final StendhalRPZone zone, final int oldX, final int oldY) {
+		// the NPC notices itself when nobody is left
+	}
+
+	@Override
+	public void beforeMove(final ActiveEntity entity, final StendhalRPZone zone, final int oldX, final int oldY,
+			final int newX, final int newY) {
+		// only the new position matters
+	}
+
+	@Override
+	public void onMoved(final ActiveEntity entity, final StendhalRPZone zone, final int oldX, final int oldY,
+			final int newX, final int newY) {
+		if (entity instanceof Player) {
+			// the nearest player may have changed
+			npc.onPlayerNearby();
+		}
+	}
+
+	@Override
+	public void onChat(final Player player, final StendhalRPZone zone) {
+		npc.onPlayerSpoke(player);
+	}
+}
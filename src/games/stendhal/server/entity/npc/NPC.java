@@ -328,6 +328,27 @@ public abstract class NPC extends DressedEntity {
         notifyWorldAboutChanges();
 	}
 
+	/**
+	 * Checks if the NPC does nothing in its logic while there are no players
+	 * around. The logic of such NPCs is skipped while their zone is dormant.
+	 *
+	 * @return <code>true</code> if the logic can be skipped
+	 */
+	public boolean isIdleWithoutPlayers() {
+		return false;
+	}
+
+	/**
+	 * Catches up with the logic skipped while the zone was dormant. Only
+	 * called for NPCs that are idle without players.
+	 *
+	 * @param firstTurn first skipped turn
+	 * @param lastTurn last skipped turn
+	 */
+	public void onSkippedTurns(final int firstTurn, final int lastTurn) {
+		// nothing to catch up with by default
+	}
+
     /**
      * Give NPC a random path
      */
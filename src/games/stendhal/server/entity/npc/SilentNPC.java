@@ -1,5 +1,5 @@
 /***************************************************************************
- *                   (C) Copyright 2003-2022 - Stendhal                    *
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -45,4 +45,9 @@ public class SilentNPC extends PassiveNPC {
 
 		super.logic();
 	}
+
+	@Override
+	public boolean isIdleWithoutPlayers() {
+		return true;
+	}
 }
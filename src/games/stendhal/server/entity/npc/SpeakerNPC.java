@@ -1,5 +1,5 @@
 /***************************************************************************
- *                   (C) Copyright 2003-2022 - Stendhal                    *
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -11,10 +11,11 @@
  ***************************************************************************/
 package games.stendhal.server.entity.npc;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
@@ -28,6 +29,7 @@ import games.stendhal.common.parser.ExpressionType;
 import games.stendhal.common.parser.Sentence;
 import games.stendhal.server.core.engine.SingletonRepository;
 import games.stendhal.server.core.engine.StendhalRPWorld;
+import games.stendhal.server.core.engine.StendhalRPZone;
 import games.stendhal.server.entity.CollisionAction;
 import games.stendhal.server.entity.Killer;
 import games.stendhal.server.entity.RPEntity;
@@ -182,6 +184,19 @@ public class SpeakerNPC extends PassiveNPC {
 
 	private LinkedHashMap<ChatCondition, Object> prioritizedGreetingTransitions;
 
+	/** Area where the NPC hears and greets players. */
+	private final ChatPerception perception = new ChatPerception(this);
+
+	/** Players who spoke near the NPC since the last turn. */
+	private List<Player> speakers = new ArrayList<Player>();
+
+	/**
+	 * <code>true</code> if a player may be in perception range. Cleared
+	 * when a check finds nobody, and set again when a player moves near
+	 * the NPC or the NPC moves.
+	 */
+	private boolean playersNearby = true;
+
 	/**
 	 * Creates a new SpeakerNPC.
 	 *
@@ -238,48 +253,108 @@ public class SpeakerNPC extends PassiveNPC {
 	 * Gets all players that have recently (this turn?) talked and are standing
 	 * nearby the NPC. Nearby means that they are standing less than <i>range</i>
 	 * squares away horizontally and less than <i>range</i> squares away
-	 * vertically.
+	 * vertically. Only players the zone has told the NPC about are checked.
 	 *
 	 * @param npc
 	 * @param range
 	 * @return A list of nearby players who have recently talked.
 	 */
 	private List<Player> getNearbyPlayersThatHaveSpoken(final NPC npc, final double range) {
+		if (speakers.isEmpty()) {
+			return speakers;
+		}
+
 		final int x = npc.getX();
 		final int y = npc.getY();
 
-		final List<Player> players = new LinkedList<Player>();
+		final List<Player> players = speakers;
+		speakers = new ArrayList<Player>();
 
-		for (final Player player : getZone().getPlayers()) {
+		for (final Iterator<Player> it = players.iterator(); it.hasNext();) {
+			final Player player = it.next();
 			final int px = player.getX();
 			final int py = player.getY();
 
-			if (player.has("text")) {
+			boolean nearby = false;
+			if ((player.getZone() == npc.getZone()) && player.has("text")) {
 				int dx = px - x;
 				int dy = py - y;
 
-				if (Math.abs(dx)<range && Math.abs(dy)<range) { // check rectangular area
-//				if (dx*dx + dy*dy < range*range) { // optionally we could check a circular area
-					players.add(player);
-				}
+				nearby = Math.abs(dx)<range && Math.abs(dy)<range; // check rectangular area
+//				nearby = dx*dx + dy*dy < range*range; // optionally we could check a circular area
+			}
+			if (!nearby) {
+				it.remove();
 			}
 		}
 
 		return players;
 	}
 
+	/**
+	 * Called by the perception area when a player said something near the
+	 * NPC. The NPC reacts at the beginning of the next turn.
+	 *
+	 * @param player player who spoke
+	 */
+	void onPlayerSpoke(final Player player) {
+		if (!speakers.contains(player)) {
+			speakers.add(player);
+		}
+	}
+
+	/**
+	 * Called by the perception area when a player moved near the NPC.
+	 */
+	void onPlayerNearby() {
+		playersNearby = true;
+	}
+
+	/**
+	 * Updates the perception area after the NPC moved or its perception
+	 * range changed.
+	 */
+	private void updatePerception() {
+		playersNearby = true;
+		final StendhalRPZone zone = getZone();
+		if (zone != null) {
+			perception.update();
+			zone.updateMovementListener(perception);
+		}
+	}
+
+	@Override
+	public void onAdded(final StendhalRPZone zone) {
+		super.onAdded(zone);
+		perception.update();
+		zone.addMovementListener(perception);
+		playersNearby = true;
+	}
+
+	@Override
+	public void onRemoved(final StendhalRPZone zone) {
+		zone.removeMovementListener(perception);
+		speakers.clear();
+		super.onRemoved(zone);
+	}
+
+	@Override
+	protected void onMoved(final int oldX, final int oldY, final int newX, final int newY) {
+		super.onMoved(oldX, oldY, newX, newY);
+		updatePerception();
+	}
+
 	/**
 	 * Gets the player who is standing nearest to the NPC. Returns null if no
 	 * player is standing nearby. Nearby means that they are standing less than
-	 * <i>range</i> squares away horizontally and less than <i>range</i>
-	 * squares away vertically. Note, however, that the Euclidian distance is
-	 * used to compare which player is standing closest.
+	 * the perception range squares away horizontally and vertically. Note,
+	 * however, that the Euclidian distance is used to compare which player is
+	 * standing closest.
 	 *
-	 * @param range
-	 * @return The nearest player, or null if no player is standing on the same
-	 *         map.
+	 * @return The nearest player, or null if no player is standing nearby.
 	 */
-	private Player getNearestPlayer(final double range) {
+	private Player getNearestPlayer() {
+		final int range = getPerceptionRange();
 		final int x = getX();
 		final int y = getY();
 
@@ -287,7 +362,8 @@ public class SpeakerNPC extends PassiveNPC {
 
 		int squaredDistanceOfNearestPlayer = Integer.MAX_VALUE;
 
-		for (final Player player : getZone().getPlayers()) {
+		// only players in the perception area, found through the zone's index
+		for (final Player player : getZone().getEntitiesIntersecting(perception.getArea(), Player.class)) {
 			final int px = player.getX();
 			final int py = player.getY();
 
@@ -382,6 +458,10 @@ public class SpeakerNPC extends PassiveNPC {
 	public void setPerceptionRange(int perceptionRange) {
 		super.setPerceptionRange(perceptionRange);
 		squaredGoodByeRange = getSquaredGoodByeRange();
+		// called by the super class constructor before the fields are set
+		if (perception != null) {
+			updatePerception();
+		}
 	}
 
 	private long secondsToTurns(final long seconds) {
@@ -400,14 +480,26 @@ public class SpeakerNPC extends PassiveNPC {
 		// respond to player in the chat log before the player says something.
 	}
 
+	@Override
+	public boolean isIdleWithoutPlayers() {
+		return true;
+	}
+
 	public void preLogic() {
 
 		if (this.getZone().getPlayerAndFriends().isEmpty() && !isTalking() && !actingAlone) {
+			speakers.clear();
 			return;
 		}
 
+		/*
+		 * Movement and speed changes notify the world themselves. Anything
+		 * else changed here sets this flag.
+		 */
+		boolean changed = false;
 		if (has("text")) {
 			remove("text");
+			changed = true;
 		}
 
 		// if no player is talking to the NPC, the NPC can move around.
@@ -415,12 +507,14 @@ public class SpeakerNPC extends PassiveNPC {
 			// TODO: Reset this on FSM engine state change
 			if (getAttending() != null) {
 				setAttending(null);
+				changed = true;
 			}
 			if (hasPath()) {
 				setSpeed(getBaseSpeed());
 			}
 			applyMovement();
 		} else if (attending != null) {
+			changed = true;
 			// If the player is too far away
 			if ((attending.squaredDistance(this) > squaredGoodByeRange)
 					|| ((attending instanceof Player) && (((Player) attending).isDisconnected()))
@@ -432,9 +526,10 @@ public class SpeakerNPC extends PassiveNPC {
 			}
 		}
 
-		// now look for nearest player only if there's an initChatAction
-		if (!isTalking() && (initChatAction != null)) {
-			final Player nearest = getNearestPlayer(getPerceptionRange());
+		// now look for nearest player only if there's an initChatAction, and
+		// someone may be in range
+		if (!isTalking() && (initChatAction != null) && playersNearby) {
+			final Player nearest = getNearestPlayer();
 
 			if (nearest != null) {
 				if ((initChatCondition == null)
@@ -442,18 +537,25 @@ public class SpeakerNPC extends PassiveNPC {
 					// Note: The sentence parameter is left as null, so be
 					// careful not to use it in the fire() handler.
 					initChatAction.fire(nearest, null, new EventRaiser(this));
+					changed = true;
 				}
+			} else {
+				// wait until someone comes near
+				playersNearby = false;
 			}
 		}
 
 		// and finally react on anybody talking to us
-		final List<Player> speakers = getNearbyPlayersThatHaveSpoken(this, getPerceptionRange());
-		for (final Player speaker : speakers) {
+		final List<Player> spoken = getNearbyPlayersThatHaveSpoken(this, getPerceptionRange());
+		for (final Player speaker : spoken) {
 			tell(speaker, speaker.get("text"));
+			changed = true;
 		}
 
 		maybeMakeSound();
-		notifyWorldAboutChanges();
+		if (changed) {
+			notifyWorldAboutChanges();
+		}
 	}
 
 	public void endConversation() {
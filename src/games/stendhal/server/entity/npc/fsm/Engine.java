@@ -47,6 +47,9 @@ public class Engine {
 	// FSM state transition table
 	private final List<Transition> stateTransitionTable = new LinkedList<Transition>();
 
+	// transitions by state and trigger, for looking up the candidates of a step
+	private final TransitionIndex transitionIndex = new TransitionIndex();
+
 	// current FSM state
 	private ConversationStates currentState = ConversationStates.IDLE;
 
@@ -73,7 +76,7 @@ public class Engine {
 	 * @return previous transition entry
 	 */
 	private Transition get(final ConversationStates state, final Expression trigger, final ChatCondition condition) {
-		for (final Transition transition : stateTransitionTable) {
+		for (final Transition transition : transitionIndex.getCandidates(MatchType.EXACT_MATCH, state, trigger)) {
 			if (transition.matchesWithCondition(state, trigger, condition)) {
 				return transition;
 			}
@@ -287,7 +290,7 @@ public class Engine {
 	public void add(Collection<Expression> triggerExpressions, final ConversationStates state, final ChatCondition condition,
 			boolean secondary, final ConversationStates nextState, final String reply, final ChatAction action, final String label) {
 		if (triggerExpressions!=null && !triggerExpressions.isEmpty()) {
-			stateTransitionTable.add(new Transition(state, triggerExpressions, condition, secondary, nextState, reply, action, label));
+			addTransition(new Transition(state, triggerExpressions, condition, secondary, nextState, reply, action, label));
 		}
 	}
 
@@ -312,10 +315,15 @@ public class Engine {
 	public void add(Collection<Expression> triggerExpressions, final ConversationStates state, final ChatCondition condition,
 			boolean secondary, final ConversationStates nextState, final String reply, final ChatAction action) {
 		if (triggerExpressions!=null && !triggerExpressions.isEmpty()) {
-			stateTransitionTable.add(new Transition(state, triggerExpressions, condition, secondary, nextState, reply, action));
+			addTransition(new Transition(state, triggerExpressions, condition, secondary, nextState, reply, action));
 		}
 	}
 
+	private void addTransition(final Transition transition) {
+		stateTransitionTable.add(transition);
+		transitionIndex.add(transition);
+	}
+
 	/**
 	 * remove matches transition
 	 *
@@ -337,6 +345,9 @@ public class Engine {
 				res = true;
 			}
 		}
+		if (res) {
+			transitionIndex.rebuild(stateTransitionTable);
+		}
 		return res;
 	}
 
@@ -525,12 +536,18 @@ public class Engine {
 
 	private boolean matchTransition(final MatchType type, final Player player,
 			final Sentence sentence) {
+		// match with the registered transitions that can match the input,
+		// in the order of the transition table
+		final List<Transition> candidates = transitionIndex.getCandidates(type, currentState, sentence.getTriggerExpression());
+		if (candidates.isEmpty()) {
+			return false;
+		}
+
 		// We are using sets instead of plain lists to merge identical transitions.
 		final TransitionSet preferredTransitions = new TransitionSet();
 		final TransitionSet secondaryTransitions = new TransitionSet();
 
-		// match with all the registered transitions
-		for (final Transition transition : stateTransitionTable) {
+		for (final Transition transition : candidates) {
 			if (matchesTransition(type, sentence, transition)) {
 				if (transition.isConditionFulfilled(player, sentence, speakerNPC)) {
 					if (transition.isPreferred()) {
@@ -0,0 +1,211 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.entity.npc.fsm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import games.stendhal.common.parser.Expression;
+import games.stendhal.server.entity.npc.ConversationStates;
+
+/**
+ * Index of the transition table of an FSM by start state and trigger.
+ * <p>
+ * The index is only a pre-filter. It returns the transitions that
+ * <i>can</i> match a trigger in the order of the transition table, and the
+ * caller still checks them with the real matching rules. Transitions are
+ * bucketed by the original and the normalized form of their triggers.
+ * Triggers with an explicit ExpressionMatcher can not be looked up that way,
+ * so they are kept in a separate list that is merged into every lookup.
+ * Similarity matching is done against all transitions of the state.
+ * <p>
+ * Trigger expressions must not be changed after their transition has been
+ * indexed.
+ */
+final class TransitionIndex {
+	/** Position of the transitions in the transition table. */
+	private final Map<Transition, Long> sequence = new IdentityHashMap<Transition, Long>();
+	private final Map<ConversationStates, StateIndex> states = new EnumMap<ConversationStates, StateIndex>(ConversationStates.class);
+	private long nextSequence;
+
+	/**
+	 * Adds a transition. It is treated as following all previously added
+	 * transitions in the transition table.
+	 *
+	 * @param transition transition
+	 */
+	void add(final Transition transition) {
+		sequence.put(transition, Long.valueOf(nextSequence++));
+		StateIndex index = states.get(transition.getState());
+		if (index == null) {
+			index = new StateIndex();
+			states.put(transition.getState(), index);
+		}
+		index.add(transition);
+	}
+
+	/**
+	 * Rebuilds the index from a transition table.
+	 *
+	 * @param transitions all transitions in table order
+	 */
+	void rebuild(final List<Transition> transitions) {
+		sequence.clear();
+		states.clear();
+		nextSequence = 0;
+		for (final Transition transition : transitions) {
+			add(transition);
+		}
+	}
+
+	/**
+	 * Gets the transitions that may match a trigger with the given type of
+	 * matching.
+	 *
+	 * @param type type of matching
+	 * @param currentState current state of the FSM
+	 * @param trigger trigger expression of the user input
+	 * @return candidate transitions in table order. The list must not be
+	 * 	modified
+	 */
+	List<Transition> getCandidates(final MatchType type, final ConversationStates currentState, final Expression trigger) {
+		switch (type) {
+		case EXACT_MATCH:
+			return getExact(states.get(currentState), trigger);
+		case NORMALIZED_MATCH:
+			return getNormalized(states.get(currentState), trigger);
+		case SIMILAR_MATCH:
+			return getAll(states.get(currentState));
+		case ABSOLUTE_JUMP:
+			if (currentState == ConversationStates.IDLE) {
+				return Collections.emptyList();
+			}
+			return getExact(states.get(ConversationStates.ANY), trigger);
+		case NORMALIZED_JUMP:
+			if (currentState == ConversationStates.IDLE) {
+				return Collections.emptyList();
+			}
+			return getNormalized(states.get(ConversationStates.ANY), trigger);
+		case SIMILAR_JUMP:
+			if (currentState == ConversationStates.IDLE) {
+				return Collections.emptyList();
+			}
+			return getAll(states.get(ConversationStates.ANY));
+		default:
+			return Collections.emptyList();
+		}
+	}
+
+	private List<Transition> getAll(final StateIndex index) {
+		if (index == null) {
+			return Collections.emptyList();
+		}
+		return index.all;
+	}
+
+	private List<Transition> getExact(final StateIndex index, final Expression trigger) {
+		if (index == null) {
+			return Collections.emptyList();
+		}
+		return merge(index.byOriginal.get(trigger.getOriginal()), index.withMatcher);
+	}
+
+	private List<Transition> getNormalized(final StateIndex index, final Expression trigger) {
+		if (index == null) {
+			return Collections.emptyList();
+		}
+		return merge(index.byNormalized.get(trigger.getNormalized()), index.withMatcher);
+	}
+
+	/**
+	 * Merges two lists that are sorted by table order.
+	 */
+	private List<Transition> merge(final List<Transition> list1, final List<Transition> list2) {
+		if ((list1 == null) || list1.isEmpty()) {
+			return list2;
+		}
+		if (list2.isEmpty()) {
+			return list1;
+		}
+
+		final List<Transition> result = new ArrayList<Transition>(list1.size() + list2.size());
+		int i = 0;
+		int j = 0;
+		while ((i < list1.size()) && (j < list2.size())) {
+			final Transition t1 = list1.get(i);
+			final Transition t2 = list2.get(j);
+			final long s1 = sequence.get(t1).longValue();
+			final long s2 = sequence.get(t2).longValue();
+			if (s1 < s2) {
+				result.add(t1);
+				i++;
+			} else if (s2 < s1) {
+				result.add(t2);
+				j++;
+			} else {
+				// transition with triggers in both lists
+				result.add(t1);
+				i++;
+				j++;
+			}
+		}
+		result.addAll(list1.subList(i, list1.size()));
+		result.addAll(list2.subList(j, list2.size()));
+		return result;
+	}
+
+	/**
+	 * The transitions starting at one state.
+	 */
+	private static final class StateIndex {
+		private final List<Transition> all = new ArrayList<Transition>();
+		private final Map<String, List<Transition>> byOriginal = new HashMap<String, List<Transition>>();
+		private final Map<String, List<Transition>> byNormalized = new HashMap<String, List<Transition>>();
+		private final List<Transition> withMatcher = new ArrayList<Transition>();
+
+		private void add(final Transition transition) {
+			all.add(transition);
+			for (final Expression trigger : transition.getTriggers()) {
+				if (trigger.getMatcher() != null) {
+					addOnce(withMatcher, transition);
+				} else {
+					addOnce(bucket(byOriginal, trigger.getOriginal()), transition);
+					addOnce(bucket(byNormalized, trigger.getNormalized()), transition);
+				}
+			}
+		}
+
+		private static List<Transition> bucket(final Map<String, List<Transition>> map, final String key) {
+			List<Transition> bucket = map.get(key);
+			if (bucket == null) {
+				bucket = new ArrayList<Transition>(2);
+				map.put(key, bucket);
+			}
+			return bucket;
+		}
+
+		/**
+		 * Appends a transition unless it was just added by another of its
+		 * triggers.
+		 */
+		private static void addOnce(final List<Transition> list, final Transition transition) {
+			if (list.isEmpty() || (list.get(list.size() - 1) != transition)) {
+				list.add(transition);
+			}
+		}
+	}
+}
@@ -30,7 +30,6 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Random;
 import java.util.Set;
 
 import org.apache.log4j.Logger;
@@ -40,6 +39,7 @@ import games.stendhal.common.ItemTools;
 import games.stendhal.common.KeyedSlotUtil;
 import games.stendhal.common.Level;
 import games.stendhal.common.NotificationType;
+import games.stendhal.common.Rand;
 import games.stendhal.common.TradeState;
 import games.stendhal.common.Version;
 import games.stendhal.common.constants.Nature;
@@ -85,11 +85,6 @@ public class Player extends DressedEntity implements UseListener {
 	/** the logger instance. */
 	private static final Logger logger = Logger.getLogger(Player.class);
 
-	/**
-	 * A random generator (for karma payout).
-	 */
-	private static final Random KARMA_RANDOMIZER = new Random();
-
 	/**
 	 * Currently active client directions (in oldest-newest order).
 	 */
@@ -558,7 +553,7 @@ public class Player extends DressedEntity implements UseListener {
 		/*
 		 * Give at least 20% of possible payout
 		 */
-		score = (0.2 + KARMA_RANDOMIZER.nextDouble() * 0.8) * limit;
+		score = (0.2 + Rand.rand() * 0.8) * limit;
 
 		/*
 		 * Clip to granularity. Use floor() instead of round() so that the
@@ -2099,6 +2094,7 @@ public class Player extends DressedEntity implements UseListener {
 		} else if (has(GHOSTMODE)) {
 			remove(GHOSTMODE);
 		}
+		onResistanceChanged();
 	}
 
 	/**
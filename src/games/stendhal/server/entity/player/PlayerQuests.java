@@ -1,5 +1,5 @@
 /***************************************************************************
- *                   (C) Copyright 2003-2020 - Stendhal                    *
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -11,8 +11,10 @@
  ***************************************************************************/
 package games.stendhal.server.entity.player;
 
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.log4j.Logger;
 
@@ -33,6 +35,24 @@ class PlayerQuests {
 
 	private static Logger logger = Logger.getLogger(PlayerQuests.class);
 
+	/** Quest states split into sub states, by quest slot name */
+	private final Map<String, SubStates> subStates = new HashMap<String, SubStates>();
+
+	/**
+	 * A quest state split into its sub states.
+	 */
+	private static final class SubStates {
+		/** The complete quest state */
+		final String state;
+		/** The sub states. Must not be modified */
+		final String[] elements;
+
+		SubStates(final String state) {
+			this.state = state;
+			this.elements = state.split(";");
+		}
+	}
+
 
 	public PlayerQuests(final Player player) {
 		this.player = player;
@@ -113,7 +133,8 @@ class PlayerQuests {
 	 * @return the player's status in the quest
 	 */
 	public String getQuest(final String name, final int index) {
-		String state = getQuest(name);
+		final String slotName = QuestUtils.evaluateQuestSlotName(name);
+		String state = player.getKeyedSlot("!quests", slotName);
 		if (state == null) {
 			return null;
 		}
@@ -122,7 +143,7 @@ class PlayerQuests {
 			return state;
 		}
 
-		String[] elements = state.split(";");
+		String[] elements = getSubStates(slotName, state);
 		if (index < elements.length) {
 			return elements[index];
 		}
@@ -145,16 +166,15 @@ class PlayerQuests {
 	 *            reset the player's status for the quest.
 	 */
 	public void setQuest(final String name, final int index, final String subStatus) {
-		String state = getQuest(name);
+		final String slotName = QuestUtils.evaluateQuestSlotName(name);
+		String state = player.getKeyedSlot("!quests", slotName);
 		if (state == null) {
 			state = "";
 		}
-		String[] elements = state.split(";");
-		if (elements.length <= index) {
-			String[] temp = new String[index + 1];
-			System.arraycopy(elements, 0, temp, 0, elements.length);
-			elements = temp;
-		}
+		// copy, the cached sub states must not be modified
+		String[] cached = getSubStates(slotName, state);
+		String[] elements = new String[Math.max(cached.length, index + 1)];
+		System.arraycopy(cached, 0, elements, 0, cached.length);
 
 		elements[index] = subStatus;
 		StringBuilder res = new StringBuilder();
@@ -169,6 +189,23 @@ class PlayerQuests {
 		setQuest(name, res.toString());
 	}
 
+	/**
+	 * Gets a quest state split into its sub states. The split states are
+	 * cached until the quest state changes.
+	 *
+	 * @param slotName quest slot name
+	 * @param state current quest state
+	 * @return sub states. The returned array must not be modified
+	 */
+	private String[] getSubStates(final String slotName, final String state) {
+		SubStates cached = subStates.get(slotName);
+		if ((cached == null) || !cached.state.equals(state)) {
+			cached = new SubStates(state);
+			subStates.put(slotName, cached);
+		}
+		return cached.elements;
+	}
+
 	public List<String> getQuests() {
 		final RPSlot slot = player.getSlot("!quests");
 		final RPObject quests = slot.iterator().next();
@@ -183,7 +220,9 @@ class PlayerQuests {
 	}
 
 	public void removeQuest(final String name) {
-		player.setKeyedSlot("!quests", QuestUtils.evaluateQuestSlotName(name), null);
+		final String slotName = QuestUtils.evaluateQuestSlotName(name);
+		player.setKeyedSlot("!quests", slotName, null);
+		subStates.remove(slotName);
 	}
 
 	/**
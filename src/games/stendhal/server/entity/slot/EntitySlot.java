@@ -1,6 +1,6 @@
 /* $Id$ */
 /***************************************************************************
- *                   (C) Copyright 2003-2010 - Stendhal                    *
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -13,7 +13,10 @@
 package games.stendhal.server.entity.slot;
 
 import games.stendhal.server.entity.Entity;
+import games.stendhal.server.entity.RPEntity;
+import marauroa.common.game.RPObject;
 import marauroa.common.game.RPSlot;
+import marauroa.common.game.SlotOwner;
 
 /**
  * Stendhal specific information about this slot.
@@ -43,6 +46,38 @@ public class EntitySlot extends RPSlot implements Slot {
 		this.contentSlotName = contentSlotName;
 	}
 
+	@Override
+	protected int add(final RPObject object, final boolean assignId) {
+		final int id = super.add(object, assignId);
+		onContentChanged();
+		return id;
+	}
+
+	@Override
+	public RPObject remove(final RPObject.ID id) {
+		final RPObject removed = super.remove(id);
+		if (removed != null) {
+			onContentChanged();
+		}
+		return removed;
+	}
+
+	@Override
+	public void clear() {
+		super.clear();
+		onContentChanged();
+	}
+
+	/**
+	 * Tells the owning entity that its equipment changed.
+	 */
+	private void onContentChanged() {
+		final SlotOwner owner = getOwner();
+		if (owner instanceof RPEntity) {
+			((RPEntity) owner).invalidateCombatSnapshot();
+		}
+	}
+
 	@Override
 	public boolean isReachableForTakingThingsOutOfBy(final Entity entity) {
 		setErrorMessage("The " + getName() + " of " + ((Entity) getOwner()).getDescriptionName(true) + " is too far away.");
@@ -1,6 +1,6 @@
 /* $Id$ */
 /***************************************************************************
- *                   (C) Copyright 2003-2010 - Stendhal                    *
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -37,6 +37,8 @@ public class Earning extends Entity implements Dateable {
 
 	private final Integer value;
 	private final String sellerName;
+	/** Market index containing this earning, if any. */
+	MarketIndex<Earning> index;
 
 	public static void generateRPClass() {
 		final RPClass earningClass = new RPClass(EARNING_RPCLASS_NAME);
@@ -109,4 +111,32 @@ public class Earning extends Entity implements Dateable {
 		return timeStamp;
 	}
 
+	@Override
+	public void put(final String attribute, final String value) {
+		super.put(attribute, value);
+		checkTimestamp(attribute);
+	}
+
+	@Override
+	public void put(final String attribute, final int value) {
+		super.put(attribute, value);
+		checkTimestamp(attribute);
+	}
+
+	@Override
+	public void put(final String attribute, final long value) {
+		super.put(attribute, value);
+		checkTimestamp(attribute);
+	}
+
+	/**
+	 * Reorder the market index after the timestamp has changed.
+	 *
+	 * @param attribute changed attribute
+	 */
+	private void checkTimestamp(final String attribute) {
+		if ((index != null) && TIMESTAMP_ATTRIBUTE.equals(attribute)) {
+			index.updateTimestamp(this);
+		}
+	}
 }
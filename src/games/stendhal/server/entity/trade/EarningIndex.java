@@ -0,0 +1,27 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.entity.trade;
+
+/**
+ * Index of market earnings by seller and timestamp.
+ */
+class EarningIndex extends MarketIndex<Earning> {
+	@Override
+	String getOwner(Earning earning) {
+		return earning.getSeller();
+	}
+
+	@Override
+	void attach(Earning earning, MarketIndex<Earning> index) {
+		earning.index = index;
+	}
+}
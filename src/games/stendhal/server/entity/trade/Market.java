@@ -1,6 +1,6 @@
 /* $Id$ */
 /***************************************************************************
- *                   (C) Copyright 2003-2010 - Stendhal                    *
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -13,7 +13,6 @@
 package games.stendhal.server.entity.trade;
 
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 
@@ -22,7 +21,9 @@ import org.apache.log4j.Logger;
 import games.stendhal.server.core.engine.GameEvent;
 import games.stendhal.server.core.engine.ItemLogger;
 import games.stendhal.server.core.engine.SingletonRepository;
+import games.stendhal.server.core.engine.ZonePersistence;
 import games.stendhal.server.core.engine.dbcommand.LogSimpleItemEventCommand;
+import games.stendhal.server.entity.Entity;
 import games.stendhal.server.entity.PassiveEntity;
 import games.stendhal.server.entity.item.Item;
 import games.stendhal.server.entity.item.StackableItem;
@@ -62,6 +63,13 @@ public class Market extends PassiveEntity {
 	 */
 	public static final String EXPIRED_OFFERS_SLOT_NAME = "expired_offers";
 
+	/** Index of the offers slot. */
+	private final OfferIndex offerIndex = new OfferIndex();
+	/** Index of the expired offers slot. */
+	private final OfferIndex expiredOfferIndex = new OfferIndex();
+	/** Index of the earnings slot. */
+	private final EarningIndex earningIndex = new EarningIndex();
+
 	/**
 	 * Generate the RPClass for the Market
 	 */
@@ -114,12 +122,14 @@ public class Market extends PassiveEntity {
 				}
 
 				this.getSlot(OFFERS_SLOT_NAME).add(offer);
+				offerIndex.add(offer);
 			}
 		}
 		if (object.hasSlot(EARNINGS_SLOT_NAME)) {
 			for (final RPObject rpo : object.getSlot(EARNINGS_SLOT_NAME)) {
 				final Earning earning = new Earning(rpo);
 				this.getSlot(EARNINGS_SLOT_NAME).add(earning);
+				earningIndex.add(earning);
 			}
 		}
 		if (object.hasSlot(EXPIRED_OFFERS_SLOT_NAME)) {
@@ -135,6 +145,7 @@ public class Market extends PassiveEntity {
 				}
 
 				this.getSlot(EXPIRED_OFFERS_SLOT_NAME).add(offer);
+				expiredOfferIndex.add(offer);
 			}
 		}
 		store();
@@ -200,7 +211,8 @@ public class Market extends PassiveEntity {
 		Offer offer = new Offer(item, money, offerer);
 		RPSlot slot = this.getSlot(OFFERS_SLOT_NAME);
 		slot.add(offer);
-		getZone().storeToDatabase();
+		getOfferIndex().add(offer);
+		ZonePersistence.get().markDirty(getZone(), this);
 
 		new ItemLogger().addLogItemEventCommand(new LogSimpleItemEventCommand(
 				item, offerer, "slot-to-market", item.get("name"), Integer
@@ -233,7 +245,9 @@ public class Market extends PassiveEntity {
 				final Earning earning = new Earning(offer.getPrice(),
 						offer.getOfferer(), reward);
 				this.getSlot(EARNINGS_SLOT_NAME).add(earning);
+				getEarningIndex().add(earning);
 				this.getSlot(OFFERS_SLOT_NAME).remove(offer.getID());
+				getOfferIndex().remove(offer);
 				if (reward) {
 					applyTradingBonus(acceptingPlayer);
 				}
@@ -252,7 +266,7 @@ public class Market extends PassiveEntity {
 										.toString(getQuantity(item)),
 								"accept offer", slotName));
 
-				this.getZone().storeToDatabase();
+				ZonePersistence.get().markDirty(getZone(), this);
 				return true;
 			}
 		}
@@ -278,13 +292,7 @@ public class Market extends PassiveEntity {
 	 * @return the fetched earnings
 	 */
 	public Set<Earning> fetchEarnings(final Player earner) {
-		Set<Earning> earningsToRemove = new HashSet<Earning>();
-		for (RPObject earningRPObject : this.getSlot(EARNINGS_SLOT_NAME)) {
-			Earning earning = (Earning) earningRPObject;
-			if (earning.getSeller().equals(earner.getName())) {
-				earningsToRemove.add(earning);
-			}
-		}
+		Set<Earning> earningsToRemove = new HashSet<Earning>(getEarningIndex().getByOwner(earner.getName()));
 
 		if(!earningsToRemove.isEmpty()) {
 			int summedUpEarnings = 0;
@@ -321,8 +329,9 @@ public class Market extends PassiveEntity {
 	public void removeEarnings(Iterable<Earning> earningsToRemove) {
 		for (Earning earning : earningsToRemove) {
 			this.getSlot(EARNINGS_SLOT_NAME).remove(earning.getID());
+			getEarningIndex().remove(earning);
 		}
-		this.getZone().storeToDatabase();
+		ZonePersistence.get().markDirty(getZone(), this);
 	}
 
 	/**
@@ -332,14 +341,7 @@ public class Market extends PassiveEntity {
 	 * @return the number of offers
 	 */
 	public int countOffersOfPlayer(Player offerer) {
-		int count = 0;
-		for (RPObject object : this.getSlot(OFFERS_SLOT_NAME)) {
-			Offer offer = (Offer) object;
-			if (offer.getOfferer().equals(offerer.getName())) {
-				count = count + 1;
-			}
-		}
-		return count;
+		return getOfferIndex().countByOwner(offerer.getName());
 	}
 
 	/**
@@ -358,11 +360,12 @@ public class Market extends PassiveEntity {
 		p.equipOrPutOnGround(item);
 
 		getSlot(OFFERS_SLOT_NAME).remove(o.getID());
+		getOfferIndex().remove(o);
 
-		getExpiredOffers().remove(o);
 		getSlot(EXPIRED_OFFERS_SLOT_NAME).remove(o.getID());
+		getExpiredOfferIndex().remove(o);
 
-		getZone().storeToDatabase();
+		ZonePersistence.get().markDirty(getZone(), this);
 
 		// log the item movement
 		String slotName = null;
@@ -385,8 +388,10 @@ public class Market extends PassiveEntity {
 	 */
 	public void expireOffer(Offer o) {
 		this.getSlot(OFFERS_SLOT_NAME).remove(o.getID());
+		getOfferIndex().remove(o);
 		this.getSlot(EXPIRED_OFFERS_SLOT_NAME).add(o);
-		this.getZone().storeToDatabase();
+		getExpiredOfferIndex().add(o);
+		ZonePersistence.get().markDirty(getZone(), this);
 		String itemname = "null";
 		if (o.hasItem()) {
 			itemname = o.getItem().getName();
@@ -398,11 +403,45 @@ public class Market extends PassiveEntity {
 	 * @return all currently expired offers in the market
 	 */
 	public List<Offer> getExpiredOffers() {
-		List<Offer> expiredOffers = new LinkedList<Offer>();
-		for(RPObject o : getSlot(EXPIRED_OFFERS_SLOT_NAME)) {
-			expiredOffers.add((Offer) o);
-		}
-		return expiredOffers;
+		return getExpiredOfferIndex().getAll();
+	}
+
+	/**
+	 * @return all currently available offers in the market
+	 */
+	public List<Offer> getOffers() {
+		return getOfferIndex().getAll();
+	}
+
+	/**
+	 * Get the available offers of a player.
+	 *
+	 * @param offerer name of the offering player
+	 * @return offers of the player
+	 */
+	public List<Offer> getOffersOf(String offerer) {
+		return getOfferIndex().getByOwner(offerer);
+	}
+
+	/**
+	 * Get the expired offers of a player.
+	 *
+	 * @param offerer name of the offering player
+	 * @return expired offers of the player
+	 */
+	public List<Offer> getExpiredOffersOf(String offerer) {
+		return getExpiredOfferIndex().getByOwner(offerer);
+	}
+
+	/**
+	 * Get the available offers whose item name contains a word, or whose
+	 * item class is the word.
+	 *
+	 * @param word word to look for
+	 * @return matching offers
+	 */
+	public List<Offer> getOffersMatching(String word) {
+		return getOfferIndex().getMatching(word);
 	}
 
 	/**
@@ -412,6 +451,7 @@ public class Market extends PassiveEntity {
 	 */
 	public void removeExpiredOffer(Offer offerToRemove) {
 		this.getSlot(EXPIRED_OFFERS_SLOT_NAME).remove(offerToRemove.getID());
+		getExpiredOfferIndex().remove(offerToRemove);
 
 		Item item = offerToRemove.getItem();
 		if (item != null) {
@@ -419,7 +459,7 @@ public class Market extends PassiveEntity {
 					item, "timeout");
 		}
 
-		this.getZone().storeToDatabase();
+		ZonePersistence.get().markDirty(getZone(), this);
 	}
 
 	/**
@@ -434,14 +474,16 @@ public class Market extends PassiveEntity {
 		if (getSlot(EXPIRED_OFFERS_SLOT_NAME).has(offer.getID())) {
 			// It had expired. Move to active offers slot.
 			this.getSlot(EXPIRED_OFFERS_SLOT_NAME).remove(offer.getID());
+			getExpiredOfferIndex().remove(offer);
 			RPSlot slot = this.getSlot(OFFERS_SLOT_NAME);
 			slot.add(offer);
+			getOfferIndex().add(offer);
 		} else if (!getSlot(OFFERS_SLOT_NAME).has(offer.getID())) {
 			// Such an offer does not exist anymore
 			return null;
 		}
 
-		this.getZone().storeToDatabase();
+		ZonePersistence.get().markDirty(getZone(), this);
 		return offer;
 	}
 
@@ -453,11 +495,7 @@ public class Market extends PassiveEntity {
 	 * @return list of offers that are older than the specified time
 	 */
 	public List<Offer> getOffersOlderThan(int seconds) {
-		List<Offer> offers = new LinkedList<Offer>();
-		for (RPObject o : getSlot(OFFERS_SLOT_NAME)) {
-			offers.add((Offer) o);
-		}
-		return getOlderThan(offers, seconds);
+		return getOfferIndex().getOlderThan(getTimeBefore(seconds));
 	}
 
 	/**
@@ -468,7 +506,7 @@ public class Market extends PassiveEntity {
 	 * @return list of expired offers that are older than the specified time
 	 */
 	public List<Offer> getExpiredOffersOlderThan(int seconds) {
-		return getOlderThan(getExpiredOffers(), seconds);
+		return getExpiredOfferIndex().getOlderThan(getTimeBefore(seconds));
 	}
 
 	/**
@@ -479,35 +517,67 @@ public class Market extends PassiveEntity {
 	 * @return list of earnings that are older than the specified time
 	 */
 	public List<Earning> getEarningsOlderThan(int seconds) {
-		RPSlot slot = this.getSlot(EARNINGS_SLOT_NAME);
-		List<Earning> earnings = new LinkedList<Earning>();
-		for (RPObject o : slot) {
-			earnings.add((Earning) o);
-		}
-		return getOlderThan(earnings, seconds);
+		return getEarningIndex().getOlderThan(getTimeBefore(seconds));
 	}
 
 	/**
-	 * retrieves Dateable objects older than seconds from a given Iterable
+	 * Get the time some seconds ago.
 	 *
-	 * @param <T>
-	 * @param set
-	 *            the set to search in
 	 * @param seconds
 	 *            the maximum age
-	 * @return the filtered list
-	 */
-	private <T extends Dateable> List<T> getOlderThan(Iterable<T> set,
-			int seconds) {
-		List<T> old = new LinkedList<T>();
-		for (T obj : set) {
-			if (System.currentTimeMillis() > obj.getTimestamp() + 1000L
-					* seconds) {
-				old.add(obj);
+	 * @return time in milliseconds
+	 */
+	private long getTimeBefore(int seconds) {
+		return System.currentTimeMillis() - 1000L * seconds;
+	}
+
+	/**
+	 * Get the index of the offers slot.
+	 *
+	 * @return offer index
+	 */
+	private OfferIndex getOfferIndex() {
+		return checkIndex(offerIndex, OFFERS_SLOT_NAME, Offer.class);
+	}
+
+	/**
+	 * Get the index of the expired offers slot.
+	 *
+	 * @return expired offer index
+	 */
+	private OfferIndex getExpiredOfferIndex() {
+		return checkIndex(expiredOfferIndex, EXPIRED_OFFERS_SLOT_NAME, Offer.class);
+	}
+
+	/**
+	 * Get the index of the earnings slot.
+	 *
+	 * @return earning index
+	 */
+	private EarningIndex getEarningIndex() {
+		return checkIndex(earningIndex, EARNINGS_SLOT_NAME, Earning.class);
+	}
+
+	/**
+	 * Rebuild an index if its slot has been changed without updating it,
+	 * such as by clearing the slot.
+	 *
+	 * @param index checked index
+	 * @param slotName name of the indexed slot
+	 * @param type type of the indexed objects
+	 * @return the index
+	 */
+	private <T extends Entity & Dateable, I extends MarketIndex<T>> I checkIndex(I index,
+			String slotName, Class<T> type) {
+		RPSlot slot = getSlot(slotName);
+		if (index.size() != slot.size()) {
+			logger.warn("Rebuilding the index of market slot " + slotName);
+			index.clear();
+			for (RPObject object : slot) {
+				index.add(type.cast(object));
 			}
 		}
-
-		return old;
+		return index;
 	}
 
 	/**
@@ -538,12 +608,6 @@ public class Market extends PassiveEntity {
 	 * @return true iff there are earnings for this player in the market
 	 */
 	public boolean hasEarningsFor(Player player) {
-		for(RPObject o : this.getSlot(EARNINGS_SLOT_NAME)) {
-			Earning e = (Earning) o;
-			if(e.getSeller().equals(player.getName())) {
-				return true;
-			}
-		}
-		return false;
+		return getEarningIndex().countByOwner(player.getName()) > 0;
 	}
 }
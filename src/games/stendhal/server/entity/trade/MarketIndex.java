@@ -0,0 +1,280 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.entity.trade;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import games.stendhal.server.entity.Entity;
+
+/**
+ * Secondary index of the objects in a market slot. The objects are indexed by
+ * their owner, and ordered by their timestamp, so that the market does not
+ * need to scan the slot for the offers of a player or for the offers that are
+ * due to expire. Query results are in the order the objects were added, which
+ * is the order of the slot.
+ * <p>
+ * The index must be updated together with the slot. Timestamp changes are
+ * reported by the indexed objects themselves.
+ *
+ * @param <T> type of the indexed objects
+ */
+abstract class MarketIndex<T extends Entity & Dateable> {
+	/** Sequence number for the next added object. */
+	private long nextSequence;
+	/** Index entries of the objects. */
+	private final Map<T, IndexEntry> entries = new IdentityHashMap<T, IndexEntry>();
+	/** Objects in the order they were added. */
+	private final NavigableMap<Long, T> bySequence = new TreeMap<Long, T>();
+	/** Entries in the order of their timestamps. */
+	private final NavigableSet<IndexEntry> byTime = new TreeSet<IndexEntry>();
+	/** Objects by their owners. */
+	private final Map<String, NavigableMap<Long, T>> byOwner = new HashMap<String, NavigableMap<Long, T>>();
+
+	/**
+	 * Get the name of the player owning an object.
+	 *
+	 * @param object indexed object
+	 * @return owner name
+	 */
+	abstract String getOwner(T object);
+
+	/**
+	 * Tell an object which index it is in, so that it can report its
+	 * timestamp changes.
+	 *
+	 * @param object indexed object
+	 * @param index index containing the object, or <code>null</code> if the
+	 * 	object was removed
+	 */
+	abstract void attach(T object, MarketIndex<T> index);
+
+	/**
+	 * Called when an object has been added.
+	 *
+	 * @param object added object
+	 * @param sequence sequence number of the object
+	 */
+	void onAdd(T object, long sequence) {
+		// no additional indices by default
+	}
+
+	/**
+	 * Called when an object has been removed.
+	 *
+	 * @param object removed object
+	 * @param sequence sequence number of the object
+	 */
+	void onRemove(T object, long sequence) {
+		// no additional indices by default
+	}
+
+	/**
+	 * Add an object to the index.
+	 *
+	 * @param object added object
+	 */
+	void add(T object) {
+		if (entries.containsKey(object)) {
+			return;
+		}
+		final IndexEntry entry = new IndexEntry(object.getTimestamp(), nextSequence++, getOwner(object));
+		entries.put(object, entry);
+		bySequence.put(entry.sequence, object);
+		byTime.add(entry);
+		addTo(byOwner, entry.owner, entry.sequence, object);
+		onAdd(object, entry.sequence);
+		attach(object, this);
+	}
+
+	/**
+	 * Remove an object from the index.
+	 *
+	 * @param object removed object
+	 * @return <code>true</code> if the object was in the index
+	 */
+	boolean remove(T object) {
+		final IndexEntry entry = entries.remove(object);
+		if (entry == null) {
+			return false;
+		}
+		bySequence.remove(entry.sequence);
+		byTime.remove(entry);
+		removeFrom(byOwner, entry.owner, entry.sequence);
+		onRemove(object, entry.sequence);
+		attach(object, null);
+		return true;
+	}
+
+	/**
+	 * Remove all objects.
+	 */
+	void clear() {
+		for (final T object : bySequence.values()) {
+			attach(object, null);
+		}
+		entries.clear();
+		bySequence.clear();
+		byTime.clear();
+		byOwner.clear();
+	}
+
+	/**
+	 * Reorder an object after its timestamp has changed. Objects that are not
+	 * in the index are ignored.
+	 *
+	 * @param object changed object
+	 */
+	void updateTimestamp(T object) {
+		final IndexEntry old = entries.get(object);
+		if (old == null) {
+			return;
+		}
+		byTime.remove(old);
+		final IndexEntry entry = new IndexEntry(object.getTimestamp(), old.sequence, old.owner);
+		entries.put(object, entry);
+		byTime.add(entry);
+	}
+
+	/**
+	 * Get the number of indexed objects.
+	 *
+	 * @return size
+	 */
+	int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Get all indexed objects.
+	 *
+	 * @return objects in slot order
+	 */
+	List<T> getAll() {
+		return new ArrayList<T>(bySequence.values());
+	}
+
+	/**
+	 * Get the objects of a player.
+	 *
+	 * @param owner name of the player
+	 * @return objects in slot order
+	 */
+	List<T> getByOwner(String owner) {
+		final NavigableMap<Long, T> objects = byOwner.get(owner);
+		if (objects == null) {
+			return new ArrayList<T>();
+		}
+		return new ArrayList<T>(objects.values());
+	}
+
+	/**
+	 * Count the objects of a player.
+	 *
+	 * @param owner name of the player
+	 * @return number of objects
+	 */
+	int countByOwner(String owner) {
+		final NavigableMap<Long, T> objects = byOwner.get(owner);
+		if (objects == null) {
+			return 0;
+		}
+		return objects.size();
+	}
+
+	/**
+	 * Get the objects whose timestamp is before a given time. Only the
+	 * matching objects are visited.
+	 *
+	 * @param time time in milliseconds
+	 * @return objects in slot order
+	 */
+	List<T> getOlderThan(long time) {
+		final NavigableMap<Long, T> old = new TreeMap<Long, T>();
+		for (final IndexEntry entry : byTime.headSet(new IndexEntry(time, Long.MIN_VALUE, null), false)) {
+			old.put(entry.sequence, bySequence.get(entry.sequence));
+		}
+		return new ArrayList<T>(old.values());
+	}
+
+	/**
+	 * Add an object to a multi valued map.
+	 *
+	 * @param map map
+	 * @param key key of the object
+	 * @param sequence sequence number of the object
+	 * @param object added object
+	 */
+	static <T> void addTo(Map<String, NavigableMap<Long, T>> map, String key, long sequence, T object) {
+		NavigableMap<Long, T> objects = map.get(key);
+		if (objects == null) {
+			objects = new TreeMap<Long, T>();
+			map.put(key, objects);
+		}
+		objects.put(sequence, object);
+	}
+
+	/**
+	 * Remove an object from a multi valued map.
+	 *
+	 * @param map map
+	 * @param key key of the object
+	 * @param sequence sequence number of the object
+	 */
+	static <T> void removeFrom(Map<String, NavigableMap<Long, T>> map, String key, long sequence) {
+		final NavigableMap<Long, T> objects = map.get(key);
+		if (objects != null) {
+			objects.remove(sequence);
+			if (objects.isEmpty()) {
+				map.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * Index data of an object. The entries are ordered by timestamp, and then
+	 * by sequence number.
+	 */
+	private static final class IndexEntry implements Comparable<IndexEntry> {
+		final long timestamp;
+		final long sequence;
+		final String owner;
+
+		/**
+		 * Create a new IndexEntry.
+		 *
+		 * @param timestamp timestamp of the object
+		 * @param sequence sequence number of the object
+		 * @param owner owner name of the object
+		 */
+		IndexEntry(long timestamp, long sequence, String owner) {
+			this.timestamp = timestamp;
+			this.sequence = sequence;
+			this.owner = owner;
+		}
+
+		@Override
+		public int compareTo(IndexEntry other) {
+			if (timestamp != other.timestamp) {
+				return Long.compare(timestamp, other.timestamp);
+			}
+			return Long.compare(sequence, other.sequence);
+		}
+	}
+}
@@ -1,6 +1,6 @@
 /* $Id$ */
 /***************************************************************************
- *                   (C) Copyright 2003-2010 - Stendhal                    *
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -48,6 +48,9 @@ public class Offer extends Entity implements Dateable {
 	public static final String OFFER_RPCLASS_NAME = "offer";
 	private static final String TIMESTAMP = "timestamp";
 
+	/** Market index containing this offer, if any. */
+	MarketIndex<Offer> index;
+
 	public static void generateRPClass() {
 		final RPClass offerRPClass = new RPClass(OFFER_RPCLASS_NAME);
 		offerRPClass.isA("entity");
@@ -179,6 +182,35 @@ public class Offer extends Entity implements Dateable {
 		put(TIMESTAMP, Long.toString(System.currentTimeMillis()));
 	}
 
+	@Override
+	public void put(final String attribute, final String value) {
+		super.put(attribute, value);
+		checkTimestamp(attribute);
+	}
+
+	@Override
+	public void put(final String attribute, final int value) {
+		super.put(attribute, value);
+		checkTimestamp(attribute);
+	}
+
+	@Override
+	public void put(final String attribute, final long value) {
+		super.put(attribute, value);
+		checkTimestamp(attribute);
+	}
+
+	/**
+	 * Reorder the market index after the timestamp has changed.
+	 *
+	 * @param attribute changed attribute
+	 */
+	private void checkTimestamp(final String attribute) {
+		if ((index != null) && TIMESTAMP.equals(attribute)) {
+			index.updateTimestamp(this);
+		}
+	}
+
 	/**
 	 * Check whether accepting this offer should be rewarder in trade score.
 	 *
@@ -0,0 +1,101 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.entity.trade;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import games.stendhal.server.entity.item.Item;
+
+/**
+ * Index of market offers. In addition to the owner and timestamp indices,
+ * the offers are indexed by the name and the class of the offered item.
+ */
+class OfferIndex extends MarketIndex<Offer> {
+	/** Offers by item name. Offers without an item are under <code>null</code>. */
+	private final Map<String, NavigableMap<Long, Offer>> byName = new HashMap<String, NavigableMap<Long, Offer>>();
+	/** Offers by item class. */
+	private final Map<String, NavigableMap<Long, Offer>> byClass = new HashMap<String, NavigableMap<Long, Offer>>();
+	/** Item names and classes of the offers, as they were when the offers were added. */
+	private final Map<Long, String[]> itemKeys = new HashMap<Long, String[]>();
+
+	@Override
+	String getOwner(Offer offer) {
+		return offer.getOfferer();
+	}
+
+	@Override
+	void attach(Offer offer, MarketIndex<Offer> index) {
+		offer.index = index;
+	}
+
+	@Override
+	void onAdd(Offer offer, long sequence) {
+		String name = null;
+		String itemClass = null;
+		if (offer.hasItem()) {
+			final Item item = offer.getItem();
+			name = item.getName();
+			itemClass = item.getItemClass();
+		}
+		itemKeys.put(sequence, new String[] { name, itemClass });
+		addTo(byName, name, sequence, offer);
+		if (itemClass != null) {
+			addTo(byClass, itemClass, sequence, offer);
+		}
+	}
+
+	@Override
+	void onRemove(Offer offer, long sequence) {
+		// the item is gone already when an accepted offer is removed
+		final String[] keys = itemKeys.remove(sequence);
+		removeFrom(byName, keys[0], sequence);
+		if (keys[1] != null) {
+			removeFrom(byClass, keys[1], sequence);
+		}
+	}
+
+	@Override
+	void clear() {
+		super.clear();
+		byName.clear();
+		byClass.clear();
+		itemKeys.clear();
+	}
+
+	/**
+	 * Get the offers whose item name contains a word, or whose item class
+	 * is the word. Offers without an item always match. Only the item names
+	 * are scanned, not the individual offers.
+	 *
+	 * @param word searched word
+	 * @return matching offers in slot order
+	 */
+	List<Offer> getMatching(String word) {
+		final NavigableMap<Long, Offer> matching = new TreeMap<Long, Offer>();
+		for (final Map.Entry<String, NavigableMap<Long, Offer>> entry : byName.entrySet()) {
+			final String name = entry.getKey();
+			if ((name == null) || name.contains(word)) {
+				matching.putAll(entry.getValue());
+			}
+		}
+		final NavigableMap<Long, Offer> ofClass = byClass.get(word);
+		if (ofClass != null) {
+			matching.putAll(ofClass);
+		}
+		return new ArrayList<Offer>(matching.values());
+	}
+}
@@ -1,6 +1,6 @@
 /* $Id$ */
 /***************************************************************************
- *                   (C) Copyright 2003-2010 - Stendhal                    *
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -12,8 +12,6 @@
  ***************************************************************************/
 package games.stendhal.server.maps.semos.tavern.market;
 
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
@@ -28,8 +26,6 @@ import games.stendhal.server.entity.npc.EventRaiser;
 import games.stendhal.server.entity.player.Player;
 import games.stendhal.server.entity.trade.Market;
 import games.stendhal.server.entity.trade.Offer;
-import marauroa.common.game.RPObject;
-import marauroa.common.game.RPSlot;
 
 /**
  * shows all current offers to the asking player
@@ -55,19 +51,11 @@ public class ShowOffersChatAction implements ChatAction {
 
 		boolean onlyMyOffers = checkForMineFilter(sentence);
 		boolean onlyMyExpiredOffers = checkForMyExpiredFilter(sentence);
-		boolean filterForMine = false;
+		boolean filterForMine = onlyMyOffers || onlyMyExpiredOffers;
 
 		Market market = TradeCenterZoneConfigurator.getShopFromZone(player.getZone());
 
 		// Figure out what to look for
-		RPSlot offersSlot = market.getSlot(Market.OFFERS_SLOT_NAME);
-		if (onlyMyExpiredOffers) {
-			offersSlot = market.getSlot(Market.EXPIRED_OFFERS_SLOT_NAME);
-			filterForMine = true;
-		}
-		if (onlyMyOffers) {
-			filterForMine = true;
-		}
 		String wordFilter = null;
 		if (!filterForMine) {
 			wordFilter = getWordFilter(sentence);
@@ -80,13 +68,16 @@ public class ShowOffersChatAction implements ChatAction {
 			return;
 		}
 
-		// Get the list of offers, and filter out all that we don't need
-		List<Offer> offers = getOffers(offersSlot);
-		if (filterForMine) {
-			filterForMine(offers, player);
-		}
-		if (wordFilter != null) {
-			filterForWord(offers, wordFilter);
+		// Get the list of offers we need from the market index
+		List<Offer> offers;
+		if (onlyMyExpiredOffers) {
+			offers = market.getExpiredOffersOf(player.getName());
+		} else if (onlyMyOffers) {
+			offers = market.getOffersOf(player.getName());
+		} else if (wordFilter != null) {
+			offers = market.getOffersMatching(wordFilter);
+		} else {
+			offers = market.getOffers();
 		}
 
 		StringBuilder offersMessage = new StringBuilder();
@@ -136,48 +127,6 @@ public class ShowOffersChatAction implements ChatAction {
 		return null;
 	}
 
-	private List<Offer> getOffers(RPSlot slot) {
-		LinkedList<Offer> offers = new LinkedList<Offer>();
-		for (RPObject rpObject : slot) {
-			offers.add((Offer) rpObject);
-		}
-		return offers;
-	}
-
-	/**
-	 * Filter out offers that do not belong to a given player.
-	 *
-	 * @param offers list of offers to be filtered
-	 * @param player player whose offers should be retained on the list
-	 */
-	private void filterForMine(List<Offer> offers, Player player) {
-		Iterator<Offer> it = offers.iterator();
-		while (it.hasNext()) {
-			if (!it.next().getOfferer().equals(player.getName())) {
-				it.remove();
-			}
-		}
-	}
-
-	/**
-	 * Filter out offers that do not match a given word.
-	 *
-	 * @param offers list of offers to be filtered
-	 * @param word a word to check in item name or type
-	 */
-	private void filterForWord(List<Offer> offers, String word) {
-		Iterator<Offer> it = offers.iterator();
-		while (it.hasNext()) {
-			Offer o = it.next();
-			if (o.hasItem()) {
-				Item item = o.getItem();
-				if (!(item.getName().indexOf(word) != -1 || word.equals(item.getItemClass()))) {
-					it.remove();
-				}
-			}
-		}
-	}
-
 	/**
 	 * Format a message out of an offer list, and update an offermap to match it.
 	 *
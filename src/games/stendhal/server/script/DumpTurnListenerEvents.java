@@ -45,6 +45,9 @@ public class DumpTurnListenerEvents extends ScriptImpl {
 		// send result
 		admin.sendPrivateText("Statistics: " + "\n" + counter.getMap()
 				+ "\nCounted turn events:" + events.size()
-				+ "\nOutdated turn events: " + outdated);
+				+ "\nOutdated turn events: " + outdated
+				+ "\nQueued notifications: " + turnNotifier.getQueueDepth()
+				+ "\nNotified last turn: " + turnNotifier.getLastFireCount()
+				+ "\nMost notified in one turn: " + turnNotifier.getMaxFireCount());
 	}
 }
@@ -0,0 +1,65 @@
+/***************************************************************************
+ *                       Copyright © 2023 - Stendhal                       *
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.script;
+
+import java.util.List;
+
+import games.stendhal.common.MathHelper;
+import games.stendhal.common.NotificationType;
+import games.stendhal.server.core.scripting.ScriptImpl;
+import games.stendhal.server.core.scripting.lua.LuaProfiler;
+import games.stendhal.server.entity.player.Player;
+
+
+/**
+ * Admin script to show calls & CPU time of Lua scripts.
+ *
+ * Usage: /script LuaProfile.class [count|reset]
+ */
+public class LuaProfile extends ScriptImpl {
+
+	/** Default number of scripts listed. */
+	private static final int DEFAULT_COUNT = 20;
+	/** Nanoseconds per millisecond. */
+	private static final double NANOS_PER_MS = 1000000.0;
+
+	@Override
+	public void execute(final Player admin, final List<String> args) {
+		final LuaProfiler profiler = LuaProfiler.get();
+		if (!args.isEmpty() && "reset".equals(args.get(0))) {
+			profiler.reset();
+			admin.sendPrivateText("Lua script statistics cleared.");
+			return;
+		}
+
+		int count = DEFAULT_COUNT;
+		if (!args.isEmpty()) {
+			count = MathHelper.parseIntDefault(args.get(0), -1);
+			if (count <= 0) {
+				admin.sendPrivateText(NotificationType.ERROR, "Usage: /script LuaProfile.class [count|reset]");
+				return;
+			}
+		}
+
+		final List<LuaProfiler.ScriptStatistics> statistics = profiler.getStatistics();
+		final StringBuilder sb = new StringBuilder("Lua scripts by ");
+		sb.append(profiler.isCpuTime() ? "CPU time" : "elapsed time");
+		sb.append(" (total ms, max ms, calls, errors):");
+		for (final LuaProfiler.ScriptStatistics stats: statistics.subList(0, Math.min(count, statistics.size()))) {
+			sb.append(String.format("\n%10.1f %8.1f %8d %6d  %s", stats.getTime() / NANOS_PER_MS,
+					stats.getMaxTime() / NANOS_PER_MS, stats.getCalls(), stats.getErrors(), stats.getScript()));
+		}
+		if (statistics.size() > count) {
+			sb.append("\n... and " + (statistics.size() - count) + " more");
+		}
+		admin.sendPrivateText(sb.toString());
+	}
+}
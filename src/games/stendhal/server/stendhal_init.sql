@@ -425,3 +425,16 @@ CREATE TABLE IF NOT EXISTS group_quest
   );
 
 CREATE INDEX IF NOT EXISTS i_group_quest_questname ON group_quest(questname);
+
+
+CREATE TABLE IF NOT EXISTS character_state
+  (
+  id          INTEGER auto_increment NOT NULL,
+  charname    VARCHAR(32) NOT NULL,
+  slotname    VARCHAR(32) NOT NULL,
+  keyname     VARCHAR(255) NOT NULL,
+  val         TEXT,
+  PRIMARY KEY(id)
+  );
+
+CREATE INDEX IF NOT EXISTS i_character_state_charname_slotname ON character_state(charname, slotname);
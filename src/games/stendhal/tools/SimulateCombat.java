@@ -1,5 +1,5 @@
 /***************************************************************************
- *                   (C) Copyright 2003-2022 - Arianne                     *
+ *                   (C) Copyright 2003-2023 - Arianne                     *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -11,6 +11,8 @@
  ***************************************************************************/
 package games.stendhal.tools;
 
+import java.io.File;
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -18,6 +20,7 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 import games.stendhal.server.core.config.CreatureGroupsXMLLoader;
@@ -29,7 +32,10 @@ import games.stendhal.server.core.rule.defaultruleset.DefaultCreature;
 import games.stendhal.server.entity.creature.Creature;
 import games.stendhal.server.entity.item.Item;
 import games.stendhal.server.entity.player.Player;
-import marauroa.common.Pair;
+import games.stendhal.tools.combat.CombatReport;
+import games.stendhal.tools.combat.CombatResult;
+import games.stendhal.tools.combat.CombatSimulator;
+import games.stendhal.tools.combat.Combatants;
 import marauroa.common.game.RPObject;
 
 
@@ -97,6 +103,15 @@ import marauroa.common.game.RPObject;
  *     Denotes enemy is boss type (currently doesn't affect anything).
  * @param --all
  *     Runs simulation for each predefined creature.
+ * @param --threads
+ *     Number of threads to simulate with (default: number of processors).
+ * @param --seed
+ *     Seed for the random generators. Simulations with the same seed give the same results.
+ * @param --format
+ *     Output format: text, csv or json (default: text).
+ * @param --compare
+ *     Runs simulation for each predefined creature in the current and another creatures.xml
+ *     revision, and shows the differences (implies --all).
  * @param --help
  *     Show usage information & exit.
  */
@@ -118,9 +133,18 @@ public class SimulateCombat {
 	private static Integer patk;
 	private static Integer pdef;
 
+	private static int threads = Runtime.getRuntime().availableProcessors();
+	private static long seed = System.nanoTime();
+	private static CombatReport.Format format = CombatReport.Format.TEXT;
+	private static CombatReport report;
+	/** creatures.xml of the revision to compare to */
+	private static String compare_file;
+
 	private static Player player;
 	private static Creature enemy;
 	private static String creature_name;
+	/** Definition of the enemy, or <code>null</code> for a generic enemy */
+	private static DefaultCreature enemy_def;
 
 	/**
 	 * If set to <code>true</code>, entities will not be equipped with weapons
@@ -141,25 +165,6 @@ public class SimulateCombat {
 	private static List<DefaultCreature> creatures;
 	private static final List<String> filtered_creatures = new ArrayList<>();
 
-	/**
-	 * If a round exceeds this number of turns round will be terminated.
-	 *
-	 * Used as protection against infinite loop.
-	 */
-	private static final int TURN_LIMIT = 1000;
-	private static int incomplete_rounds = 0;
-
-	private static int phits = 0; // total successful hits by player
-	private static int pmisses = 0; // total misses by player
-	private static int pblocked = 0; // total times player was blocked
-	private static long pdamage = 0; // total damage done by player
-	private static int ehits = 0; // total successful hits by enemy
-	private static int emisses = 0; // total misses by enemy
-	private static int eblocked = 0; // total times enemy was blocked
-	private static long edamage = 0; // total damage done by enemy
-
-	private static int total_turns = 0; // number of turns processed during simulation
-
 
 	public static void main(final String[] argv) throws Exception {
 		parseArgs(argv);
@@ -168,6 +173,11 @@ public class SimulateCombat {
 			showUsageErrorAndExit("rounds argument must be a postive number", 1);
 		} else if (balance_threshold < 1 || balance_threshold > 100) {
 			showUsageErrorAndExit("threshold argument must be a number between 1 & 100", 1);
+		} else if (threads < 1) {
+			showUsageErrorAndExit("threads argument must be a postive number", 1);
+		}
+		if (compare_file != null) {
+			all = true;
 		}
 
 		if (creature_name == null && !all) {
@@ -182,12 +192,24 @@ public class SimulateCombat {
 			}
 		}
 
-		if (all) {
+		report = new CombatReport(format, System.out);
+		if (compare_file != null) {
+			runComparison();
+		} else if (all) {
 			runFullSimulation();
 		} else {
-			initEntities();
+			initEntityManager();
+			if (creature_name != null) {
+				enemy_def = findCreature(loadCreatures(), creature_name);
+				if (enemy_def == null) {
+					System.out.println("\nERROR: unknown creature \"" + creature_name + "\"");
+					System.exit(1);
+				}
+				boss = enemy_def.getAIProfiles().containsKey("boss");
+			}
 			runSimulation();
 		}
+		report.finish();
 	}
 
 	private static void showDescription() {
@@ -211,6 +233,8 @@ public class SimulateCombat {
 				+ "[ --rounds <rounds>][ --threshold <threshold>][ flags...]"
 			+ "\n\t" + exe + " --all"
 				+ "[ --rounds <rounds>][ --threshold <threshold>][ flags...][ names...]"
+			+ "\n\t" + exe + " --compare <creatures.xml>"
+				+ "[ --rounds <rounds>][ flags...][ names...]"
 			+ "\n\t" + exe + " --help"
 			+ "\n\nRegular Arguments:"
 			+ "\n\t--lvl:        Level at which player & enemy should be set."
@@ -233,6 +257,12 @@ public class SimulateCombat {
 			+ "\n\t--boots:      Item to equip to `boots` slot."
 			+ "\n\t--cloak:      Item to equip to `cloak` slot."
 			+ "\n\t--finger:     Item to equip to `finger` slot."
+			+ "\n\t--threads:    Number of threads to simulate with (default: number of processors)."
+			+ "\n\t--seed:       Seed for the random generators. Simulations with the same seed give"
+				+ " the same results."
+			+ "\n\t--format:     Output format: text, csv or json (default: text)."
+			+ "\n\t--compare:    Runs simulation for each predefined creature in the current and"
+				+ " the given creatures.xml revision, and shows the differences (implies --all)."
 			+ "\n\t--help|-h:    Show usage information & exit."
 			+ "\n\nFlag Arguments:"
 			+ "\n\t--barehanded: Entities will not be equipped with weapons & armor."
@@ -445,6 +475,50 @@ public class SimulateCombat {
 
 				equipment.put("finger", argv[idx + 1]);
 				idx++;
+			} else if (st.equals("--threads")) {
+				if (argv.length < idx + 2) {
+					showUsageErrorAndExit("threads argument requires value", 1);
+				}
+
+				try {
+					threads = Integer.parseInt(argv[idx + 1]);
+				} catch (final NumberFormatException e) {
+					showUsageErrorAndExit("threads argument must be an integer number", 1);
+				}
+
+				idx++;
+			} else if (st.equals("--seed")) {
+				if (argv.length < idx + 2) {
+					showUsageErrorAndExit("seed argument requires value", 1);
+				}
+
+				try {
+					seed = Long.parseLong(argv[idx + 1]);
+				} catch (final NumberFormatException e) {
+					showUsageErrorAndExit("seed argument must be an integer number", 1);
+				}
+
+				idx++;
+			} else if (st.equals("--format")) {
+				if (argv.length < idx + 2) {
+					showUsageErrorAndExit("format argument requires value", 1);
+				}
+
+				try {
+					format = CombatReport.Format.valueOf(argv[idx + 1].toUpperCase(Locale.ENGLISH));
+				} catch (final IllegalArgumentException e) {
+					showUsageErrorAndExit("format argument must be text, csv or json", 1);
+				}
+
+				idx++;
+			} else if (st.equals("--compare")) {
+				if (argv.length < idx + 2) {
+					showUsageErrorAndExit("compare argument requires value", 1);
+				}
+
+				// file names are case sensitive
+				compare_file = argv[idx + 1];
+				idx++;
 			} else if (st.equals("--barehanded")) {
 				barehanded = true;
 			} else if (st.equals("--equipsame")) {
@@ -460,7 +534,7 @@ public class SimulateCombat {
 			} else if (st.equals("--verbose") || st.equals("-v")) {
 				verbose = true;
 			} else {
-				if (all) {
+				if (all || (compare_file != null)) {
 					filtered_creatures.add(st);
 				} else {
 					unknownArgs.add(st);
@@ -473,12 +547,36 @@ public class SimulateCombat {
 		}
 	}
 
-	private static void initEntities() {
+	private static void initEntityManager() {
 		if (em == null) {
 			new RPClassGenerator().createRPClasses();
 			em = SingletonRepository.getEntityManager();
 		}
+	}
+
+	private static List<DefaultCreature> loadCreatures() {
+		if (creatures == null) {
+			creatures = new CreatureGroupsXMLLoader("/data/conf/creatures.xml").load();
+		}
+		return creatures;
+	}
+
+	private static DefaultCreature findCreature(final List<DefaultCreature> list, final String name) {
+		for (final DefaultCreature df: list) {
+			if (df.getCreatureName().equals(name)) {
+				return df;
+			}
+		}
+		return null;
+	}
 
+	/**
+	 * Creates a new player & enemy as requested by the arguments. They are also
+	 * stored as the entities shown in the result.
+	 *
+	 * @return new combatants
+	 */
+	private static Combatants createCombatants() {
 		final int HIGHEST_LEVEL = 597;
 
 		final int[] atkLevels = new int[HIGHEST_LEVEL + 1];
@@ -583,32 +681,13 @@ public class SimulateCombat {
 			boots = em.getItem("leather boots");
 		}
 
-		if (creature_name == null) {
+		if (enemy_def == null) {
 			enemy = new Creature("dummy", "dummy", "(generic creature)", hp, atk, atk, def, lvl,
 				1, 1, 1, 1.0, new ArrayList<>(), new HashMap<>(), new LinkedHashMap<>(), 1, "dummy");
 		} else {
-			if (creatures == null) {
-				creatures = new CreatureGroupsXMLLoader("/data/conf/creatures.xml").load();
-			}
-
-			if (enemy == null) {
-				for (final DefaultCreature df: creatures) {
-					if (df.getCreatureName().equals(creature_name)) {
-						enemy = df.getCreature();
-						boss = df.getAIProfiles().containsKey("boss");
-						break;
-					}
-				}
-
-				if (enemy == null) {
-					System.out.println("\nERROR: unknown creature \"" + creature_name + "\"");
-					System.exit(1);
-				}
-			}
+			enemy = enemy_def.getCreature();
 		}
 
-		System.out.println("\nSetting up for enemy: " + enemy.getName());
-
 		player = (Player) new PlayerTransformer().transform(new RPObject());
 
 		Integer p_lvl = plvl;
@@ -696,9 +775,31 @@ public class SimulateCombat {
 				enemy.equip("finger", player.getRing());
 			}
 		}
+
+		return new Combatants(player, enemy);
 	}
 
-	private static void runSimulation() {
+	/**
+	 * Simulates the rounds on separate combatants for each thread.
+	 *
+	 * @return result
+	 */
+	private static CombatResult simulate() throws InterruptedException {
+		final List<Combatants> combatants = new ArrayList<>();
+		for (int i = 0; i < Math.min(threads, rounds); i++) {
+			combatants.add(createCombatants());
+		}
+
+		return new CombatSimulator(rounds, seed).run(combatants);
+	}
+
+	private static void runSimulation() throws InterruptedException {
+		if (format != CombatReport.Format.TEXT) {
+			final CombatResult result = simulate();
+			report.addResult(enemy.getName(), enemy.getLevel(), result);
+			return;
+		}
+
 		if (!all) {
 			if (creature_name != null) {
 				System.out.println("\nRunning simulation for " + creature_name + " (" + rounds + " rounds) ...");
@@ -707,27 +808,17 @@ public class SimulateCombat {
 			}
 		}
 
-		int wins = 0;
-		int losses = 0;
-		int ties = 0;
-
-		phits = 0;
-		pmisses = 0;
-		pblocked = 0;
-		pdamage = 0;
-		ehits = 0;
-		emisses = 0;
-		eblocked = 0;
-		edamage = 0;
+		final CombatResult result = simulate();
+		System.out.println("\nSimulated enemy: " + enemy.getName());
 
-		total_turns = 0;
+		final int wins = result.getWins();
+		final int losses = result.getLosses();
+		final int ties = result.getTies();
 
 		int ridx;
 		for (ridx = 0; ridx < rounds; ridx++) {
-			final Pair<Integer, Integer> result = simulateRound();
-
-			final int playerHP = result.first();
-			final int enemyHP = result.second();
+			final int playerHP = result.getPlayerHP(ridx);
+			final int enemyHP = result.getEnemyHP(ridx);
 
 			String winner = "tie";
 			if (playerHP > enemyHP) {
@@ -741,14 +832,6 @@ public class SimulateCombat {
 				System.out.println("\nRound " + (ridx+1) + "/" + rounds + " winner: " + winner
 					+ "\n  player HP: " + playerHP + "\n  enemy  HP: " + enemyHP);
 			}
-
-			if (playerHP > enemyHP) {
-				wins++;
-			} else if (playerHP < enemyHP) {
-				losses++;
-			} else {
-				ties++;
-			}
 		}
 
 		final long win_ratio = Math.round((Double.valueOf(wins) / rounds) * 100);
@@ -878,12 +961,17 @@ public class SimulateCombat {
 		System.out.println(sb.toString());
 
 
+		final double[] win_interval = result.getWinRatioInterval();
 		System.out.println("\n  Player wins:       " + wins + " (" + win_ratio + "%)"
+			+ "\n                     (95% confidence: " + Math.round(win_interval[0] * 100)
+				+ "% - " + Math.round(win_interval[1] * 100) + "%)"
 			+ "\n  Enemy wins:        " + losses + " (" + loss_ratio + "%)"
 			+ "\n  Ties:              " + ties + " (" + tie_ratio + "%)"
-			+ "\n  Incomplete rounds: " + incomplete_rounds
-			+ "\n  Total turns:       " + total_turns
-			+ "\n  Turns per round:   " + (total_turns / (double) rounds));
+			+ "\n  Incomplete rounds: " + result.getIncomplete()
+			+ "\n  Total turns:       " + result.getTotalTurns()
+			+ "\n  Turns per round:   " + result.getMeanTurns()
+				+ " (+/- " + String.format(Locale.ENGLISH, "%.2f", result.getMeanTurnsMargin()) + ")"
+			+ "\n  Seed:              " + result.getSeed());
 
 		long diff_ratio = 0;
 		String beneficiary = "none";
@@ -905,90 +993,19 @@ public class SimulateCombat {
 		}
 		System.out.println("    Beneficiary: " + beneficiary);
 
-		System.out.println("\n  Total damage done by player: " + pdamage
-		+ "\n    Hits:    " + phits
-		+ "\n    Misses:  " + pmisses
-		+ "\n    Blocked: " + pblocked
-		+ "\n  Total damage done by enemy: " + edamage
-		+ "\n    Hits:    " + ehits
-		+ "\n    Misses:  " + emisses
-		+ "\n    Blocked: " + eblocked);
+		System.out.println("\n  Total damage done by player: " + result.getPlayerDamage()
+		+ "\n    Hits:    " + result.getPlayerHits()
+		+ "\n    Misses:  " + result.getPlayerMisses()
+		+ "\n    Blocked: " + result.getPlayerBlocked()
+		+ "\n  Total damage done by enemy: " + result.getEnemyDamage()
+		+ "\n    Hits:    " + result.getEnemyHits()
+		+ "\n    Misses:  " + result.getEnemyMisses()
+		+ "\n    Blocked: " + result.getEnemyBlocked());
 	}
 
-	private static Pair<Integer, Integer> simulateRound() {
-		// make sure entities have full HP for each round
-		player.heal();
-		enemy.heal();
-
-		int turn = 0;
-		while (player.getHP() > 0 && enemy.getHP() > 0) {
-			turn++;
-
-			int damageDealt = 0;
-			int damageReceived = 0;
-
-			if (!player.canHit(enemy)) {
-				pmisses++;
-			} else {
-				damageDealt = player.damageDone(enemy, player.getItemAtk(), player.getDamageType());
-
-				if (damageDealt > 0 ) {
-					phits++;
-					pdamage += damageDealt;
-				} else {
-					pblocked++;
-				}
-			}
-
-			if (!enemy.canHit(player)) {
-				emisses++;
-			} else {
-				damageReceived = enemy.damageDone(player, enemy.getItemAtk(), player.getDamageType());
-
-				if (damageReceived > 0 ) {
-					ehits++;
-					edamage += damageReceived;
-				} else {
-					eblocked++;
-				}
-			}
-
-			player.setHP(player.getHP() - damageReceived);
-			enemy.setHP(enemy.getHP() - damageDealt);
-
-			total_turns++;
-
-			if (turn == TURN_LIMIT && player.getHP() > 0 && enemy.getHP() > 0) {
-				System.out.println("\nWARNING: Turn limit reached (" + TURN_LIMIT + "), terminating round ...");
-				incomplete_rounds++;
-				break;
-			}
-		}
-
-		// calculate damage within range of entity's HP
-		final int res_p_hp = player.getHP();
-		final int res_e_hp = enemy.getHP();
-		if (res_p_hp < 0) {
-			edamage += res_p_hp;
-		}
-		if (res_e_hp < 0) {
-			pdamage += res_e_hp;
-		}
-
-		return new Pair<Integer, Integer>(player.getHP(), enemy.getHP());
-	}
-
-	private static void runFullSimulation() {
-		new RPClassGenerator().createRPClasses();
-		em = SingletonRepository.getEntityManager();
-		creatures = new CreatureGroupsXMLLoader("/data/conf/creatures.xml").load();
-
-		Collections.sort(creatures, new Comparator<DefaultCreature>() {
-			@Override
-			public int compare(final DefaultCreature o1, final DefaultCreature o2) {
-				return o1.getLevel() - o2.getLevel();
-			}
-		});
+	private static void runFullSimulation() throws InterruptedException {
+		initEntityManager();
+		sortByLevel(loadCreatures());
 
 		boolean filtered = false;
 		int c_count = filtered_creatures.size();
@@ -998,7 +1015,10 @@ public class SimulateCombat {
 			c_count = creatures.size();
 		}
 
-		if (filtered) {
+		final boolean text = format == CombatReport.Format.TEXT;
+		if (!text) {
+			// keep the output machine readable
+		} else if (filtered) {
 			System.out.println("\nRunning simulation of select predefined creatures ...");
 		} else {
 			System.out.println("\nRunning simulation of all predefined creatures ...");
@@ -1013,13 +1033,13 @@ public class SimulateCombat {
 			}
 
 			c_idx++;
-			enemy = df.getCreature();
+			enemy_def = df;
 			boss = df.getAIProfiles().containsKey("boss");
 
-			initEntities();
-
-			System.out.println("\nRunning simulation for " + creature_name
-				+ " (" + c_idx + "/" + c_count + ") ...");
+			if (text) {
+				System.out.println("\nRunning simulation for " + creature_name
+					+ " (" + c_idx + "/" + c_count + ") ...");
+			}
 			runSimulation();
 
 			if (filtered) {
@@ -1028,10 +1048,79 @@ public class SimulateCombat {
 		}
 
 		if (filtered_creatures.size() > 0) {
-			System.out.println("\nSkipped unknown creatures:");
+			// keep machine readable output clean
+			final PrintStream out = text ? System.out : System.err;
+			out.println("\nSkipped unknown creatures:");
 			for (final String c_name: filtered_creatures) {
-				System.out.println("  " + c_name);
+				out.println("  " + c_name);
 			}
 		}
 	}
+
+	/**
+	 * Runs simulation for each predefined creature in the current & another
+	 * revision of creatures.xml. Both revisions are simulated with the same
+	 * seed, so that differences are caused by the changed creatures rather
+	 * than by chance as much as possible.
+	 */
+	private static void runComparison() throws InterruptedException {
+		initEntityManager();
+		final List<DefaultCreature> current = loadCreatures();
+		sortByLevel(current);
+		final List<DefaultCreature> other = new CreatureGroupsXMLLoader(new File(compare_file).toURI()).load();
+		if (other.isEmpty()) {
+			showUsageErrorAndExit("no creatures found in " + compare_file, 1);
+		}
+
+		final boolean filtered = filtered_creatures.size() > 0;
+		final PrintStream out = format == CombatReport.Format.TEXT ? System.out : System.err;
+		final List<String> added = new ArrayList<>();
+		for (final DefaultCreature df: current) {
+			creature_name = df.getCreatureName();
+			if (filtered && !filtered_creatures.contains(creature_name)) {
+				continue;
+			}
+
+			final DefaultCreature old = findCreature(other, creature_name);
+			if (old == null) {
+				added.add(creature_name);
+				continue;
+			}
+
+			enemy_def = old;
+			final CombatResult old_result = simulate();
+			enemy_def = df;
+			final CombatResult new_result = simulate();
+			report.addComparison(creature_name, df.getLevel(), old_result, new_result);
+		}
+
+		if (!added.isEmpty()) {
+			out.println("\nCreatures not in " + compare_file + ":");
+			for (final String c_name: added) {
+				out.println("  " + c_name);
+			}
+		}
+		final List<String> removed = new ArrayList<>();
+		for (final DefaultCreature df: other) {
+			final String name = df.getCreatureName();
+			if ((!filtered || filtered_creatures.contains(name)) && (findCreature(current, name) == null)) {
+				removed.add(name);
+			}
+		}
+		if (!removed.isEmpty()) {
+			out.println("\nCreatures only in " + compare_file + ":");
+			for (final String c_name: removed) {
+				out.println("  " + c_name);
+			}
+		}
+	}
+
+	private static void sortByLevel(final List<DefaultCreature> list) {
+		Collections.sort(list, new Comparator<DefaultCreature>() {
+			@Override
+			public int compare(final DefaultCreature o1, final DefaultCreature o2) {
+				return o1.getLevel() - o2.getLevel();
+			}
+		});
+	}
 }
@@ -0,0 +1,186 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.tools.combat;
+
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.json.simple.JSONArray;
+
+/**
+ * Writes the results of combat simulations in a machine readable format.
+ * Results of single simulations and comparisons of two simulations of the
+ * same creature can be written, but not mixed in one report.
+ */
+public final class CombatReport {
+	/**
+	 * Output formats.
+	 */
+	public enum Format {
+		/** Text table for comparisons */
+		TEXT,
+		/** Comma separated values with a header line */
+		CSV,
+		/** A JSON array with an object for each simulation */
+		JSON
+	}
+
+	private static final String[] RESULT_COLUMNS = { "creature", "level", "trials", "seed",
+			"wins", "losses", "ties", "incomplete", "win_ratio", "win_ratio_low",
+			"win_ratio_high", "mean_turns", "mean_turns_margin", "player_damage",
+			"enemy_damage" };
+	private static final String[] COMPARISON_COLUMNS = { "creature", "level", "trials",
+			"seed", "old_win_ratio", "old_win_ratio_low", "old_win_ratio_high",
+			"new_win_ratio", "new_win_ratio_low", "new_win_ratio_high", "difference",
+			"significant" };
+
+	private final Format format;
+	private final PrintStream out;
+	/** Rows written so far */
+	private int rows;
+	/** JSON objects, written when the report is finished */
+	private final JSONArray json = new JSONArray();
+
+	/**
+	 * Create a new CombatReport.
+	 *
+	 * @param format output format
+	 * @param out output stream
+	 */
+	public CombatReport(final Format format, final PrintStream out) {
+		this.format = format;
+		this.out = out;
+	}
+
+	/**
+	 * Add the result of a simulation.
+	 *
+	 * @param creature name of the enemy
+	 * @param level level of the enemy
+	 * @param result simulation result
+	 */
+	public void addResult(final String creature, final int level, final CombatResult result) {
+		final double[] interval = result.getWinRatioInterval();
+		final Map<String, Object> row = new LinkedHashMap<String, Object>();
+		row.put("creature", creature);
+		row.put("level", level);
+		row.put("trials", result.getTrials());
+		row.put("seed", result.getSeed());
+		row.put("wins", result.getWins());
+		row.put("losses", result.getLosses());
+		row.put("ties", result.getTies());
+		row.put("incomplete", result.getIncomplete());
+		row.put("win_ratio", result.getWinRatio());
+		row.put("win_ratio_low", interval[0]);
+		row.put("win_ratio_high", interval[1]);
+		row.put("mean_turns", result.getMeanTurns());
+		row.put("mean_turns_margin", result.getMeanTurnsMargin());
+		row.put("player_damage", result.getPlayerDamage());
+		row.put("enemy_damage", result.getEnemyDamage());
+		write(RESULT_COLUMNS, row);
+	}
+
+	/**
+	 * Add the results of simulating two revisions of a creature.
+	 *
+	 * @param creature name of the enemy
+	 * @param level level of the enemy in the new revision
+	 * @param oldResult result of the old revision
+	 * @param newResult result of the new revision
+	 */
+	public void addComparison(final String creature, final int level,
+			final CombatResult oldResult, final CombatResult newResult) {
+		final double[] oldInterval = oldResult.getWinRatioInterval();
+		final double[] newInterval = newResult.getWinRatioInterval();
+		final Map<String, Object> row = new LinkedHashMap<String, Object>();
+		row.put("creature", creature);
+		row.put("level", level);
+		row.put("trials", newResult.getTrials());
+		row.put("seed", newResult.getSeed());
+		row.put("old_win_ratio", oldResult.getWinRatio());
+		row.put("old_win_ratio_low", oldInterval[0]);
+		row.put("old_win_ratio_high", oldInterval[1]);
+		row.put("new_win_ratio", newResult.getWinRatio());
+		row.put("new_win_ratio_low", newInterval[0]);
+		row.put("new_win_ratio_high", newInterval[1]);
+		row.put("difference", newResult.getWinRatio() - oldResult.getWinRatio());
+		row.put("significant", oldResult.differsFrom(newResult));
+		write(COMPARISON_COLUMNS, row);
+	}
+
+	/**
+	 * Finish the report. JSON reports are written only when they are
+	 * finished.
+	 */
+	public void finish() {
+		if (format == Format.JSON) {
+			out.println(json.toJSONString());
+		}
+		out.flush();
+	}
+
+	/**
+	 * Write a row.
+	 *
+	 * @param columns column names
+	 * @param row values of the row
+	 */
+	@SuppressWarnings("unchecked")
+	private void write(final String[] columns, final Map<String, Object> row) {
+		switch (format) {
+		case JSON:
+			json.add(row);
+			break;
+		case CSV:
+			if (rows == 0) {
+				out.println(String.join(",", columns));
+			}
+			out.println(join(",", columns, row));
+			break;
+		default:
+			if (rows == 0) {
+				out.println(String.join("\t", columns));
+			}
+			out.println(join("\t", columns, row));
+		}
+		rows++;
+	}
+
+	/**
+	 * Format the values of a row.
+	 *
+	 * @param separator separator of the values
+	 * @param columns column names
+	 * @param row values of the row
+	 * @return formatted row
+	 */
+	private static String join(final String separator, final String[] columns,
+			final Map<String, Object> row) {
+		final StringBuilder sb = new StringBuilder();
+		for (final String column : columns) {
+			if (sb.length() > 0) {
+				sb.append(separator);
+			}
+			final Object value = row.get(column);
+			if (value instanceof Double) {
+				sb.append(String.format(Locale.ENGLISH, "%.4f", value));
+			} else if ((value instanceof String) && separator.equals(",")) {
+				sb.append('"').append(((String) value).replace("\"", "\"\"")).append('"');
+			} else {
+				sb.append(value);
+			}
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,350 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.tools.combat;
+
+/**
+ * The results of the trials of a combat simulation, and statistics
+ * calculated from them. Confidence intervals are calculated for the 95%
+ * confidence level.
+ */
+public final class CombatResult {
+	/** Quantile of the normal distribution for the 95% confidence level */
+	private static final double Z = 1.96;
+
+	private final long seed;
+	private final Trial[] trials;
+
+	/**
+	 * The outcome of a single fight.
+	 */
+	static final class Trial {
+		int playerHP;
+		int enemyHP;
+		int turns;
+		boolean incomplete;
+		int playerHits;
+		int playerMisses;
+		int playerBlocked;
+		long playerDamage;
+		int enemyHits;
+		int enemyMisses;
+		int enemyBlocked;
+		long enemyDamage;
+
+		/**
+		 * Check if the player won the fight.
+		 *
+		 * @return <code>true</code> if the player won
+		 */
+		boolean playerWon() {
+			return playerHP > enemyHP;
+		}
+
+		/**
+		 * Check if the enemy won the fight.
+		 *
+		 * @return <code>true</code> if the enemy won
+		 */
+		boolean enemyWon() {
+			return playerHP < enemyHP;
+		}
+	}
+
+	/**
+	 * Create a new CombatResult.
+	 *
+	 * @param seed seed of the simulation
+	 * @param trials trial outcomes, in trial order
+	 */
+	CombatResult(final long seed, final Trial[] trials) {
+		this.seed = seed;
+		this.trials = trials;
+	}
+
+	/**
+	 * Get the seed the simulation was run with. Running the simulation
+	 * again with the same seed gives the same result.
+	 *
+	 * @return seed
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Get the number of trials.
+	 *
+	 * @return number of trials
+	 */
+	public int getTrials() {
+		return trials.length;
+	}
+
+	/**
+	 * Get the hit points the player had at the end of a trial.
+	 *
+	 * @param trial trial index
+	 * @return hit points. Negative values mean overkill
+	 */
+	public int getPlayerHP(final int trial) {
+		return trials[trial].playerHP;
+	}
+
+	/**
+	 * Get the hit points the enemy had at the end of a trial.
+	 *
+	 * @param trial trial index
+	 * @return hit points. Negative values mean overkill
+	 */
+	public int getEnemyHP(final int trial) {
+		return trials[trial].enemyHP;
+	}
+
+	/**
+	 * Get the number of trials the player won.
+	 *
+	 * @return number of wins
+	 */
+	public int getWins() {
+		int wins = 0;
+		for (final Trial trial : trials) {
+			if (trial.playerWon()) {
+				wins++;
+			}
+		}
+		return wins;
+	}
+
+	/**
+	 * Get the number of trials the enemy won.
+	 *
+	 * @return number of losses
+	 */
+	public int getLosses() {
+		int losses = 0;
+		for (final Trial trial : trials) {
+			if (trial.enemyWon()) {
+				losses++;
+			}
+		}
+		return losses;
+	}
+
+	/**
+	 * Get the number of trials without a winner.
+	 *
+	 * @return number of ties
+	 */
+	public int getTies() {
+		return getTrials() - getWins() - getLosses();
+	}
+
+	/**
+	 * Get the number of trials that were terminated because they reached the
+	 * turn limit.
+	 *
+	 * @return number of incomplete trials
+	 */
+	public int getIncomplete() {
+		int incomplete = 0;
+		for (final Trial trial : trials) {
+			if (trial.incomplete) {
+				incomplete++;
+			}
+		}
+		return incomplete;
+	}
+
+	/**
+	 * Get the fraction of the trials won by the player.
+	 *
+	 * @return win ratio between 0 and 1
+	 */
+	public double getWinRatio() {
+		return getWins() / (double) getTrials();
+	}
+
+	/**
+	 * Get the confidence interval of the win ratio. The Wilson score interval
+	 * is used, as it behaves well also for ratios close to 0 or 1.
+	 *
+	 * @return lower and upper bound of the interval
+	 */
+	public double[] getWinRatioInterval() {
+		final double n = getTrials();
+		final double p = getWinRatio();
+		final double z2 = Z * Z;
+		final double center = (p + z2 / (2 * n)) / (1 + z2 / n);
+		final double half = Z * Math.sqrt(p * (1 - p) / n + z2 / (4 * n * n)) / (1 + z2 / n);
+		return new double[] { Math.max(0, center - half), Math.min(1, center + half) };
+	}
+
+	/**
+	 * Get the total number of turns of all trials.
+	 *
+	 * @return number of turns
+	 */
+	public long getTotalTurns() {
+		long turns = 0;
+		for (final Trial trial : trials) {
+			turns += trial.turns;
+		}
+		return turns;
+	}
+
+	/**
+	 * Get the mean number of turns of a trial.
+	 *
+	 * @return mean number of turns
+	 */
+	public double getMeanTurns() {
+		return getTotalTurns() / (double) getTrials();
+	}
+
+	/**
+	 * Get the half width of the confidence interval of the mean number of
+	 * turns.
+	 *
+	 * @return half width of the interval
+	 */
+	public double getMeanTurnsMargin() {
+		final double mean = getMeanTurns();
+		double squares = 0;
+		for (final Trial trial : trials) {
+			squares += (trial.turns - mean) * (trial.turns - mean);
+		}
+		final int n = getTrials();
+		if (n < 2) {
+			return 0;
+		}
+		return Z * Math.sqrt(squares / (n - 1) / n);
+	}
+
+	/**
+	 * Get the total damage done by the player in all trials. Damage beyond
+	 * the hit points of the enemy is not counted.
+	 *
+	 * @return damage
+	 */
+	public long getPlayerDamage() {
+		long damage = 0;
+		for (final Trial trial : trials) {
+			damage += trial.playerDamage;
+		}
+		return damage;
+	}
+
+	/**
+	 * Get the number of successful hits by the player.
+	 *
+	 * @return number of hits
+	 */
+	public int getPlayerHits() {
+		int hits = 0;
+		for (final Trial trial : trials) {
+			hits += trial.playerHits;
+		}
+		return hits;
+	}
+
+	/**
+	 * Get the number of misses by the player.
+	 *
+	 * @return number of misses
+	 */
+	public int getPlayerMisses() {
+		int misses = 0;
+		for (final Trial trial : trials) {
+			misses += trial.playerMisses;
+		}
+		return misses;
+	}
+
+	/**
+	 * Get the number of times the player was blocked.
+	 *
+	 * @return number of blocks
+	 */
+	public int getPlayerBlocked() {
+		int blocked = 0;
+		for (final Trial trial : trials) {
+			blocked += trial.playerBlocked;
+		}
+		return blocked;
+	}
+
+	/**
+	 * Get the total damage done by the enemy in all trials. Damage beyond
+	 * the hit points of the player is not counted.
+	 *
+	 * @return damage
+	 */
+	public long getEnemyDamage() {
+		long damage = 0;
+		for (final Trial trial : trials) {
+			damage += trial.enemyDamage;
+		}
+		return damage;
+	}
+
+	/**
+	 * Get the number of successful hits by the enemy.
+	 *
+	 * @return number of hits
+	 */
+	public int getEnemyHits() {
+		int hits = 0;
+		for (final Trial trial : trials) {
+			hits += trial.enemyHits;
+		}
+		return hits;
+	}
+
+	/**
+	 * Get the number of misses by the enemy.
+	 *
+	 * @return number of misses
+	 */
+	public int getEnemyMisses() {
+		int misses = 0;
+		for (final Trial trial : trials) {
+			misses += trial.enemyMisses;
+		}
+		return misses;
+	}
+
+	/**
+	 * Get the number of times the enemy was blocked.
+	 *
+	 * @return number of blocks
+	 */
+	public int getEnemyBlocked() {
+		int blocked = 0;
+		for (final Trial trial : trials) {
+			blocked += trial.enemyBlocked;
+		}
+		return blocked;
+	}
+
+	/**
+	 * Check if the win ratio of another result differs significantly from
+	 * this one, that is, if the confidence intervals do not overlap.
+	 *
+	 * @param other other result
+	 * @return <code>true</code> if the difference is significant
+	 */
+	public boolean differsFrom(final CombatResult other) {
+		final double[] own = getWinRatioInterval();
+		final double[] others = other.getWinRatioInterval();
+		return (own[1] < others[0]) || (others[1] < own[0]);
+	}
+}
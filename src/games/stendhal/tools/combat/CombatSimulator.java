@@ -0,0 +1,179 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.tools.combat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import games.stendhal.common.Rand;
+import games.stendhal.server.entity.creature.Creature;
+import games.stendhal.server.entity.player.Player;
+import games.stendhal.tools.combat.CombatResult.Trial;
+
+/**
+ * Simulates fights between a player and an enemy on several threads.
+ * <p>
+ * Every thread fights with its own pair of combatants, and every trial uses
+ * its own random generator seeded from the simulation seed and the trial
+ * number. The result of a trial therefore does not depend on the thread it
+ * runs on, and running a simulation again with the same seed gives the same
+ * result regardless of the number of threads.
+ */
+public final class CombatSimulator {
+	/**
+	 * If a trial exceeds this number of turns it will be terminated.
+	 *
+	 * Used as protection against infinite loop.
+	 */
+	public static final int TURN_LIMIT = 1000;
+
+	private final int trials;
+	private final long seed;
+
+	/**
+	 * Create a new CombatSimulator.
+	 *
+	 * @param trials number of fights to simulate
+	 * @param seed seed of the random generators
+	 */
+	public CombatSimulator(final int trials, final long seed) {
+		this.trials = trials;
+		this.seed = seed;
+	}
+
+	/**
+	 * Run the simulation. One thread is used for each pair of combatants.
+	 *
+	 * @param combatants combatant pairs. All of them must be set up the same
+	 * 	way
+	 * @return result
+	 * @throws InterruptedException if the simulation was interrupted
+	 */
+	public CombatResult run(final List<Combatants> combatants) throws InterruptedException {
+		final Trial[] results = new Trial[trials];
+		final AtomicInteger next = new AtomicInteger();
+		final List<Callable<Void>> workers = new ArrayList<Callable<Void>>();
+		for (final Combatants pair : combatants) {
+			workers.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					try {
+						int trial;
+						while ((trial = next.getAndIncrement()) < trials) {
+							Rand.setThreadRandom(new Random(getTrialSeed(trial)));
+							pair.reset();
+							results[trial] = simulateTrial(pair.getPlayer(), pair.getEnemy());
+						}
+					} finally {
+						Rand.setThreadRandom(null);
+					}
+					return null;
+				}
+			});
+		}
+
+		final ExecutorService executor = Executors.newFixedThreadPool(workers.size());
+		try {
+			for (final Future<Void> future : executor.invokeAll(workers)) {
+				future.get();
+			}
+		} catch (final ExecutionException e) {
+			throw new IllegalStateException("Simulation failed", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+
+		return new CombatResult(seed, results);
+	}
+
+	/**
+	 * Get the seed of the random generator of a trial.
+	 *
+	 * @param trial trial index
+	 * @return seed
+	 */
+	private long getTrialSeed(final int trial) {
+		// spread the trial numbers, so that neighboring trials do not get
+		// similar seeds
+		return seed ^ (trial * 0x9E3779B97F4A7C15L);
+	}
+
+	/**
+	 * Simulate a fight until either of the combatants dies.
+	 *
+	 * @param player player
+	 * @param enemy enemy
+	 * @return outcome
+	 */
+	private static Trial simulateTrial(final Player player, final Creature enemy) {
+		final Trial result = new Trial();
+		while (player.getHP() > 0 && enemy.getHP() > 0) {
+			result.turns++;
+
+			int damageDealt = 0;
+			int damageReceived = 0;
+
+			if (!player.canHit(enemy)) {
+				result.playerMisses++;
+			} else {
+				damageDealt = player.damageDone(enemy, player.getItemAtk(), player.getDamageType());
+
+				if (damageDealt > 0) {
+					result.playerHits++;
+					result.playerDamage += damageDealt;
+				} else {
+					result.playerBlocked++;
+				}
+			}
+
+			if (!enemy.canHit(player)) {
+				result.enemyMisses++;
+			} else {
+				damageReceived = enemy.damageDone(player, enemy.getItemAtk(), player.getDamageType());
+
+				if (damageReceived > 0) {
+					result.enemyHits++;
+					result.enemyDamage += damageReceived;
+				} else {
+					result.enemyBlocked++;
+				}
+			}
+
+			player.setHP(player.getHP() - damageReceived);
+			enemy.setHP(enemy.getHP() - damageDealt);
+
+			if (result.turns == TURN_LIMIT && player.getHP() > 0 && enemy.getHP() > 0) {
+				result.incomplete = true;
+				break;
+			}
+		}
+
+		// calculate damage within range of entity's HP
+		result.playerHP = player.getHP();
+		result.enemyHP = enemy.getHP();
+		if (result.playerHP < 0) {
+			result.enemyDamage += result.playerHP;
+		}
+		if (result.enemyHP < 0) {
+			result.playerDamage += result.enemyHP;
+		}
+
+		return result;
+	}
+}
@@ -0,0 +1,69 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.tools.combat;
+
+import games.stendhal.server.entity.creature.Creature;
+import games.stendhal.server.entity.player.Player;
+
+/**
+ * A player and an enemy fighting each other in a simulation. Each simulation
+ * thread uses its own pair, so the entities are never shared between
+ * threads.
+ */
+public final class Combatants {
+	private final Player player;
+	private final Creature enemy;
+	/** Karma of the player when the pair was created */
+	private final double karma;
+
+	/**
+	 * Create a new Combatants pair.
+	 *
+	 * @param player fully equipped player
+	 * @param enemy fully equipped enemy
+	 */
+	public Combatants(final Player player, final Creature enemy) {
+		this.player = player;
+		this.enemy = enemy;
+		karma = player.getKarma();
+	}
+
+	/**
+	 * Get the player.
+	 *
+	 * @return player
+	 */
+	public Player getPlayer() {
+		return player;
+	}
+
+	/**
+	 * Get the enemy.
+	 *
+	 * @return enemy
+	 */
+	public Creature getEnemy() {
+		return enemy;
+	}
+
+	/**
+	 * Restore the state the pair had when it was created, so that the result
+	 * of a trial does not depend on the trials run before it.
+	 */
+	void reset() {
+		player.heal();
+		enemy.heal();
+		// addKarma() would log a game event for each trial
+		player.put("karma", karma);
+		player.update();
+	}
+}
@@ -291,7 +291,11 @@ export class Client {
 					this.onDataMap(items[i]["data"]);
 				}
 			}
-			stendhal.data.map.onTransfer(zoneName, data);
+			// zone attribute updates, like daylight and weather changes, do
+			// not carry map layers
+			if (data["0_floor"]) {
+				stendhal.data.map.onTransfer(zoneName, data);
+			}
 		};
 
 		// update user interface on perceptions
@@ -446,6 +446,8 @@ export class SlashActionRepo {
 					"\t\tShow the state of quest for #player.",
 					"- /script <scriptname>",
 					"\t\tLoad (or reload) a script on the server. See #/gmhelp #script for details.",
+					"- /profile [slow|zones|listeners|reset|dump|on|off]",
+					"\t\tShow where the server spends its turn time.",
 					"* CHATTING:",
 					"- /supportanswer <player> <message>",
 					"\t\tReplies to a support question. Replace #message with $faq, $faqsocial, $ignore, $faqpvp, $wiki, $knownbug, $bugstracker, $rules, $notsupport or $spam shortcuts if desired.",
@@ -0,0 +1,49 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.client;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Tests for FrameStatistics.
+ */
+public class FrameStatisticsTest {
+	private static final long MS = 1000000L;
+
+	/**
+	 * Check that the values are published once a second.
+	 */
+	@Test
+	public void testFrameDrawn() {
+		FrameStatistics stats = new FrameStatistics();
+		long time = 1000 * MS;
+		// 50 frames taking 4 ms, one taking 10 ms, at 20 ms intervals
+		for (int i = 0; i < 50; i++) {
+			stats.frameDrawn(time, time + 4 * MS);
+			time += 20 * MS;
+		}
+		assertEquals(0, stats.getFramesPerSecond());
+		stats.frameDrawn(time, time + 10 * MS);
+
+		assertEquals(50, stats.getFramesPerSecond());
+		assertEquals(210.0 / 51, stats.getAverageFrameTime(), 0.001);
+		assertEquals(10.0, stats.getMaxFrameTime(), 0.001);
+		assertEquals("50 fps, frame 4.1 ms (max 10.0 ms)", stats.toString());
+
+		// The next period starts from scratch
+		time += 20 * MS;
+		stats.frameDrawn(time, time + 2 * MS);
+		assertEquals(10.0, stats.getMaxFrameTime(), 0.001);
+	}
+}
@@ -0,0 +1,75 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class LRUCacheTest {
+	/**
+	 * Test trying to store null keys and values to the cache.
+	 */
+	@Test
+	public void testStoreNull() {
+		LRUCache<Object, String> cache = new LRUCache<Object, String>(2);
+		cache.put(null, "boo");
+		cache.put("a", null);
+		assertEquals(0, cache.size());
+		assertNull(cache.get(null));
+		assertNull(cache.get("a"));
+		assertEquals(2, cache.getMisses());
+	}
+
+	/**
+	 * Test that the least recently used entry is discarded.
+	 */
+	@Test
+	public void testEviction() {
+		LRUCache<String, String> cache = new LRUCache<String, String>(2);
+		cache.put("a", "foo");
+		cache.put("b", "bar");
+		// make "b" the eldest
+		assertEquals("foo", cache.get("a"));
+		cache.put("c", "baz");
+		assertEquals(2, cache.size());
+		assertNull(cache.get("b"));
+		assertEquals("foo", cache.get("a"));
+		assertEquals("baz", cache.get("c"));
+
+		// overwriting does not grow the cache
+		cache.put("c", "quux");
+		assertEquals(2, cache.size());
+		assertEquals("quux", cache.get("c"));
+	}
+
+	/**
+	 * Test the hit and miss counters.
+	 */
+	@Test
+	public void testCounters() {
+		LRUCache<String, String> cache = new LRUCache<String, String>(4);
+		assertNull(cache.get("a"));
+		cache.put("a", "foo");
+		cache.get("a");
+		cache.get("a");
+		assertEquals(2, cache.getHits());
+		assertEquals(1, cache.getMisses());
+
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertNull(cache.get("a"));
+		assertEquals(2, cache.getHits());
+		assertEquals(2, cache.getMisses());
+	}
+}
@@ -1,5 +1,5 @@
 /***************************************************************************
- *                   (C) Copyright 2003-2010 - Stendhal                    *
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -12,6 +12,7 @@
 package games.stendhal.client.sprite;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.awt.Image;
@@ -186,4 +187,23 @@ public class CompositeSpriteTest {
 		assertTrue(result2 instanceof CompositeSprite);
 		assertTrue(result == result2);
 	}
+
+	/**
+	 * Check that composites with animated layers are not reported constant.
+	 */
+	@Test
+	public void testIsConstant() {
+		Sprite[] frames0 = { new EmptySprite(32, 32, 0xf00f), new EmptySprite(32, 32, 0x0ff0) };
+		Sprite[] frames1 = { new EmptySprite(32, 32, 0xaaaa), new EmptySprite(32, 32, 0x5555) };
+		Sprite animated0 = new AnimatedSprite(frames0, 100, true);
+		Sprite animated1 = new AnimatedSprite(frames1, 100, true);
+
+		List<Sprite> slaves = new LinkedList<Sprite>();
+		slaves.add(animated0);
+		slaves.add(animated1);
+
+		Sprite result = CompositeSprite.getComposite(new SpriteCache(), slaves, null, null);
+		assertTrue(result instanceof CompositeSprite);
+		assertFalse(result.isConstant());
+	}
 }
@@ -1,5 +1,5 @@
 /***************************************************************************
- *                   (C) Copyright 2003-2016 - Stendhal                    *
+ *                   (C) Copyright 2003-2023 - Stendhal                    *
  ***************************************************************************
  ***************************************************************************
  *                                                                         *
@@ -12,12 +12,14 @@
 package games.stendhal.common;
 
 import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
 import java.awt.geom.Rectangle2D;
 import java.util.BitSet;
+import java.util.Random;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -353,4 +355,158 @@ public class CollisionMapTest {
 				.getWidth(), (int) bob.getHeight()));
 	}
 
+	/**
+	 * Compares collision checks on random maps with the previous, BitSet
+	 * based implementation. The maps are changed between the checks, so that
+	 * both the checks on the bitmap and on the summed-area table are used.
+	 */
+	@Test
+	public void testRandomizedAgainstBitSetMap() {
+		final Random random = new Random(1234);
+		for (int round = 0; round < 200; round++) {
+			final int width = 1 + random.nextInt(150);
+			final int height = 1 + random.nextInt(150);
+			final CollisionMap map = new CollisionMap(width, height);
+			final BitSetCollisionMap reference = new BitSetCollisionMap(width, height);
+			final double density = random.nextDouble() * 0.2;
+
+			for (int change = 0; change < 5; change++) {
+				for (int i = 0; i < width * height * density; i++) {
+					final int x = random.nextInt(width);
+					final int y = random.nextInt(height);
+					if (random.nextInt(4) == 0) {
+						map.unset(x, y);
+						reference.unset(x, y);
+					} else {
+						map.set(x, y);
+						reference.set(x, y);
+					}
+				}
+				if (random.nextInt(3) == 0) {
+					final Rectangle2D shape = new Rectangle2D.Double(random.nextInt(width), random.nextInt(height), 1, 1);
+					if (shape.getX() + 2 < width) {
+						shape.setRect(shape.getX(), shape.getY(), 2, Math.min(3, height - shape.getY()));
+					}
+					map.set(shape);
+					reference.set(shape);
+				}
+
+				for (int query = 0; query < 100; query++) {
+					final int x = random.nextInt(width + 4) - 2;
+					final int y = random.nextInt(height + 4) - 2;
+					final int w = random.nextInt(Math.min(width, 70) + 1);
+					final int h = random.nextInt(Math.min(height, 70) + 1);
+					assertEquals(width + "x" + height + ": " + x + "," + y + " " + w + "x" + h,
+							reference.collides(x, y, w, h), map.collides(x, y, w, h));
+					assertEquals(reference.get(x, y), map.get(x, y));
+				}
+			}
+
+			map.clear();
+			reference.clear();
+			for (int query = 0; query < 20; query++) {
+				final int x = random.nextInt(width);
+				final int y = random.nextInt(height);
+				assertEquals(reference.collides(x, y, 1, 1), map.collides(x, y, 1, 1));
+			}
+		}
+	}
+
+	/**
+	 * Compares the CollisionDetection checks of shapes at fractional
+	 * positions with those done on the previous implementation.
+	 */
+	@Test
+	public void testRandomizedCollisionDetection() {
+		final Random random = new Random(4321);
+		final int width = 100;
+		final int height = 70;
+		final CollisionDetection detection = new CollisionDetection();
+		detection.init(width, height);
+		final BitSetCollisionMap reference = new BitSetCollisionMap(width, height);
+		for (int i = 0; i < 600; i++) {
+			final int x = random.nextInt(width);
+			final int y = random.nextInt(height);
+			detection.setCollide(x, y);
+			reference.set(x, y);
+		}
+
+		for (int query = 0; query < 20000; query++) {
+			final double x = random.nextInt(4 * width) / 4.0 - 1;
+			final double y = random.nextInt(4 * height) / 4.0 - 1;
+			final double w = 0.5 * (1 + random.nextInt(8));
+			final double h = 0.5 * (1 + random.nextInt(8));
+
+			final boolean expected;
+			if ((x < 0) || (x + w > width) || (y < 0) || (y + h > height)) {
+				expected = true;
+			} else {
+				final int iHeight = (int) Math.ceil(Math.ceil(y + h) - y);
+				final int iWidth = (int) Math.ceil(Math.ceil(x + w) - x);
+				expected = reference.collides((int) x, (int) y, iWidth, iHeight);
+			}
+			assertEquals(x + "," + y + " " + w + "x" + h, expected, detection.collides(x, y, w, h));
+			assertEquals(expected, detection.collides(new Rectangle2D.Double(x, y, w, h)));
+		}
+	}
+
+	/**
+	 * The previous CollisionMap implementation, with one BitSet per column.
+	 */
+	private static class BitSetCollisionMap {
+		private final int width;
+		private final int height;
+		private final BitSet[] colls;
+
+		BitSetCollisionMap(final int width, final int height) {
+			this.width = width;
+			this.height = height;
+			colls = new BitSet[width];
+			for (int i = 0; i < width; i++) {
+				colls[i] = new BitSet();
+			}
+		}
+
+		boolean get(final int i, final int j) {
+			if ((i < 0) || (i >= width) || (j < 0)) {
+				return false;
+			}
+			return colls[i].get(j);
+		}
+
+		void set(final int i, final int j) {
+			colls[i].set(j);
+		}
+
+		void unset(final int i, final int j) {
+			colls[i].clear(j);
+		}
+
+		void set(final Rectangle2D shape) {
+			final int y = (int) shape.getY();
+			for (int x = (int) shape.getX(); x < shape.getX() + shape.getWidth(); x++) {
+				colls[x].set(y, (int) (y + shape.getHeight()));
+			}
+		}
+
+		void clear() {
+			for (int i = 0; i < width; i++) {
+				colls[i].clear();
+			}
+		}
+
+		boolean collides(final int x, final int y, final int width, final int height) {
+			if (x < 0 || x - 1 + width >= this.width) {
+				return true;
+			}
+			if (y < 0 || y - 1 + height >= this.height) {
+				return true;
+			}
+			final BitSet result = new BitSet();
+			for (int i = x; i < x + width; i++) {
+				result.or(colls[i]);
+			}
+			return !result.get(y, y + height).isEmpty();
+		}
+	}
 }
@@ -0,0 +1,158 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.config.zone;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import games.stendhal.common.tiled.LayerDefinition;
+import games.stendhal.common.tiled.StendhalMapStructure;
+import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.maps.MockStendlRPWorld;
+import marauroa.common.net.message.TransferContent;
+
+/**
+ * Tests for preparing and caching zone maps.
+ */
+public class ZoneMapCacheTest {
+	private static final String MAP = "tiled/Level -3/semos/jail_walk.tmx";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		MockStendlRPWorld.get();
+	}
+
+	/**
+	 * Tests that prepared data gives the same zone as adding the layers one
+	 * by one.
+	 */
+	@Test
+	public void testPrepared() throws Exception {
+		final StendhalRPZone expected = createZone(MAP);
+		final StendhalRPZone zone = new StendhalRPZone("cache_test");
+		new ZoneMapCache(null).load(MAP).applyTo(zone);
+		assertSameZone(expected, zone);
+	}
+
+	/**
+	 * Tests that maps are read from the cache on the second load.
+	 */
+	@Test
+	public void testCache() throws Exception {
+		final File dir = folder.newFolder();
+		final ZoneMapCache cache = new ZoneMapCache(dir);
+		final StendhalRPZone expected = createZone(MAP);
+
+		final StendhalRPZone first = new StendhalRPZone("cache_test");
+		final ZoneMapData data = cache.load(MAP);
+		data.applyTo(first);
+		assertSameZone(expected, first);
+		final File[] files = dir.listFiles();
+		assertEquals(1, files.length);
+
+		final StendhalRPZone second = new StendhalRPZone("cache_test");
+		final ZoneMapData cached = cache.load(MAP);
+		cached.applyTo(second);
+		assertSameZone(expected, second);
+		assertSameObjects(data.getObjectsLayer(), cached.getObjectsLayer());
+
+		// broken cache files are ignored and replaced
+		try (OutputStream out = new FileOutputStream(files[0])) {
+			out.write(new byte[] { 0, 0, 0, 1, 2, 3 });
+		}
+		final StendhalRPZone third = new StendhalRPZone("cache_test");
+		cache.load(MAP).applyTo(third);
+		assertSameZone(expected, third);
+		assertTrue(files[0].length() > 6);
+	}
+
+	/**
+	 * Tests that missing required layers are reported.
+	 */
+	@Test(expected = IOException.class)
+	public void testMissingLayer() throws Exception {
+		final StendhalMapStructure map = TMXLoader.load(MAP);
+		map.getLayers().remove(map.getLayer("protection"));
+		ZoneMapData.create(MAP, map);
+	}
+
+	/**
+	 * Create a zone the way zones were created before the map data was
+	 * prepared.
+	 */
+	private StendhalRPZone createZone(final String file) throws Exception {
+		final StendhalMapStructure map = TMXLoader.load(file);
+		final StendhalRPZone zone = new StendhalRPZone("cache_test");
+		zone.addTilesets("cache_test.tilesets", map.getTilesets());
+		for (final String layer : new String[] { "0_floor", "1_terrain", "2_object", "3_roof",
+				"4_roof_add", "blend_ground", "blend_roof" }) {
+			if (map.hasLayer(layer)) {
+				zone.addLayer("cache_test." + layer, map.getLayer(layer));
+			}
+		}
+		zone.addCollisionLayer("cache_test.collision", map.getLayer("collision"));
+		zone.addProtectionLayer("cache_test.protection", map.getLayer("protection"));
+		return zone;
+	}
+
+	private void assertSameZone(final StendhalRPZone expected, final StendhalRPZone zone) {
+		final List<TransferContent> expectedContents = expected.getContents();
+		final List<TransferContent> contents = zone.getContents();
+		assertEquals(expectedContents.size(), contents.size());
+		for (int i = 0; i < contents.size(); i++) {
+			assertEquals(expectedContents.get(i).name, contents.get(i).name);
+			assertEquals(expectedContents.get(i).timestamp, contents.get(i).timestamp);
+			assertArrayEquals(expectedContents.get(i).data, contents.get(i).data);
+		}
+
+		assertEquals(expected.getWidth(), zone.getWidth());
+		assertEquals(expected.getHeight(), zone.getHeight());
+		for (int x = 0; x < zone.getWidth(); x++) {
+			for (int y = 0; y < zone.getHeight(); y++) {
+				assertEquals(expected.collides(x, y), zone.collides(x, y));
+				assertEquals(expected.protectionMap.collides(x, y), zone.protectionMap.collides(x, y));
+			}
+		}
+	}
+
+	private void assertSameObjects(final LayerDefinition expected, final LayerDefinition layer) {
+		expected.build();
+		layer.build();
+		assertEquals(expected.getWidth(), layer.getWidth());
+		assertEquals(expected.getHeight(), layer.getHeight());
+		for (int x = 0; x < layer.getWidth(); x++) {
+			for (int y = 0; y < layer.getHeight(); y++) {
+				final int value = expected.getTileAt(x, y);
+				assertEquals(value, layer.getTileAt(x, y));
+				if (value != 0) {
+					assertEquals(expected.getTilesetFor(value).getSource(),
+							layer.getTilesetFor(value).getSource());
+				}
+			}
+		}
+	}
+}
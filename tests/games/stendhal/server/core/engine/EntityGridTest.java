@@ -0,0 +1,152 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.entity.Entity;
+import games.stendhal.server.maps.MockStendlRPWorld;
+import marauroa.common.game.RPObject;
+
+/**
+ * Tests for the spatial index of zones.
+ */
+public class EntityGridTest {
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		MockStendlRPWorld.get();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		MockStendlRPWorld.reset();
+	}
+
+	/**
+	 * Tests that lookups find entities at and only at their position.
+	 */
+	@Test
+	public void testMovedEntity() {
+		final StendhalRPZone zone = new StendhalRPZone("grid_test", 40, 40);
+		final Entity entity = new Entity() { };
+		entity.setPosition(5, 5);
+		zone.add(entity);
+
+		assertSame(entity, zone.getEntityAt(5.5, 5.5));
+		entity.setPosition(30, 20);
+		assertNull(zone.getEntityAt(5.5, 5.5));
+		assertSame(entity, zone.getEntityAt(30, 20));
+
+		entity.setSize(3, 3);
+		assertSame(entity, zone.getEntityAt(32, 22));
+
+		final Entity other = new Entity() { };
+		other.setPosition(29, 20);
+		assertTrue(zone.collidesObjects(other, other.getArea(30, 21)));
+		assertEquals(entity, zone.getEntitiesAt(31, 21, Entity.class).get(0));
+
+		zone.remove(entity);
+		assertNull(zone.getEntityAt(30, 20));
+	}
+
+	/**
+	 * Tests entities outside the zone boundaries.
+	 */
+	@Test
+	public void testOutsideZone() {
+		final StendhalRPZone zone = new StendhalRPZone("grid_test", 10, 10);
+		final Entity entity = new Entity() { };
+		entity.setPosition(-3, 25);
+		zone.add(entity);
+
+		assertSame(entity, zone.getEntityAt(-3, 25));
+		assertNull(zone.getEntityAt(-3, 9));
+	}
+
+	/**
+	 * Compares the index against a full scan of zone objects after random
+	 * changes.
+	 */
+	@Test
+	public void testRandomized() {
+		final Random random = new Random(42);
+		final StendhalRPZone zone = new StendhalRPZone("grid_test", 64, 48);
+		final List<Entity> entities = new ArrayList<Entity>();
+
+		for (int round = 0; round < 2000; round++) {
+			final int action = random.nextInt(10);
+			if ((action < 3) || entities.isEmpty()) {
+				final Entity entity = new Entity() { };
+				entity.setPosition(random.nextInt(80) - 8, random.nextInt(60) - 6);
+				entity.setSize(1 + random.nextInt(3), 1 + random.nextInt(3));
+				if (random.nextInt(30) == 0) {
+					// occasional huge area entity
+					entity.setSize(50, 40);
+				}
+				entity.setResistance(random.nextInt(101));
+				zone.add(entity);
+				entities.add(entity);
+			} else if (action < 4) {
+				zone.remove(entities.remove(random.nextInt(entities.size())));
+			} else if (action < 8) {
+				final Entity entity = entities.get(random.nextInt(entities.size()));
+				entity.setPosition(entity.getX() + random.nextInt(3) - 1, entity.getY() + random.nextInt(3) - 1);
+			} else {
+				final Entity entity = entities.get(random.nextInt(entities.size()));
+				entity.setPosition(random.nextInt(64), random.nextInt(48));
+			}
+
+			final int x = random.nextInt(70) - 3;
+			final int y = random.nextInt(54) - 3;
+			assertEquals(new HashSet<Entity>(scanAt(zone, x, y)),
+					new HashSet<Entity>(zone.getEntitiesAt(x, y)));
+
+			final Entity mover = new Entity() { };
+			final Rectangle2D area = mover.getArea(x, y);
+			assertEquals(scanCollides(zone, mover, area), zone.collidesObjects(mover, area));
+		}
+	}
+
+	private List<Entity> scanAt(final StendhalRPZone zone, final double x, final double y) {
+		final List<Entity> result = new ArrayList<Entity>();
+		for (final RPObject object : zone) {
+			final Entity entity = (Entity) object;
+			if (entity.getArea().contains(x, y)) {
+				result.add(entity);
+			}
+		}
+		return result;
+	}
+
+	private boolean scanCollides(final StendhalRPZone zone, final Entity entity, final Rectangle2D area) {
+		for (final RPObject object : zone) {
+			final Entity other = (Entity) object;
+			if ((other != entity) && area.intersects(other.getArea()) && other.isObstacle(entity)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,124 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import marauroa.server.game.rp.GameEvent;
+
+/**
+ * Tests for GameEventBatcher.
+ */
+public class GameEventBatcherTest {
+	/**
+	 * Tests that the pending events are split in batches of limited size.
+	 */
+	@Test
+	public void testBatchSize() {
+		final GameEventBatcher batcher = new GameEventBatcher(3, 1000, 100);
+		final GameEvent first = new GameEvent("test", "event", "1");
+		batcher.add(first);
+		for (int i = 2; i <= 7; i++) {
+			batcher.add(new GameEvent("test", "event", Integer.toString(i)));
+		}
+		assertEquals(7, batcher.getPendingCount());
+
+		final List<List<GameEvent>> batches = batcher.takeBatches();
+		assertEquals(3, batches.size());
+		assertEquals(3, batches.get(0).size());
+		assertEquals(3, batches.get(1).size());
+		assertEquals(1, batches.get(2).size());
+		assertSame(first, batches.get(0).get(0));
+		assertEquals("7", batches.get(2).get(0).getParams()[0]);
+		assertEquals(0, batcher.getPendingCount());
+		assertTrue(batcher.takeBatches().isEmpty());
+	}
+
+	/**
+	 * Tests that events are dropped when too many are waiting to be written,
+	 * and accepted again once the database has caught up.
+	 */
+	@Test
+	public void testCapacity() {
+		final GameEventBatcher batcher = new GameEventBatcher(2, 1000, 4);
+		for (int i = 0; i < 4; i++) {
+			assertTrue(batcher.add(new GameEvent("test", "event")));
+		}
+		assertFalse(batcher.add(new GameEvent("test", "event")));
+		assertEquals(4, batcher.getPendingCount());
+
+		// handing the events to the database queue does not make room
+		final int taken = batcher.takeBatches().size();
+		assertEquals(2, taken);
+		assertFalse(batcher.add(new GameEvent("test", "event")));
+
+		// ...but writing them does
+		batcher.onBatchDone(2, true);
+		assertTrue(batcher.add(new GameEvent("test", "event")));
+	}
+
+	/**
+	 * Tests that no events are lost when several threads log at the same
+	 * time.
+	 */
+	@Test
+	public void testConcurrentAdd() throws InterruptedException {
+		final GameEventBatcher batcher = new GameEventBatcher(50, 1000, 100000);
+		final int threads = 4;
+		final int perThread = 1000;
+		final CountDownLatch start = new CountDownLatch(1);
+		final Thread[] workers = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int j = 0; j < perThread; j++) {
+						batcher.add(new GameEvent("test", "event"));
+					}
+				}
+			};
+			workers[i].start();
+		}
+		start.countDown();
+
+		int taken = 0;
+		boolean running = true;
+		while (running) {
+			running = false;
+			for (final Thread worker : workers) {
+				running |= worker.isAlive();
+			}
+			for (final List<GameEvent> batch : batcher.takeBatches()) {
+				assertTrue(batch.size() <= 50);
+				taken += batch.size();
+			}
+		}
+		for (final List<GameEvent> batch : batcher.takeBatches()) {
+			taken += batch.size();
+		}
+		assertEquals(threads * perThread, taken);
+		assertEquals(0, batcher.getPendingCount());
+	}
+}
@@ -0,0 +1,201 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.core.events.MovementListener;
+import games.stendhal.server.entity.ActiveEntity;
+import games.stendhal.server.maps.MockStendlRPWorld;
+
+/**
+ * Tests for the movement listener grid of zones.
+ */
+public class MovementListenerGridTest {
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		MockStendlRPWorld.get();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		MockStendlRPWorld.reset();
+	}
+
+	/**
+	 * Tests that listeners are notified only when the entity touches their
+	 * area, and that moved listener areas are picked up.
+	 */
+	@Test
+	public void testZoneNotifications() {
+		final StendhalRPZone zone = new StendhalRPZone("listener_test", 60, 60);
+		final RecordingListener near = new RecordingListener("near", new Rectangle(10, 10, 2, 2));
+		final RecordingListener far = new RecordingListener("far", new Rectangle(40, 40, 3, 3));
+		final RecordingListener all = new RecordingListener("all", new Rectangle(0, 0, 60, 60));
+		zone.addMovementListener(near);
+		zone.addMovementListener(far);
+		zone.addMovementListener(all);
+
+		final ActiveEntity entity = new ActiveEntity() { };
+		zone.notifyEntered(entity, 9, 10);
+		zone.notifyMovement(entity, 9, 10, 10, 10);
+		zone.notifyMovement(entity, 10, 10, 12, 10);
+		zone.notifyExited(entity, 12, 10);
+		assertEquals(Arrays.asList("all entered", "near entered", "all moved", "near exited",
+				"all moved", "all exited"), RecordingListener.events);
+
+		RecordingListener.events.clear();
+		far.area = new Rectangle(5, 5, 1, 1);
+		zone.updateMovementListener(far);
+		zone.notifyBeforeMovement(entity, 4, 5, 5, 5);
+		assertEquals(Arrays.asList("far before", "all before"), RecordingListener.events);
+
+		RecordingListener.events.clear();
+		zone.removeMovementListener(all);
+		zone.notifyEntered(entity, 5, 5);
+		assertEquals(Arrays.asList("far entered"), RecordingListener.events);
+		RecordingListener.events.clear();
+	}
+
+	/**
+	 * Compares lookups against checking every listener.
+	 */
+	@Test
+	public void testRandomizedAgainstFullScan() {
+		final Random random = new Random(7);
+		final EntityGrid<MovementListener> index = new EntityGrid<MovementListener>(MovementListener::getArea);
+		index.resize(70, 50);
+		final List<RecordingListener> registered = new ArrayList<RecordingListener>();
+
+		for (int round = 0; round < 2000; round++) {
+			final int action = random.nextInt(10);
+			if ((action == 0) && !registered.isEmpty()) {
+				index.remove(registered.remove(random.nextInt(registered.size())));
+			} else if ((action == 1) && !registered.isEmpty()) {
+				final RecordingListener listener = registered.get(random.nextInt(registered.size()));
+				listener.area = randomArea(random);
+				index.update(listener);
+			} else if (action < 4) {
+				final RecordingListener listener = new RecordingListener("l" + round, randomArea(random));
+				registered.add(listener);
+				index.add(listener);
+			}
+
+			final Rectangle2D query = new Rectangle(random.nextInt(80) - 5, random.nextInt(60) - 5, 1 + random.nextInt(2), 1 + random.nextInt(2));
+			final List<MovementListener> candidates = index.getCandidates(query);
+			int previous = -1;
+			for (final MovementListener listener : candidates) {
+				// in the order of registration
+				final int position = registered.indexOf(listener);
+				assertTrue(position > previous);
+				previous = position;
+			}
+			for (final RecordingListener listener : registered) {
+				if (listener.getArea().intersects(query)) {
+					assertTrue(candidates.contains(listener));
+				}
+			}
+			index.release(candidates);
+		}
+		assertEquals(registered.size(), index.size());
+	}
+
+	/**
+	 * Tests that a listener can cause notifications of other movement while
+	 * the zone is notifying the listeners.
+	 */
+	@Test
+	public void testNestedNotifications() {
+		final StendhalRPZone zone = new StendhalRPZone("nested_listener_test", 60, 60);
+		final ActiveEntity other = new ActiveEntity() { };
+		final RecordingListener trigger = new RecordingListener("trigger", new Rectangle(10, 10, 2, 2)) {
+			@Override
+			public void onEntered(final ActiveEntity entity, final StendhalRPZone zone, final int newX, final int newY) {
+				super.onEntered(entity, zone, newX, newY);
+				if (entity != other) {
+					zone.notifyEntered(other, 40, 40);
+				}
+			}
+		};
+		final RecordingListener far = new RecordingListener("far", new Rectangle(40, 40, 3, 3));
+		final RecordingListener near = new RecordingListener("near", new Rectangle(10, 10, 2, 2));
+		zone.addMovementListener(trigger);
+		zone.addMovementListener(far);
+		zone.addMovementListener(near);
+
+		zone.notifyEntered(new ActiveEntity() { }, 10, 10);
+		assertEquals(Arrays.asList("trigger entered", "far entered", "near entered"), RecordingListener.events);
+		RecordingListener.events.clear();
+	}
+
+	private static Rectangle randomArea(final Random random) {
+		if (random.nextInt(10) == 0) {
+			// larger than the bucketing limit
+			return new Rectangle(random.nextInt(10), random.nextInt(10), 40 + random.nextInt(30), 40);
+		}
+		return new Rectangle(random.nextInt(75) - 2, random.nextInt(55) - 2, 1 + random.nextInt(8), 1 + random.nextInt(8));
+	}
+
+	/**
+	 * Listener that records the notifications of all instances.
+	 */
+	private static class RecordingListener implements MovementListener {
+		private static final List<String> events = new ArrayList<String>();
+
+		private final String name;
+		private Rectangle2D area;
+
+		RecordingListener(final String name, final Rectangle2D area) {
+			this.name = name;
+			this.area = area;
+		}
+
+		@Override
+		public Rectangle2D getArea() {
+			return area;
+		}
+
+		@Override
+		public void onEntered(final ActiveEntity entity, final StendhalRPZone zone, final int newX, final int newY) {
+			events.add(name + " entered");
+		}
+
+		@Override
+		public void onExited(final ActiveEntity entity, final StendhalRPZone zone, final int oldX, final int oldY) {
+			events.add(name + " exited");
+		}
+
+		@Override
+		public void onMoved(final ActiveEntity entity, final StendhalRPZone zone, final int oldX, final int oldY,
+				final int newX, final int newY) {
+			events.add(name + " moved");
+		}
+
+		@Override
+		public void beforeMove(final ActiveEntity entity, final StendhalRPZone zone, final int oldX, final int oldY,
+				final int newX, final int newY) {
+			events.add(name + " before");
+		}
+	}
+}
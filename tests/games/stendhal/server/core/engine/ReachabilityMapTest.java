@@ -0,0 +1,119 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Rectangle;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.core.pathfinder.Path;
+import games.stendhal.server.entity.ActiveEntity;
+import games.stendhal.server.entity.Entity;
+import games.stendhal.server.maps.MockStendlRPWorld;
+
+/**
+ * Tests for the connected areas of zones.
+ */
+public class ReachabilityMapTest {
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		MockStendlRPWorld.get();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		MockStendlRPWorld.reset();
+	}
+
+	/**
+	 * Create a zone split in two by a wall with a gap at y = 5.
+	 *
+	 * @return zone
+	 */
+	private StendhalRPZone createZone() {
+		final StendhalRPZone zone = new StendhalRPZone("reachability_test", 10, 10);
+		for (int y = 0; y < 10; y++) {
+			if (y != 5) {
+				zone.collisionMap.setCollide(5, y);
+			}
+		}
+		return zone;
+	}
+
+	/**
+	 * Tests the areas defined by the static collision and fixed blockers.
+	 */
+	@Test
+	public void testAreas() {
+		final StendhalRPZone zone = createZone();
+		ReachabilityMap map = zone.getReachabilityMap();
+		assertEquals(0, map.getArea(5, 0));
+		assertEquals(map.getArea(0, 0), map.getArea(9, 9));
+		assertTrue(map.mayReach(0, 0, new Rectangle(8, 8, 2, 2)));
+
+		// Close the gap
+		final Entity blocker = new Entity() { };
+		blocker.setPosition(5, 5);
+		zone.add(blocker);
+		map = zone.getReachabilityMap();
+		assertTrue(map.getArea(0, 0) != map.getArea(9, 9));
+		assertFalse(map.mayReach(0, 0, new Rectangle(8, 8, 2, 2)));
+		// Destinations partly in the same area are reachable
+		assertTrue(map.mayReach(0, 0, new Rectangle(4, 8, 2, 2)));
+		// Nothing is known about blocked start positions
+		assertTrue(map.mayReach(5, 0, new Rectangle(8, 8, 2, 2)));
+
+		// Moving entities do not split areas
+		final ActiveEntity walker = new ActiveEntity() { };
+		walker.setPosition(3, 3);
+		zone.add(walker);
+		final int updates = map.getUpdates();
+		zone.getReachabilityMap();
+		assertEquals(updates, map.getUpdates());
+
+		zone.remove(blocker);
+		map = zone.getReachabilityMap();
+		assertEquals(updates + 1, map.getUpdates());
+		assertTrue(map.mayReach(0, 0, new Rectangle(8, 8, 2, 2)));
+	}
+
+	/**
+	 * Tests that path searches to unreachable entities are rejected.
+	 */
+	@Test
+	public void testSearchPath() {
+		final StendhalRPZone zone = createZone();
+		final ActiveEntity searcher = new ActiveEntity() { };
+		searcher.setPosition(1, 1);
+		zone.add(searcher);
+		final ActiveEntity target = new ActiveEntity() { };
+		target.setPosition(8, 8);
+		zone.add(target);
+		assertFalse(Path.searchPath(searcher, target, 40).isEmpty());
+
+		final Entity blocker = new Entity() { };
+		blocker.setPosition(5, 5);
+		zone.add(blocker);
+		assertTrue(Path.searchPath(searcher, target, 40).isEmpty());
+		assertTrue(Path.searchCachedPath(searcher, target, 40).isEmpty());
+
+		// Entities without resistance are not affected by the blocker
+		searcher.setResistance(0);
+		assertFalse(Path.searchPath(searcher, target, 40).isEmpty());
+	}
+}
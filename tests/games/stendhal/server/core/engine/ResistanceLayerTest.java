@@ -0,0 +1,171 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Rectangle2D;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.core.engine.ResistanceLayer.Footprint;
+import games.stendhal.server.entity.ActiveEntity;
+import games.stendhal.server.entity.Entity;
+import games.stendhal.server.maps.MockStendlRPWorld;
+
+/**
+ * Tests for the resistance layer of zones.
+ */
+public class ResistanceLayerTest {
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		MockStendlRPWorld.get();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		MockStendlRPWorld.reset();
+	}
+
+	/**
+	 * Tests that the layer follows added, moved and removed entities.
+	 */
+	@Test
+	public void testEntityChanges() {
+		final StendhalRPZone zone = new StendhalRPZone("resistance_test", 20, 20);
+		final ResistanceLayer layer = zone.getResistanceLayer();
+		final Entity entity = new Entity() { };
+		entity.setPosition(5, 5);
+		zone.add(entity);
+		assertTrue(layer.collides(5, 5, 1, 1, 100, null, null));
+
+		int version = layer.getVersion();
+		entity.setPosition(8, 6);
+		assertTrue(layer.getVersion() != version);
+		assertFalse(layer.collides(5, 5, 1, 1, 100, null, null));
+		assertTrue(layer.collides(8, 6, 1, 1, 100, null, null));
+		// an entity covering the tile partially
+		assertTrue(layer.collides(7, 5, 2, 2, 100, null, null));
+
+		entity.setSize(2, 1);
+		assertTrue(layer.collides(9, 6, 1, 1, 100, null, null));
+
+		entity.setResistance(50);
+		assertEquals(50, layer.getResistance(9, 6, 1, 1, 100, null, null));
+		// the resistance is scaled by the resistance of the searcher
+		assertEquals(25, layer.getResistance(9, 6, 1, 1, 50, null, null));
+
+		final Entity other = new Entity() { };
+		other.setResistance(50);
+		other.setPosition(9, 6);
+		zone.add(other);
+		assertEquals(75, layer.getResistance(9, 6, 1, 1, 100, null, null));
+
+		version = layer.getVersion();
+		zone.remove(entity);
+		assertTrue(layer.getVersion() != version);
+		assertEquals(0, layer.getResistance(8, 6, 1, 1, 100, null, null));
+		assertEquals(50, layer.getResistance(9, 6, 1, 1, 100, null, null));
+		zone.remove(other);
+		assertEquals(0, layer.getResistance(9, 6, 1, 1, 100, null, null));
+
+		// outside the zone
+		assertTrue(layer.collides(-1, 5, 1, 1, 100, null, null));
+		assertTrue(layer.collides(5, 20, 1, 1, 100, null, null));
+	}
+
+	/**
+	 * Tests that only stopped entities are in the layer.
+	 */
+	@Test
+	public void testMovingEntities() {
+		final StendhalRPZone zone = new StendhalRPZone("resistance_test", 20, 20);
+		final ResistanceLayer layer = zone.getResistanceLayer();
+		final ActiveEntity entity = new ActiveEntity() { };
+		entity.setPosition(5, 5);
+		zone.add(entity);
+		assertTrue(layer.collides(5, 5, 1, 1, 100, null, null));
+
+		entity.setSpeed(1.0);
+		assertFalse(layer.collides(5, 5, 1, 1, 100, null, null));
+		assertNull(layer.getFootprint(entity));
+		// moving entities stay out of the layer
+		entity.setPosition(6, 5);
+		assertFalse(layer.collides(6, 5, 1, 1, 100, null, null));
+
+		entity.stop();
+		assertTrue(layer.collides(6, 5, 1, 1, 100, null, null));
+		assertFalse(layer.collides(5, 5, 1, 1, 100, null, null));
+	}
+
+	/**
+	 * Tests excluding entities in the layer, and including entities that are
+	 * not in it.
+	 */
+	@Test
+	public void testExcludedAndExtra() {
+		final StendhalRPZone zone = new StendhalRPZone("resistance_test", 20, 20);
+		final ResistanceLayer layer = zone.getResistanceLayer();
+		final Entity blocker = new Entity() { };
+		blocker.setPosition(5, 5);
+		zone.add(blocker);
+		final Entity partial = new Entity() { };
+		partial.setResistance(40);
+		partial.setPosition(5, 5);
+		zone.add(partial);
+		final Entity second = new Entity() { };
+		second.setResistance(40);
+		second.setPosition(5, 5);
+		zone.add(second);
+
+		final Footprint blockerFootprint = layer.getFootprint(blocker);
+		final Footprint partialFootprint = layer.getFootprint(partial);
+		assertNotNull(blockerFootprint);
+		assertTrue(layer.collides(5, 5, 1, 1, 100, null, null));
+		assertEquals(64, layer.getResistance(5, 5, 1, 1, 100, new Footprint[] { blockerFootprint }, null));
+		// only one of the equal partial resistances is skipped
+		assertEquals(40, layer.getResistance(5, 5, 1, 1, 100,
+				new Footprint[] { blockerFootprint, partialFootprint }, null));
+
+		// the layer itself is not changed by the searches
+		assertTrue(layer.collides(5, 5, 1, 1, 100, null, null));
+
+		final Footprint extra = new Footprint(new Rectangle2D.Double(7, 7, 1, 1), 100);
+		assertFalse(layer.collides(7, 7, 1, 1, 100, null, null));
+		assertTrue(layer.collides(7, 7, 1, 1, 100, null, new Footprint[] { extra }));
+	}
+
+	/**
+	 * Tests that the layer is painted again when the zone size changes.
+	 */
+	@Test
+	public void testResize() {
+		final ResistanceLayer layer = new ResistanceLayer();
+		final StendhalRPZone zone = new StendhalRPZone("resistance_test", 10, 10);
+		final Entity entity = new Entity() { };
+		entity.setPosition(3, 4);
+		zone.add(entity);
+		layer.resize(10, 10);
+		layer.update(entity);
+		layer.resize(30, 30);
+		assertTrue(layer.collides(3, 4, 1, 1, 100, null, null));
+		assertFalse(layer.collides(4, 3, 1, 1, 100, null, null));
+		layer.remove(entity);
+		assertFalse(layer.collides(3, 4, 1, 1, 100, null, null));
+	}
+}
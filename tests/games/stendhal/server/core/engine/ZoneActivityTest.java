@@ -0,0 +1,125 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.entity.creature.Creature;
+import games.stendhal.server.maps.MockStendhalRPRuleProcessor;
+import games.stendhal.server.maps.MockStendlRPWorld;
+import utilities.RPClass.CreatureTestHelper;
+
+/**
+ * Tests for the activity states of zones.
+ */
+public class ZoneActivityTest {
+	private int logicCalls;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		MockStendlRPWorld.get();
+		CreatureTestHelper.generateRPClasses();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		MockStendlRPWorld.reset();
+	}
+
+	@After
+	public void tearDown() {
+		MockStendhalRPRuleProcessor.get().setTurn(0);
+	}
+
+	/**
+	 * Tests that the logic of idle NPCs is skipped in dormant zones, and that
+	 * healing is caught up with when the zone wakes up.
+	 */
+	@Test
+	public void testDormantZone() {
+		final StendhalRPZone zone = new StendhalRPZone("activity_test", 20, 20);
+		final Creature creature = new Creature() {
+			@Override
+			public void logic() {
+				logicCalls++;
+				super.logic();
+			}
+		};
+		zone.add(creature);
+		creature.setBaseHP(100);
+		creature.setHP(10);
+		creature.setHealer("10,5");
+
+		MockStendhalRPRuleProcessor.get().setTurn(1);
+		zone.updateActivity(1, 10);
+		assertEquals(ZoneActivity.WARM, zone.getActivity());
+		zone.logic();
+		assertEquals(1, logicCalls);
+
+		zone.updateActivity(10, 10);
+		assertEquals(ZoneActivity.WARM, zone.getActivity());
+		zone.updateActivity(11, 10);
+		assertEquals(ZoneActivity.DORMANT, zone.getActivity());
+		zone.logic();
+		assertEquals(1, logicCalls);
+		assertEquals(10, creature.getHP());
+
+		// turns 11 to 39 were skipped, 5 of them heal
+		MockStendhalRPRuleProcessor.get().setTurn(40);
+		zone.addToPlayersAndFriends(new Creature());
+		assertEquals(ZoneActivity.ACTIVE, zone.getActivity());
+		assertEquals(60, creature.getHP());
+		zone.logic();
+		assertEquals(2, logicCalls);
+	}
+
+	/**
+	 * Tests that negative warm turns keep zones from becoming dormant.
+	 */
+	@Test
+	public void testDormancyDisabled() {
+		final StendhalRPZone zone = new StendhalRPZone("activity_test", 20, 20);
+		zone.updateActivity(1, -1);
+		zone.updateActivity(100000, -1);
+		assertEquals(ZoneActivity.WARM, zone.getActivity());
+	}
+
+	/**
+	 * Tests that players in associated zones keep a zone active.
+	 */
+	@Test
+	public void testAssociatedZone() throws Exception {
+		final StendhalRPZone zone = new StendhalRPZone("activity_test_inside", 20, 20);
+		final StendhalRPZone outside = new StendhalRPZone("activity_test_outside", 20, 20);
+		MockStendlRPWorld.get().addRPZone(zone);
+		MockStendlRPWorld.get().addRPZone(outside);
+		zone.setAssociatedZones("activity_test_outside");
+
+		zone.updateActivity(1, 0);
+		zone.updateActivity(2, 0);
+		assertEquals(ZoneActivity.DORMANT, zone.getActivity());
+
+		outside.addToPlayersAndFriends(new Creature());
+		zone.updateActivity(3, 0);
+		assertEquals(ZoneActivity.ACTIVE, zone.getActivity());
+		zone.updateActivity(4, 0);
+		assertEquals(ZoneActivity.ACTIVE, zone.getActivity());
+
+		MockStendlRPWorld.get().removeRPZone(zone.getID());
+		MockStendlRPWorld.get().removeRPZone(outside.getID());
+	}
+}
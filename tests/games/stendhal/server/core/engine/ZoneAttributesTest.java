@@ -0,0 +1,73 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.entity.player.Player;
+import games.stendhal.server.maps.MockStendlRPWorld;
+import marauroa.common.net.message.TransferContent;
+import marauroa.server.game.Statistics;
+import utilities.PlayerTestHelper;
+
+/**
+ * Tests for sending zone attributes.
+ */
+public class ZoneAttributesTest {
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		MockStendlRPWorld.get();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		MockStendlRPWorld.reset();
+	}
+
+	/**
+	 * Tests that the map layers are left out for clients that can apply
+	 * attribute updates, and only for those.
+	 */
+	@Test
+	public void testNotifyAttributesChanged() {
+		final StendhalRPZone zone = new StendhalRPZone("attribute_test", 20, 20);
+		final TransferContent layer = new TransferContent();
+		layer.name = "attribute_test.0_floor";
+		layer.data = new byte[1000];
+		zone.addContent(layer);
+		final ZoneAttributes attr = new ZoneAttributes(zone);
+		zone.setAttributes(attr);
+
+		final Player newClient = PlayerTestHelper.createPlayer("newclient");
+		newClient.setClientVersion("1.44");
+		zone.add(newClient);
+		final Player oldClient = PlayerTestHelper.createPlayer("oldclient");
+		oldClient.setClientVersion("1.40");
+		zone.add(oldClient);
+
+		final Statistics stats = Statistics.getStatistics();
+		// get() fails for variables that have never been set
+		stats.add("Zone data bytes not offered", 0);
+		final long before = stats.get("Zone data bytes not offered");
+		attr.put("weather", "rain");
+		zone.notifyAttributesChanged();
+		assertEquals(before + 1000, stats.get("Zone data bytes not offered"));
+
+		zone.remove(newClient);
+		zone.notifyAttributesChanged();
+		assertEquals(before + 1000, stats.get("Zone data bytes not offered"));
+	}
+}
@@ -0,0 +1,106 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.entity.mapstuff.sign.Sign;
+import games.stendhal.server.maps.MockStendlRPWorld;
+import marauroa.common.game.IRPZone;
+import marauroa.common.game.RPObject;
+import utilities.PlayerTestHelper;
+
+/**
+ * Tests for ZonePersistence.
+ */
+public class ZonePersistenceTest {
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		MockStendlRPWorld.get();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		MockStendlRPWorld.reset();
+	}
+
+	private static Sign createSign(final StendhalRPZone zone, final int x) {
+		final Sign sign = new Sign();
+		sign.setPosition(x, 1);
+		sign.store();
+		zone.add(sign);
+		return sign;
+	}
+
+	/**
+	 * Tests that changes are collected until the delay has passed, and that
+	 * only storable objects are written.
+	 */
+	@Test
+	public void testCoalesce() {
+		final ZonePersistence persistence = new ZonePersistence(1000);
+		final StendhalRPZone zone = new StendhalRPZone("persistence_test", 10, 10);
+		final Sign sign = createSign(zone, 1);
+		final Sign other = createSign(zone, 2);
+		createSign(zone, 3);
+		zone.add(PlayerTestHelper.createPlayer("bob"));
+
+		final long now = 100000;
+		for (int i = 0; i < 10; i++) {
+			persistence.markDirty(zone, sign, now);
+		}
+		persistence.markDirty(zone, other, now + 500);
+		assertTrue(persistence.isDirty(zone));
+		assertTrue(persistence.takeZones(now + 999, false).isEmpty());
+
+		final Map<IRPZone, List<RPObject>> zones = persistence.takeZones(now + 1000, false);
+		assertEquals(1, zones.size());
+		final List<RPObject> objects = zones.get(zone);
+		assertEquals(3, objects.size());
+		for (final RPObject object : objects) {
+			assertTrue(object.isStorable());
+			assertNotSame(sign, object);
+		}
+		assertFalse(persistence.isDirty(zone));
+		assertEquals(1.5, persistence.getWriteAmplification(), 0.001);
+		assertTrue(persistence.takeZones(now + 2000, true).isEmpty());
+	}
+
+	/**
+	 * Tests that all changed zones are taken for the shutdown flush, and that
+	 * removed objects are not written.
+	 */
+	@Test
+	public void testTakeAll() {
+		final ZonePersistence persistence = new ZonePersistence(1000);
+		final StendhalRPZone zone = new StendhalRPZone("persistence_test2", 10, 10);
+		final Sign sign = createSign(zone, 1);
+		createSign(zone, 2);
+		zone.remove(sign);
+		persistence.markDirty(zone, sign);
+		persistence.markDirty(null, sign);
+
+		final Map<IRPZone, List<RPObject>> zones = persistence.takeZones(System.currentTimeMillis(), true);
+		assertEquals(1, zones.size());
+		assertEquals(1, zones.get(zone).size());
+	}
+}
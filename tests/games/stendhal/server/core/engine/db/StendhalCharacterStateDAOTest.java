@@ -0,0 +1,216 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.sql.SQLException;
+import java.util.Map;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.common.KeyedSlotUtil;
+import games.stendhal.server.entity.slot.KeyedSlot;
+import marauroa.common.Log4J;
+import marauroa.common.game.RPObject;
+import marauroa.server.db.DBTransaction;
+import marauroa.server.db.TransactionPool;
+import marauroa.server.game.db.DAORegister;
+import marauroa.server.game.db.DatabaseFactory;
+
+/**
+ * Tests for StendhalCharacterStateDAO.
+ */
+public class StendhalCharacterStateDAOTest {
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		Log4J.init();
+		new DatabaseFactory().initializeDatabase();
+	}
+
+	private static RPObject createCharacter() {
+		final RPObject object = new RPObject();
+		for (final String slotName : StendhalCharacterStateDAO.STATE_SLOTS) {
+			object.addSlot(new KeyedSlot(slotName));
+			object.getSlot(slotName).add(new RPObject());
+		}
+		return object;
+	}
+
+	private static int count(final DBTransaction transaction, final String where) throws SQLException {
+		return transaction.querySingleCellInt(
+				"SELECT count(*) FROM character_state WHERE charname='statetester' AND slotname<>'"
+				+ StendhalCharacterStateDAO.VERSION_SLOT + "' AND " + where, null);
+	}
+
+	/**
+	 * Tests that only changed entries are written, and that they can be
+	 * restored.
+	 */
+	@Test
+	public void testStoreAndRestore() throws SQLException {
+		final StendhalCharacterStateDAO dao = DAORegister.get().get(StendhalCharacterStateDAO.class);
+		final RPObject object = createCharacter();
+		KeyedSlotUtil.setKeyedSlot(object, "!quests", "testquest", "start;1");
+		KeyedSlotUtil.setKeyedSlot(object, "!kills", "solo.rat", "3");
+		KeyedSlotUtil.setKeyedSlot(object, "!visited", "0_semos_city", "12345");
+
+		final DBTransaction transaction = TransactionPool.get().beginWork();
+		try {
+			dao.storeState(transaction, "statetester", object);
+			assertEquals(3, count(transaction, "1=1"));
+
+			KeyedSlotUtil.setKeyedSlot(object, "!quests", "testquest", "done");
+			KeyedSlotUtil.setKeyedSlot(object, "!kills", "solo.rat", null);
+			KeyedSlotUtil.setKeyedSlot(object, "skills", "fire", "1");
+			dao.storeState(transaction, "statetester", object);
+			assertEquals(3, count(transaction, "1=1"));
+			assertEquals(1, count(transaction, "slotname='!quests' AND keyname='testquest' AND val='done'"));
+			assertEquals(0, count(transaction, "slotname='!kills'"));
+			assertEquals(1, count(transaction, "slotname='skills' AND keyname='fire'"));
+
+			final RPObject loaded = createCharacter();
+			dao.restoreState(transaction, "statetester", loaded);
+			assertEquals("done", KeyedSlotUtil.getKeyedSlot(loaded, "!quests", "testquest"));
+			assertEquals("12345", KeyedSlotUtil.getKeyedSlot(loaded, "!visited", "0_semos_city"));
+			assertEquals("1", KeyedSlotUtil.getKeyedSlot(loaded, "skills", "fire"));
+			assertNull(KeyedSlotUtil.getKeyedSlot(loaded, "!kills", "solo.rat"));
+
+			dao.deleteState(transaction, "statetester");
+			assertEquals(0, count(transaction, "1=1"));
+		} finally {
+			TransactionPool.get().rollback(transaction);
+		}
+	}
+
+	/**
+	 * Tests that storing compares against the entries stored last, and reads
+	 * the rows again after the remembered entries were dropped.
+	 */
+	@Test
+	public void testForgetState() throws SQLException {
+		final StendhalCharacterStateDAO dao = DAORegister.get().get(StendhalCharacterStateDAO.class);
+		final RPObject object = createCharacter();
+		KeyedSlotUtil.setKeyedSlot(object, "!quests", "testquest", "start");
+		KeyedSlotUtil.setKeyedSlot(object, "!kills", "solo.rat", "3");
+
+		final DBTransaction transaction = TransactionPool.get().beginWork();
+		try {
+			dao.storeState(transaction, "statetester", object);
+			// changed behind the back of the DAO without changing the version
+			transaction.execute("DELETE FROM character_state WHERE charname='statetester' AND slotname='!kills'", null);
+			KeyedSlotUtil.setKeyedSlot(object, "!quests", "testquest", "done");
+			dao.storeState(transaction, "statetester", object);
+			assertEquals(1, count(transaction, "slotname='!quests' AND val='done'"));
+			assertEquals(0, count(transaction, "slotname='!kills'"));
+
+			dao.forgetState("statetester");
+			dao.storeState(transaction, "statetester", object);
+			assertEquals(1, count(transaction, "slotname='!kills' AND keyname='solo.rat' AND val='3'"));
+			assertEquals(2, count(transaction, "1=1"));
+
+			dao.deleteState(transaction, "statetester");
+		} finally {
+			TransactionPool.get().rollback(transaction);
+		}
+	}
+
+	/**
+	 * Tests that the entries of a rolled back store are not taken as written.
+	 */
+	@Test
+	public void testRolledBackStore() throws SQLException {
+		final StendhalCharacterStateDAO dao = DAORegister.get().get(StendhalCharacterStateDAO.class);
+		final RPObject object = createCharacter();
+		KeyedSlotUtil.setKeyedSlot(object, "!quests", "testquest", "start");
+		KeyedSlotUtil.setKeyedSlot(object, "!kills", "solo.rat", "3");
+
+		DBTransaction transaction = TransactionPool.get().beginWork();
+		try {
+			dao.storeState(transaction, "statetester", object);
+			assertEquals(2, count(transaction, "1=1"));
+		} finally {
+			TransactionPool.get().rollback(transaction);
+		}
+
+		transaction = TransactionPool.get().beginWork();
+		try {
+			KeyedSlotUtil.setKeyedSlot(object, "!quests", "testquest", "done");
+			dao.storeState(transaction, "statetester", object);
+			assertEquals(1, count(transaction, "slotname='!quests' AND keyname='testquest' AND val='done'"));
+			assertEquals(1, count(transaction, "slotname='!kills' AND keyname='solo.rat' AND val='3'"));
+			assertEquals(2, count(transaction, "1=1"));
+
+			dao.deleteState(transaction, "statetester");
+		} finally {
+			TransactionPool.get().rollback(transaction);
+		}
+	}
+
+	/**
+	 * Tests that changed entries whose rows are missing are inserted again,
+	 * and that the entries are read again on the next store.
+	 */
+	@Test
+	public void testMissingRows() throws SQLException {
+		final StendhalCharacterStateDAO dao = DAORegister.get().get(StendhalCharacterStateDAO.class);
+		final RPObject object = createCharacter();
+		KeyedSlotUtil.setKeyedSlot(object, "!quests", "testquest", "start");
+		KeyedSlotUtil.setKeyedSlot(object, "!kills", "solo.rat", "3");
+
+		final DBTransaction transaction = TransactionPool.get().beginWork();
+		try {
+			dao.storeState(transaction, "statetester", object);
+			transaction.execute("DELETE FROM character_state WHERE charname='statetester' AND slotname<>'"
+					+ StendhalCharacterStateDAO.VERSION_SLOT + "'", null);
+
+			KeyedSlotUtil.setKeyedSlot(object, "!quests", "testquest", "done");
+			dao.storeState(transaction, "statetester", object);
+			assertEquals(1, count(transaction, "slotname='!quests' AND keyname='testquest' AND val='done'"));
+			assertEquals(0, count(transaction, "slotname='!kills'"));
+
+			// the failed update made the DAO forget the entries
+			dao.storeState(transaction, "statetester", object);
+			assertEquals(1, count(transaction, "slotname='!kills' AND keyname='solo.rat' AND val='3'"));
+			assertEquals(2, count(transaction, "1=1"));
+
+			dao.deleteState(transaction, "statetester");
+		} finally {
+			TransactionPool.get().rollback(transaction);
+		}
+	}
+
+	/**
+	 * Tests that entries can be taken out of the object before it is
+	 * serialized, and be put back afterwards.
+	 */
+	@Test
+	public void testRemoveAndPutEntries() {
+		final StendhalCharacterStateDAO dao = DAORegister.get().get(StendhalCharacterStateDAO.class);
+		final RPObject object = createCharacter();
+		KeyedSlotUtil.setKeyedSlot(object, "!quests", "testquest", "start");
+		KeyedSlotUtil.setKeyedSlot(object, "!kills", "shared.rat", "1");
+
+		final Map<String, Map<String, String>> removed = dao.removeEntries(object);
+		assertEquals(2, removed.size());
+		assertFalse(KeyedSlotUtil.getKeyedSlotObject(object, "!quests").has("testquest"));
+		assertFalse(KeyedSlotUtil.getKeyedSlotObject(object, "!kills").has("shared.rat"));
+
+		dao.putEntries(object, removed);
+		assertEquals("start", KeyedSlotUtil.getKeyedSlot(object, "!quests", "testquest"));
+		assertEquals("1", KeyedSlotUtil.getKeyedSlot(object, "!kills", "shared.rat"));
+	}
+}
@@ -0,0 +1,61 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.dbcommand;
+
+import static org.junit.Assert.assertEquals;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import marauroa.common.Log4J;
+import marauroa.server.db.DBTransaction;
+import marauroa.server.db.TransactionPool;
+import marauroa.server.game.db.DatabaseFactory;
+import marauroa.server.game.rp.GameEvent;
+
+/**
+ * Tests for LogGameEventBatchCommand.
+ */
+public class LogGameEventBatchCommandTest {
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		Log4J.init();
+		new DatabaseFactory().initializeDatabase();
+	}
+
+	/**
+	 * Tests that all events of a batch are written.
+	 */
+	@Test
+	public void testBatch() throws SQLException {
+		final List<GameEvent> events = new ArrayList<GameEvent>();
+		events.add(new GameEvent("batchtester", "login"));
+		events.add(new GameEvent("batchtester", "chat", "hello", "world"));
+		events.add(new GameEvent("batchtester", "logout"));
+
+		final DBTransaction transaction = TransactionPool.get().beginWork();
+		try {
+			new LogGameEventBatchCommand(events).execute(transaction);
+			assertEquals(3, transaction.querySingleCellInt(
+					"SELECT count(*) FROM gameEvents WHERE source='batchtester'", null));
+			assertEquals(1, transaction.querySingleCellInt(
+					"SELECT count(*) FROM gameEvents WHERE source='batchtester' AND event='chat' AND param1='hello' AND param2 LIKE 'world%'", null));
+		} finally {
+			TransactionPool.get().rollback(transaction);
+		}
+	}
+}
@@ -0,0 +1,129 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.dbcommand;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.core.engine.db.StendhalItemDAO;
+import games.stendhal.server.entity.item.Item;
+import marauroa.common.Log4J;
+import marauroa.server.db.DBTransaction;
+import marauroa.server.db.TransactionPool;
+import marauroa.server.game.db.DatabaseFactory;
+import utilities.RPClass.ItemTestHelper;
+
+/**
+ * Tests for LogItemEventBatchCommand.
+ */
+public class LogItemEventBatchCommandTest {
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		Log4J.init();
+		new DatabaseFactory().initializeDatabase();
+		ItemTestHelper.generateRPClasses();
+	}
+
+	/**
+	 * Tests that a batch assigns distinct log ids, and writes the item and
+	 * item log rows.
+	 */
+	@Test
+	public void testBatch() throws SQLException {
+		final Item sword = ItemTestHelper.createItem("batch sword");
+		final Item shield = ItemTestHelper.createItem("batch shield");
+		final List<AbstractLogItemEventCommand> commands = new ArrayList<AbstractLogItemEventCommand>();
+		commands.add(command(new LogSimpleItemEventCommand(sword, null, "create", "batch sword", "1", "test", null)));
+		commands.add(command(new LogSimpleItemEventCommand(shield, null, "create", "batch shield", "1", "test", null)));
+		commands.add(command(new LogSimpleItemEventCommand(sword, null, "destroy", "batch sword", "1", "test", null)));
+
+		final DBTransaction transaction = TransactionPool.get().beginWork();
+		try {
+			new LogItemEventBatchCommand(commands, System.currentTimeMillis()).execute(transaction);
+			TransactionPool.get().commit(transaction);
+		} catch (final SQLException e) {
+			TransactionPool.get().rollback(transaction);
+			throw e;
+		}
+
+		final int swordId = sword.getInt(StendhalItemDAO.ATTR_ITEM_LOGID);
+		final int shieldId = shield.getInt(StendhalItemDAO.ATTR_ITEM_LOGID);
+		assertTrue(swordId != shieldId);
+
+		final DBTransaction check = TransactionPool.get().beginWork();
+		try {
+			// register, create, destroy
+			assertEquals(3, count(check, "SELECT count(*) FROM itemlog WHERE itemid=[id]", swordId));
+			// register, create
+			assertEquals(2, count(check, "SELECT count(*) FROM itemlog WHERE itemid=[id]", shieldId));
+			assertEquals(1, count(check, "SELECT count(*) FROM item WHERE id=[id] AND name='batch shield'", shieldId));
+			assertEquals(1, count(check, "SELECT count(*) FROM itemlog WHERE itemid=[id] AND event='destroy' AND source=''", swordId));
+		} finally {
+			TransactionPool.get().rollback(check);
+		}
+	}
+
+	/**
+	 * Tests that a failing event is skipped without losing the other events
+	 * of the batch.
+	 */
+	@Test
+	public void testFailingEvent() throws SQLException {
+		final Item sword = ItemTestHelper.createItem("skipping sword");
+		final Item shield = ItemTestHelper.createItem("skipping shield");
+		final List<AbstractLogItemEventCommand> commands = new ArrayList<AbstractLogItemEventCommand>();
+		commands.add(command(new LogSimpleItemEventCommand(sword, null, "create", "skipping sword", "1", "test", null)));
+		commands.add(command(new AbstractLogItemEventCommand() {
+			@Override
+			protected void log(final DBTransaction transaction) throws SQLException {
+				throw new SQLException("broken event");
+			}
+		}));
+		commands.add(command(new LogSimpleItemEventCommand(shield, null, "create", "skipping shield", "1", "test", null)));
+
+		final DBTransaction transaction = TransactionPool.get().beginWork();
+		try {
+			new LogItemEventBatchCommand(commands, System.currentTimeMillis()).execute(transaction);
+
+			final int swordId = sword.getInt(StendhalItemDAO.ATTR_ITEM_LOGID);
+			final int shieldId = shield.getInt(StendhalItemDAO.ATTR_ITEM_LOGID);
+			assertEquals(1, count(transaction, "SELECT count(*) FROM item WHERE id=[id] AND name='skipping sword'", swordId));
+			// register, create
+			assertEquals(2, count(transaction, "SELECT count(*) FROM itemlog WHERE itemid=[id]", swordId));
+			assertEquals(2, count(transaction, "SELECT count(*) FROM itemlog WHERE itemid=[id]", shieldId));
+		} finally {
+			TransactionPool.get().rollback(transaction);
+		}
+	}
+
+	private AbstractLogItemEventCommand command(final AbstractLogItemEventCommand command) {
+		command.setEnqueueTime(new Timestamp(System.currentTimeMillis()));
+		return command;
+	}
+
+	private int count(final DBTransaction transaction, final String query, final int id) throws SQLException {
+		final Map<String, Object> params = new HashMap<String, Object>();
+		params.put("id", Integer.valueOf(id));
+		return transaction.querySingleCellInt(query, params);
+	}
+}
@@ -0,0 +1,66 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.profiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for LatencyHistogram.
+ */
+public class LatencyHistogramTest {
+
+	/**
+	 * Tests that every value falls into a bucket whose upper bound is close
+	 * to the value.
+	 */
+	@Test
+	public void testBuckets() {
+		int lastIndex = -1;
+		for (long value = 0; value < 1000000; value += 1 + value / 50) {
+			final int index = LatencyHistogram.bucketIndex(value);
+			assertTrue(index >= lastIndex);
+			lastIndex = index;
+			final long high = LatencyHistogram.highestValueInBucket(index);
+			assertTrue(value + " <= " + high, value <= high);
+			assertTrue(value + " ~ " + high, high - value <= Math.max(1, value / 15));
+		}
+		LatencyHistogram.bucketIndex(Long.MAX_VALUE);
+	}
+
+	/**
+	 * Tests statistics and percentiles.
+	 */
+	@Test
+	public void testPercentiles() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getValueAtPercentile(99));
+		for (int i = 1; i <= 100; i++) {
+			histogram.record(i * 100);
+		}
+		assertEquals(100, histogram.getCount());
+		assertEquals(10000, histogram.getMax());
+		assertEquals(5050.0, histogram.getMean(), 0.001);
+		final long median = histogram.getValueAtPercentile(50);
+		assertTrue(Long.toString(median), median >= 5000 && median < 5400);
+		assertEquals(10000, histogram.getValueAtPercentile(100));
+
+		histogram.recordNanos(3000000);
+		assertEquals(101, histogram.getCount());
+
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMax());
+	}
+}
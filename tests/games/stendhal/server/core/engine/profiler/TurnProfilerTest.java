@@ -0,0 +1,51 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.engine.profiler;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for TurnProfiler.
+ */
+public class TurnProfilerTest {
+
+	/**
+	 * Tests that a reset during a turn keeps the turn in progress, and counts
+	 * it in the new window.
+	 */
+	@Test
+	public void testResetDuringTurn() {
+		final TurnProfiler profiler = TurnProfiler.get();
+		profiler.reset();
+		profiler.beginTurn(1);
+		profiler.endZone("old_zone", profiler.start());
+		profiler.endTurn();
+
+		profiler.beginTurn(2);
+		profiler.endZone("current_zone", profiler.start());
+		profiler.reset();
+		profiler.endZone("current_zone", profiler.start());
+		profiler.endTurn();
+
+		final String slowest = profiler.describeSlowestTurns();
+		assertTrue(slowest, slowest.contains("turn 2:"));
+		assertTrue(slowest, slowest.contains("current_zone"));
+		assertFalse(slowest, slowest.contains("turn 1:"));
+		final String zones = profiler.describeZones(10);
+		assertTrue(zones, zones.contains("current_zone:"));
+		assertFalse(zones, zones.contains("old_zone"));
+		profiler.reset();
+	}
+}
@@ -0,0 +1,145 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.events;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for TurnNotifier.
+ */
+public class TurnNotifierTest {
+	private TurnNotifier notifier;
+	private int turn;
+	private List<String> fired;
+
+	@Before
+	public void setUp() {
+		notifier = TurnNotifier.get();
+		notifier.clear();
+		turn = notifier.getCurrentTurnForDebugging();
+		fired = new ArrayList<String>();
+	}
+
+	@After
+	public void tearDown() {
+		notifier.clear();
+	}
+
+	/**
+	 * Tests that listeners are notified at their turn, and only once per turn.
+	 */
+	@Test
+	public void testNotifyAtTurn() {
+		final TurnListener listener = new Recorder("a");
+		notifier.notifyAtTurn(turn + 2, listener);
+		notifier.notifyAtTurn(turn + 2, listener);
+		notifier.notifyAtTurn(turn + 3, listener);
+		assertEquals(2, notifier.getQueueDepth());
+		assertEquals(2, notifier.getRemainingTurns(listener));
+
+		notifier.logic(turn + 1);
+		assertTrue(fired.isEmpty());
+		notifier.logic(turn + 2);
+		assertEquals("[a]", fired.toString());
+		assertEquals(1, notifier.getLastFireCount());
+		assertEquals(1, notifier.getRemainingTurns(listener));
+		notifier.logic(turn + 3);
+		assertEquals("[a, a]", fired.toString());
+		assertEquals(0, notifier.getQueueDepth());
+		assertEquals(-1, notifier.getRemainingTurns(listener));
+	}
+
+	/**
+	 * Tests turns that share a wheel slot.
+	 */
+	@Test
+	public void testFarFuture() {
+		notifier.notifyAtTurn(turn + 1, new Recorder("near"));
+		notifier.notifyAtTurn(turn + 1 + 4096, new Recorder("far"));
+		notifier.notifyAtTurn(turn + 1 + 3 * 4096, new Recorder("farther"));
+
+		notifier.logic(turn + 1);
+		assertEquals("[near]", fired.toString());
+		notifier.logic(turn + 1 + 4096);
+		assertEquals("[near, far]", fired.toString());
+		assertEquals(2 * 4096, notifier.getRemainingTurns(new Recorder("farther")));
+	}
+
+	/**
+	 * Tests cancelling notifications, including those of equal listeners.
+	 */
+	@Test
+	public void testDontNotify() {
+		notifier.notifyAtTurn(turn + 1, new Recorder("a"));
+		notifier.notifyAtTurn(turn + 5, new Recorder("a"));
+		notifier.notifyAtTurn(turn + 1, new Recorder("b"));
+
+		notifier.dontNotify(new Recorder("a"));
+		assertEquals(1, notifier.getQueueDepth());
+		notifier.logic(turn + 1);
+		notifier.logic(turn + 5);
+		assertEquals("[b]", fired.toString());
+	}
+
+	/**
+	 * Tests that listeners can register again while being notified.
+	 */
+	@Test
+	public void testReschedule() {
+		notifier.notifyAtTurn(turn + 1, new TurnListener() {
+			@Override
+			public void onTurnReached(final int currentTurn) {
+				fired.add("self");
+				notifier.notifyAtTurn(currentTurn + 1, this);
+			}
+		});
+		notifier.logic(turn + 1);
+		notifier.logic(turn + 2);
+		assertEquals("[self, self]", fired.toString());
+		assertEquals(1, notifier.getQueueDepth());
+	}
+
+	/**
+	 * A listener that records its name, and is equal to listeners of the
+	 * same name.
+	 */
+	private class Recorder implements TurnListener {
+		private final String name;
+
+		Recorder(final String name) {
+			this.name = name;
+		}
+
+		@Override
+		public void onTurnReached(final int currentTurn) {
+			fired.add(name);
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			return (obj instanceof Recorder) && name.equals(((Recorder) obj).name);
+		}
+
+		@Override
+		public int hashCode() {
+			return name.hashCode();
+		}
+	}
+}
@@ -0,0 +1,94 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.pathfinder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Rectangle;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.entity.ActiveEntity;
+import games.stendhal.server.entity.Entity;
+import games.stendhal.server.maps.MockStendlRPWorld;
+
+/**
+ * Tests for caching path search results.
+ */
+public class PathCacheTest {
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		MockStendlRPWorld.get();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		MockStendlRPWorld.reset();
+	}
+
+	/**
+	 * Tests that results are shared and invalidated by occupancy changes.
+	 */
+	@Test
+	public void testCache() {
+		final StendhalRPZone zone = new StendhalRPZone("path_cache_test", 10, 10);
+		final PathCache cache = new PathCache(16, 60000);
+		final ActiveEntity first = new ActiveEntity() { };
+		final ActiveEntity second = new ActiveEntity() { };
+		zone.add(first);
+		zone.add(second);
+		final Rectangle destination = new Rectangle(6, 6, 1, 1);
+
+		final List<Node> path = cache.searchPath(first, zone, 0, 0, destination, 40);
+		assertEquals(13, path.size());
+		assertEquals(0, cache.getHits());
+		assertEquals(1, cache.getMisses());
+
+		// Another entity of the same kind gets a copy of the same path
+		final List<Node> cached = cache.searchPath(second, zone, 0, 0, destination, 40);
+		assertEquals(path, cached);
+		assertNotSame(path, cached);
+		assertEquals(1, cache.getHits());
+
+		// Changing the occupancy of the zone invalidates the results
+		final Entity blocker = new Entity() { };
+		blocker.setPosition(3, 0);
+		zone.add(blocker);
+		final List<Node> changed = cache.searchPath(first, zone, 0, 0, destination, 40);
+		assertTrue(!changed.contains(new Node(3, 0)));
+		assertEquals(1, cache.getHits());
+		assertEquals(2, cache.getMisses());
+	}
+
+	/**
+	 * Tests that results expire.
+	 */
+	@Test
+	public void testExpiry() {
+		final StendhalRPZone zone = new StendhalRPZone("path_cache_test", 10, 10);
+		final PathCache cache = new PathCache(16, 0);
+		final ActiveEntity entity = new ActiveEntity() { };
+		zone.add(entity);
+		final Rectangle destination = new Rectangle(6, 6, 1, 1);
+
+		cache.searchPath(entity, zone, 0, 0, destination, 40);
+		cache.searchPath(entity, zone, 0, 0, destination, 40);
+		assertEquals(0, cache.getHits());
+		assertEquals(2, cache.getMisses());
+	}
+}
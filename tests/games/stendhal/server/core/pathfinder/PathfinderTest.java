@@ -0,0 +1,147 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.pathfinder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Rectangle;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for the A* search.
+ */
+public class PathfinderTest {
+	/**
+	 * Compares the search results on random maps against a breadth first
+	 * search.
+	 */
+	@Test
+	public void testRandomMaps() {
+		final Random random = new Random(7);
+		for (int round = 0; round < 300; round++) {
+			final int width = 5 + random.nextInt(40);
+			final int height = 5 + random.nextInt(40);
+			final boolean[][] blocked = new boolean[width][height];
+			for (int x = 0; x < width; x++) {
+				for (int y = 0; y < height; y++) {
+					blocked[x][y] = random.nextInt(100) < 30;
+				}
+			}
+			final int startX = random.nextInt(width);
+			final int startY = random.nextInt(height);
+			final int goalX = random.nextInt(width);
+			final int goalY = random.nextInt(height);
+			blocked[startX][startY] = false;
+
+			final GridPathfinder pathfinder = new GridPathfinder(blocked, startX, startY, goalX, goalY);
+			final List<Node> path = pathfinder.getPath();
+			final int distance = distance(blocked, startX, startY, goalX, goalY);
+			if (distance < 0) {
+				assertTrue(path.isEmpty());
+				continue;
+			}
+
+			assertFalse(path.isEmpty());
+			assertEquals(new Node(startX, startY), path.get(0));
+			assertEquals(new Node(goalX, goalY), path.get(path.size() - 1));
+			assertTrue(path.size() - 1 >= distance);
+			for (int i = 1; i < path.size(); i++) {
+				final Node node = path.get(i);
+				final Node previous = path.get(i - 1);
+				assertFalse(blocked[node.getX()][node.getY()]);
+				assertEquals(1, Math.abs(node.getX() - previous.getX()) + Math.abs(node.getY() - previous.getY()));
+			}
+
+			// the reused working set must give the same result
+			assertEquals(path, new GridPathfinder(blocked, startX, startY, goalX, goalY).getPath());
+		}
+	}
+
+	/**
+	 * Tests that a straight line is preferred when there are several equally
+	 * long paths.
+	 */
+	@Test
+	public void testStraightPath() {
+		final boolean[][] blocked = new boolean[10][10];
+		final List<Node> path = new GridPathfinder(blocked, 0, 5, 9, 5).getPath();
+		assertEquals(10, path.size());
+		for (final Node node : path) {
+			assertEquals(5, node.getY());
+		}
+	}
+
+	/**
+	 * Length of the shortest path, or -1 if the goal can not be reached.
+	 */
+	private int distance(final boolean[][] blocked, final int startX, final int startY, final int goalX, final int goalY) {
+		final int width = blocked.length;
+		final int height = blocked[0].length;
+		if (blocked[goalX][goalY]) {
+			return -1;
+		}
+		final int[][] distance = new int[width][height];
+		for (final int[] column : distance) {
+			Arrays.fill(column, -1);
+		}
+		final ArrayDeque<int[]> queue = new ArrayDeque<int[]>();
+		distance[startX][startY] = 0;
+		queue.add(new int[] { startX, startY });
+		final int[][] steps = { { -1, 0 }, { 1, 0 }, { 0, -1 }, { 0, 1 } };
+		while (!queue.isEmpty()) {
+			final int[] pos = queue.poll();
+			for (final int[] step : steps) {
+				final int x = pos[0] + step[0];
+				final int y = pos[1] + step[1];
+				if ((x >= 0) && (x < width) && (y >= 0) && (y < height) && !blocked[x][y] && (distance[x][y] < 0)) {
+					distance[x][y] = distance[pos[0]][pos[1]] + 1;
+					queue.add(new int[] { x, y });
+				}
+			}
+		}
+		return distance[goalX][goalY];
+	}
+
+	/**
+	 * A pathfinder on a boolean map.
+	 */
+	private static class GridPathfinder extends Pathfinder {
+		private final boolean[][] blocked;
+
+		GridPathfinder(final boolean[][] blocked, final int startX, final int startY, final int goalX, final int goalY) {
+			super(startX, startY, new Rectangle(goalX, goalY, 1, 1), 10000);
+			this.blocked = blocked;
+		}
+
+		@Override
+		protected int getMapWidth() {
+			return blocked.length;
+		}
+
+		@Override
+		protected int getMapHeight() {
+			return blocked[0].length;
+		}
+
+		@Override
+		protected boolean isValid(final int x, final int y) {
+			return (x >= 0) && (x < blocked.length) && (y >= 0) && (y < blocked[0].length) && !blocked[x][y];
+		}
+	}
+}
@@ -0,0 +1,111 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.rule.defaultruleset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.entity.item.Item;
+import games.stendhal.server.maps.MockStendlRPWorld;
+
+/**
+ * Tests for DefaultItem.
+ */
+public class DefaultItemTest {
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		MockStendlRPWorld.get();
+	}
+
+	/**
+	 * Item whose construction always fails.
+	 */
+	public static class FailingItem extends Item {
+		public FailingItem(final String name, final String clazz, final String subclass,
+				final Map<String, String> attributes) {
+			super(name, clazz, subclass, attributes);
+			throw new IllegalStateException("broken item");
+		}
+	}
+
+	/**
+	 * Tests that created items carry the data of their definition.
+	 */
+	@Test
+	public void testGetItem() {
+		final DefaultItem defaultItem = new DefaultItem("sword", "dummy_sword", "dummy sword", 0);
+		final Map<String, String> attributes = new HashMap<String, String>();
+		attributes.put("atk", "5");
+		attributes.put("rate", "3");
+		defaultItem.setAttributes(attributes);
+		defaultItem.setDescription("You see a dummy sword.");
+		defaultItem.setEquipableSlots(Arrays.asList("lhand", "rhand"));
+		defaultItem.setImplementation(Item.class);
+
+		final Item item = defaultItem.getItem();
+		assertNotNull(item);
+		assertSame(Item.class, item.getClass());
+		assertEquals("dummy sword", item.getName());
+		assertEquals("sword", item.getItemClass());
+		assertEquals("dummy_sword", item.getItemSubclass());
+		assertEquals(5, item.getAttack());
+		assertEquals("3", item.get("rate"));
+		assertEquals("You see a dummy sword.", item.getDescription());
+		assertEquals(Arrays.asList("lhand", "rhand"), item.getPossibleSlots());
+
+		// every call creates a new item
+		assertNotSame(item, defaultItem.getItem());
+	}
+
+	/**
+	 * Tests that a failing constructor results in no item.
+	 */
+	@Test
+	public void testFailingConstructor() {
+		final DefaultItem defaultItem = new DefaultItem("misc", "broken", "broken item", 0);
+		defaultItem.setAttributes(new HashMap<String, String>());
+		defaultItem.setImplementation(FailingItem.class);
+		assertNotNull(defaultItem.getCreator());
+		assertNull(defaultItem.getItem());
+	}
+
+	/**
+	 * Tests that changing the definition is seen by new items.
+	 */
+	@Test
+	public void testChangedDefinition() {
+		final DefaultItem defaultItem = new DefaultItem("misc", "dummy", "dummy", 0);
+		final Map<String, String> attributes = new HashMap<String, String>();
+		attributes.put("atk", "5");
+		defaultItem.setAttributes(attributes);
+		defaultItem.setImplementation(Item.class);
+		assertEquals(5, defaultItem.getItem().getAttack());
+
+		final Map<String, String> changed = new HashMap<String, String>();
+		changed.put("atk", "7");
+		defaultItem.setAttributes(changed);
+		defaultItem.setItemName("other dummy");
+		final Item item = defaultItem.getCreator().create();
+		assertEquals(7, item.getAttack());
+		assertEquals("other dummy", item.getName());
+	}
+}
@@ -0,0 +1,97 @@
+/***************************************************************************
+ *                       Copyright © 2023 - Stendhal                       *
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.scripting.lua;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.luaj.vm2.Globals;
+
+import games.stendhal.server.maps.MockStendlRPWorld;
+
+
+public class LuaChunkCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static Globals globals;
+
+
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		MockStendlRPWorld.get();
+		globals = LuaLoader.get().getGlobals();
+	}
+
+	private static InputStream source(final String code) {
+		return new ByteArrayInputStream(code.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testCompileOnce() throws IOException {
+		final File dir = folder.getRoot();
+		final LuaChunkCache cache = new LuaChunkCache(dir.toPath());
+
+		assertEquals(3, cache.load(globals, source("return 1 + 2"), "test").call().toint());
+		assertEquals(0, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, dir.listFiles().length);
+
+		// unchanged script is read from cache
+		assertEquals(3, cache.load(globals, source("return 1 + 2"), "test").call().toint());
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+
+		// a new cache instance uses the stored chunks
+		final LuaChunkCache restarted = new LuaChunkCache(dir.toPath());
+		assertEquals(3, restarted.load(globals, source("return 1 + 2"), "test").call().toint());
+		assertEquals(1, restarted.getHits());
+
+		// changed script is compiled again
+		assertEquals(4, cache.load(globals, source("return 2 + 2"), "test").call().toint());
+		assertEquals(2, cache.getMisses());
+		assertEquals(2, dir.listFiles().length);
+	}
+
+	@Test
+	public void testBrokenCacheFile() throws IOException {
+		final File dir = folder.getRoot();
+		final byte[] code = "return 'ok'".getBytes(StandardCharsets.UTF_8);
+		Files.write(dir.toPath().resolve(LuaChunkCache.getKey("broken", code) + ".luac"), new byte[] {1, 2, 3});
+
+		final LuaChunkCache cache = new LuaChunkCache(dir.toPath());
+		assertEquals("ok", cache.load(globals, new ByteArrayInputStream(code), "broken").call().tojstring());
+		assertEquals(0, cache.getHits());
+		assertEquals(1, cache.getMisses());
+
+		assertEquals("ok", cache.load(globals, new ByteArrayInputStream(code), "broken").call().tojstring());
+		assertEquals(1, cache.getHits());
+	}
+
+	@Test
+	public void testKey() {
+		final byte[] code = "return 1".getBytes(StandardCharsets.UTF_8);
+		assertEquals(LuaChunkCache.getKey("a", code), LuaChunkCache.getKey("a", code));
+		assertNotEquals(LuaChunkCache.getKey("a", code), LuaChunkCache.getKey("b", code));
+	}
+}
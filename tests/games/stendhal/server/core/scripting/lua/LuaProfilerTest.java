@@ -0,0 +1,93 @@
+/***************************************************************************
+ *                       Copyright © 2023 - Stendhal                       *
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.core.scripting.lua;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaValue;
+
+import games.stendhal.server.maps.MockStendlRPWorld;
+
+
+public class LuaProfilerTest {
+
+	private static Globals globals;
+	private LuaProfiler profiler;
+
+
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		MockStendlRPWorld.get();
+		globals = LuaLoader.get().getGlobals();
+	}
+
+	@Before
+	public void setUp() {
+		profiler = LuaProfiler.get();
+		profiler.reset();
+	}
+
+	private static LuaProfiler.ScriptStatistics find(final List<LuaProfiler.ScriptStatistics> list, final String script) {
+		for (final LuaProfiler.ScriptStatistics stats: list) {
+			if (stats.getScript().equals(script)) {
+				return stats;
+			}
+		}
+		fail("No statistics for " + script);
+		return null;
+	}
+
+	@Test
+	public void testFunctionCalls() {
+		final LuaValue function = globals.load("return function(x) return x * 2 end", "@data/script/test.lua").call();
+		assertEquals("data/script/test.lua", LuaProfiler.getScriptName(function));
+
+		for (int i = 0; i < 3; i++) {
+			assertEquals(10, profiler.run(function, () -> function.call(LuaValue.valueOf(5))).toint());
+		}
+
+		final LuaValue failing = globals.load("return function() error('fail') end", "failing").call();
+		try {
+			profiler.run(failing, () -> failing.call());
+			fail("Error was not passed on");
+		} catch (final LuaError e) {
+			// expected
+		}
+
+		final List<LuaProfiler.ScriptStatistics> list = profiler.getStatistics();
+		assertEquals(2, list.size());
+		final LuaProfiler.ScriptStatistics stats = find(list, "data/script/test.lua");
+		assertEquals(3, stats.getCalls());
+		assertEquals(0, stats.getErrors());
+		assertEquals(1, find(list, "failing").getErrors());
+	}
+
+	@Test
+	public void testNested() {
+		profiler.run("outer", () -> profiler.run("inner", () -> Boolean.TRUE));
+		profiler.run("outer", () -> null);
+
+		final List<LuaProfiler.ScriptStatistics> list = profiler.getStatistics();
+		assertEquals(2, find(list, "outer").getCalls());
+		assertEquals(1, find(list, "inner").getCalls());
+
+		profiler.reset();
+		assertEquals(0, profiler.getStatistics().size());
+	}
+}
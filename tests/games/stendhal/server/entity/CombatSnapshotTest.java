@@ -0,0 +1,122 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.entity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.core.engine.SingletonRepository;
+import games.stendhal.server.entity.item.Corpse;
+import games.stendhal.server.entity.item.Item;
+import games.stendhal.server.entity.slot.PlayerSlot;
+import games.stendhal.server.maps.MockStendlRPWorld;
+import marauroa.common.Log4J;
+import utilities.RPClass.ItemTestHelper;
+
+/**
+ * Tests for recalculating the combat snapshot of entities.
+ */
+public class CombatSnapshotTest {
+	private RPEntity entity;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		Log4J.init();
+		MockStendlRPWorld.get();
+		ItemTestHelper.generateRPClasses();
+	}
+
+	@Before
+	public void setUp() {
+		entity = new RPEntity() {
+			@Override
+			protected void dropItemsOn(final Corpse corpse) {
+				// do nothing
+			}
+
+			@Override
+			public void logic() {
+				// do nothing
+			}
+		};
+		entity.addSlot(new PlayerSlot("lhand"));
+		entity.addSlot(new PlayerSlot("rhand"));
+		entity.addSlot(new PlayerSlot("armor"));
+		entity.setLevel(10);
+	}
+
+	/**
+	 * Tests that equipping and removing items recalculates the snapshot.
+	 */
+	@Test
+	public void testSlotChanges() {
+		final CombatSnapshot empty = entity.getCombatSnapshot();
+		assertSame(empty, entity.getCombatSnapshot());
+		assertEquals(0f, empty.getItemAtk(), 0f);
+		assertTrue(empty.getWeapons().isEmpty());
+
+		final Item dagger = SingletonRepository.getEntityManager().getItem("dagger");
+		entity.getSlot("lhand").add(dagger);
+		final CombatSnapshot armed = entity.getCombatSnapshot();
+		assertNotSame(empty, armed);
+		assertEquals(dagger.getAttack(), armed.getItemAtk(), 0f);
+		assertEquals(1, armed.getWeapons().size());
+		assertEquals(entity.getAllStatusAttackers(), armed.getStatusAttackers());
+
+		entity.getSlot("lhand").remove(dagger.getID());
+		assertEquals(0f, entity.getCombatSnapshot().getItemAtk(), 0f);
+
+		final Item armor = SingletonRepository.getEntityManager().getItem("leather armor");
+		entity.getSlot("armor").add(armor);
+		assertEquals(entity.getItemDef(), entity.getCombatSnapshot().getItemDef(), 0f);
+		assertEquals(1, entity.getCombatSnapshot().getDefenseItems().size());
+		entity.getSlot("armor").clear();
+		assertTrue(entity.getCombatSnapshot().getDefenseItems().isEmpty());
+	}
+
+	/**
+	 * Tests that level changes recalculate the effect of min_level.
+	 */
+	@Test
+	public void testLevelChange() {
+		final Item armor = SingletonRepository.getEntityManager().getItem("leather armor");
+		armor.put("min_level", 20);
+		entity.getSlot("armor").add(armor);
+		final float weakened = entity.getCombatSnapshot().getItemDef();
+
+		entity.setLevel(20);
+		final float full = entity.getCombatSnapshot().getItemDef();
+		assertTrue(full > weakened);
+		assertEquals(entity.getItemDef(), full, 0f);
+	}
+
+	/**
+	 * Tests that changed item attributes are picked up by updateItemAtkDef.
+	 */
+	@Test
+	public void testUpdateItemAtkDef() {
+		final Item dagger = SingletonRepository.getEntityManager().getItem("dagger");
+		entity.getSlot("lhand").add(dagger);
+		entity.getCombatSnapshot();
+
+		dagger.put("atk", 42);
+		entity.updateItemAtkDef();
+		assertEquals(42f, entity.getCombatSnapshot().getItemAtk(), 0f);
+		assertEquals(42, entity.getInt("atk_item"));
+	}
+}
@@ -56,7 +56,7 @@ public class AccessCheckingPortalTest extends PlayerTestHelper {
 
 	@After
 	public void tearDown() throws Exception {
-		SingletonRepository.getTurnNotifier().getEventListForDebugging().clear();
+		SingletonRepository.getTurnNotifier().clear();
 		assertTrue(SingletonRepository.getTurnNotifier().getEventListForDebugging().isEmpty());
 	}
 
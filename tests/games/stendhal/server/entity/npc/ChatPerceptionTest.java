@@ -0,0 +1,157 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.entity.npc;
+
+import static games.stendhal.common.constants.Actions.TEXT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static utilities.SpeakerNPCTestHelper.getReply;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.common.parser.Sentence;
+import games.stendhal.server.actions.chat.PublicChatAction;
+import games.stendhal.server.core.engine.StendhalRPZone;
+import games.stendhal.server.entity.player.Player;
+import marauroa.common.game.RPAction;
+import utilities.PlayerTestHelper;
+import utilities.QuestHelper;
+
+/**
+ * Tests for delivering chat and player movement to SpeakerNPCs.
+ */
+public class ChatPerceptionTest {
+	private StendhalRPZone zone;
+	private SpeakerNPC npc;
+	private Player player;
+	private int greetings;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		QuestHelper.setUpBeforeClass();
+	}
+
+	@Before
+	public void setUp() {
+		zone = new StendhalRPZone("chat_test", 40, 40);
+		npc = new SpeakerNPC("chat test npc") {
+			@Override
+			protected void createDialog() {
+				addGreeting("Hello.");
+				addGoodbye();
+			}
+		};
+		npc.setPosition(10, 10);
+		zone.add(npc);
+
+		player = PlayerTestHelper.createPlayer("chatter");
+	}
+
+	@After
+	public void tearDown() {
+		PlayerTestHelper.removeNPC("chat test npc");
+	}
+
+	/**
+	 * Tests that NPCs hear players speaking in perception range, and only
+	 * them.
+	 */
+	@Test
+	public void testChat() {
+		player.setPosition(30, 30);
+		zone.add(player);
+		say("hi");
+		npc.preLogic();
+		assertNull(getReply(npc));
+		player.remove("text");
+
+		player.setPosition(12, 11);
+		say("hi");
+		npc.preLogic();
+		assertEquals("Hello.", getReply(npc));
+	}
+
+	/**
+	 * Tests that the greeting check runs when a player comes in range.
+	 */
+	@Test
+	public void testInitChat() {
+		npc.addInitChatMessage(null, new ChatAction() {
+			@Override
+			public void fire(final Player player, final Sentence sentence, final EventRaiser raiser) {
+				greetings++;
+			}
+		});
+
+		player.setPosition(30, 30);
+		zone.add(player);
+		npc.preLogic();
+		npc.preLogic();
+		assertEquals(0, greetings);
+
+		player.setPosition(14, 14);
+		npc.preLogic();
+		assertEquals(1, greetings);
+
+		// checked every turn while the player stays in range
+		npc.preLogic();
+		assertEquals(2, greetings);
+
+		player.setPosition(16, 10);
+		npc.preLogic();
+		npc.preLogic();
+		assertEquals(2, greetings);
+
+		// the NPC walks up to the player
+		npc.setPosition(12, 10);
+		npc.preLogic();
+		assertEquals(3, greetings);
+	}
+
+	/**
+	 * Tests that the greeting check finds players standing just inside the
+	 * perception range, and not those just outside of it.
+	 */
+	@Test
+	public void testInitChatBorder() {
+		npc.addInitChatMessage(null, new ChatAction() {
+			@Override
+			public void fire(final Player player, final Sentence sentence, final EventRaiser raiser) {
+				greetings++;
+			}
+		});
+		final int range = npc.getPerceptionRange();
+
+		// overlaps the perception area, but stands out of range
+		player.setPosition(10, 10 - range);
+		zone.add(player);
+		npc.preLogic();
+		assertEquals(0, greetings);
+
+		player.setPosition(10 + range, 10);
+		npc.preLogic();
+		assertEquals(0, greetings);
+
+		player.setPosition(10 + range - 1, 10 - range + 1);
+		npc.preLogic();
+		assertEquals(1, greetings);
+	}
+
+	private void say(final String text) {
+		final RPAction action = new RPAction();
+		action.put(TEXT, text);
+		new PublicChatAction().onAction(player, action);
+	}
+}
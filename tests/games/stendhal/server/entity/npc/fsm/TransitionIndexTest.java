@@ -0,0 +1,98 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.server.entity.npc.fsm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import games.stendhal.common.parser.ConversationParser;
+import games.stendhal.common.parser.Expression;
+import games.stendhal.common.parser.JokerExprMatcher;
+import games.stendhal.common.parser.Sentence;
+import games.stendhal.server.entity.npc.ConversationStates;
+
+/**
+ * Tests for TransitionIndex.
+ */
+public class TransitionIndexTest {
+	private static final String[] TRIGGERS = { "hi", "hello", "buy", "buys", "sell", "cloak", "cloaks", "job",
+			"help", "offer", "quest", "task", "done", "yes", "no", "bye", "", "dwarf cloak", "2 apples" };
+	private static final String[] MATCHER_TRIGGERS = { "|EXACT|Hi", "|TYPE|OBJ*", "|ICASE|BUY" };
+	private static final String[] INPUTS = { "hi", "Hi", "hello", "hallo", "buy", "buys", "buy cloak", "sel",
+			"cloak", "cloaks", "job", "jobs", "help", "helo", "offer", "quest", "quets", "yes", "yes please",
+			"no", "bye", "dwarf cloak", "apple", "2 apples", "BUY", "xyz" };
+
+	/**
+	 * Compares the index lookups with a full scan of the transition table.
+	 */
+	@Test
+	public void testCandidatesMatchFullScan() {
+		final Random random = new Random(3);
+		final ConversationStates[] states = {
+				ConversationStates.IDLE, ConversationStates.ATTENDING, ConversationStates.QUESTION_1,
+				ConversationStates.ANY };
+
+		final List<Transition> table = new ArrayList<Transition>();
+		final TransitionIndex index = new TransitionIndex();
+		for (int i = 0; i < 300; i++) {
+			final List<Expression> triggers = new ArrayList<Expression>();
+			final int count = 1 + random.nextInt(3);
+			for (int j = 0; j < count; j++) {
+				if (random.nextInt(10) == 0) {
+					triggers.add(ConversationParser.createTriggerExpression(
+							MATCHER_TRIGGERS[random.nextInt(MATCHER_TRIGGERS.length)]));
+				} else if (random.nextInt(30) == 0) {
+					triggers.add(ConversationParser.createTriggerExpression(Expression.JOKER, new JokerExprMatcher()));
+				} else {
+					triggers.add(ConversationParser.createTriggerExpression(TRIGGERS[random.nextInt(TRIGGERS.length)]));
+				}
+			}
+			final Transition transition = new Transition(states[random.nextInt(states.length)], triggers, null,
+					random.nextBoolean(), ConversationStates.ATTENDING, "reply " + i, null);
+			table.add(transition);
+			index.add(transition);
+
+			if (i == 200) {
+				// remove some and rebuild, as Engine.remove does
+				table.removeAll(Arrays.asList(table.get(3), table.get(50), table.get(150)));
+				index.rebuild(table);
+			}
+		}
+
+		for (final String input : INPUTS) {
+			final Sentence sentence = ConversationParser.parse(input);
+			for (final ConversationStates state : states) {
+				for (final MatchType type : MatchType.values()) {
+					assertEquals(input + " " + state + " " + type, filter(table, type, state, sentence),
+							filter(index.getCandidates(type, state, sentence.getTriggerExpression()), type, state, sentence));
+				}
+			}
+		}
+	}
+
+	private List<Transition> filter(final List<Transition> transitions, final MatchType type,
+			final ConversationStates state, final Sentence sentence) {
+		final List<Transition> result = new ArrayList<Transition>();
+		for (final Transition transition : transitions) {
+			if (type.match(transition, state, sentence)) {
+				result.add(transition);
+			}
+		}
+		return result;
+	}
+}
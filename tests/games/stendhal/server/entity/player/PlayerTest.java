@@ -363,6 +363,26 @@ public class PlayerTest {
 
 	}
 
+	/**
+	 * Tests that sub states follow changes done directly to the quest slot.
+	 */
+	@Test
+	public void testQuestChangedInSlot() {
+		Player player = PlayerTestHelper.createPlayer("questTestPlayer");
+		player.setQuest("testquest", "start;one");
+		assertThat(player.getQuest("testquest", 1), equalTo("one"));
+
+		player.setKeyedSlot("!quests", "testquest", "start;two");
+		assertThat(player.getQuest("testquest", 1), equalTo("two"));
+
+		player.setQuest("testquest", 2, "three");
+		assertThat(player.getQuest("testquest"), equalTo("start;two;three"));
+		assertThat(player.getQuest("testquest", 1), equalTo("two"));
+
+		player.removeQuest("testquest");
+		assertThat(player.getQuest("testquest", 1), nullValue());
+	}
+
 	/**
 	 * Test that the damage done by a player is of right type.
 	 */
@@ -19,6 +19,7 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.AfterClass;
@@ -776,4 +777,73 @@ public class MarketTest {
 
 		assertThat(george.getTradescore(), is(0));
 	}
+
+	/**
+	 * Tests that the offer lookups follow creating, expiring, prolonging and
+	 * removing offers.
+	 */
+	@Test
+	public void testOfferLookups() {
+		Player bob = PlayerTestHelper.createPlayer("bob");
+		Player alice = PlayerTestHelper.createPlayer("alice");
+		StendhalRPZone zone = new StendhalRPZone("shop");
+		Market market = Market.createShop();
+		zone.add(market);
+
+		Item axe = SingletonRepository.getEntityManager().getItem("axe");
+		bob.equipToInventoryOnly(axe);
+		Offer axeOffer = market.createOffer(bob, axe, 10, 1);
+		Item sword = SingletonRepository.getEntityManager().getItem("ice sword");
+		alice.equipToInventoryOnly(sword);
+		Offer swordOffer = market.createOffer(alice, sword, 100, 1);
+		Item dagger = SingletonRepository.getEntityManager().getItem("dagger");
+		bob.equipToInventoryOnly(dagger);
+		Offer daggerOffer = market.createOffer(bob, dagger, 5, 1);
+
+		assertEquals(Arrays.asList(axeOffer, swordOffer, daggerOffer), market.getOffers());
+		assertEquals(Arrays.asList(axeOffer, daggerOffer), market.getOffersOf("bob"));
+		// by item name, or by item class
+		assertEquals(Arrays.asList(swordOffer), market.getOffersMatching("ice"));
+		assertEquals(Arrays.asList(swordOffer, daggerOffer), market.getOffersMatching("sword"));
+		assertEquals(Arrays.asList(axeOffer), market.getOffersMatching("axe"));
+
+		market.expireOffer(axeOffer);
+		assertEquals(Arrays.asList(daggerOffer), market.getOffersOf("bob"));
+		assertEquals(Arrays.asList(axeOffer), market.getExpiredOffersOf("bob"));
+		assertTrue(market.getOffersMatching("axe").isEmpty());
+
+		market.prolongOffer(axeOffer);
+		assertEquals(Arrays.asList(daggerOffer, axeOffer), market.getOffersOf("bob"));
+		assertTrue(market.getExpiredOffersOf("bob").isEmpty());
+
+		market.removeOffer(daggerOffer, bob);
+		assertEquals(Arrays.asList(axeOffer), market.getOffersOf("bob"));
+		assertEquals(1, market.countOffersOfPlayer(bob));
+		assertEquals(Arrays.asList(swordOffer, axeOffer), market.getOffers());
+	}
+
+	/**
+	 * Tests that changed timestamps and slots changed directly are seen by
+	 * the lookups.
+	 */
+	@Test
+	public void testOfferLookupsAfterDirectChanges() {
+		Player bob = PlayerTestHelper.createPlayer("bob");
+		StendhalRPZone zone = new StendhalRPZone("shop");
+		Market market = Market.createShop();
+		zone.add(market);
+
+		Item axe = SingletonRepository.getEntityManager().getItem("axe");
+		bob.equipToInventoryOnly(axe);
+		Offer offer = market.createOffer(bob, axe, 10, 1);
+		assertTrue(market.getOffersOlderThan(100).isEmpty());
+		offer.put("timestamp", "0");
+		assertEquals(Arrays.asList(offer), market.getOffersOlderThan(100));
+		offer.updateTimestamp();
+		assertTrue(market.getOffersOlderThan(100).isEmpty());
+
+		market.getSlot(Market.OFFERS_SLOT_NAME).clear();
+		assertEquals(0, market.countOffersOfPlayer(bob));
+		assertTrue(market.getOffers().isEmpty());
+	}
 }
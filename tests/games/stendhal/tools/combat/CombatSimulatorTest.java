@@ -0,0 +1,107 @@
+/***************************************************************************
+ *                      (C) Copyright 2023 - Stendhal                      *
+ ***************************************************************************
+ ***************************************************************************
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ ***************************************************************************/
+package games.stendhal.tools.combat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import games.stendhal.server.entity.creature.Creature;
+import games.stendhal.server.entity.player.Player;
+import games.stendhal.server.maps.MockStendlRPWorld;
+import utilities.PlayerTestHelper;
+
+/**
+ * Tests for the parallel combat simulator.
+ */
+public class CombatSimulatorTest {
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		MockStendlRPWorld.get();
+	}
+
+	private static List<Combatants> createCombatants(final int count) {
+		final List<Combatants> list = new ArrayList<Combatants>();
+		for (int i = 0; i < count; i++) {
+			final Player player = PlayerTestHelper.createPlayer("simulated");
+			player.setLevel(5);
+			player.setBaseHP(150);
+			player.setAtk(15);
+			player.setDef(15);
+			final Creature enemy = new Creature("dummy", "dummy", "(generic creature)", 150, 15, 15,
+					15, 5, 1, 1, 1, 1.0, new ArrayList<>(), new HashMap<>(), new LinkedHashMap<>(), 1,
+					"dummy");
+			list.add(new Combatants(player, enemy));
+		}
+		return list;
+	}
+
+	/**
+	 * Tests that the result depends only on the seed, not on the number of
+	 * threads.
+	 */
+	@Test
+	public void testDeterministic() throws InterruptedException {
+		final CombatResult single = new CombatSimulator(200, 42).run(createCombatants(1));
+		final CombatResult parallel = new CombatSimulator(200, 42).run(createCombatants(4));
+		assertEquals(200, single.getTrials());
+		assertEquals(single.getWins() + single.getLosses() + single.getTies(), single.getTrials());
+		for (int i = 0; i < single.getTrials(); i++) {
+			assertEquals(single.getPlayerHP(i), parallel.getPlayerHP(i));
+			assertEquals(single.getEnemyHP(i), parallel.getEnemyHP(i));
+		}
+		assertEquals(single.getTotalTurns(), parallel.getTotalTurns());
+		assertEquals(single.getPlayerDamage(), parallel.getPlayerDamage());
+		assertFalse(single.differsFrom(parallel));
+
+		final double[] interval = single.getWinRatioInterval();
+		assertTrue(interval[0] <= single.getWinRatio());
+		assertTrue(interval[1] >= single.getWinRatio());
+		assertTrue(single.getMeanTurnsMargin() > 0);
+	}
+
+	/**
+	 * Tests the machine readable output.
+	 */
+	@Test
+	public void testReport() throws InterruptedException {
+		final CombatResult result = new CombatSimulator(20, 1).run(createCombatants(2));
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		CombatReport report = new CombatReport(CombatReport.Format.CSV, new PrintStream(bytes));
+		report.addResult("dummy", 5, result);
+		report.addResult("dummy", 5, result);
+		report.finish();
+		String[] lines = bytes.toString().split("\\R");
+		assertEquals(3, lines.length);
+		assertTrue(lines[0].startsWith("creature,level,trials,seed,wins,"));
+		assertTrue(lines[1].startsWith("\"dummy\",5,20,1," + result.getWins() + ","));
+
+		bytes = new ByteArrayOutputStream();
+		report = new CombatReport(CombatReport.Format.JSON, new PrintStream(bytes));
+		report.addComparison("dummy", 5, result, result);
+		report.finish();
+		final String json = bytes.toString().trim();
+		assertTrue(json.startsWith("[{\"creature\":\"dummy\",\"level\":5,"));
+		assertTrue(json.endsWith("\"difference\":0.0,\"significant\":false}]"));
+	}
+}